@@ -0,0 +1,234 @@
+package edu.jhu.agiga;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaMetricsListener.Stage;
+
+/**
+ * Checks the bytes allocated on the heap while reading a synthetic corpus
+ * against a set of budgets, and exits with a non-zero status if any budget is
+ * exceeded. This is a manual benchmark, not a test: it does not run in "mvn
+ * test" or a default build, so an allocation regression is only caught when
+ * it is run, by hand or with "mvn -P allocation-budget verify".
+ *
+ * The allocations are measured per stage with AgigaMetrics, which uses the
+ * per-thread allocation counters of the JVM, for both StreamingSentenceReader
+ * and StreamingDocumentReader under each of the BenchmarkPrefs
+ * configurations. Each measurement is normalized by the number of documents,
+ * sentences or tokens in the corpus and named as
+ * [reader].[prefs].[stage].[unit], e.g. "sentences.words.materialize.token".
+ * The budgets are a properties file mapping some of these names to the
+ * maximum number of bytes allowed; names without a budget are only reported.
+ *
+ * usage: java -cp target/benchmarks.jar edu.jhu.agiga.AllocationBudget
+ * [options]
+ *
+ * where the options are:
+ *
+ * <pre>
+ *   -budgets &lt;file&gt;  (Properties file of budgets, default allocation-budgets.properties on the classpath)
+ *   -docs &lt;int&gt;      (Number of synthetic documents, default 100)
+ *   -seed &lt;long&gt;     (Random seed for the synthetic corpus, default 1)
+ *   -warmup &lt;int&gt;    (Passes over the corpus before measuring, default 2)
+ * </pre>
+ *
+ * @author mgormley
+ *
+ */
+public class AllocationBudget {
+
+    private static Logger log = Logger.getLogger(AllocationBudget.class.getName());
+
+    public static final String DEFAULT_BUDGETS = "allocation-budgets.properties";
+
+    private static final String SENTENCES = "sentences";
+    private static final String DOCUMENTS = "documents";
+
+    private static final String[] PREFS = { BenchmarkPrefs.WORDS, BenchmarkPrefs.POS, BenchmarkPrefs.DEPS,
+            BenchmarkPrefs.CONLL, BenchmarkPrefs.COREF, BenchmarkPrefs.TEXT, BenchmarkPrefs.ALL };
+
+    private int numDocs = 100;
+    private long seed = 1;
+    private int numWarmup = 2;
+
+    private String inputFile;
+    private long corpusDocs;
+    private long corpusSents;
+    private long corpusTokens;
+
+    public void setNumDocs(int numDocs) {
+        this.numDocs = numDocs;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setNumWarmup(int numWarmup) {
+        this.numWarmup = numWarmup;
+    }
+
+    /**
+     * Generates the synthetic corpus and measures the allocations under every
+     * reader and prefs configuration.
+     *
+     * @return A map from the name of each measurement to the bytes allocated.
+     */
+    public Map<String, Long> measure() throws IOException {
+        File file = File.createTempFile("agiga-alloc", ".xml.gz");
+        file.deleteOnExit();
+        try {
+            AgigaCorpusGenerator gen = new AgigaCorpusGenerator();
+            gen.setSeed(seed);
+            gen.setNumDocs(numDocs);
+            gen.write(file.getPath());
+            inputFile = file.getPath();
+
+            // Count the sentences and tokens once with every annotation
+            // turned on, so that each configuration is normalized by the same
+            // totals.
+            AgigaMetrics counts = read(DOCUMENTS, BenchmarkPrefs.get(BenchmarkPrefs.ALL));
+            corpusDocs = counts.getNumDocs();
+            corpusSents = counts.getNumSents();
+            corpusTokens = counts.getNumTokens();
+            log.info(String.format("Synthetic corpus: docs=%d sents=%d tokens=%d", corpusDocs, corpusSents,
+                    corpusTokens));
+
+            Map<String, Long> measurements = new LinkedHashMap<String, Long>();
+            for (String reader : new String[] { SENTENCES, DOCUMENTS }) {
+                for (String name : PREFS) {
+                    AgigaPrefs prefs = BenchmarkPrefs.get(name);
+                    for (int i = 0; i < numWarmup; i++) {
+                        read(reader, prefs);
+                    }
+                    AgigaMetrics metrics = read(reader, prefs);
+                    String prefix = reader + "." + name + ".";
+                    measurements.put(prefix + "split.doc", metrics.getAllocatedBytes(Stage.SPLIT) / corpusDocs);
+                    measurements.put(prefix + "index.doc", metrics.getAllocatedBytes(Stage.INDEX) / corpusDocs);
+                    long materialize = metrics.getAllocatedBytes(Stage.MATERIALIZE);
+                    measurements.put(prefix + "materialize.doc", materialize / corpusDocs);
+                    measurements.put(prefix + "materialize.sent", materialize / corpusSents);
+                    measurements.put(prefix + "materialize.token", materialize / corpusTokens);
+                }
+            }
+            return measurements;
+        } finally {
+            file.delete();
+        }
+    }
+
+    private AgigaMetrics read(String reader, AgigaPrefs prefs) {
+        AgigaMetrics metrics = new AgigaMetrics();
+        StreamingVtdXmlReader<?> iter;
+        if (SENTENCES.equals(reader)) {
+            iter = new StreamingSentenceReader(inputFile, prefs);
+        } else {
+            iter = new StreamingDocumentReader(inputFile, prefs);
+        }
+        iter.setMetricsListener(metrics);
+        Iterator<?> it = iter.iterator();
+        while (it.hasNext()) {
+            it.next();
+        }
+        return metrics;
+    }
+
+    /**
+     * Compares the measurements to the budgets.
+     *
+     * @return A description of each budget which was exceeded.
+     */
+    public static List<String> check(Map<String, Long> measurements, Properties budgets) {
+        List<String> violations = new ArrayList<String>();
+        for (String key : budgets.stringPropertyNames()) {
+            long budget = Long.parseLong(budgets.getProperty(key).trim());
+            Long actual = measurements.get(key);
+            if (actual == null) {
+                violations.add("Unknown budget: " + key);
+            } else if (actual > budget) {
+                violations.add(String.format("%s: %d bytes allocated, budget is %d", key, actual, budget));
+            }
+        }
+        return violations;
+    }
+
+    private static Properties loadBudgets(String budgetsFile) throws IOException {
+        Properties budgets = new Properties();
+        InputStream is;
+        if (budgetsFile == null) {
+            is = AllocationBudget.class.getClassLoader().getResourceAsStream(DEFAULT_BUDGETS);
+            if (is == null) {
+                throw new IllegalStateException("Budgets not found on the classpath: " + DEFAULT_BUDGETS);
+            }
+        } else {
+            is = new FileInputStream(budgetsFile);
+        }
+        try {
+            budgets.load(is);
+        } finally {
+            is.close();
+        }
+        return budgets;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AllocationBudget.class.getName() + " [options]"
+                + "\n  where the options are:"
+                + "\n    -budgets <file>  (Properties file of budgets, default " + DEFAULT_BUDGETS + " on the classpath)"
+                + "\n    -docs <int>      (Number of synthetic documents, default 100)"
+                + "\n    -seed <long>     (Random seed for the synthetic corpus, default 1)"
+                + "\n    -warmup <int>    (Passes over the corpus before measuring, default 2)";
+        AllocationBudget ab = new AllocationBudget();
+        String budgetsFile = null;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-budgets")) {
+                budgetsFile = opts.getValue();
+            } else if (opt.equals("-docs")) {
+                ab.setNumDocs(opts.getInt());
+            } else if (opt.equals("-seed")) {
+                ab.setSeed(opts.getLong());
+            } else if (opt.equals("-warmup")) {
+                ab.setNumWarmup(opts.getInt());
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        opts.getPositional(0, 0);
+        Properties budgets = loadBudgets(budgetsFile);
+
+        if (Util.getThreadAllocatedBytes() == -1) {
+            log.severe("This JVM does not support measuring the bytes allocated per thread");
+            System.exit(1);
+        }
+        Map<String, Long> measurements = ab.measure();
+        for (Map.Entry<String, Long> e : measurements.entrySet()) {
+            String budget = budgets.getProperty(e.getKey());
+            log.info(String.format("%-40s %12d%s", e.getKey(), e.getValue(), budget == null ? "" : "  (budget "
+                    + budget.trim() + ")"));
+        }
+
+        List<String> violations = check(measurements, budgets);
+        for (String v : violations) {
+            log.severe(v);
+        }
+        if (violations.size() > 0) {
+            log.severe("Allocation budgets exceeded: " + violations.size());
+            System.exit(1);
+        }
+        log.info("All allocation budgets met");
+    }
+
+}
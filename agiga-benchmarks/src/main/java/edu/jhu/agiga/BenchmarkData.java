@@ -0,0 +1,93 @@
+package edu.jhu.agiga;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The input shared by the benchmarks: a small synthetic Annotated Gigaword
+ * file written to a temporary location by AgigaCorpusGenerator, and the XML
+ * of each of its documents.
+ * 
+ * @author mgormley
+ * 
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+
+    public static final int NUM_DOCS = 50;
+    public static final int SENTS_PER_DOC = 20;
+    public static final long SEED = 1;
+
+    /** The gzipped file. */
+    public File file;
+    /** The XML of each DOC in the file. */
+    public List<byte[]> docs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("agiga-bench", ".xml.gz");
+        file.deleteOnExit();
+        AgigaCorpusGenerator gen = new AgigaCorpusGenerator();
+        gen.setSeed(SEED);
+        gen.setNumDocs(NUM_DOCS);
+        gen.setSentsPerDoc(SENTS_PER_DOC, 0);
+        gen.write(file.getPath());
+        docs = splitDocs(file.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Gets the XML of each DOC in the file, as it would be passed to
+     * StreamingVtdXmlReader.getIteratorInstance().
+     */
+    public static List<byte[]> splitDocs(String inputFile) {
+        final List<byte[]> docs = new ArrayList<byte[]>();
+        StreamingVtdXmlReader<byte[]> reader = new DocBytesReader(inputFile);
+        for (byte[] b : reader) {
+            docs.add(b);
+        }
+        return docs;
+    }
+
+    /**
+     * A StreamingVtdXmlReader which returns the XML of each DOC without
+     * indexing or parsing it.
+     */
+    public static class DocBytesReader extends StreamingVtdXmlReader<byte[]> {
+
+        public DocBytesReader(String inputFile) {
+            super(inputFile);
+        }
+
+        @Override
+        protected Iterator<byte[]> getIteratorInstance(byte[] b) {
+            return Collections.singletonList(b).iterator();
+        }
+
+        @Override
+        protected int getNumSents(byte[] item) {
+            return 0;
+        }
+
+        @Override
+        protected int getNumTokens(byte[] item) {
+            return 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package edu.jhu.agiga;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which reports the allocation
+ * rate (gc.alloc.rate.norm is the bytes allocated per operation) alongside the
+ * throughput.
+ * 
+ * usage: java -cp target/benchmarks.jar edu.jhu.agiga.BenchmarkMain [regexp]
+ * 
+ * where the optional regular expression selects the benchmarks to run, e.g.
+ * "ReaderBenchmark". The full JMH command line is available with java -jar
+ * target/benchmarks.jar -h.
+ * 
+ * @author mgormley
+ * 
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        Options opt = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,72 @@
+package edu.jhu.agiga;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * The AgigaPrefs configurations under which the benchmarks are run. Each
+ * benchmark takes one of these names as its "prefs" parameter.
+ * 
+ * @author mgormley
+ * 
+ */
+public class BenchmarkPrefs {
+
+    /** The words only, as for AgigaPrinter words. */
+    public static final String WORDS = "words";
+    /** The words and POS tags, as for AgigaPrinter pos. */
+    public static final String POS = "pos";
+    /** The collapsed and propagated dependencies only. */
+    public static final String DEPS = "deps";
+    /** The words, lemmas, POS tags and collapsed and propagated dependencies. */
+    public static final String CONLL = "conll";
+    /** The words and the coreference chains, as for AgigaPrinter coref. */
+    public static final String COREF = "coref";
+    /**
+     * Everything needed by the write* methods and the Stanford conversions:
+     * words, lemmas, POS tags, all dependency forms, the parse and coref.
+     */
+    public static final String TEXT = "text";
+    /** Every annotation. */
+    public static final String ALL = "all";
+
+    private BenchmarkPrefs() {
+        // Private constructor.
+    }
+
+    public static AgigaPrefs get(String name) {
+        AgigaPrefs prefs = new AgigaPrefs();
+        if (WORDS.equals(name)) {
+            prefs.setAll(false);
+            prefs.setWord(true);
+        } else if (POS.equals(name)) {
+            prefs.setAll(false);
+            prefs.setWord(true);
+            prefs.setPos(true);
+        } else if (DEPS.equals(name)) {
+            prefs.setAll(false);
+            prefs.setDeps(DependencyForm.COL_CCPROC_DEPS);
+        } else if (CONLL.equals(name)) {
+            prefs.setForConnlStyleDeps(DependencyForm.COL_CCPROC_DEPS);
+        } else if (COREF.equals(name)) {
+            prefs.setAll(false);
+            prefs.setWord(true);
+            prefs.setCoref(true);
+        } else if (TEXT.equals(name)) {
+            prefs.setAll(false);
+            prefs.setWord(true);
+            prefs.setLemma(true);
+            prefs.setPos(true);
+            prefs.setParse(true);
+            for (DependencyForm form : DependencyForm.values()) {
+                prefs.setDeps(form);
+            }
+            prefs.setCoref(true);
+        } else if (ALL.equals(name)) {
+            prefs.setAll(true);
+        } else {
+            throw new IllegalArgumentException("Unknown prefs configuration: " + name);
+        }
+        return prefs;
+    }
+
+}
@@ -0,0 +1,235 @@
+package edu.jhu.agiga;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.stanford.nlp.ling.HasIndex;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Label;
+import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
+import edu.stanford.nlp.trees.PennTreeReader;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Checks that the constituency parse conversions give the same results as
+ * the regular expression and PennTreeReader code they replaced, and exits
+ * with a non-zero status if any sentence differs. For each sentence,
+ * getParseText() is compared to the old regular expression fix-up, and
+ * getStanfordContituencyTree() to the tree PennTreeReader reads from
+ * getParseText(), including the label, index and word of each leaf.
+ *
+ * The sentences are those of a synthetic corpus, the given input files, and
+ * a fixed set of parses with multi-word terminals, which the synthetic corpus
+ * does not contain.
+ *
+ * usage: java -cp target/benchmarks.jar edu.jhu.agiga.ParseTreeParity
+ * [options] [.xml.gz files]
+ *
+ * where the options are:
+ *
+ * <pre>
+ *   -docs &lt;int&gt;      (Number of synthetic documents, default 100)
+ *   -seed &lt;long&gt;     (Random seed for the synthetic corpus, default 1)
+ * </pre>
+ *
+ * @author mgormley
+ *
+ */
+public class ParseTreeParity {
+
+    private static Logger log = Logger.getLogger(ParseTreeParity.class.getName());
+
+    /** Parses with multi-word terminals, as found in Annotated Gigaword. */
+    static final String[] MULTI_WORD_PARSES = {
+            "(ROOT (S (NP (NNP New York)) (VP (VBZ is) (ADJP (JJ big))) (. .)))",
+            "(ROOT (S (NP (DT the) (NNP Los Angeles) (NNS Lakers)) (VP (VBD won)) (. .)))",
+            "(ROOT (NP (CD 3 1/2) (NNS points)))",
+            "(ROOT (S (NP (NNP San  Francisco) (NNP Bay\tArea)) (VP (VBD grew)) (. .)))",
+            "(ROOT (S (NP (PRP he)) (VP (VBD said) (NP (QP ($ $) (CD 10 million)))) (. .)))",
+            "(ROOT\n  (S\n    (NP (NNP Rio de Janeiro))\n    (VP (VBD hosted))\n    (. .)))" };
+
+    // The regular expression fix-up which getParseText() replaced.
+    private static final Pattern multiWordTerminalPat = Pattern.compile("\\([A-Z]+\\s[^\\(]+\\s[^\\(]+?\\)");
+
+    private int numDocs = 100;
+    private long seed = 1;
+    private int numSents;
+    private List<String> errors = new ArrayList<String>();
+
+    public void setNumDocs(int numDocs) {
+        this.numDocs = numDocs;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Checks the sentences of the synthetic corpus, the input files and the
+     * multi-word parses.
+     *
+     * @return A description of each sentence which differs.
+     */
+    public List<String> check(List<String> inputFiles) throws IOException {
+        File file = File.createTempFile("agiga-parity", ".xml.gz");
+        file.deleteOnExit();
+        try {
+            AgigaCorpusGenerator gen = new AgigaCorpusGenerator();
+            gen.setSeed(seed);
+            gen.setNumDocs(numDocs);
+            gen.write(file.getPath());
+            checkFile(file.getPath());
+        } finally {
+            file.delete();
+        }
+        for (String inputFile : inputFiles) {
+            checkFile(inputFile);
+        }
+        AgigaPrefs prefs = getPrefs();
+        for (String parse : MULTI_WORD_PARSES) {
+            StanfordAgigaSentence sent = new StanfordAgigaSentence(prefs);
+            sent.setParseText(parse);
+            checkSentence("multi-word", sent);
+        }
+        log.info("Checked " + numSents + " sentences");
+        return errors;
+    }
+
+    private static AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setParse(true);
+        return prefs;
+    }
+
+    private void checkFile(String inputFile) throws IOException {
+        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, getPrefs());
+        for (AgigaSentence sent : reader) {
+            checkSentence(inputFile + " sentence " + reader.getNumSents(), (StanfordAgigaSentence) sent);
+        }
+    }
+
+    private void checkSentence(String name, StanfordAgigaSentence sent) throws IOException {
+        numSents++;
+        StringWriter raw = new StringWriter();
+        sent.writeParseText(raw);
+        String parseText = raw.toString();
+        // Remove the newline added by writeParseText().
+        parseText = parseText.substring(0, parseText.length() - 1);
+        String expected = getLegacyParseText(parseText);
+        if (!expected.equals(sent.getParseText())) {
+            errors.add(name + ": parse text " + sent.getParseText() + " expected " + expected);
+            return;
+        }
+        Tree expectedTree = new PennTreeReader(new StringReader(sent.getParseText()), new LabeledScoredTreeFactory())
+                .readTree();
+        String diff = compare(expectedTree, sent.getStanfordContituencyTree());
+        if (diff != null) {
+            errors.add(name + ": " + diff + " in " + sent.getParseText());
+        }
+    }
+
+    /**
+     * Compares two trees, returning a description of the first difference or
+     * null if they are the same.
+     */
+    private static String compare(Tree expected, Tree actual) {
+        if (!getValue(expected.label()).equals(getValue(actual.label()))) {
+            return "label " + actual.label() + " expected " + expected.label();
+        }
+        if (expected.isLeaf() != actual.isLeaf()) {
+            return "leaf " + actual + " expected " + expected;
+        }
+        if (expected.isLeaf()) {
+            Label e = expected.label();
+            Label a = actual.label();
+            if (e instanceof HasIndex && ((HasIndex) e).index() != ((HasIndex) a).index()) {
+                return "index of " + a + " " + ((HasIndex) a).index() + " expected " + ((HasIndex) e).index();
+            }
+            if (e instanceof HasWord && !String.valueOf(((HasWord) e).word()).equals(((HasWord) a).word())) {
+                return "word " + ((HasWord) a).word() + " expected " + ((HasWord) e).word();
+            }
+            return null;
+        }
+        Tree[] e = expected.children();
+        Tree[] a = actual.children();
+        if (e.length != a.length) {
+            return "children of " + actual.label() + " " + a.length + " expected " + e.length;
+        }
+        for (int i = 0; i < e.length; i++) {
+            String diff = compare(e[i], a[i]);
+            if (diff != null) {
+                return diff;
+            }
+        }
+        return null;
+    }
+
+    private static String getValue(Label label) {
+        return label == null ? "" : String.valueOf(label.value());
+    }
+
+    /**
+     * Replaces the spaces in multi-word terminals with non-breaking spaces, as
+     * getParseText() did before AgigaParseTree.
+     */
+    static String getLegacyParseText(String parseText) {
+        final String nbsp = "\u00A0";
+        Matcher m = multiWordTerminalPat.matcher(parseText);
+        int ptr = 0;
+        StringBuilder sb = null;
+        while (m.find()) {
+            if (sb == null) {
+                sb = new StringBuilder();
+            }
+            int s = m.start();
+            int e = m.end();
+            sb.append(parseText.substring(ptr, s));
+            String mid = parseText.substring(s, e);
+            int midSpace = mid.indexOf(" ");
+            sb.append(mid.substring(0, midSpace + 1));
+            sb.append(mid.substring(midSpace + 1).replaceAll("\\s+", nbsp));
+            ptr = e;
+        }
+        if (sb == null) {
+            return parseText;
+        }
+        sb.append(parseText.substring(ptr));
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Util.initializeLogging();
+        String usage = "\nusage: java " + ParseTreeParity.class.getName() + " [options] [.xml.gz files]"
+                + "\n  where the options are:"
+                + "\n    -docs <int>      (Number of synthetic documents, default 100)"
+                + "\n    -seed <long>     (Random seed for the synthetic corpus, default 1)";
+        ParseTreeParity parity = new ParseTreeParity();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-docs")) {
+                parity.setNumDocs(opts.getInt());
+            } else if (opt.equals("-seed")) {
+                parity.setSeed(opts.getLong());
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> errors = parity.check(opts.getPositional(0, Integer.MAX_VALUE));
+        for (String error : errors) {
+            log.severe(error);
+        }
+        if (errors.size() > 0) {
+            log.severe("Sentences which differ: " + errors.size());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package edu.jhu.agiga;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures indexing each document and materializing its AgigaSentence or
+ * AgigaDocument objects. The "prefs" parameter selects which annotations are
+ * read: for example, "words" and "pos" exercise the token materialization,
+ * "deps" the dependency materialization and "coref" the coreference
+ * materialization.
+ * 
+ * @author mgormley
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+
+    @Param({ BenchmarkPrefs.WORDS, BenchmarkPrefs.POS, BenchmarkPrefs.DEPS, BenchmarkPrefs.CONLL,
+            BenchmarkPrefs.COREF, BenchmarkPrefs.ALL })
+    public String prefs;
+
+    private AgigaPrefs agigaPrefs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        agigaPrefs = BenchmarkPrefs.get(prefs);
+    }
+
+    @Benchmark
+    public void sentences(BenchmarkData data, Blackhole bh) {
+        for (byte[] b : data.docs) {
+            for (AgigaSentence sent : new AgigaSentenceReader(b, agigaPrefs)) {
+                bh.consume(sent);
+            }
+        }
+    }
+
+    @Benchmark
+    public void documents(BenchmarkData data, Blackhole bh) {
+        for (byte[] b : data.docs) {
+            for (AgigaDocument doc : new AgigaDocumentReader(b, agigaPrefs)) {
+                bh.consume(doc);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package edu.jhu.agiga;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the inflation of the .xml.gz file and its splitting into the XML
+ * of single documents by StreamingVtdXmlReader. This stage does not depend on
+ * the AgigaPrefs.
+ * 
+ * @author mgormley
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplitBenchmark {
+
+    @Benchmark
+    public void split(BenchmarkData data, Blackhole bh) {
+        BenchmarkData.DocBytesReader reader = new BenchmarkData.DocBytesReader(data.file.getPath());
+        for (byte[] b : reader) {
+            bh.consume(b);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package edu.jhu.agiga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * Measures the conversion of the sentences to the Stanford parser API
+ * objects, and to AgigaParseTree. The sentences are read once during setup,
+ * and copied into new objects for each invocation so that no conversion is
+ * served from a cache, except in typedDependenciesCached.
+ * 
+ * @author mgormley
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StanfordBenchmark {
+
+    @Param({ BenchmarkPrefs.TEXT, BenchmarkPrefs.ALL })
+    public String prefs;
+
+    private AgigaPrefs agigaPrefs;
+    private List<StanfordAgigaSentence> sents;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData data) {
+        agigaPrefs = BenchmarkPrefs.get(prefs);
+        sents = new ArrayList<StanfordAgigaSentence>();
+        for (byte[] b : data.docs) {
+            for (AgigaSentence sent : new AgigaSentenceReader(b, agigaPrefs)) {
+                sents.add((StanfordAgigaSentence) sent);
+            }
+        }
+    }
+
+    private StanfordAgigaSentence copy(StanfordAgigaSentence sent) {
+        StanfordAgigaSentence copy = new StanfordAgigaSentence(agigaPrefs);
+        copy.setSentIdx(sent.getSentIdx());
+        copy.setTokens(sent.getTokens());
+        copy.setParseText(sent.getParseText());
+        copy.setBasicDeps(sent.getBasicDeps());
+        copy.setColDeps(sent.getColDeps());
+        copy.setColCcprocDeps(sent.getColCcprocDeps());
+        return copy;
+    }
+
+    @Benchmark
+    public void wordLemmaTags(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(copy(sent).getStanfordWordLemmaTags());
+        }
+    }
+
+    @Benchmark
+    public void treeGraphNodes(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(copy(sent).getStanfordTreeGraphNodes(DependencyForm.COL_CCPROC_DEPS));
+        }
+    }
+
+    @Benchmark
+    public void typedDependencies(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(copy(sent).getStanfordTypedDependencies(DependencyForm.COL_CCPROC_DEPS));
+        }
+    }
+
+    /**
+     * Repeated calls on the same sentences, which are served from the cache
+     * after the first invocation.
+     */
+    @Benchmark
+    public void typedDependenciesCached(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(sent.getStanfordTypedDependencies(DependencyForm.COL_CCPROC_DEPS));
+        }
+    }
+
+    @Benchmark
+    public void parseText(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(copy(sent).getParseText());
+        }
+    }
+
+    @Benchmark
+    public void parseTree(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(copy(sent).getParseTree());
+        }
+    }
+
+    @Benchmark
+    public void constituencyTree(Blackhole bh) {
+        for (StanfordAgigaSentence sent : sents) {
+            bh.consume(copy(sent).getStanfordContituencyTree());
+        }
+    }
+
+}
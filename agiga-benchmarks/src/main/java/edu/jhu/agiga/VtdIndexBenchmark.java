@@ -0,0 +1,41 @@
+package edu.jhu.agiga;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ximpleware.ParseException;
+import com.ximpleware.VTDGen;
+
+/**
+ * Measures building the VTD-XML index of each document. This stage does not
+ * depend on the AgigaPrefs.
+ * 
+ * @author mgormley
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VtdIndexBenchmark {
+
+    @Benchmark
+    public void index(BenchmarkData data, Blackhole bh) throws ParseException {
+        for (byte[] b : data.docs) {
+            VTDGen vg = new VTDGen();
+            vg.setDoc(b);
+            vg.parse(false);
+            bh.consume(vg.getNav());
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package edu.jhu.agiga;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * Measures the write* methods of AgigaSentence and AgigaDocument. The output
+ * is discarded, so that only the cost of formatting is measured.
+ * 
+ * @author mgormley
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+
+    @Param({ BenchmarkPrefs.TEXT, BenchmarkPrefs.ALL })
+    public String prefs;
+
+    private List<AgigaDocument> docs;
+    private Writer writer;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkData data, Blackhole bh) {
+        AgigaPrefs agigaPrefs = BenchmarkPrefs.get(prefs);
+        docs = new ArrayList<AgigaDocument>();
+        for (byte[] b : data.docs) {
+            for (AgigaDocument doc : new AgigaDocumentReader(b, agigaPrefs)) {
+                docs.add(doc);
+            }
+        }
+        writer = new BlackholeWriter(bh);
+    }
+
+    @Benchmark
+    public void writeWords() throws IOException {
+        for (AgigaDocument doc : docs) {
+            for (AgigaSentence sent : doc.getSents()) {
+                sent.writeWords(writer);
+            }
+        }
+    }
+
+    @Benchmark
+    public void writePosTags() throws IOException {
+        for (AgigaDocument doc : docs) {
+            for (AgigaSentence sent : doc.getSents()) {
+                sent.writePosTags(writer);
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeConnlStyleDeps() throws IOException {
+        for (AgigaDocument doc : docs) {
+            for (AgigaSentence sent : doc.getSents()) {
+                sent.writeConnlStyleDeps(writer, DependencyForm.COL_CCPROC_DEPS);
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeParseText() throws IOException {
+        for (AgigaDocument doc : docs) {
+            for (AgigaSentence sent : doc.getSents()) {
+                sent.writeParseText(writer);
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeMucStyleCoref() throws IOException {
+        for (AgigaDocument doc : docs) {
+            doc.writeMucStyleCoref(writer);
+        }
+    }
+
+    /**
+     * A Writer which passes everything written to a Blackhole.
+     */
+    private static class BlackholeWriter extends Writer {
+
+        private final Blackhole bh;
+
+        public BlackholeWriter(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            bh.consume(cbuf);
+        }
+
+        @Override
+        public void write(String str) {
+            bh.consume(str);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            bh.consume(str);
+        }
+
+        @Override
+        public void write(int c) {
+            bh.consume(c);
+        }
+
+        @Override
+        public void flush() {
+            // Do nothing.
+        }
+
+        @Override
+        public void close() {
+            // Do nothing.
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package edu.jhu.agiga;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A position in an Annotated Gigaword file, as reported by
+ * StreamingVtdXmlReader.getCheckpoint(). A reader resumed from the checkpoint
+ * returns exactly the items which follow it.
+ *
+ * The position is given by the number of documents before it in the file and
+ * the number of items (sentences, or the document itself) of the next document
+ * which were already returned, so it does not depend on the compression. The
+ * absolute path and the length of the file are kept so that a checkpoint is
+ * not used with a different file, or with a file which has since changed.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaCheckpoint implements Serializable {
+
+    public static final long serialVersionUID = 1;
+
+    private String file;
+    private long fileLength;
+    private int docNum;
+    private int itemNum;
+
+    public AgigaCheckpoint(String file, long fileLength, int docNum, int itemNum) {
+        this.file = file;
+        this.fileLength = fileLength;
+        this.docNum = docNum;
+        this.itemNum = itemNum;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * Gets the number of documents before the checkpoint, including any which
+     * were quarantined.
+     */
+    public int getDocNum() {
+        return docNum;
+    }
+
+    /**
+     * Gets the number of items of document getDocNum() before the
+     * checkpoint.
+     */
+    public int getItemNum() {
+        return itemNum;
+    }
+
+    /**
+     * Whether the checkpoint is for the given file, comparing the canonical
+     * paths so that the same file given by different paths matches.
+     */
+    public boolean isFor(String file) {
+        try {
+            return new File(this.file).getCanonicalPath().equals(new File(file).getCanonicalPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the checkpoint as a string, which can be read back with
+     * fromString().
+     */
+    @Override
+    public String toString() {
+        return docNum + "\t" + itemNum + "\t" + fileLength + "\t" + file;
+    }
+
+    /**
+     * Reads a checkpoint written by toString().
+     */
+    public static AgigaCheckpoint fromString(String str) {
+        String[] fields = str.split("\t", 4);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Invalid checkpoint: " + str);
+        }
+        return new AgigaCheckpoint(fields[3], Long.parseLong(fields[2]), Integer.parseInt(fields[0]),
+                Integer.parseInt(fields[1]));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AgigaCheckpoint)) {
+            return false;
+        }
+        AgigaCheckpoint cp = (AgigaCheckpoint) other;
+        return Util.safeEquals(file, cp.file) && fileLength == cp.fileLength && docNum == cp.docNum
+                && itemNum == cp.itemNum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Util.safeHashCode(file, fileLength, docNum, itemNum);
+    }
+
+}
@@ -34,6 +34,7 @@ public class AgigaConstants {
 
     public static final String SENTENCES = "sentences";
     public static final String SENTENCE = "sentence";
+    public static final String TOKENS = "tokens";
     public static final String TOKEN = "token";
     public static final String TOKEN_ID = "id";
     public static final String WORD = "word";
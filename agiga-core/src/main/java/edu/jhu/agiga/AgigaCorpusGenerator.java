@@ -0,0 +1,691 @@
+package edu.jhu.agiga;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * Generates synthetic Annotated Gigaword files for load and performance
+ * testing. The output has the same structure as the real corpus and can be
+ * read by StreamingDocumentReader and StreamingSentenceReader, but the text
+ * is made up of pseudo-words drawn from a Zipfian distribution. All the
+ * annotations are consistent with one another: the dependencies form a tree
+ * over the tokens, the parse is a tree whose leaves are the tokens, and the
+ * coreference mentions point at non-overlapping spans of existing tokens.
+ *
+ * The output is a deterministic function of the settings and the seed. Each
+ * document is written as soon as it is generated, so arbitrarily large files
+ * can be produced in constant memory.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaCorpusGenerator {
+
+    private static Logger log = Logger.getLogger(AgigaCorpusGenerator.class.getName());
+
+    /**
+     * Default POS tag distribution, roughly following the Penn Treebank. The
+     * final "." of each sentence is added separately.
+     */
+    public static final String DEFAULT_POS_TAGS = "NN:0.16,IN:0.12,NNP:0.11,DT:0.10,JJ:0.07,NNS:0.07,"
+            + "VBD:0.04,VB:0.03,VBZ:0.03,VBN:0.03,VBG:0.02,VBP:0.02,RB:0.04,CC:0.03,CD:0.04,PRP:0.03,TO:0.02,"
+            + ",:0.04";
+
+    /** Default distribution of the types of named entities. */
+    public static final String DEFAULT_NER_TAGS = "PERSON:0.3,ORGANIZATION:0.25,LOCATION:0.25,DATE:0.1,NUMBER:0.1";
+
+    private static final String[] SYLLABLES = { "ba", "ko", "ri", "te", "lu", "ma", "si", "no", "de", "ga", "pe",
+            "vi", "zo", "ha", "ne", "fu" };
+
+    private long seed = 1;
+    private int numDocs = 100;
+    private double meanSentsPerDoc = 20;
+    private double stdDevSentsPerDoc = 10;
+    private double meanSentLength = 25;
+    private double stdDevSentLength = 12;
+    private int maxSentLength = 150;
+    private int vocabSize = 50000;
+    private double zipfExponent = 1.0;
+    private double entityProb = 0.06;
+    private double meanCorefChains = 4;
+    private int maxMentionsPerChain = 6;
+    private String source = "syn_eng";
+    private String month = "200001";
+    private String[] posTags;
+    private double[] posCdf;
+    private String[] nerTags;
+    private double[] nerCdf;
+
+    // The state of the generator while writing a file.
+    private Random rand;
+    private double[] zipfCdf;
+
+    public AgigaCorpusGenerator() {
+        setPosTagWeights(DEFAULT_POS_TAGS);
+        setNerTagWeights(DEFAULT_NER_TAGS);
+    }
+
+    /**
+     * Writes a gzipped file of numDocs synthetic documents.
+     */
+    public void write(String outputFile) throws IOException {
+        OutputStream os = new GZIPOutputStream(new FileOutputStream(outputFile), 1 << 16);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"), 1 << 16);
+        try {
+            write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes numDocs synthetic documents as uncompressed XML.
+     */
+    public void write(Writer writer) throws IOException {
+        rand = new Random(seed);
+        zipfCdf = getZipfCdf(vocabSize, zipfExponent);
+        StringBuilder sb = new StringBuilder();
+        sb.append("<FILE id=\"").append(source).append('_').append(month).append("\">\n");
+        writer.write(sb.toString());
+        for (int d = 0; d < numDocs; d++) {
+            sb.setLength(0);
+            appendDoc(sb, d);
+            writer.write(sb.toString());
+            if ((d + 1) % 10000 == 0) {
+                log.fine("Generated docs: " + (d + 1));
+            }
+        }
+        writer.write("</FILE>\n");
+    }
+
+    /**
+     * Gets the id of the d'th document, such as SYN_ENG_20000102.0001. The
+     * ids follow the format of the real corpus: the source, then the date,
+     * then a sequence number.
+     */
+    public String getDocId(int d) {
+        int day = 1 + d % 28;
+        int seq = d / 28 + 1;
+        return String.format("%s_%s%02d.%04d", source.toUpperCase(), month, day, seq);
+    }
+
+    // -------------- Documents -----------------
+
+    /** A synthetic sentence. */
+    private static class Sent {
+        String[] words;
+        String[] lemmas;
+        String[] tags;
+        String[] ner;
+        String[] normNer;
+        int[] govs;
+        String[] rels;
+    }
+
+    private void appendDoc(StringBuilder sb, int d) {
+        int numSents = sampleInt(meanSentsPerDoc, stdDevSentsPerDoc, 1, Integer.MAX_VALUE);
+        Sent[] sents = new Sent[numSents];
+        for (int s = 0; s < numSents; s++) {
+            sents[s] = generateSent();
+        }
+
+        sb.append("<DOC id=\"").append(getDocId(d)).append("\" type=\"story\" >\n");
+        sb.append("<HEADLINE>\n");
+        appendText(sb, generateSent(), 6);
+        sb.append("\n</HEADLINE>\n<DATELINE>\n");
+        appendText(sb, generateSent(), 2);
+        sb.append("\n</DATELINE>\n<TEXT>\n<P>\n");
+        for (int s = 0; s < numSents; s++) {
+            if (s > 0) {
+                sb.append(' ');
+            }
+            appendText(sb, sents[s], Integer.MAX_VALUE);
+        }
+        sb.append("\n</P>\n</TEXT>\n<sentences>\n");
+        int offset = 0;
+        for (int s = 0; s < numSents; s++) {
+            offset = appendSent(sb, sents[s], s, offset);
+        }
+        sb.append("</sentences>\n");
+        appendCorefs(sb, sents);
+        sb.append("</DOC>\n");
+    }
+
+    private void appendText(StringBuilder sb, Sent sent, int maxWords) {
+        for (int i = 0; i < sent.words.length && i < maxWords; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            appendEscaped(sb, sent.words[i]);
+        }
+    }
+
+    private int appendSent(StringBuilder sb, Sent sent, int s, int offset) {
+        int n = sent.words.length;
+        sb.append("<sentence id=\"").append(s + 1).append("\">\n<tokens>\n");
+        for (int i = 0; i < n; i++) {
+            sb.append("<token id=\"").append(i + 1).append("\">\n");
+            appendElement(sb, AgigaConstants.WORD, sent.words[i]);
+            appendElement(sb, AgigaConstants.LEMMA, sent.lemmas[i]);
+            appendElement(sb, AgigaConstants.CHARACTER_OFFSET_BEGIN, Integer.toString(offset));
+            offset += sent.words[i].length();
+            appendElement(sb, AgigaConstants.CHARACTER_OFFSET_END, Integer.toString(offset));
+            offset++;
+            appendElement(sb, AgigaConstants.POS, sent.tags[i]);
+            appendElement(sb, AgigaConstants.NER, sent.ner[i]);
+            if (sent.normNer[i] != null) {
+                appendElement(sb, AgigaConstants.NORM_NER, sent.normNer[i]);
+            }
+            sb.append("</token>\n");
+        }
+        sb.append("</tokens>\n<parse>");
+        appendParse(sb, sent);
+        sb.append("</parse>\n");
+
+        appendDeps(sb, DependencyForm.BASIC_DEPS, sent.govs, sent.rels);
+        // Collapse the prepositions, as in the Stanford collapsed dependencies.
+        int[] colGovs = Arrays.copyOf(sent.govs, n);
+        String[] colRels = Arrays.copyOf(sent.rels, n);
+        for (int i = 0; i < n; i++) {
+            int p = sent.govs[i];
+            if (p >= 0 && "pobj".equals(sent.rels[i]) && "prep".equals(sent.rels[p])) {
+                colGovs[i] = sent.govs[p];
+                colRels[i] = "prep_" + sent.lemmas[p].toLowerCase();
+                colRels[p] = null;
+            }
+        }
+        appendDeps(sb, DependencyForm.COL_DEPS, colGovs, colRels);
+        appendDeps(sb, DependencyForm.COL_CCPROC_DEPS, colGovs, colRels);
+        sb.append("</sentence>\n");
+        return offset;
+    }
+
+    private static void appendDeps(StringBuilder sb, DependencyForm form, int[] govs, String[] rels) {
+        sb.append('<').append(form.getXmlTag()).append(">\n");
+        for (int i = 0; i < govs.length; i++) {
+            if (rels[i] == null) {
+                continue;
+            }
+            sb.append("<dep type=\"").append(rels[i]).append("\">\n");
+            appendElement(sb, AgigaConstants.GOVERNOR, Integer.toString(govs[i] + 1));
+            appendElement(sb, AgigaConstants.DEPENDENT, Integer.toString(i + 1));
+            sb.append("</dep>\n");
+        }
+        sb.append("</").append(form.getXmlTag()).append(">\n");
+    }
+
+    private void appendParse(StringBuilder sb, Sent sent) {
+        sb.append("(ROOT (S ");
+        // The final punctuation attaches to the S.
+        appendConstituents(sb, sent, 0, sent.words.length - 1);
+        sb.append(" (. .)))");
+    }
+
+    /**
+     * Appends a random bracketing of the tokens in [start, end) as a sequence
+     * of at least two sibling constituents, so that there are no unary chains.
+     */
+    private void appendConstituents(StringBuilder sb, Sent sent, int start, int end) {
+        int maxLen = Math.max(1, end - start - 1);
+        int i = start;
+        while (i < end) {
+            int len = Math.min(Math.min(end - i, maxLen), 1 + rand.nextInt(4));
+            if (i > start) {
+                sb.append(' ');
+            }
+            if (len == 1) {
+                appendPreterminal(sb, sent, i);
+            } else {
+                sb.append('(').append(getPhraseLabel(sent.tags[i])).append(' ');
+                appendConstituents(sb, sent, i, i + len);
+                sb.append(')');
+            }
+            i += len;
+        }
+    }
+
+    private static void appendPreterminal(StringBuilder sb, Sent sent, int i) {
+        sb.append('(').append(sent.tags[i]).append(' ');
+        appendEscaped(sb, sent.words[i]);
+        sb.append(')');
+    }
+
+    private static String getPhraseLabel(String firstTag) {
+        if (firstTag.startsWith("VB") || firstTag.equals("TO")) {
+            return "VP";
+        } else if (firstTag.equals("IN")) {
+            return "PP";
+        } else if (firstTag.equals("RB")) {
+            return "ADVP";
+        } else if (firstTag.equals("JJ")) {
+            return "ADJP";
+        } else {
+            return "NP";
+        }
+    }
+
+    private void appendCorefs(StringBuilder sb, Sent[] sents) {
+        int numChains = sampleInt(meanCorefChains, meanCorefChains / 2, 0, Integer.MAX_VALUE);
+        // Mentions may not overlap, so keep track of the tokens already used.
+        boolean[][] used = new boolean[sents.length][];
+        for (int s = 0; s < sents.length; s++) {
+            used[s] = new boolean[sents[s].words.length];
+        }
+        sb.append("<coreferences>\n");
+        for (int c = 0; c < numChains; c++) {
+            int numMentions = 2 + rand.nextInt(Math.max(1, maxMentionsPerChain - 1));
+            List<int[]> mentions = new ArrayList<int[]>();
+            for (int m = 0; m < numMentions; m++) {
+                int s = rand.nextInt(sents.length);
+                int n = sents[s].words.length - 1;
+                if (n < 1) {
+                    continue;
+                }
+                int start = rand.nextInt(n);
+                int end = Math.min(n, start + 1 + rand.nextInt(3));
+                boolean free = true;
+                for (int i = start; i < end; i++) {
+                    free = free && !used[s][i];
+                }
+                if (!free) {
+                    continue;
+                }
+                Arrays.fill(used[s], start, end, true);
+                mentions.add(new int[] { s, start, end });
+            }
+            if (mentions.size() < 2) {
+                continue;
+            }
+            sb.append("<coreference>\n");
+            for (int m = 0; m < mentions.size(); m++) {
+                int[] mention = mentions.get(m);
+                sb.append(m == 0 ? "<mention representative=\"true\">\n" : "<mention>\n");
+                // Sentences and tokens are one-indexed, and the end is exclusive.
+                appendElement(sb, AgigaConstants.M_SENTENCE, Integer.toString(mention[0] + 1));
+                appendElement(sb, AgigaConstants.START, Integer.toString(mention[1] + 1));
+                appendElement(sb, AgigaConstants.END, Integer.toString(mention[2] + 1));
+                appendElement(sb, AgigaConstants.HEAD, Integer.toString(mention[2]));
+                sb.append("</mention>\n");
+            }
+            sb.append("</coreference>\n");
+        }
+        sb.append("</coreferences>\n");
+    }
+
+    private static void appendElement(StringBuilder sb, String tag, String text) {
+        sb.append('<').append(tag).append('>');
+        appendEscaped(sb, text);
+        sb.append("</").append(tag).append(">\n");
+    }
+
+    private static void appendEscaped(StringBuilder sb, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                sb.append("&lt;");
+            } else if (c == '>') {
+                sb.append("&gt;");
+            } else if (c == '&') {
+                sb.append("&amp;");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    // -------------- Sentences -----------------
+
+    private Sent generateSent() {
+        // Leave room for the final punctuation.
+        int n = sampleInt(meanSentLength, stdDevSentLength, 1, maxSentLength - 1) + 1;
+        Sent sent = new Sent();
+        sent.words = new String[n];
+        sent.lemmas = new String[n];
+        sent.tags = new String[n];
+        sent.ner = new String[n];
+        sent.normNer = new String[n];
+        for (int i = 0; i < n - 1; i++) {
+            String tag = sample(posTags, posCdf);
+            String lemma;
+            String word;
+            if (tag.equals(",")) {
+                lemma = word = ",";
+            } else if (tag.equals("CD")) {
+                lemma = word = Integer.toString(rand.nextInt(1000));
+            } else {
+                lemma = getPseudoWord(sampleRank());
+                word = inflect(lemma, tag);
+            }
+            sent.words[i] = word;
+            sent.lemmas[i] = lemma;
+            sent.tags[i] = tag;
+            sent.ner[i] = "O";
+        }
+        sent.words[n - 1] = ".";
+        sent.lemmas[n - 1] = ".";
+        sent.tags[n - 1] = ".";
+        sent.ner[n - 1] = "O";
+        addEntities(sent);
+        addDependencies(sent);
+        return sent;
+    }
+
+    /** Labels short runs of nouns and numbers as named entities. */
+    private void addEntities(Sent sent) {
+        int n = sent.words.length - 1;
+        for (int i = 0; i < n; i++) {
+            if (!(sent.tags[i].startsWith("NN") || sent.tags[i].equals("CD")) || rand.nextDouble() >= entityProb) {
+                continue;
+            }
+            String type = sample(nerTags, nerCdf);
+            int end = Math.min(n, i + 1 + rand.nextInt(3));
+            String normNer = null;
+            if (type.equals("DATE")) {
+                normNer = String.format("%s-%02d", month.substring(0, 4), 1 + rand.nextInt(12));
+            } else if (type.equals("NUMBER")) {
+                normNer = Integer.toString(rand.nextInt(100000));
+            }
+            for (int j = i; j < end; j++) {
+                sent.ner[j] = type;
+                sent.normNer[j] = normNer;
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * Generates a random dependency tree. The root is a verb if there is one,
+     * and every other token attaches to a token already in the tree, so the
+     * result is always a tree (though not necessarily a projective one).
+     */
+    private void addDependencies(Sent sent) {
+        int n = sent.words.length;
+        int[] govs = new int[n];
+        String[] rels = new String[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        // Shuffle the tokens to determine the order in which they're attached.
+        for (int i = n - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        for (int i = 0; i < n; i++) {
+            if (sent.tags[order[i]].startsWith("VB")) {
+                int tmp = order[0];
+                order[0] = order[i];
+                order[i] = tmp;
+                break;
+            }
+        }
+        govs[order[0]] = -1;
+        rels[order[0]] = "root";
+        for (int i = 1; i < n; i++) {
+            int dep = order[i];
+            int gov = order[rand.nextInt(i)];
+            govs[dep] = gov;
+            rels[dep] = getRelation(sent.tags[dep], sent.tags[gov]);
+        }
+        sent.govs = govs;
+        sent.rels = rels;
+    }
+
+    private static String getRelation(String depTag, String govTag) {
+        if (govTag.equals("IN") && depTag.startsWith("NN")) {
+            return "pobj";
+        } else if (depTag.equals("IN")) {
+            return "prep";
+        } else if (depTag.equals("DT")) {
+            return "det";
+        } else if (depTag.equals("JJ")) {
+            return "amod";
+        } else if (depTag.equals("RB")) {
+            return "advmod";
+        } else if (depTag.equals("CC")) {
+            return "cc";
+        } else if (depTag.equals("CD")) {
+            return "num";
+        } else if (depTag.equals("TO")) {
+            return "aux";
+        } else if (depTag.equals(".") || depTag.equals(",")) {
+            return "punct";
+        } else if (depTag.startsWith("VB")) {
+            return "ccomp";
+        } else if (depTag.equals("NNP") && govTag.startsWith("NN")) {
+            return "nn";
+        } else if (depTag.startsWith("NN") || depTag.equals("PRP")) {
+            return govTag.startsWith("VB") ? "nsubj" : "dobj";
+        } else {
+            return "dep";
+        }
+    }
+
+    private static String inflect(String lemma, String tag) {
+        if (tag.equals("NNS") || tag.equals("VBZ")) {
+            return lemma + "s";
+        } else if (tag.equals("VBD") || tag.equals("VBN")) {
+            return lemma + "ed";
+        } else if (tag.equals("VBG")) {
+            return lemma + "ing";
+        } else if (tag.equals("NNP")) {
+            return Character.toUpperCase(lemma.charAt(0)) + lemma.substring(1);
+        } else {
+            return lemma;
+        }
+    }
+
+    /** Gets a distinct pronounceable pseudo-word for each rank. */
+    private static String getPseudoWord(int rank) {
+        StringBuilder sb = new StringBuilder();
+        int r = rank;
+        do {
+            sb.append(SYLLABLES[r % SYLLABLES.length]);
+            r /= SYLLABLES.length;
+        } while (r > 0);
+        return sb.toString();
+    }
+
+    // -------------- Sampling -----------------
+
+    private int sampleRank() {
+        int idx = Arrays.binarySearch(zipfCdf, rand.nextDouble());
+        return idx >= 0 ? idx : Math.min(zipfCdf.length - 1, -idx - 1);
+    }
+
+    private int sampleInt(double mean, double stdDev, int min, int max) {
+        long value = Math.round(mean + stdDev * rand.nextGaussian());
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+    private String sample(String[] values, double[] cdf) {
+        int idx = Arrays.binarySearch(cdf, rand.nextDouble() * cdf[cdf.length - 1]);
+        return values[idx >= 0 ? idx : Math.min(cdf.length - 1, -idx - 1)];
+    }
+
+    private static double[] getZipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int r = 0; r < n; r++) {
+            total += 1.0 / Math.pow(r + 1, exponent);
+            cdf[r] = total;
+        }
+        for (int r = 0; r < n; r++) {
+            cdf[r] /= total;
+        }
+        return cdf;
+    }
+
+    /**
+     * Parses a distribution given as comma separated value:weight pairs. The
+     * weights need not sum to one. Returns the values, and stores their
+     * cumulative weights in cdf[0].
+     */
+    private static String[] parseWeights(String spec, double[][] cdf) {
+        // Split on commas which are followed by a value and a weight, so that
+        // "," may itself appear as a value.
+        List<String> values = new ArrayList<String>();
+        List<Double> weights = new ArrayList<Double>();
+        int start = 0;
+        while (start < spec.length()) {
+            int colon = spec.indexOf(':', start + 1);
+            if (colon == -1) {
+                throw new IllegalArgumentException("Expected value:weight pairs: " + spec);
+            }
+            int comma = spec.indexOf(',', colon);
+            if (comma == -1) {
+                comma = spec.length();
+            }
+            values.add(spec.substring(start, colon));
+            weights.add(Double.parseDouble(spec.substring(colon + 1, comma)));
+            start = comma + 1;
+        }
+        cdf[0] = new double[weights.size()];
+        double total = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            total += weights.get(i);
+            cdf[0][i] = total;
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+    // -------------- Settings -----------------
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setNumDocs(int numDocs) {
+        this.numDocs = numDocs;
+    }
+
+    /** Sets the normal distribution of the number of sentences per document. */
+    public void setSentsPerDoc(double mean, double stdDev) {
+        this.meanSentsPerDoc = mean;
+        this.stdDevSentsPerDoc = stdDev;
+    }
+
+    /**
+     * Sets the normal distribution of the number of tokens per sentence, which
+     * is truncated at maxLength.
+     */
+    public void setSentLength(double mean, double stdDev, int maxLength) {
+        this.meanSentLength = mean;
+        this.stdDevSentLength = stdDev;
+        this.maxSentLength = maxLength;
+    }
+
+    /** Sets the number of distinct lemmas and the exponent of their Zipfian distribution. */
+    public void setVocab(int vocabSize, double zipfExponent) {
+        this.vocabSize = vocabSize;
+        this.zipfExponent = zipfExponent;
+    }
+
+    /**
+     * Sets the POS tag distribution as comma separated tag:weight pairs, e.g.
+     * "NN:0.5,VB:0.3,DT:0.2".
+     */
+    public void setPosTagWeights(String spec) {
+        double[][] cdf = new double[1][];
+        posTags = parseWeights(spec, cdf);
+        posCdf = cdf[0];
+    }
+
+    /**
+     * Sets the distribution of the named entity types as comma separated
+     * type:weight pairs, e.g. "PERSON:0.5,LOCATION:0.5".
+     */
+    public void setNerTagWeights(String spec) {
+        double[][] cdf = new double[1][];
+        nerTags = parseWeights(spec, cdf);
+        nerCdf = cdf[0];
+    }
+
+    /** Sets the probability that a noun or number starts a named entity. */
+    public void setEntityProb(double entityProb) {
+        this.entityProb = entityProb;
+    }
+
+    /** Sets the mean number of coreference chains per document, and the maximum length of each. */
+    public void setCorefChains(double mean, int maxMentionsPerChain) {
+        this.meanCorefChains = mean;
+        this.maxMentionsPerChain = maxMentionsPerChain;
+    }
+
+    /**
+     * Sets the source and month (YYYYMM) used in the file and document ids,
+     * e.g. "nyt_eng" and "199911".
+     */
+    public void setSourceAndMonth(String source, String month) {
+        this.source = source;
+        this.month = month;
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaCorpusGenerator.class.getName()
+                + " <output .xml.gz file> <number of docs> [options]"
+                + "\n  where the options are:"
+                + "\n    -seed <long>                    (Random seed, default 1)"
+                + "\n    -sents <mean> <stddev>          (Sentences per document, default 20 10)"
+                + "\n    -length <mean> <stddev> <max>   (Tokens per sentence, default 25 12 150)"
+                + "\n    -vocab <size> <zipf exponent>   (Distinct lemmas, default 50000 1.0)"
+                + "\n    -pos <tag:weight,...>           (POS tag distribution)"
+                + "\n    -ner <type:weight,...>          (Named entity type distribution)"
+                + "\n    -entity-prob <prob>             (Probability a noun starts an entity, default 0.06)"
+                + "\n    -coref <mean chains> <max len>  (Coreference chains per document, default 4 6)"
+                + "\n    -source <source> <YYYYMM>       (For the file and doc ids, default syn_eng 200001)";
+        if (args.length < 2) {
+            log.severe(usage);
+            System.exit(1);
+        }
+        AgigaCorpusGenerator gen = new AgigaCorpusGenerator();
+        String outputFile = args[0];
+        gen.setNumDocs(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            String opt = args[i];
+            if (opt.equals("-seed")) {
+                gen.setSeed(Long.parseLong(args[++i]));
+            } else if (opt.equals("-sents")) {
+                gen.setSentsPerDoc(Double.parseDouble(args[++i]), Double.parseDouble(args[++i]));
+            } else if (opt.equals("-length")) {
+                gen.setSentLength(Double.parseDouble(args[++i]), Double.parseDouble(args[++i]),
+                        Integer.parseInt(args[++i]));
+            } else if (opt.equals("-vocab")) {
+                gen.setVocab(Integer.parseInt(args[++i]), Double.parseDouble(args[++i]));
+            } else if (opt.equals("-pos")) {
+                gen.setPosTagWeights(args[++i]);
+            } else if (opt.equals("-ner")) {
+                gen.setNerTagWeights(args[++i]);
+            } else if (opt.equals("-entity-prob")) {
+                gen.setEntityProb(Double.parseDouble(args[++i]));
+            } else if (opt.equals("-coref")) {
+                gen.setCorefChains(Double.parseDouble(args[++i]), Integer.parseInt(args[++i]));
+            } else if (opt.equals("-source")) {
+                gen.setSourceAndMonth(args[++i], args[++i]);
+            } else {
+                log.severe("Option not recognized: " + opt);
+                log.severe(usage);
+                System.exit(1);
+            }
+        }
+        log.info("Writing " + gen.numDocs + " documents to " + outputFile);
+        gen.write(outputFile);
+    }
+
+}
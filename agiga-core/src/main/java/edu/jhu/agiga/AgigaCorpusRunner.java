@@ -0,0 +1,286 @@
+package edu.jhu.agiga;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Runs a DocumentHandler over every document in a list of Annotated Gigaword
+ * files, writing its output to a single file, and saves a checkpoint
+ * periodically so that a job which dies can be resumed where it stopped.
+ *
+ * Each checkpoint records the position of the reader (see AgigaCheckpoint)
+ * together with the lengths of the output file and of the quarantine file, if
+ * any, at that position, and is written atomically. On resume, both files are
+ * truncated back to the recorded lengths and reading continues from the
+ * recorded position, so every document is written or quarantined exactly
+ * once, however the previous run ended.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaCorpusRunner {
+
+    private static Logger log = Logger.getLogger(AgigaCorpusRunner.class.getName());
+
+    /** The default interval between checkpoints, in milliseconds. */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 60 * 1000;
+
+    // The keys in the checkpoint file.
+    private static final String FILE_IDX = "fileIdx";
+    private static final String READER = "reader";
+    private static final String OUTPUT_LENGTH = "outputLength";
+    private static final String QUARANTINE_LENGTH = "quarantineLength";
+    private static final String NUM_DOCS = "numDocs";
+
+    /**
+     * Processes one document, writing any output to the writer.
+     */
+    public interface DocumentHandler {
+        public void handle(AgigaDocument doc, Writer writer) throws IOException;
+    }
+
+    private List<String> inputFiles;
+    private String outputFile;
+    private String checkpointFile;
+    private AgigaPrefs prefs = new AgigaPrefs();
+    private AgigaQuarantine quarantine;
+    private String quarantineFile;
+    private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+    private long numDocs;
+
+    private FileOutputStream outputStream;
+    private Writer writer;
+    private AgigaQuarantineWriter quarantineWriter;
+    private long lastCheckpointMillis;
+
+    public AgigaCorpusRunner(List<String> inputFiles, String outputFile, String checkpointFile) {
+        this.inputFiles = inputFiles;
+        this.outputFile = outputFile;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Sets the annotations to read. The default is to read all of them.
+     */
+    public void setPrefs(AgigaPrefs prefs) {
+        this.prefs = prefs;
+    }
+
+    /**
+     * Sets a quarantine for documents which can not be read (see
+     * StreamingVtdXmlReader.setQuarantine()). The default is to stop at the
+     * first such document. A document quarantined after the last checkpoint
+     * is passed to the quarantine again on resume; use setQuarantineFile() to
+     * quarantine each document exactly once.
+     */
+    public void setQuarantine(AgigaQuarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Sets a file to which the documents which can not be read are written
+     * by an AgigaQuarantineWriter. The file is truncated to its length at the
+     * checkpoint on resume.
+     */
+    public void setQuarantineFile(String quarantineFile) {
+        this.quarantineFile = quarantineFile;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    /**
+     * Gets the number of documents handled, including those handled by
+     * previous runs.
+     */
+    public long getNumDocs() {
+        return numDocs;
+    }
+
+    /**
+     * Runs the handler over all the documents after the last checkpoint, or
+     * over all the documents if there is no checkpoint file. The checkpoint
+     * file is kept when the run is complete, so running again does nothing.
+     */
+    public void run(DocumentHandler handler) {
+        try {
+            int startFileIdx = 0;
+            AgigaCheckpoint startCheckpoint = null;
+            long outputLength = 0;
+            long quarantineLength = 0;
+            numDocs = 0;
+            if (new File(checkpointFile).exists()) {
+                Properties props = loadCheckpoint();
+                startFileIdx = Integer.parseInt(props.getProperty(FILE_IDX));
+                if (props.getProperty(READER) != null) {
+                    startCheckpoint = AgigaCheckpoint.fromString(props.getProperty(READER));
+                }
+                outputLength = Long.parseLong(props.getProperty(OUTPUT_LENGTH));
+                if (props.getProperty(QUARANTINE_LENGTH) != null) {
+                    quarantineLength = Long.parseLong(props.getProperty(QUARANTINE_LENGTH));
+                }
+                numDocs = Long.parseLong(props.getProperty(NUM_DOCS));
+                log.info("Resuming from checkpoint: file " + startFileIdx + " of " + inputFiles.size() + ", "
+                        + numDocs + " documents done");
+            }
+            openOutput(outputLength);
+            try {
+                AgigaQuarantine readerQuarantine = quarantine;
+                if (quarantineFile != null) {
+                    quarantineWriter = new AgigaQuarantineWriter(quarantineFile, quarantineLength);
+                    readerQuarantine = quarantineWriter;
+                }
+                lastCheckpointMillis = System.currentTimeMillis();
+                for (int f = startFileIdx; f < inputFiles.size(); f++) {
+                    String inputFile = inputFiles.get(f);
+                    StreamingDocumentReader reader = new StreamingDocumentReader(inputFile, prefs);
+                    try {
+                        reader.setQuarantine(readerQuarantine);
+                        if (f == startFileIdx && startCheckpoint != null) {
+                            if (!startCheckpoint.isFor(inputFile)) {
+                                throw new IllegalStateException("The checkpoint is for " + startCheckpoint.getFile()
+                                        + " but input file " + f + " is " + inputFile);
+                            }
+                            reader.resume(startCheckpoint);
+                        }
+                        log.info("Processing file " + (f + 1) + " of " + inputFiles.size() + ": " + inputFile);
+                        for (AgigaDocument doc : reader) {
+                            handler.handle(doc, writer);
+                            numDocs++;
+                            if (System.currentTimeMillis() - lastCheckpointMillis >= checkpointIntervalMillis) {
+                                saveCheckpoint(f, reader.getCheckpoint());
+                            }
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                    saveCheckpoint(f + 1, null);
+                }
+            } finally {
+                writer.close();
+                if (quarantineWriter != null) {
+                    quarantineWriter.close();
+                    quarantineWriter = null;
+                }
+            }
+            log.info("Processed " + numDocs + " documents");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void openOutput(long outputLength) throws IOException {
+        File file = new File(outputFile);
+        if (file.length() < outputLength) {
+            throw new IllegalStateException("The output file " + outputFile + " is shorter than at the checkpoint");
+        }
+        // Discard the output written after the checkpoint.
+        outputStream = new FileOutputStream(file, true);
+        outputStream.getChannel().truncate(outputLength);
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"), 1 << 16);
+    }
+
+    private Properties loadCheckpoint() throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(checkpointFile);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        return props;
+    }
+
+    /**
+     * Saves a checkpoint at the current position in input file fileIdx, or at
+     * its start if checkpoint is null. The output is written to disk first,
+     * and the checkpoint file is replaced atomically.
+     */
+    private void saveCheckpoint(int fileIdx, AgigaCheckpoint checkpoint) throws IOException {
+        writer.flush();
+        FileChannel channel = outputStream.getChannel();
+        channel.force(false);
+        Properties props = new Properties();
+        props.setProperty(FILE_IDX, Integer.toString(fileIdx));
+        if (checkpoint != null) {
+            props.setProperty(READER, checkpoint.toString());
+        }
+        props.setProperty(OUTPUT_LENGTH, Long.toString(channel.size()));
+        if (quarantineWriter != null) {
+            props.setProperty(QUARANTINE_LENGTH, Long.toString(quarantineWriter.getLength()));
+        }
+        props.setProperty(NUM_DOCS, Long.toString(numDocs));
+
+        File tmp = new File(checkpointFile + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            props.store(out, "AgigaCorpusRunner checkpoint");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), new File(checkpointFile).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        lastCheckpointMillis = System.currentTimeMillis();
+        log.fine("Saved checkpoint: file " + fileIdx + ", " + numDocs + " documents");
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        StringBuilder formats = new StringBuilder();
+        for (AgigaFormat format : AgigaFormat.values()) {
+            formats.append(formats.length() == 0 ? "" : ", ").append(format.getName());
+        }
+        String usage = "\nusage: java " + AgigaCorpusRunner.class.getName()
+                + " [options] <format> <checkpoint file> <output file> <gzipped input file>..."
+                + "\n  where <format> is one of " + formats
+                + "\n  and the options are:"
+                + "\n    -interval <seconds>      (Seconds between checkpoints, default "
+                + DEFAULT_CHECKPOINT_INTERVAL_MILLIS / 1000 + ")"
+                + "\n    -quarantine <file>       (Skip malformed documents, writing them to this file)"
+                + "\n  Run again with the same arguments to resume after the last checkpoint.";
+        long intervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+        String quarantineFile = null;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-interval")) {
+                intervalMillis = opts.getLong() * 1000;
+            } else if (opt.equals("-quarantine")) {
+                quarantineFile = opts.getValue();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(4, Integer.MAX_VALUE);
+        final AgigaFormat format = AgigaFormat.fromName(positional.get(0));
+        if (format == null) {
+            opts.fail("Format not recognized: " + positional.get(0));
+        }
+        AgigaCorpusRunner runner = new AgigaCorpusRunner(positional.subList(3, positional.size()),
+                positional.get(2), positional.get(1));
+        runner.setPrefs(format.getPrefs());
+        runner.setCheckpointIntervalMillis(intervalMillis);
+        runner.setQuarantineFile(quarantineFile);
+        runner.run(new DocumentHandler() {
+            @Override
+            public void handle(AgigaDocument doc, Writer writer) throws IOException {
+                format.write(writer, doc);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,515 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+import edu.jhu.agiga.AgigaNgramCounter.Unit;
+
+/**
+ * Approximate corpus statistics for dashboards, in a fixed amount of memory
+ * for each source and month: the most frequent tokens, named entities and
+ * dependency relations, with their estimated counts, and the estimated number
+ * of distinct ones. The source and month come from the document id, so that
+ * NYT_ENG_19991101.0001 is counted under NYT_ENG and 199911.
+ *
+ * Each feature of each group has an AgigaCountMinSketch and an
+ * AgigaHyperLogLog. A named entity is a run of tokens with the same NER tag,
+ * such as "New York/LOCATION", and a dependency relation is written as in an
+ * AgigaDependencyPattern, such as "nsubj(acquire, company)".
+ *
+ * The files are read in parallel, one file per thread, each into its own
+ * sketches, which are then merged. Sketches can also be saved with write() and
+ * merged with those of other runs.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaCorpusSketches {
+
+    private static Logger log = Logger.getLogger(AgigaCorpusSketches.class.getName());
+
+    private static final int MAGIC = 0x41475348; // "AGSH"
+    private static final int VERSION = 1;
+
+    private static final Pattern DOC_ID = Pattern.compile("(.+)_(\\d{6})\\d\\d\\..*");
+
+    /** The source and month of documents whose ids do not give them. */
+    public static final String UNKNOWN = "unknown";
+
+    /**
+     * The kinds of item counted.
+     */
+    public enum Feature {
+        TOKEN("token"),
+        NER("ner"),
+        DEPENDENCY("dependency");
+
+        private String name;
+
+        private Feature(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The sketches of one source and month.
+     */
+    public static class Group {
+
+        private String source;
+        private String month;
+        private long numDocs = 0;
+        private AgigaCountMinSketch[] counts;
+        private AgigaHyperLogLog[] distincts;
+
+        private Group(String source, String month) {
+            this.source = source;
+            this.month = month;
+            counts = new AgigaCountMinSketch[Feature.values().length];
+            distincts = new AgigaHyperLogLog[Feature.values().length];
+        }
+
+        private Group(String source, String month, int width, int depth, int numTop, int precision) {
+            this(source, month);
+            for (int f = 0; f < counts.length; f++) {
+                counts[f] = new AgigaCountMinSketch(width, depth, numTop);
+                distincts[f] = new AgigaHyperLogLog(precision);
+            }
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Gets the month, as YYYYMM.
+         */
+        public String getMonth() {
+            return month;
+        }
+
+        public long getNumDocs() {
+            return numDocs;
+        }
+
+        public AgigaCountMinSketch getCountMin(Feature feature) {
+            return counts[feature.ordinal()];
+        }
+
+        public AgigaHyperLogLog getHyperLogLog(Feature feature) {
+            return distincts[feature.ordinal()];
+        }
+
+        private void add(Feature feature, String item) {
+            long h = Util.hash64(item);
+            counts[feature.ordinal()].add(item, h, 1);
+            distincts[feature.ordinal()].addHash(h);
+        }
+
+        private void merge(Group other) {
+            numDocs += other.numDocs;
+            for (int f = 0; f < counts.length; f++) {
+                counts[f].merge(other.counts[f]);
+                distincts[f].merge(other.distincts[f]);
+            }
+        }
+
+    }
+
+    private Unit unit = Unit.WORD;
+    private DependencyForm form = DependencyForm.COL_CCPROC_DEPS;
+    private int width = 1 << 13;
+    private int depth = 4;
+    private int numTop = 100;
+    private int precision = AgigaHyperLogLog.DEFAULT_PRECISION;
+
+    // The groups by source and month.
+    private Map<String, Group> groups = new TreeMap<String, Group>();
+
+    /**
+     * Sets the part of each token to count. The default is the word.
+     */
+    public void setUnit(Unit unit) {
+        requireEmpty();
+        this.unit = unit;
+    }
+
+    /**
+     * Sets the dependency form whose relations are counted. The default is
+     * the collapsed and propagated dependencies.
+     */
+    public void setForm(DependencyForm form) {
+        requireEmpty();
+        this.form = form;
+    }
+
+    /**
+     * Sets the width and depth of the Count-Min sketches. The defaults are
+     * 8192 and 4, i.e. 256KB for each feature of each group.
+     */
+    public void setSketchSize(int width, int depth) {
+        requireEmpty();
+        this.width = width;
+        this.depth = depth;
+    }
+
+    /**
+     * Sets the number of heavy hitters kept for each feature of each group.
+     * The default is 100.
+     */
+    public void setNumTop(int numTop) {
+        requireEmpty();
+        this.numTop = numTop;
+    }
+
+    /**
+     * Sets the precision of the HyperLogLog sketches. The default is 14.
+     */
+    public void setPrecision(int precision) {
+        requireEmpty();
+        this.precision = precision;
+    }
+
+    private void requireEmpty() {
+        require(groups.isEmpty(), "The settings can not be changed after counting");
+    }
+
+    /**
+     * Gets the prefs needed to count the features.
+     */
+    public AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(true);
+        prefs.setLemma(true);
+        prefs.setPos(unit == Unit.POS);
+        prefs.setNer(true);
+        prefs.setDeps(form);
+        return prefs;
+    }
+
+    /**
+     * Counts the documents of each of the files, using numThreads threads.
+     */
+    public void add(List<String> files, int numThreads) {
+        AgigaParallel.forEachFile(files, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String file) throws IOException {
+                add(file);
+            }
+        });
+    }
+
+    /**
+     * Counts the documents of one file. This may be called from several
+     * threads at once.
+     */
+    public void add(String file) throws IOException {
+        log.info("Sketching file: " + file);
+        AgigaCorpusSketches local = newEmpty();
+        StreamingDocumentReader reader = new StreamingDocumentReader(file, getPrefs());
+        try {
+            reader.setQuarantine(AgigaQuarantine.SKIP);
+            for (AgigaDocument doc : reader) {
+                local.add(doc);
+            }
+        } finally {
+            reader.close();
+        }
+        merge(local);
+    }
+
+    /**
+     * Creates sketches with the same settings and no counts.
+     */
+    private AgigaCorpusSketches newEmpty() {
+        AgigaCorpusSketches sketches = new AgigaCorpusSketches();
+        sketches.unit = unit;
+        sketches.form = form;
+        sketches.width = width;
+        sketches.depth = depth;
+        sketches.numTop = numTop;
+        sketches.precision = precision;
+        return sketches;
+    }
+
+    /**
+     * Counts one document, read with the prefs from getPrefs().
+     */
+    public synchronized void add(AgigaDocument doc) {
+        String source = UNKNOWN;
+        String month = UNKNOWN;
+        Matcher m = DOC_ID.matcher(doc.getDocId());
+        if (m.matches()) {
+            source = m.group(1);
+            month = m.group(2);
+        }
+        Group group = getOrCreateGroup(source, month);
+        group.numDocs++;
+        StringBuilder sb = new StringBuilder();
+        for (AgigaSentence sent : doc.getSents()) {
+            List<AgigaToken> tokens = sent.getTokens();
+            for (AgigaToken tok : tokens) {
+                String item = unit.get(tok);
+                if (item != null) {
+                    group.add(Feature.TOKEN, item);
+                }
+            }
+            for (int i = 0; i < tokens.size();) {
+                String tag = tokens.get(i).getNerTag();
+                int end = i + 1;
+                if (tag == null || tag.equals("O")) {
+                    i = end;
+                    continue;
+                }
+                while (end < tokens.size() && tag.equals(tokens.get(end).getNerTag())) {
+                    end++;
+                }
+                sb.setLength(0);
+                for (int j = i; j < end; j++) {
+                    sb.append(j == i ? "" : " ").append(tokens.get(j).getWord());
+                }
+                group.add(Feature.NER, sb.append('/').append(tag).toString());
+                i = end;
+            }
+            for (AgigaTypedDependency dep : sent.getAgigaDeps(form)) {
+                String gov = AgigaDependencyIndex.DependencyIndexer.getLemma(tokens, dep.getGovIdx());
+                String dependent = AgigaDependencyIndex.DependencyIndexer.getLemma(tokens, dep.getDepIdx());
+                if (gov == null || dependent == null) {
+                    continue;
+                }
+                sb.setLength(0);
+                sb.append(dep.getType()).append('(').append(gov).append(", ").append(dependent).append(')');
+                group.add(Feature.DEPENDENCY, sb.toString());
+            }
+        }
+    }
+
+    private Group getOrCreateGroup(String source, String month) {
+        String key = source + "/" + month;
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(source, month, width, depth, numTop, precision);
+            groups.put(key, group);
+        }
+        return group;
+    }
+
+    /**
+     * Adds the counts of other sketches, with the same settings, to these. If
+     * these sketches are empty, they take the settings of the other.
+     */
+    public synchronized void merge(AgigaCorpusSketches other) {
+        if (groups.isEmpty()) {
+            unit = other.unit;
+            form = other.form;
+            width = other.width;
+            depth = other.depth;
+            numTop = other.numTop;
+            precision = other.precision;
+        }
+        require(other.unit == unit && other.form == form, "Sketches of different features can not be merged");
+        for (Group otherGroup : other.getGroups()) {
+            getOrCreateGroup(otherGroup.source, otherGroup.month).merge(otherGroup);
+        }
+    }
+
+    /**
+     * Gets the groups, ordered by source and month.
+     */
+    public synchronized List<Group> getGroups() {
+        return new ArrayList<Group>(groups.values());
+    }
+
+    /**
+     * Writes a report with one line of JSON for each feature of each group,
+     * for example:
+     *
+     * <pre>
+     * {"source":"NYT_ENG","month":"199911","feature":"token","docs":9000,"total":4500000,"distinct":120000,"top":[["the",260000],...]}
+     * </pre>
+     *
+     * where "total" is the number of items counted, "distinct" is the
+     * estimated number of distinct items and "top" gives the heavy hitters
+     * with their estimated counts.
+     */
+    public void writeReport(Writer writer) throws IOException {
+        for (Group group : getGroups()) {
+            for (Feature feature : Feature.values()) {
+                AgigaCountMinSketch counts = group.getCountMin(feature);
+                StringBuilder sb = new StringBuilder();
+                sb.append("{\"source\":");
+                AgigaValidator.appendJsonString(sb, group.source);
+                sb.append(",\"month\":");
+                AgigaValidator.appendJsonString(sb, group.month);
+                sb.append(",\"feature\":");
+                AgigaValidator.appendJsonString(sb, feature.getName());
+                sb.append(",\"docs\":").append(group.numDocs);
+                sb.append(",\"total\":").append(counts.getTotal());
+                sb.append(",\"distinct\":").append(group.getHyperLogLog(feature).cardinality());
+                sb.append(",\"top\":[");
+                List<String> top = counts.getTop();
+                for (int i = 0; i < top.size(); i++) {
+                    sb.append(i == 0 ? "[" : ",[");
+                    AgigaValidator.appendJsonString(sb, top.get(i));
+                    sb.append(',').append(counts.estimate(top.get(i))).append(']');
+                }
+                sb.append("]}\n");
+                writer.write(sb.toString());
+            }
+        }
+    }
+
+    /**
+     * Saves the sketches to a file, from which read() restores them.
+     */
+    public synchronized void write(String file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                new FileOutputStream(file)), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(unit.getName());
+            out.writeUTF(form.getXmlTag());
+            out.writeInt(width);
+            out.writeInt(depth);
+            out.writeInt(numTop);
+            out.writeInt(precision);
+            out.writeInt(groups.size());
+            for (Group group : groups.values()) {
+                out.writeUTF(group.source);
+                out.writeUTF(group.month);
+                out.writeLong(group.numDocs);
+                for (int f = 0; f < group.counts.length; f++) {
+                    group.counts[f].write(out);
+                    group.distincts[f].write(out);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads sketches saved by write().
+     */
+    public static AgigaCorpusSketches read(String file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(
+                file)), 1 << 16));
+        try {
+            require(in.readInt() == MAGIC, "Not a sketch file: " + file);
+            int version = in.readInt();
+            require(version == VERSION, "Unsupported version " + version + " of sketch file: " + file);
+            AgigaCorpusSketches sketches = new AgigaCorpusSketches();
+            sketches.unit = Unit.fromName(in.readUTF());
+            sketches.form = AgigaDependencyIndex.getForm(in.readUTF());
+            require(sketches.unit != null && sketches.form != null, "Invalid sketch file: " + file);
+            sketches.width = in.readInt();
+            sketches.depth = in.readInt();
+            sketches.numTop = in.readInt();
+            sketches.precision = in.readInt();
+            int numGroups = in.readInt();
+            for (int g = 0; g < numGroups; g++) {
+                Group group = new Group(in.readUTF(), in.readUTF());
+                group.numDocs = in.readLong();
+                for (int f = 0; f < group.counts.length; f++) {
+                    group.counts[f] = AgigaCountMinSketch.read(in);
+                    group.distincts[f] = AgigaHyperLogLog.read(in);
+                }
+                sketches.groups.put(group.source + "/" + group.month, group);
+            }
+            return sketches;
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaCorpusSketches.class.getName()
+                + " [options] <report file> <input file>..."
+                + "\n  where the options are:"
+                + "\n    -unit <unit>             (word, lemma or pos, default word)"
+                + "\n    -form <form>             (Dependency form, default collapsed-ccprocessed-dependencies)"
+                + "\n    -width <number>          (Width of the Count-Min sketches, default 8192)"
+                + "\n    -depth <number>          (Depth of the Count-Min sketches, default 4)"
+                + "\n    -top <number>            (Number of heavy hitters, default 100)"
+                + "\n    -precision <number>      (Precision of the HyperLogLog sketches, default 14)"
+                + "\n    -save <file>             (Also save the sketches, to merge with those of other runs)"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  where each input file is a gzipped Annotated Gigaword file or a file written by -save."
+                + "\n  Writes one line of JSON for each feature of each source and month.";
+        AgigaCorpusSketches sketches = new AgigaCorpusSketches();
+        String saveFile = null;
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-unit")) {
+                sketches.setUnit(opts.getUnit());
+            } else if (opt.equals("-form")) {
+                sketches.setForm(opts.getForm());
+            } else if (opt.equals("-width")) {
+                sketches.setSketchSize(opts.getInt(), sketches.depth);
+            } else if (opt.equals("-depth")) {
+                sketches.setSketchSize(sketches.width, opts.getInt());
+            } else if (opt.equals("-top")) {
+                sketches.setNumTop(opts.getInt());
+            } else if (opt.equals("-precision")) {
+                sketches.setPrecision(opts.getInt());
+            } else if (opt.equals("-save")) {
+                saveFile = opts.getValue();
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        List<String> xmlFiles = new ArrayList<String>();
+        for (String file : positional.subList(1, positional.size())) {
+            if (file.endsWith(".xml.gz")) {
+                xmlFiles.add(file);
+            } else {
+                log.info("Merging sketches: " + file);
+                sketches.merge(read(file));
+            }
+        }
+        sketches.add(xmlFiles, numThreads);
+        if (saveFile != null) {
+            sketches.write(saveFile);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(positional.get(0)), "UTF-8"));
+        try {
+            sketches.writeReport(writer);
+        } finally {
+            writer.close();
+        }
+        log.info("Wrote the sketches of " + sketches.getGroups().size() + " sources and months");
+    }
+
+}
@@ -0,0 +1,267 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Count-Min sketch, which estimates the counts of strings in a fixed amount
+ * of memory, together with a heap of the k strings with the highest estimated
+ * counts. An estimate is never less than the true count, and with a width of
+ * w it exceeds the true count by more than e / w of the total count with a
+ * probability of at most exp(-depth).
+ *
+ * Sketches of the same width, depth and k can be merged, for example the
+ * sketches of several files or threads, and the result is the same as a
+ * sketch of all of the strings, except that the heavy hitters are chosen from
+ * those of the merged sketches. A sketch is not thread-safe.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaCountMinSketch {
+
+    private int width;
+    private int depth;
+    private int numTop;
+    private long[] counts;
+    private long total = 0;
+
+    // A binary min-heap of the heavy hitters by their estimated counts, with
+    // the position of each string in the heap.
+    private String[] heapItems;
+    private long[] heapCounts;
+    private int heapSize = 0;
+    private Map<String, Integer> heapIdxs = new HashMap<String, Integer>();
+
+    /**
+     * Creates a sketch.
+     *
+     * @param width The number of counters in each row.
+     * @param depth The number of rows, each with its own hash function.
+     * @param numTop The number of heavy hitters to keep.
+     */
+    public AgigaCountMinSketch(int width, int depth, int numTop) {
+        require(width > 0 && depth > 0 && numTop >= 0, "Invalid sketch size: " + width + " x " + depth + ", top "
+                + numTop);
+        this.width = width;
+        this.depth = depth;
+        this.numTop = numTop;
+        counts = new long[width * depth];
+        heapItems = new String[numTop];
+        heapCounts = new long[numTop];
+    }
+
+    public void add(String item) {
+        add(item, 1);
+    }
+
+    /**
+     * Adds the given count to a string.
+     */
+    public void add(String item, long count) {
+        add(item, Util.hash64(item), count);
+    }
+
+    /**
+     * Adds the given count to a string whose Util.hash64() is already known.
+     */
+    void add(String item, long h, long count) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int j = i * width + ((h1 + i * h2) & 0x7fffffff) % width;
+            counts[j] += count;
+            estimate = Math.min(estimate, counts[j]);
+        }
+        total += count;
+        offer(item, estimate);
+    }
+
+    /**
+     * Gets the estimated count of a string.
+     */
+    public long estimate(String item) {
+        long h = Util.hash64(item);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = Math.min(estimate, counts[i * width + ((h1 + i * h2) & 0x7fffffff) % width]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Updates the heap with the estimated count of a string.
+     */
+    private void offer(String item, long estimate) {
+        Integer idx = heapIdxs.get(item);
+        if (idx != null) {
+            // Estimates only increase, so the string can only move down.
+            heapCounts[idx] = estimate;
+            siftDown(idx);
+        } else if (heapSize < numTop) {
+            heapItems[heapSize] = item;
+            heapCounts[heapSize] = estimate;
+            heapIdxs.put(item, heapSize);
+            siftUp(heapSize++);
+        } else if (numTop > 0 && estimate > heapCounts[0]) {
+            heapIdxs.remove(heapItems[0]);
+            heapItems[0] = item;
+            heapCounts[0] = estimate;
+            heapIdxs.put(item, 0);
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heapCounts[parent] <= heapCounts[i]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int min = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && heapCounts[left] < heapCounts[min]) {
+                min = left;
+            }
+            if (right < heapSize && heapCounts[right] < heapCounts[min]) {
+                min = right;
+            }
+            if (min == i) {
+                return;
+            }
+            swap(i, min);
+            i = min;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String item = heapItems[i];
+        long count = heapCounts[i];
+        heapItems[i] = heapItems[j];
+        heapCounts[i] = heapCounts[j];
+        heapItems[j] = item;
+        heapCounts[j] = count;
+        heapIdxs.put(heapItems[i], i);
+        heapIdxs.put(heapItems[j], j);
+    }
+
+    /**
+     * Adds the counts of another sketch, of the same size, to this one.
+     */
+    public void merge(AgigaCountMinSketch other) {
+        require(other.width == width && other.depth == depth && other.numTop == numTop,
+                "Sketches of different sizes can not be merged");
+        for (int j = 0; j < counts.length; j++) {
+            counts[j] += other.counts[j];
+        }
+        total += other.total;
+        // The heavy hitters of the merged sketch are among those of the two
+        // sketches, with their new estimates.
+        Set<String> candidates = new LinkedHashSet<String>();
+        candidates.addAll(Arrays.asList(heapItems).subList(0, heapSize));
+        candidates.addAll(Arrays.asList(other.heapItems).subList(0, other.heapSize));
+        Arrays.fill(heapItems, null);
+        heapSize = 0;
+        heapIdxs.clear();
+        for (String item : candidates) {
+            offer(item, estimate(item));
+        }
+    }
+
+    /**
+     * Gets the heavy hitters, in descending order of their estimated counts.
+     */
+    public List<String> getTop() {
+        Integer[] order = new Integer[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                if (heapCounts[i] != heapCounts[j]) {
+                    return heapCounts[i] > heapCounts[j] ? -1 : 1;
+                }
+                return heapItems[i].compareTo(heapItems[j]);
+            }
+        });
+        List<String> top = new ArrayList<String>(heapSize);
+        for (Integer i : order) {
+            top.add(heapItems[i]);
+        }
+        return top;
+    }
+
+    /**
+     * Gets the sum of the counts added.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getNumTop() {
+        return numTop;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeInt(numTop);
+        out.writeLong(total);
+        for (long count : counts) {
+            out.writeLong(count);
+        }
+        out.writeInt(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            out.writeUTF(heapItems[i]);
+        }
+    }
+
+    /**
+     * Reads a sketch written by write().
+     */
+    public static AgigaCountMinSketch read(DataInput in) throws IOException {
+        AgigaCountMinSketch sketch = new AgigaCountMinSketch(in.readInt(), in.readInt(), in.readInt());
+        sketch.total = in.readLong();
+        for (int j = 0; j < sketch.counts.length; j++) {
+            sketch.counts[j] = in.readLong();
+        }
+        int heapSize = in.readInt();
+        for (int i = 0; i < heapSize; i++) {
+            String item = in.readUTF();
+            sketch.offer(item, sketch.estimate(item));
+        }
+        return sketch;
+    }
+
+}
@@ -0,0 +1,744 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.ximpleware.AutoPilot;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * Generates the (target, context, relation) triples for training
+ * dependency-based word embeddings. Each dependency rel(gov, dep) gives the
+ * triple (gov, dep, rel) and the inverse triple (dep, gov, rel-inv). With the
+ * basic dependencies, a preposition is collapsed as in the collapsed forms,
+ * so that prep(scientist, with) and pobj(with, telescope) give the single
+ * relation prep_with; the collapsed forms already have such relations.
+ * Dependencies on the root are left out.
+ *
+ * The words are mapped to ids by a vocabulary written by AgigaTokenIdExporter,
+ * with the same -lemmas and -lowercase settings, so that the ids are those of
+ * the exported token sequences. Triples with a word which is not in the
+ * vocabulary are left out. Frequent words can be subsampled as in word2vec:
+ * with a threshold t, each token with relative frequency f is dropped, along
+ * with its triples, with probability 1 - sqrt(t / f).
+ *
+ * The output directory gets one shard for each input file, NAME.triples, of
+ * little-endian 32-bit integers, three for each triple, and relations.txt,
+ * which lists each relation with its count, separated by a tab, on the line
+ * of its id. The relation ids are in descending order of count, and then of
+ * name, so that the output is the same for any number of threads.
+ *
+ * The files are read in parallel, one file per thread, with provisional
+ * relation ids from a shared AgigaVocabulary, and the shards are then
+ * rewritten with the final ids. The words and dependencies are read directly
+ * from the VTD index into arrays which are reused for each sentence, without
+ * creating AgigaSentence, AgigaToken or AgigaTypedDependency objects, and the
+ * words and relations are looked up by the bytes of their VTD tokens, without
+ * creating Strings.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaDependencyContexts {
+
+    private static Logger log = Logger.getLogger(AgigaDependencyContexts.class.getName());
+
+    public static final String RELATIONS_FILE = "relations.txt";
+    /** The suffix of the inverse of a relation. */
+    public static final String INVERSE_SUFFIX = "-inv";
+
+    // The codes in each SentenceReader of the relations which are collapsed.
+    private static final int PREP = 0;
+    private static final int POBJ = 1;
+
+    private DependencyForm form = DependencyForm.COL_CCPROC_DEPS;
+    private boolean useLemmas = false;
+    private boolean lowercase = false;
+    private boolean collapsePreps = true;
+    private double sample = 0;
+    private long seed = 1;
+    private int numThreads = AgigaParallel.getDefaultNumThreads();
+
+    private TokenTable vocab;
+    // The probability of keeping each word when subsampling.
+    private float[] keepProbs;
+    private AgigaVocabulary relations;
+    private long[] relationCounts;
+    private AtomicLong numTriples;
+
+    /**
+     * Sets the dependency form. The default is the collapsed and propagated
+     * dependencies.
+     */
+    public void setForm(DependencyForm form) {
+        this.form = form;
+    }
+
+    /**
+     * Sets whether to use the lemmas instead of the words.
+     */
+    public void setUseLemmas(boolean useLemmas) {
+        this.useLemmas = useLemmas;
+    }
+
+    public void setLowercase(boolean lowercase) {
+        this.lowercase = lowercase;
+    }
+
+    /**
+     * Sets whether to collapse the prepositions of the basic dependencies.
+     * The default is true.
+     */
+    public void setCollapsePreps(boolean collapsePreps) {
+        this.collapsePreps = collapsePreps;
+    }
+
+    /**
+     * Sets the subsampling threshold t, e.g. 1e-4. The default is 0, which
+     * keeps every token.
+     */
+    public void setSample(double sample) {
+        this.sample = sample;
+    }
+
+    /**
+     * Sets the seed of the subsampling. Each file is sampled with its own
+     * generator, so the output does not depend on the number of threads.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Writes the triples of each of the input files as a shard in the output
+     * directory, which is created if needed.
+     *
+     * @param vocabFile A vocab.txt written by AgigaTokenIdExporter.
+     * @return The number of triples written.
+     */
+    public long generate(String vocabFile, List<String> inputFiles, final String outputDir) throws IOException {
+        readVocab(vocabFile);
+        new File(outputDir).mkdirs();
+        relations = new AgigaVocabulary();
+        relationCounts = new long[64];
+        numTriples = new AtomicLong();
+        log.info("Generating " + form.getXmlTag() + " contexts of " + inputFiles.size() + " files with "
+                + numThreads + " threads");
+        final List<String> tempFiles = new ArrayList<String>();
+        for (String file : inputFiles) {
+            tempFiles.add(new File(outputDir, AgigaTokenIdExporter.getShardName(file) + ".triples.tmp").getPath());
+        }
+        AgigaParallel.forEachFile(inputFiles, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String file) throws IOException {
+                String name = AgigaTokenIdExporter.getShardName(file);
+                generateFile(file, new File(outputDir, name + ".triples.tmp").getPath(), new Random(seed
+                        + name.hashCode()));
+            }
+        });
+
+        // Assign the final relation ids in order of frequency.
+        final long[] provisionalCounts = Arrays.copyOf(relationCounts, relations.size());
+        Integer[] order = new Integer[relations.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                if (provisionalCounts[i] != provisionalCounts[j]) {
+                    return provisionalCounts[i] > provisionalCounts[j] ? -1 : 1;
+                }
+                return relations.getString(i).compareTo(relations.getString(j));
+            }
+        });
+        final int[] finalIds = new int[order.length];
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputDir,
+                RELATIONS_FILE)), "UTF-8"));
+        try {
+            for (int i = 0; i < order.length; i++) {
+                finalIds[order[i]] = i;
+                writer.write(relations.getString(order[i]) + "\t" + provisionalCounts[order[i]] + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        log.info("Rewriting the relation ids of " + tempFiles.size() + " shards");
+        AgigaParallel.forEachFile(tempFiles, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String tempFile) throws IOException {
+                remap(tempFile, tempFile.substring(0, tempFile.length() - ".tmp".length()), finalIds);
+                new File(tempFile).delete();
+            }
+        });
+        relations = null;
+        relationCounts = null;
+        return numTriples.get();
+    }
+
+    /**
+     * Rewrites a shard of triples with provisional relation ids with the
+     * final ids.
+     */
+    private static void remap(String tempFile, String outFile, int[] finalIds) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "r");
+        AgigaTokenIdExporter.BinaryWriter out = new AgigaTokenIdExporter.BinaryWriter(outFile);
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            // Map whole triples, at most 768MB at a time.
+            long chunk = 12L << 26;
+            for (long start = 0; start < size; start += chunk) {
+                MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunk, size - start));
+                in.order(ByteOrder.LITTLE_ENDIAN);
+                while (in.remaining() >= 12) {
+                    out.putInt(in.getInt());
+                    out.putInt(in.getInt());
+                    out.putInt(finalIds[in.getInt()]);
+                }
+            }
+        } finally {
+            raf.close();
+            out.close();
+        }
+    }
+
+    private void readVocab(String vocabFile) throws IOException {
+        vocab = new TokenTable();
+        List<Long> counts = new ArrayList<Long>();
+        long total = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(vocabFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                require(tab >= 0, "Invalid line " + (counts.size() + 1) + " of vocabulary: " + vocabFile);
+                long count = Long.parseLong(line.substring(tab + 1));
+                if (counts.size() > 0) {
+                    // Id 0 is <unk>, which matches no word.
+                    vocab.put(line.substring(0, tab), counts.size());
+                }
+                counts.add(count);
+                total += count;
+            }
+        } finally {
+            reader.close();
+        }
+        keepProbs = new float[counts.size()];
+        for (int id = 0; id < keepProbs.length; id++) {
+            double f = (double) counts.get(id) / total;
+            keepProbs[id] = sample > 0 && f > 0 ? (float) Math.min(1.0, Math.sqrt(sample / f)) : 1;
+        }
+        log.info("Read a vocabulary of " + counts.size() + " words");
+    }
+
+    private void generateFile(String file, String outFile, Random rand) throws IOException {
+        log.info("Generating file: " + file);
+        long[] fileRelationCounts = new long[64];
+        // The provisional ids of each relation of the reader, at twice its
+        // code, and of its inverse, after it, or -1 if not yet found.
+        int[] relationIds = new int[0];
+        long numFileTriples = 0;
+        boolean[] keep = new boolean[256];
+        int[] prepHeads = new int[256];
+        boolean collapse = collapsePreps && form == DependencyForm.BASIC_DEPS;
+        AgigaTokenIdExporter.BinaryWriter out = new AgigaTokenIdExporter.BinaryWriter(outFile);
+        SentenceReader reader = new SentenceReader(file);
+        try {
+            reader.setQuarantine(AgigaQuarantine.SKIP);
+            for (Sentence sent : reader) {
+                int n = sent.numWords;
+                if (n > keep.length) {
+                    keep = new boolean[Math.max(n, 2 * keep.length)];
+                    prepHeads = new int[keep.length];
+                }
+                for (int i = 0; i < n; i++) {
+                    int id = sent.ids[i];
+                    keep[i] = id > 0 && (keepProbs[id] >= 1 || rand.nextFloat() < keepProbs[id]);
+                }
+                if (collapse) {
+                    Arrays.fill(prepHeads, 0, n, -1);
+                    for (int e = 0; e < sent.numDeps; e++) {
+                        if (sent.rels[e] == PREP && inRange(sent.govs[e], n) && inRange(sent.deps[e], n)) {
+                            prepHeads[sent.deps[e]] = sent.govs[e];
+                        }
+                    }
+                }
+                for (int e = 0; e < sent.numDeps; e++) {
+                    int gov = sent.govs[e];
+                    int dep = sent.deps[e];
+                    if (!inRange(gov, n) || !inRange(dep, n)) {
+                        continue;
+                    }
+                    int rel = sent.rels[e];
+                    if (collapse) {
+                        if (rel == PREP && hasPobj(sent, dep)) {
+                            // Replaced by the collapsed relation below.
+                            continue;
+                        }
+                        if (rel == POBJ && prepHeads[gov] >= 0) {
+                            rel = reader.getPrepRelation(sent, gov);
+                            gov = prepHeads[gov];
+                        }
+                    }
+                    if (!keep[gov] || !keep[dep]) {
+                        continue;
+                    }
+                    if (2 * rel >= relationIds.length) {
+                        int size = relationIds.length;
+                        relationIds = Arrays.copyOf(relationIds, Math.max(2 * rel + 2, 2 * size));
+                        Arrays.fill(relationIds, size, relationIds.length, -1);
+                    }
+                    if (relationIds[2 * rel] < 0) {
+                        String name = reader.getRelation(rel);
+                        relationIds[2 * rel] = relations.getId(name);
+                        relationIds[2 * rel + 1] = relations.getId(name + INVERSE_SUFFIX);
+                        int maxId = Math.max(relationIds[2 * rel], relationIds[2 * rel + 1]);
+                        if (maxId >= fileRelationCounts.length) {
+                            fileRelationCounts = Arrays.copyOf(fileRelationCounts, Math.max(maxId + 1,
+                                    2 * fileRelationCounts.length));
+                        }
+                    }
+                    int relId = relationIds[2 * rel];
+                    int invId = relationIds[2 * rel + 1];
+                    out.putInt(sent.ids[gov]);
+                    out.putInt(sent.ids[dep]);
+                    out.putInt(relId);
+                    out.putInt(sent.ids[dep]);
+                    out.putInt(sent.ids[gov]);
+                    out.putInt(invId);
+                    fileRelationCounts[relId]++;
+                    fileRelationCounts[invId]++;
+                    numFileTriples += 2;
+                }
+            }
+        } finally {
+            reader.close();
+            out.close();
+        }
+        numTriples.addAndGet(numFileTriples);
+        synchronized (this) {
+            if (fileRelationCounts.length > relationCounts.length) {
+                relationCounts = Arrays.copyOf(relationCounts, fileRelationCounts.length);
+            }
+            for (int id = 0; id < fileRelationCounts.length; id++) {
+                relationCounts[id] += fileRelationCounts[id];
+            }
+        }
+    }
+
+    private static boolean inRange(int idx, int n) {
+        return idx >= 0 && idx < n;
+    }
+
+    private static boolean hasPobj(Sentence sent, int prep) {
+        for (int e = 0; e < sent.numDeps; e++) {
+            if (sent.govs[e] == prep && sent.rels[e] == POBJ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The words and dependencies of a sentence, as arrays which are reused
+     * for the next sentence.
+     */
+    private static class Sentence {
+        VTDNav vn;
+        int numWords;
+        // The id of each word in the vocabulary, or 0 if it is not in it,
+        // and the VTD token of its text.
+        int[] ids = new int[256];
+        int[] wordTokens = new int[256];
+        int numDeps;
+        int[] govs = new int[256];
+        int[] deps = new int[256];
+        // The code of the relation of each dependency in the SentenceReader.
+        int[] rels = new int[256];
+
+        String getWord(int i) throws NavException {
+            return vn.toString(wordTokens[i]);
+        }
+    }
+
+    /**
+     * Reads the Sentences of a file, and gives each relation of the file a
+     * code.
+     */
+    private class SentenceReader extends StreamingVtdXmlReader<Sentence> {
+
+        private Sentence sent = new Sentence();
+        private TokenTable relationCodes = new TokenTable();
+        private List<String> relationNames = new ArrayList<String>();
+        // The code of the collapsed relation of each preposition in the
+        // vocabulary, or -1 if not yet found.
+        private int[] prepRelations;
+
+        public SentenceReader(String inputFile) {
+            super(inputFile);
+            require(getRelationCode("prep") == PREP);
+            require(getRelationCode("pobj") == POBJ);
+        }
+
+        int getRelationCode(String name) {
+            int code = relationCodes.get(name);
+            if (code < 0) {
+                code = relationNames.size();
+                relationNames.add(name);
+                relationCodes.put(name, code);
+            }
+            return code;
+        }
+
+        String getRelation(int code) {
+            return relationNames.get(code);
+        }
+
+        /**
+         * Gets the code of the relation prep_WORD which collapses the
+         * preposition at the given index of a sentence.
+         */
+        int getPrepRelation(Sentence sent, int prep) {
+            int id = sent.ids[prep];
+            if (id > 0 && prepRelations != null && prepRelations[id] >= 0) {
+                return prepRelations[id];
+            }
+            int code;
+            try {
+                code = getRelationCode("prep_" + sent.getWord(prep).toLowerCase(Locale.ENGLISH));
+            } catch (NavException e) {
+                throw new RuntimeException(e);
+            }
+            if (id > 0) {
+                if (prepRelations == null) {
+                    prepRelations = new int[keepProbs.length];
+                    Arrays.fill(prepRelations, -1);
+                }
+                prepRelations[id] = code;
+            }
+            return code;
+        }
+
+        @Override
+        protected Iterator<Sentence> getIteratorInstance(byte[] b) {
+            return new SentenceParser(b, this);
+        }
+
+        @Override
+        protected int getNumSents(Sentence sent) {
+            return 1;
+        }
+
+        @Override
+        protected int getNumTokens(Sentence sent) {
+            return sent.numWords;
+        }
+
+    }
+
+    /**
+     * Parses the Sentences of one document from its VTD index, into the
+     * Sentence of the reader.
+     */
+    private class SentenceParser implements Iterator<Sentence> {
+
+        private VTDNav vn;
+        // The XML, if its bytes can be looked up directly.
+        private byte[] xml;
+        private AutoPilot sentAp;
+        private int nextIdx;
+        private SentenceReader reader;
+        private Sentence sent;
+
+        public SentenceParser(byte[] b, SentenceReader reader) {
+            this.reader = reader;
+            this.sent = reader.sent;
+            try {
+                VTDGen vg = new VTDGen();
+                vg.setDoc(b);
+                vg.parse(false);
+                vn = vg.getNav();
+                if (vn.getEncoding() == VTDNav.FORMAT_UTF8 || vn.getEncoding() == VTDNav.FORMAT_ASCII) {
+                    xml = vn.getXML().getBytes();
+                }
+                sentAp = new AutoPilot(vn);
+                sentAp.selectXPath(String.format("//%s/%s", AgigaConstants.SENTENCES, AgigaConstants.SENTENCE));
+                nextIdx = sentAp.evalXPath();
+            } catch (VTDException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIdx != -1;
+        }
+
+        @Override
+        public Sentence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                sent.vn = vn;
+                // Return to the sentence after each part, without cloning vn.
+                vn.push();
+                parseWords();
+                vn.pop();
+                vn.push();
+                parseDeps();
+                vn.pop();
+                nextIdx = sentAp.evalXPath();
+                return sent;
+            } catch (VTDException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void parseWords() throws NavException {
+            int numWords = 0;
+            if (vn.toElement(VTDNav.FC, AgigaConstants.TOKENS)) {
+                String field = useLemmas ? AgigaConstants.LEMMA : AgigaConstants.WORD;
+                boolean hasToken = vn.toElement(VTDNav.FC, AgigaConstants.TOKEN);
+                while (hasToken) {
+                    require(vn.toElement(VTDNav.FC, field), "Every token must have a " + field);
+                    int text = vn.getText();
+                    require(text != -1, "Every token must have a " + field);
+                    if (numWords == sent.ids.length) {
+                        sent.ids = Arrays.copyOf(sent.ids, 2 * numWords);
+                        sent.wordTokens = Arrays.copyOf(sent.wordTokens, 2 * numWords);
+                    }
+                    // Id 0 is <unk>, which matches no word.
+                    sent.ids[numWords] = Math.max(0, vocab.get(vn, xml, text, lowercase));
+                    sent.wordTokens[numWords] = text;
+                    numWords++;
+                    require(vn.toElement(VTDNav.PARENT));
+                    hasToken = vn.toElement(VTDNav.NS, AgigaConstants.TOKEN);
+                }
+            }
+            sent.numWords = numWords;
+        }
+
+        private void parseDeps() throws NavException {
+            int numDeps = 0;
+            if (vn.toElement(VTDNav.FC, form.getXmlTag())) {
+                boolean hasDep = vn.toElement(VTDNav.FC, AgigaConstants.DEP);
+                while (hasDep) {
+                    if (numDeps == sent.govs.length) {
+                        sent.govs = Arrays.copyOf(sent.govs, 2 * numDeps);
+                        sent.deps = Arrays.copyOf(sent.deps, 2 * numDeps);
+                        sent.rels = Arrays.copyOf(sent.rels, 2 * numDeps);
+                    }
+                    int type = vn.getAttrVal(AgigaConstants.DEP_TYPE);
+                    require(type != -1, "Every dependency must have a " + AgigaConstants.DEP_TYPE);
+                    sent.rels[numDeps] = getRelationCode(type);
+                    require(vn.toElement(VTDNav.FC, AgigaConstants.GOVERNOR));
+                    // Subtract one, since the tokens are one-indexed in the XML.
+                    sent.govs[numDeps] = vn.parseInt(vn.getText()) - 1;
+                    require(vn.toElement(VTDNav.NS, AgigaConstants.DEPENDENT));
+                    sent.deps[numDeps] = vn.parseInt(vn.getText()) - 1;
+                    numDeps++;
+                    require(vn.toElement(VTDNav.PARENT));
+                    hasDep = vn.toElement(VTDNav.NS, AgigaConstants.DEP);
+                }
+            }
+            sent.numDeps = numDeps;
+        }
+
+        private int getRelationCode(int type) throws NavException {
+            int code = reader.relationCodes.get(vn, xml, type, false);
+            return code >= 0 ? code : reader.getRelationCode(vn.toString(type));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * An open-addressing table from strings to ids, in which the text of a
+     * VTD token can be looked up by its UTF-8 bytes without creating a
+     * String. Lookups may be made by several threads once the table is
+     * filled.
+     */
+    private static class TokenTable {
+
+        private static final Charset UTF8 = Charset.forName("UTF-8");
+
+        private byte[][] keys = new byte[16][];
+        private int[] ids = new int[16];
+        private int size = 0;
+
+        public void put(String str, int id) {
+            if (2 * (size + 1) > keys.length) {
+                byte[][] oldKeys = keys;
+                int[] oldIds = ids;
+                keys = new byte[2 * oldKeys.length][];
+                ids = new int[keys.length];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        int slot = findSlot(oldKeys[i], 0, oldKeys[i].length, false);
+                        keys[slot] = oldKeys[i];
+                        ids[slot] = oldIds[i];
+                    }
+                }
+            }
+            byte[] key = str.getBytes(UTF8);
+            int slot = findSlot(key, 0, key.length, false);
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                size++;
+            }
+            ids[slot] = id;
+        }
+
+        /**
+         * Gets the id of a string, or -1 if it is not present.
+         */
+        public int get(String str) {
+            byte[] key = str.getBytes(UTF8);
+            int slot = findSlot(key, 0, key.length, false);
+            return keys[slot] == null ? -1 : ids[slot];
+        }
+
+        /**
+         * Gets the id of the text of a VTD token, optionally lowercased, or -1
+         * if it is not present.
+         *
+         * @param xml The bytes of the XML, if it is in UTF-8, or null.
+         */
+        public int get(VTDNav vn, byte[] xml, int token, boolean lowercase) throws NavException {
+            if (xml != null) {
+                int offset = vn.getTokenOffset(token);
+                int length = vn.getTokenLength(token);
+                // Only the bytes of text without entities, and, if it is
+                // lowercased, without non-ASCII characters, are the bytes of
+                // the string.
+                boolean plain = true;
+                for (int i = offset; i < offset + length && plain; i++) {
+                    plain = xml[i] != '&' && !(lowercase && xml[i] < 0);
+                }
+                if (plain) {
+                    int slot = findSlot(xml, offset, length, lowercase);
+                    return keys[slot] == null ? -1 : ids[slot];
+                }
+            }
+            String str = vn.toString(token);
+            return get(lowercase ? str.toLowerCase(Locale.ENGLISH) : str);
+        }
+
+        /**
+         * Gets the slot of a key, or the empty slot where it would go.
+         */
+        private int findSlot(byte[] buf, int offset, int length, boolean lowercase) {
+            // FNV-1a over the bytes.
+            int h = 0x811c9dc5;
+            for (int i = offset; i < offset + length; i++) {
+                h = (h ^ toLower(buf[i], lowercase)) * 0x01000193;
+            }
+            int mask = keys.length - 1;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (keys[slot] != null && !matches(keys[slot], buf, offset, length, lowercase)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static boolean matches(byte[] key, byte[] buf, int offset, int length, boolean lowercase) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != toLower(buf[offset + i], lowercase)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static byte toLower(byte b, boolean lowercase) {
+            return lowercase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaDependencyContexts.class.getName()
+                + " [options] <vocab.txt> <output directory> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -form <form>             (Dependency form, default collapsed-ccprocessed-dependencies)"
+                + "\n    -lemmas                  (Use the lemmas instead of the words)"
+                + "\n    -lowercase               (Lowercase the words)"
+                + "\n    -no-collapse             (Do not collapse the prepositions of the basic dependencies)"
+                + "\n    -sample <threshold>      (Subsample frequent words, e.g. 1e-4, default 0)"
+                + "\n    -seed <long>             (Random seed of the subsampling, default 1)"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  where vocab.txt was written by AgigaTokenIdExporter with the same -lemmas and"
+                + "\n  -lowercase options. Writes the (target, context, relation) triples of each"
+                + "\n  input file as 32-bit ids, and the relations to " + RELATIONS_FILE + ".";
+        AgigaDependencyContexts contexts = new AgigaDependencyContexts();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-form")) {
+                contexts.setForm(opts.getForm());
+            } else if (opt.equals("-lemmas")) {
+                contexts.setUseLemmas(true);
+            } else if (opt.equals("-lowercase")) {
+                contexts.setLowercase(true);
+            } else if (opt.equals("-no-collapse")) {
+                contexts.setCollapsePreps(false);
+            } else if (opt.equals("-sample")) {
+                contexts.setSample(opts.getDouble());
+            } else if (opt.equals("-seed")) {
+                contexts.setSeed(opts.getLong());
+            } else if (opt.equals("-threads")) {
+                contexts.setNumThreads(opts.getInt());
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(3, Integer.MAX_VALUE);
+        long numTriples = contexts.generate(positional.get(0), positional.subList(2, positional.size()),
+                positional.get(1));
+        log.info("Wrote " + numTriples + " triples");
+    }
+
+}
@@ -0,0 +1,458 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+import edu.jhu.agiga.AgigaDependencyPattern.Edge;
+
+/**
+ * An index of the dependencies of a corpus as (governor lemma, relation,
+ * dependent lemma) triples, for finding the sentences which match an
+ * AgigaDependencyPattern without reading the corpus.
+ *
+ * The triples are stored in an AgigaInvertedIndex with two fields for each
+ * DependencyForm: one keyed by governor and one by dependent, so that an edge
+ * with a lemma on either side is a lookup of a range of terms. Each hit
+ * records the positions of the governor and the dependent. A pattern is
+ * matched by intersecting the hits of its edges by sentence, and then binding
+ * the nodes of the pattern to tokens. Edges with no lemma on either side are
+ * checked against the dependencies of each candidate sentence, which is read
+ * by random access, so a pattern must have a lemma in at least one edge.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaDependencyIndex {
+
+    private static Logger log = Logger.getLogger(AgigaDependencyIndex.class.getName());
+
+    /** The lemma of the root, which governs the head of the sentence. */
+    public static final String ROOT = "ROOT";
+
+    // Separates the parts of a triple.
+    private static final String SEP = "\t";
+    private static final String BY_DEPENDENT = "-by-dependent";
+    // Marks an unbound node.
+    private static final int UNBOUND = Integer.MIN_VALUE;
+
+    /**
+     * Indexes the dependency triples of the given forms. Each hit has the
+     * positions of the governor (-1 for the root) and the dependent.
+     */
+    public static class DependencyIndexer implements AgigaInvertedIndex.Indexer {
+
+        private List<DependencyForm> forms;
+
+        public DependencyIndexer(List<DependencyForm> forms) {
+            this.forms = forms;
+        }
+
+        @Override
+        public List<String> getFields() {
+            List<String> fields = new ArrayList<String>();
+            for (DependencyForm form : forms) {
+                fields.add(getField(form, false));
+                fields.add(getField(form, true));
+            }
+            return fields;
+        }
+
+        @Override
+        public int getNumTokIdxs() {
+            return 2;
+        }
+
+        @Override
+        public AgigaPrefs getPrefs() {
+            AgigaPrefs prefs = new AgigaPrefs();
+            prefs.setAll(false);
+            prefs.setLemma(true);
+            for (DependencyForm form : forms) {
+                prefs.setDeps(form);
+            }
+            return prefs;
+        }
+
+        @Override
+        public void index(AgigaDocument doc, AgigaInvertedIndex.HitCollector hits) {
+            int[] tokIdxs = new int[2];
+            StringBuilder sb = new StringBuilder();
+            List<AgigaSentence> sents = doc.getSents();
+            for (int s = 0; s < sents.size(); s++) {
+                AgigaSentence sent = sents.get(s);
+                List<AgigaToken> tokens = sent.getTokens();
+                for (int f = 0; f < forms.size(); f++) {
+                    for (AgigaTypedDependency dep : sent.getAgigaDeps(forms.get(f))) {
+                        String govLemma = getLemma(tokens, dep.getGovIdx());
+                        String depLemma = getLemma(tokens, dep.getDepIdx());
+                        if (govLemma == null || depLemma == null) {
+                            continue;
+                        }
+                        tokIdxs[0] = dep.getGovIdx();
+                        tokIdxs[1] = dep.getDepIdx();
+                        sb.setLength(0);
+                        sb.append(govLemma).append(SEP).append(dep.getType()).append(SEP).append(depLemma);
+                        hits.add(2 * f, sb.toString(), s, tokIdxs);
+                        sb.setLength(0);
+                        sb.append(depLemma).append(SEP).append(dep.getType()).append(SEP).append(govLemma);
+                        hits.add(2 * f + 1, sb.toString(), s, tokIdxs);
+                    }
+                }
+            }
+        }
+
+        static String getLemma(List<AgigaToken> tokens, int tokIdx) {
+            if (tokIdx < 0) {
+                return tokIdx == -1 ? ROOT : null;
+            }
+            return tokIdx < tokens.size() ? tokens.get(tokIdx).getLemma() : null;
+        }
+
+    }
+
+    private AgigaInvertedIndex index;
+
+    private AgigaDependencyIndex(AgigaInvertedIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Indexes the dependencies of the given forms in the input files, which
+     * must have been written by AgigaDocIndex.create(), using numThreads
+     * threads.
+     *
+     * @return The index, opened for reading.
+     */
+    public static AgigaDependencyIndex create(List<String> inputFiles, String outputFile,
+            List<DependencyForm> forms, int numThreads) {
+        return new AgigaDependencyIndex(AgigaInvertedIndex.create(inputFiles, outputFile, new DependencyIndexer(
+                forms), numThreads));
+    }
+
+    /**
+     * Opens an index written by create().
+     */
+    public static AgigaDependencyIndex read(String indexFile) {
+        AgigaInvertedIndex index = AgigaInvertedIndex.read(indexFile);
+        require(index.getNumTokIdxs() == 2, "Not a dependency index: " + indexFile);
+        return new AgigaDependencyIndex(index);
+    }
+
+    public void close() {
+        index.close();
+    }
+
+    /**
+     * Gets the underlying index, for example to resolve the matches of a
+     * query to sentences.
+     */
+    public AgigaInvertedIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Whether the dependencies of the given form were indexed.
+     */
+    public boolean hasForm(DependencyForm form) {
+        return index.getFields().contains(getField(form, false));
+    }
+
+    private static String getField(DependencyForm form, boolean byDependent) {
+        return byDependent ? form.getXmlTag() + BY_DEPENDENT : form.getXmlTag();
+    }
+
+    /**
+     * Gets the number of times a triple occurs.
+     */
+    public long getNumHits(DependencyForm form, String govLemma, String rel, String depLemma) {
+        return index.getNumHits(getField(form, false), govLemma + SEP + rel + SEP + depLemma);
+    }
+
+    /**
+     * Finds the matches of a pattern in the dependencies of the given form, in
+     * corpus order, up to maxMatches. Each match is an AgigaHit whose i'th
+     * token position is the token bound to the i'th node of the pattern, or
+     * -1 for the root. A sentence can match in more than one way.
+     */
+    public List<AgigaHit> query(AgigaDependencyPattern pattern, DependencyForm form, int maxMatches) {
+        require(hasForm(form), "The dependencies " + form.getXmlTag() + " are not in the index");
+        List<Edge> edges = new ArrayList<Edge>();
+        List<PeekingIterator> iters = new ArrayList<PeekingIterator>();
+        List<Edge> unindexed = new ArrayList<Edge>();
+        for (Edge edge : pattern.getEdges()) {
+            String govLemma = pattern.getLemma(edge.getGov());
+            String depLemma = pattern.getLemma(edge.getDep());
+            Iterator<AgigaHit> iter;
+            if (govLemma != null && depLemma != null) {
+                iter = index.getHitIterator(getField(form, false), govLemma + SEP + edge.getRel() + SEP + depLemma);
+            } else if (govLemma != null) {
+                iter = getPrefixIterator(getField(form, false), govLemma + SEP + edge.getRel() + SEP);
+            } else if (depLemma != null) {
+                iter = getPrefixIterator(getField(form, true), depLemma + SEP + edge.getRel() + SEP);
+            } else {
+                unindexed.add(edge);
+                continue;
+            }
+            edges.add(edge);
+            iters.add(new PeekingIterator(iter));
+        }
+        if (edges.isEmpty()) {
+            throw new IllegalArgumentException("The pattern must have a lemma in at least one edge: " + pattern);
+        }
+        // The edges which are checked against the sentence come last.
+        edges.addAll(unindexed);
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setLemma(true);
+        prefs.setDeps(form);
+        // The candidate sentences come in corpus order, so the last document
+        // read is kept.
+        AgigaHit docHit = null;
+        AgigaDocument doc = null;
+
+        List<AgigaHit> matches = new ArrayList<AgigaHit>();
+        int[][] govs = new int[edges.size()][];
+        int[][] deps = new int[edges.size()][];
+        int[] sizes = new int[edges.size()];
+        int[] binding = new int[pattern.getNodes().size()];
+        while (matches.size() < maxMatches) {
+            AgigaHit sentHit = nextSentence(iters);
+            if (sentHit == null) {
+                break;
+            }
+            // Collect the candidate edges of each indexed edge in this
+            // sentence.
+            for (int e = 0; e < iters.size(); e++) {
+                PeekingIterator iter = iters.get(e);
+                sizes[e] = 0;
+                while (iter.peek() != null && AgigaInvertedIndex.compareSentences(iter.peek(), sentHit) == 0) {
+                    AgigaHit hit = iter.next();
+                    addCandidate(govs, deps, sizes, e, hit.getTokIdx(0), hit.getTokIdx(1));
+                }
+            }
+            if (!unindexed.isEmpty()) {
+                if (docHit == null || docHit.getFileIdx() != sentHit.getFileIdx()
+                        || docHit.getDocIdx() != sentHit.getDocIdx()) {
+                    doc = index.getDocument(sentHit, prefs);
+                    docHit = sentHit;
+                }
+                AgigaSentence sent = doc.getSents().get(sentHit.getSentIdx());
+                List<AgigaToken> tokens = sent.getTokens();
+                for (int e = iters.size(); e < edges.size(); e++) {
+                    sizes[e] = 0;
+                    for (AgigaTypedDependency dep : sent.getAgigaDeps(form)) {
+                        // Skip the same dependencies as the indexer.
+                        if (dep.getType().equals(edges.get(e).getRel())
+                                && DependencyIndexer.getLemma(tokens, dep.getGovIdx()) != null
+                                && DependencyIndexer.getLemma(tokens, dep.getDepIdx()) != null) {
+                            addCandidate(govs, deps, sizes, e, dep.getGovIdx(), dep.getDepIdx());
+                        }
+                    }
+                }
+            }
+            Arrays.fill(binding, UNBOUND);
+            bind(edges, 0, govs, deps, sizes, binding, sentHit, matches, maxMatches);
+        }
+        return matches;
+    }
+
+    private Iterator<AgigaHit> getPrefixIterator(String field, String prefix) {
+        int[] range = index.getTermIdRange(field, prefix);
+        return index.getHitIterator(field, range[0], range[1]);
+    }
+
+    /**
+     * Advances the iterators to the next sentence which all of them have a
+     * hit in, and returns one of those hits, or null if there is none.
+     */
+    private static AgigaHit nextSentence(List<PeekingIterator> iters) {
+        while (true) {
+            AgigaHit max = null;
+            for (PeekingIterator iter : iters) {
+                if (iter.peek() == null) {
+                    return null;
+                }
+                if (max == null || AgigaInvertedIndex.compareSentences(iter.peek(), max) > 0) {
+                    max = iter.peek();
+                }
+            }
+            boolean isAligned = true;
+            for (PeekingIterator iter : iters) {
+                while (iter.peek() != null && AgigaInvertedIndex.compareSentences(iter.peek(), max) < 0) {
+                    iter.next();
+                }
+                if (iter.peek() == null) {
+                    return null;
+                }
+                isAligned &= AgigaInvertedIndex.compareSentences(iter.peek(), max) == 0;
+            }
+            if (isAligned) {
+                return max;
+            }
+        }
+    }
+
+    private static void addCandidate(int[][] govs, int[][] deps, int[] sizes, int e, int gov, int dep) {
+        if (govs[e] == null) {
+            govs[e] = new int[8];
+            deps[e] = new int[8];
+        } else if (sizes[e] == govs[e].length) {
+            govs[e] = Arrays.copyOf(govs[e], sizes[e] * 2);
+            deps[e] = Arrays.copyOf(deps[e], sizes[e] * 2);
+        }
+        govs[e][sizes[e]] = gov;
+        deps[e][sizes[e]] = dep;
+        sizes[e]++;
+    }
+
+    /**
+     * Binds the nodes of edges e and on in every way consistent with the
+     * binding so far, adding a match for each complete binding.
+     */
+    private static void bind(List<Edge> edges, int e, int[][] govs, int[][] deps, int[] sizes, int[] binding,
+            AgigaHit sentHit, List<AgigaHit> matches, int maxMatches) {
+        if (e == edges.size()) {
+            matches.add(new AgigaHit(sentHit.getFileIdx(), sentHit.getDocIdx(), sentHit.getSentIdx(), binding
+                    .clone()));
+            return;
+        }
+        int govNode = edges.get(e).getGov();
+        int depNode = edges.get(e).getDep();
+        for (int i = 0; i < sizes[e] && matches.size() < maxMatches; i++) {
+            int oldGov = binding[govNode];
+            int oldDep = binding[depNode];
+            if ((oldGov != UNBOUND && oldGov != govs[e][i]) || (oldDep != UNBOUND && oldDep != deps[e][i])) {
+                continue;
+            }
+            binding[govNode] = govs[e][i];
+            if (govNode != depNode || binding[depNode] == deps[e][i]) {
+                binding[depNode] = deps[e][i];
+                bind(edges, e + 1, govs, deps, sizes, binding, sentHit, matches, maxMatches);
+            }
+            binding[govNode] = oldGov;
+            binding[depNode] = oldDep;
+        }
+    }
+
+    /**
+     * An iterator which can look at its next hit without consuming it.
+     */
+    private static class PeekingIterator {
+
+        private Iterator<AgigaHit> iter;
+        private AgigaHit next;
+
+        public PeekingIterator(Iterator<AgigaHit> iter) {
+            this.iter = iter;
+            next = iter.hasNext() ? iter.next() : null;
+        }
+
+        /**
+         * Gets the next hit, or null if there are no more.
+         */
+        public AgigaHit peek() {
+            return next;
+        }
+
+        public AgigaHit next() {
+            AgigaHit hit = next;
+            next = iter.hasNext() ? iter.next() : null;
+            return hit;
+        }
+
+    }
+
+    static DependencyForm getForm(String name) {
+        for (DependencyForm form : DependencyForm.values()) {
+            if (form.getXmlTag().equals(name)) {
+                return form;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        StringBuilder forms = new StringBuilder();
+        for (DependencyForm form : DependencyForm.values()) {
+            forms.append(forms.length() == 0 ? "" : ", ").append(form.getXmlTag());
+        }
+        String usage = "\nusage: java " + AgigaDependencyIndex.class.getName()
+                + " -build [-form <form>]... [-threads <number>] <index file> <indexed .xml.gz file>..."
+                + "\n   or: java " + AgigaDependencyIndex.class.getName()
+                + " [-form <form>] [-limit <number>] <index file> <pattern>"
+                + "\n  where <form> is one of " + forms
+                + "\n  (default all of them for -build, and " + DependencyForm.COL_CCPROC_DEPS.getXmlTag()
+                + " for queries)"
+                + "\n  and <pattern> is for example \"nsubj(acquire, ?x) + dobj(acquire, ?y)\"."
+                + "\n  The input files must be written by " + AgigaDocIndex.class.getName() + " first."
+                + "\n  Queries print the document id, sentence, bound tokens and words of each match.";
+        boolean build = false;
+        List<DependencyForm> buildForms = new ArrayList<DependencyForm>();
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        int limit = Integer.MAX_VALUE;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-build")) {
+                build = true;
+            } else if (opt.equals("-form")) {
+                buildForms.add(opts.getForm());
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else if (opt.equals("-limit")) {
+                limit = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        if (build) {
+            List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+            if (buildForms.isEmpty()) {
+                buildForms = Arrays.asList(DependencyForm.values());
+            }
+            create(positional.subList(1, positional.size()), positional.get(0), buildForms, numThreads).close();
+            return;
+        }
+        List<String> positional = opts.getPositional(2, 2);
+        if (buildForms.size() > 1) {
+            opts.fail("Queries take only one -form");
+        }
+        DependencyForm form = buildForms.isEmpty() ? DependencyForm.COL_CCPROC_DEPS : buildForms.get(0);
+        AgigaDependencyIndex depIndex = read(positional.get(0));
+        AgigaDependencyPattern pattern = AgigaDependencyPattern.parse(positional.get(1));
+        long startMillis = System.currentTimeMillis();
+        List<AgigaHit> matches = depIndex.query(pattern, form, limit);
+        log.info("Found " + matches.size() + " matches of " + pattern + " in "
+                + (System.currentTimeMillis() - startMillis) + " ms");
+
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(true);
+        List<String> nodes = pattern.getNodes();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (AgigaHit match : matches) {
+            AgigaSentence sent = depIndex.getIndex().getSentence(match, prefs);
+            writer.write(depIndex.getIndex().getDocId(match) + "\t" + match.getSentIdx() + "\t");
+            for (int i = 0; i < nodes.size(); i++) {
+                int tokIdx = match.getTokIdx(i);
+                String word = tokIdx < 0 ? ROOT : sent.getTokens().get(tokIdx).getWord();
+                writer.write((i > 0 ? " " : "") + nodes.get(i) + "=" + tokIdx + ":" + word);
+            }
+            writer.write("\t");
+            sent.writeWords(writer);
+        }
+        writer.flush();
+        depIndex.close();
+    }
+
+}
@@ -0,0 +1,136 @@
+package edu.jhu.agiga;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pattern of one or more dependency edges to find with an
+ * AgigaDependencyIndex, such as
+ *
+ * <pre>
+ * nsubj(acquire, ?x) + dobj(acquire, ?y)
+ * </pre>
+ *
+ * Each edge is written as relation(governor, dependent), and the edges are
+ * joined by "+". A node is either a lemma, a variable such as ?x, or * for a
+ * token which is not reported. All of the uses of the same lemma or variable
+ * stand for the same token, so the pattern above matches a token with lemma
+ * "acquire" which has both a subject and an object. The lemma ROOT stands for
+ * the root of the sentence.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaDependencyPattern {
+
+    private static final Pattern EDGE = Pattern.compile("\\s*([^\\s(),+]+)\\s*\\(\\s*([^\\s(),]+)\\s*,"
+            + "\\s*([^\\s(),]+)\\s*\\)\\s*");
+
+    /**
+     * One edge of a pattern, between two nodes given by their numbers.
+     */
+    public static class Edge {
+
+        private String rel;
+        private int gov;
+        private int dep;
+
+        public Edge(String rel, int gov, int dep) {
+            this.rel = rel;
+            this.gov = gov;
+            this.dep = dep;
+        }
+
+        public String getRel() {
+            return rel;
+        }
+
+        public int getGov() {
+            return gov;
+        }
+
+        public int getDep() {
+            return dep;
+        }
+
+    }
+
+    private List<String> nodes = new ArrayList<String>();
+    private List<Edge> edges = new ArrayList<Edge>();
+
+    private AgigaDependencyPattern() {
+        // Use parse().
+    }
+
+    /**
+     * Parses a pattern.
+     *
+     * @throws IllegalArgumentException If the pattern is not valid.
+     */
+    public static AgigaDependencyPattern parse(String str) {
+        AgigaDependencyPattern pattern = new AgigaDependencyPattern();
+        Map<String, Integer> nodeIdxs = new HashMap<String, Integer>();
+        for (String edgeStr : str.split("\\+")) {
+            Matcher m = EDGE.matcher(edgeStr);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Invalid edge \"" + edgeStr.trim() + "\" in pattern: " + str);
+            }
+            int gov = pattern.getNode(nodeIdxs, m.group(2));
+            int dep = pattern.getNode(nodeIdxs, m.group(3));
+            pattern.edges.add(new Edge(m.group(1), gov, dep));
+        }
+        return pattern;
+    }
+
+    private int getNode(Map<String, Integer> nodeIdxs, String name) {
+        if (name.equals("?")) {
+            throw new IllegalArgumentException("A variable needs a name: ?");
+        }
+        Integer node = name.equals("*") ? null : nodeIdxs.get(name);
+        if (node == null) {
+            node = nodes.size();
+            nodes.add(name);
+            nodeIdxs.put(name, node);
+        }
+        return node;
+    }
+
+    /**
+     * Gets the names of the nodes, as written in the pattern. A match binds
+     * the i'th node to the i'th token position of its AgigaHit.
+     */
+    public List<String> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    public List<Edge> getEdges() {
+        return Collections.unmodifiableList(edges);
+    }
+
+    /**
+     * Gets the lemma of a node, or null if it is a variable or *.
+     */
+    public String getLemma(int node) {
+        String name = nodes.get(node);
+        return name.equals("*") || name.startsWith("?") ? null : name;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Edge edge : edges) {
+            if (sb.length() > 0) {
+                sb.append(" + ");
+            }
+            sb.append(edge.rel).append('(').append(nodes.get(edge.gov)).append(", ").append(nodes.get(edge.dep))
+                    .append(')');
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,724 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.ximpleware.VTDException;
+
+/**
+ * Gives random access to the documents in an Annotated Gigaword file.
+ *
+ * A gzip stream can only be read from the start, so create() rewrites the
+ * .xml.gz file with each document compressed as separate gzip members, and
+ * writes an index of the offset and length of each document to a file with
+ * the same name plus ".idx". The rewritten file contains the same XML, and can
+ * still be read by StreamingDocumentReader and StreamingSentenceReader or
+ * with zcat. A single document is then read by decompressing only its members.
+ *
+ * Each sentence element of a document is also compressed as a separate
+ * member, and the index holds the offset and length of each one, so a single
+ * sentence is read by decompressing and parsing only its own XML. Indexes
+ * written before version 2 have no sentences; their sentences are read from
+ * the whole document.
+ *
+ * The documents may be read by several threads at once.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaDocIndex {
+
+    private static Logger log = Logger.getLogger(AgigaDocIndex.class.getName());
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    // "AGDX"
+    private static final int MAGIC = 0x41474458;
+    private static final byte[] SENTENCES_START = ("<" + AgigaConstants.SENTENCES + ">\n").getBytes(
+            Charset.forName("UTF-8"));
+    private static final byte[] SENTENCES_END = ("</" + AgigaConstants.SENTENCES + ">\n").getBytes(
+            Charset.forName("UTF-8"));
+    private static final int VERSION = 2;
+    private static final String SENTENCE_START_TAG = "<" + AgigaConstants.SENTENCE;
+    private static final String SENTENCE_END_TAG = "</" + AgigaConstants.SENTENCE + ">";
+    private static final String SENTENCES_START_TAG = "<" + AgigaConstants.SENTENCES + ">";
+    private static final String SENTENCES_END_TAG = "</" + AgigaConstants.SENTENCES + ">";
+
+    private String file;
+    private String fileId;
+    private String[] docIds;
+    private long[] offsets;
+    private int[] lengths;
+    // The sentences of document i are firstSents[i] to firstSents[i+1] in
+    // the arrays of sentences, with their offsets relative to the document.
+    private int[] firstSents;
+    private int[] sentIdxs;
+    private int[] sentOffsets;
+    private int[] sentLengths;
+    private Map<String, Integer> docIdxs;
+    private FileChannel channel;
+
+    private AgigaDocIndex(String file, String fileId, String[] docIds, long[] offsets, int[] lengths,
+            int[] firstSents, int[] sentIdxs, int[] sentOffsets, int[] sentLengths) {
+        this.file = file;
+        this.fileId = fileId;
+        this.docIds = docIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.firstSents = firstSents;
+        this.sentIdxs = sentIdxs;
+        this.sentOffsets = sentOffsets;
+        this.sentLengths = sentLengths;
+        docIdxs = new HashMap<String, Integer>(docIds.length * 2);
+        for (int i = 0; i < docIds.length; i++) {
+            docIdxs.put(docIds[i], i);
+        }
+    }
+
+    /**
+     * Rewrites the Annotated Gigaword file inputFile to outputFile with
+     * separate gzip members for each document and sentence, and writes the
+     * index to outputFile + ".idx".
+     *
+     * @return The index, opened for reading outputFile.
+     */
+    public static AgigaDocIndex create(String inputFile, String outputFile) {
+        return create(inputFile, outputFile, true);
+    }
+
+    /**
+     * Rewrites the Annotated Gigaword file inputFile to outputFile with
+     * separate gzip members for each document, and writes the index to
+     * outputFile + ".idx".
+     *
+     * @param indexSentences Whether to compress and index each sentence
+     *            separately. This makes the file about a third larger, since
+     *            each member is compressed on its own.
+     * @return The index, opened for reading outputFile.
+     */
+    public static AgigaDocIndex create(String inputFile, String outputFile, boolean indexSentences) {
+        try {
+            InputStream inputStream = new FileInputStream(inputFile);
+            if (inputFile.endsWith(".gz")) {
+                inputStream = new GZIPInputStream(inputStream, 1 << 16);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+            String fileId = StreamingVtdXmlReader.getFileId(reader);
+
+            CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(outputFile), 1 << 16));
+            IndexBuilder builder = new IndexBuilder();
+            // Lines outside of the documents, such as the FILE tags, go in
+            // their own members.
+            StringBuilder other = new StringBuilder();
+            // The lines of the document since the last member.
+            StringBuilder doc = new StringBuilder();
+            String docId = null;
+            long docOffset = 0;
+            // Whether the lines are in the sentences element, and the offset
+            // and index of the current sentence, if any.
+            boolean inSentences = false;
+            long sentOffset = -1;
+            int sentIdx = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (docId != null) {
+                    String trimmed = line.trim();
+                    if (inSentences && sentOffset < 0 && isSentenceStart(trimmed)) {
+                        writeMember(out, doc);
+                        sentOffset = out.count;
+                        String id = getAttribute(trimmed, AgigaConstants.TOKEN_ID);
+                        // Subtract one, since the sentences are one-indexed in
+                        // the XML.
+                        int n = parseSentenceId(id);
+                        sentIdx = n > 0 ? n - 1 : builder.getNumSents();
+                    }
+                    doc.append(line);
+                    doc.append("\n");
+                    if (sentOffset >= 0) {
+                        if (trimmed.endsWith(SENTENCE_END_TAG)) {
+                            writeMember(out, doc);
+                            builder.addSent(sentIdx, (int) (sentOffset - docOffset), (int) (out.count - sentOffset));
+                            sentOffset = -1;
+                        }
+                    } else if (trimmed.startsWith(SENTENCES_START_TAG)) {
+                        inSentences = indexSentences;
+                    } else if (trimmed.startsWith(SENTENCES_END_TAG)) {
+                        inSentences = false;
+                    }
+                    if (line.startsWith("</DOC")) {
+                        // A sentence which is not closed stays in the last
+                        // member, and is not indexed.
+                        writeMember(out, doc);
+                        builder.add(docId, docOffset, (int) (out.count - docOffset));
+                        docId = null;
+                        inSentences = false;
+                        sentOffset = -1;
+                    }
+                } else if (line.startsWith("<DOC")) {
+                    if (other.length() > 0) {
+                        writeMember(out, other);
+                    }
+                    docId = getAttribute(line, AgigaConstants.DOC_ID);
+                    require(docId != null, "Missing document id: " + line);
+                    docOffset = out.count;
+                    doc.append(line);
+                    doc.append("\n");
+                } else {
+                    other.append(line);
+                    other.append("\n");
+                }
+            }
+            require(docId == null, "Unterminated document: " + docId);
+            if (other.length() > 0) {
+                writeMember(out, other);
+            }
+            reader.close();
+            out.close();
+
+            AgigaDocIndex index = new AgigaDocIndex(outputFile, fileId, builder.getDocIds(), builder.getOffsets(),
+                    builder.getLengths(), builder.getFirstSents(), builder.getSentIdxs(), builder.getSentOffsets(),
+                    builder.getSentLengths());
+            index.writeIndex(outputFile + INDEX_SUFFIX);
+            index.open();
+            log.info("Indexed " + index.getNumDocs() + " documents and " + index.sentIdxs.length + " sentences in "
+                    + outputFile);
+            return index;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (VTDException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Opens a file written by create() using its index.
+     */
+    public static AgigaDocIndex read(String file) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file
+                    + INDEX_SUFFIX), 1 << 16));
+            try {
+                require(in.readInt() == MAGIC, "Not an index file: " + file + INDEX_SUFFIX);
+                int version = in.readInt();
+                require(version == 1 || version == VERSION, "Unsupported index version: " + version);
+                String fileId = in.readUTF();
+                int numDocs = in.readInt();
+                IndexBuilder builder = new IndexBuilder();
+                for (int i = 0; i < numDocs; i++) {
+                    String docId = in.readUTF();
+                    long offset = in.readLong();
+                    int length = in.readInt();
+                    if (version > 1) {
+                        int numSents = in.readInt();
+                        for (int j = 0; j < numSents; j++) {
+                            builder.addSent(in.readInt(), in.readInt(), in.readInt());
+                        }
+                    }
+                    builder.add(docId, offset, length);
+                }
+                AgigaDocIndex index = new AgigaDocIndex(file, fileId, builder.getDocIds(), builder.getOffsets(),
+                        builder.getLengths(), builder.getFirstSents(), builder.getSentIdxs(),
+                        builder.getSentOffsets(), builder.getSentLengths());
+                index.open();
+                if (numDocs > 0) {
+                    require(index.offsets[numDocs - 1] + index.lengths[numDocs - 1] <= index.channel.size(),
+                            "The index does not match the file: " + file);
+                }
+                return index;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeIndex(String indexFile) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile),
+                1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(fileId);
+        out.writeInt(docIds.length);
+        for (int i = 0; i < docIds.length; i++) {
+            out.writeUTF(docIds[i]);
+            out.writeLong(offsets[i]);
+            out.writeInt(lengths[i]);
+            out.writeInt(firstSents[i + 1] - firstSents[i]);
+            for (int j = firstSents[i]; j < firstSents[i + 1]; j++) {
+                out.writeInt(sentIdxs[j]);
+                out.writeInt(sentOffsets[j]);
+                out.writeInt(sentLengths[j]);
+            }
+        }
+        out.close();
+    }
+
+    private void open() throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+    }
+
+    /**
+     * Closes the indexed file.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public int getNumDocs() {
+        return docIds.length;
+    }
+
+    public String getDocId(int docIdx) {
+        return docIds[docIdx];
+    }
+
+    /**
+     * Gets the position of the document in the file, or -1 if it is not in
+     * the file.
+     */
+    public int getDocIdx(String docId) {
+        Integer docIdx = docIdxs.get(docId);
+        return docIdx == null ? -1 : docIdx;
+    }
+
+    /**
+     * Gets the offset of a document's gzip member in the file. For
+     * getNumDocs() it is the offset after the last document.
+     */
+    long getOffset(int docIdx) {
+        if (docIdx < docIds.length) {
+            return offsets[docIdx];
+        }
+        return docIds.length == 0 ? 0 : offsets[docIds.length - 1] + lengths[docIds.length - 1];
+    }
+
+    /**
+     * Gets the uncompressed XML of a document, from the DOC start tag to the
+     * DOC end tag, as it would be passed to AgigaDocumentReader by
+     * StreamingDocumentReader.
+     */
+    public byte[] getDocBytes(int docIdx) {
+        try {
+            byte[] compressed = readCompressed(offsets[docIdx], lengths[docIdx]);
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+            ByteArrayOutputStream xml = new ByteArrayOutputStream(compressed.length * 6);
+            byte[] b = new byte[8192];
+            int n;
+            while ((n = in.read(b)) != -1) {
+                xml.write(b, 0, n);
+            }
+            return xml.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a range of the file.
+     */
+    private byte[] readCompressed(long position, int length) throws IOException {
+        byte[] compressed = new byte[length];
+        ByteBuffer buf = ByteBuffer.wrap(compressed);
+        while (buf.hasRemaining()) {
+            // Positional reads do not change the channel's position, so they
+            // are safe for concurrent use.
+            int n = channel.read(buf, position + buf.position());
+            require(n >= 0, "Unexpected end of file: " + file);
+        }
+        return compressed;
+    }
+
+    /**
+     * Reads a document, with the annotations selected by prefs.
+     */
+    public AgigaDocument getDocument(int docIdx, AgigaPrefs prefs) {
+        AgigaDocumentReader reader = new AgigaDocumentReader(getDocBytes(docIdx), prefs);
+        require(reader.hasNext(), "No document found at index " + docIdx + " of " + file);
+        return reader.next();
+    }
+
+    /**
+     * Gets the number of indexed sentences of a document, which is 0 if the
+     * index was written before version 2.
+     */
+    public int getNumSents(int docIdx) {
+        return firstSents[docIdx + 1] - firstSents[docIdx];
+    }
+
+    /**
+     * Gets the uncompressed XML of a sentence element, from the sentence start
+     * tag to the sentence end tag, or null if the sentence is not indexed.
+     *
+     * @param sentIdx The index of the sentence, as in
+     *            AgigaSentence.getSentIdx().
+     */
+    public byte[] getSentenceBytes(int docIdx, int sentIdx) {
+        int first = firstSents[docIdx];
+        int end = firstSents[docIdx + 1];
+        // The sentences are normally numbered in order.
+        int j = first + sentIdx;
+        if (j < first || j >= end || sentIdxs[j] != sentIdx) {
+            for (j = first; j < end && sentIdxs[j] != sentIdx; j++) {
+            }
+            if (j == end) {
+                return null;
+            }
+        }
+        return readSentenceBytes(docIdx, j);
+    }
+
+    /**
+     * Decompresses the j'th indexed sentence, which belongs to document
+     * docIdx.
+     */
+    private byte[] readSentenceBytes(int docIdx, int j) {
+        try {
+            byte[] compressed = readCompressed(offsets[docIdx] + sentOffsets[j], sentLengths[j]);
+            // A sentence is a single gzip member, so the size of the XML is
+            // in the last four bytes, little-endian.
+            int n = compressed.length;
+            int size = (compressed[n - 4] & 0xff) | (compressed[n - 3] & 0xff) << 8 | (compressed[n - 2] & 0xff) << 16
+                    | (compressed[n - 1] & 0xff) << 24;
+            byte[] xml = new byte[size];
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), n);
+            int len = 0;
+            while (len < size && (n = in.read(xml, len, size - len)) != -1) {
+                len += n;
+            }
+            require(len == size, "Truncated sentence in " + file);
+            in.close();
+            return xml;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a sentence of a document, with the annotations selected by prefs.
+     * An indexed sentence is parsed on its own, as by AgigaSentenceReader,
+     * without reading the rest of the document.
+     *
+     * @param sentIdx The index of the sentence, as in
+     *            AgigaSentence.getSentIdx().
+     * @return The sentence, or null if the document has no such sentence.
+     */
+    public AgigaSentence getSentence(int docIdx, int sentIdx, AgigaPrefs prefs) {
+        byte[] b = getSentenceBytes(docIdx, sentIdx);
+        if (b == null) {
+            // The sentences of the document are not indexed. As in the
+            // index, prefer the sentence at the position of the index.
+            List<AgigaSentence> sents = getDocument(docIdx, prefs).getSents();
+            if (sentIdx >= 0 && sentIdx < sents.size() && sents.get(sentIdx).getSentIdx() == sentIdx) {
+                return sents.get(sentIdx);
+            }
+            for (AgigaSentence sent : sents) {
+                if (sent.getSentIdx() == sentIdx) {
+                    return sent;
+                }
+            }
+            return null;
+        }
+        return parseSentence(b, docIdx, sentIdx, prefs);
+    }
+
+    /**
+     * Reads the sentence at a position in a document, counting from zero, as
+     * in AgigaDocument.getSents().get(pos). Unlike getSentence(), this does
+     * not depend on the ids of the sentences.
+     *
+     * @return The sentence, or null if the document has fewer sentences.
+     */
+    public AgigaSentence getSentenceAt(int docIdx, int pos, AgigaPrefs prefs) {
+        if (pos < 0) {
+            return null;
+        }
+        // The indexed sentences are in the order of the document, and only
+        // an unclosed last sentence is left out.
+        if (pos < getNumSents(docIdx)) {
+            byte[] b = readSentenceBytes(docIdx, firstSents[docIdx] + pos);
+            return parseSentence(b, docIdx, pos, prefs);
+        }
+        List<AgigaSentence> sents = getDocument(docIdx, prefs).getSents();
+        return pos < sents.size() ? sents.get(pos) : null;
+    }
+
+    private AgigaSentence parseSentence(byte[] b, int docIdx, int sentIdx, AgigaPrefs prefs) {
+        // Wrap the sentence in a sentences element, as the reader expects.
+        byte[] open = SENTENCES_START;
+        byte[] close = SENTENCES_END;
+        byte[] xml = new byte[open.length + b.length + close.length];
+        System.arraycopy(open, 0, xml, 0, open.length);
+        System.arraycopy(b, 0, xml, open.length, b.length);
+        System.arraycopy(close, 0, xml, open.length + b.length, close.length);
+        AgigaSentenceReader reader = new AgigaSentenceReader(xml, prefs);
+        require(reader.hasNext(), "No sentence found at index " + sentIdx + " of document " + docIds[docIdx]
+                + " of " + file);
+        return reader.next();
+    }
+
+    /**
+     * Reads a sentence of a document, or returns null if the document is not
+     * in the file or has no such sentence.
+     */
+    public AgigaSentence getSentence(String docId, int sentIdx, AgigaPrefs prefs) {
+        int docIdx = getDocIdx(docId);
+        return docIdx < 0 ? null : getSentence(docIdx, sentIdx, prefs);
+    }
+
+    private static boolean isSentenceStart(String trimmed) {
+        int n = SENTENCE_START_TAG.length();
+        return trimmed.startsWith(SENTENCE_START_TAG) && trimmed.length() > n
+                && (trimmed.charAt(n) == ' ' || trimmed.charAt(n) == '>');
+    }
+
+    /**
+     * Parses a sentence id of one to nine digits, returning -1 if it is null
+     * or not such a number.
+     */
+    private static int parseSentenceId(String id) {
+        if (id == null || id.length() == 0 || id.length() > 9) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    /**
+     * Gets the value of an attribute from a start tag, or null if it is not
+     * present.
+     */
+    static String getAttribute(String tag, String name) {
+        String key = " " + name + "=\"";
+        int start = tag.indexOf(key);
+        if (start == -1) {
+            return null;
+        }
+        start += key.length();
+        int end = tag.indexOf('"', start);
+        return end == -1 ? null : tag.substring(start, end);
+    }
+
+    /**
+     * Writes the text as a gzip member, and clears it.
+     */
+    private static void writeMember(OutputStream out, StringBuilder sb) throws IOException {
+        if (sb.length() == 0) {
+            return;
+        }
+        byte[] b = sb.toString().getBytes("UTF-8");
+        sb.setLength(0);
+        ByteArrayOutputStream member = new ByteArrayOutputStream(b.length / 4 + 64);
+        GZIPOutputStream gz = new GZIPOutputStream(member);
+        gz.write(b);
+        gz.close();
+        member.writeTo(out);
+    }
+
+    /**
+     * Collects the index entries in growable arrays. The sentences of each
+     * document are added before the document.
+     */
+    private static class IndexBuilder {
+
+        private String[] docIds = new String[1024];
+        private long[] offsets = new long[1024];
+        private int[] lengths = new int[1024];
+        private int[] firstSents = new int[1025];
+        private int size = 0;
+        private int[] sentIdxs = new int[1024];
+        private int[] sentOffsets = new int[1024];
+        private int[] sentLengths = new int[1024];
+        private int numSents = 0;
+
+        public void add(String docId, long offset, int length) {
+            if (size == docIds.length) {
+                int capacity = size * 2;
+                String[] newDocIds = new String[capacity];
+                System.arraycopy(docIds, 0, newDocIds, 0, size);
+                docIds = newDocIds;
+                long[] newOffsets = new long[capacity];
+                System.arraycopy(offsets, 0, newOffsets, 0, size);
+                offsets = newOffsets;
+                int[] newLengths = new int[capacity];
+                System.arraycopy(lengths, 0, newLengths, 0, size);
+                lengths = newLengths;
+                int[] newFirstSents = new int[capacity + 1];
+                System.arraycopy(firstSents, 0, newFirstSents, 0, size + 1);
+                firstSents = newFirstSents;
+            }
+            docIds[size] = docId;
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+            firstSents[size] = numSents;
+        }
+
+        /**
+         * Adds a sentence of the next document, with its offset relative to
+         * the document.
+         */
+        public void addSent(int sentIdx, int offset, int length) {
+            if (numSents == sentIdxs.length) {
+                int capacity = numSents * 2;
+                int[] newSentIdxs = new int[capacity];
+                System.arraycopy(sentIdxs, 0, newSentIdxs, 0, numSents);
+                sentIdxs = newSentIdxs;
+                int[] newSentOffsets = new int[capacity];
+                System.arraycopy(sentOffsets, 0, newSentOffsets, 0, numSents);
+                sentOffsets = newSentOffsets;
+                int[] newSentLengths = new int[capacity];
+                System.arraycopy(sentLengths, 0, newSentLengths, 0, numSents);
+                sentLengths = newSentLengths;
+            }
+            sentIdxs[numSents] = sentIdx;
+            sentOffsets[numSents] = offset;
+            sentLengths[numSents] = length;
+            numSents++;
+        }
+
+        /**
+         * Gets the number of sentences added to the next document.
+         */
+        public int getNumSents() {
+            return numSents - firstSents[size];
+        }
+
+        public String[] getDocIds() {
+            String[] a = new String[size];
+            System.arraycopy(docIds, 0, a, 0, size);
+            return a;
+        }
+
+        public long[] getOffsets() {
+            long[] a = new long[size];
+            System.arraycopy(offsets, 0, a, 0, size);
+            return a;
+        }
+
+        public int[] getLengths() {
+            int[] a = new int[size];
+            System.arraycopy(lengths, 0, a, 0, size);
+            return a;
+        }
+
+        public int[] getFirstSents() {
+            int[] a = new int[size + 1];
+            System.arraycopy(firstSents, 0, a, 0, size + 1);
+            return a;
+        }
+
+        public int[] getSentIdxs() {
+            int[] a = new int[numSents];
+            System.arraycopy(sentIdxs, 0, a, 0, numSents);
+            return a;
+        }
+
+        public int[] getSentOffsets() {
+            int[] a = new int[numSents];
+            System.arraycopy(sentOffsets, 0, a, 0, numSents);
+            return a;
+        }
+
+        public int[] getSentLengths() {
+            int[] a = new int[numSents];
+            System.arraycopy(sentLengths, 0, a, 0, numSents);
+            return a;
+        }
+
+    }
+
+    /**
+     * An OutputStream which counts the bytes written through it.
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+        String usage = "\nusage: java " + AgigaDocIndex.class.getName()
+                + " [-no-sentences] <input .xml.gz file> <output .xml.gz file>"
+                + "\n  Writes a copy of the input file with separate gzip members for each document"
+                + "\n  and sentence, and its index to the output file plus " + INDEX_SUFFIX
+                + "\n  -no-sentences: Only index the documents, which gives a smaller file";
+        boolean indexSentences = true;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-no-sentences")) {
+                indexSentences = false;
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, 2);
+        create(positional.get(0), positional.get(1), indexSentences).close();
+    }
+
+}
@@ -0,0 +1,159 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * AgigaDocument provides access to the AgigaSentence and AgigaCoref objects,
+ * the document id, and the document type. This class also provides a method for
+ * writing out the coreference resolution annotations in a MUC style SGML output
+ * format.
+ * 
+ * @author mgormley
+ *
+ */
+public class AgigaDocument implements Serializable {
+
+	public static final long serialVersionUID = 1;
+
+    private static Logger log = Logger.getLogger(AgigaDocument.class.getName());
+
+    private String docId;
+    private String type;
+    private String headline;
+    private String dateline;
+    private List<AgigaSentence> sents;
+    private List<AgigaCoref> corefs;
+    private AgigaPrefs prefs;
+    private AgigaFingerprint fingerprint;
+
+    public AgigaDocument(AgigaPrefs prefs) {
+        this.prefs = prefs;
+        sents = new ArrayList<AgigaSentence>();
+        if (prefs.readCoref) {
+            corefs = new ArrayList<AgigaCoref>();
+        }
+    }
+
+    public void add(AgigaSentence agigaSent) {
+        sents.add(agigaSent);
+        fingerprint = null;
+    }
+
+    public void setCorefs(List<AgigaCoref> corefs) {
+        this.corefs = corefs;
+    }
+
+    public List<AgigaSentence> getSents() {
+        return sents;
+    }
+
+	public void setSents(List<AgigaSentence> sents) {
+		this.sents = sents;
+		fingerprint = null;
+	}
+
+    /**
+     * Gets the fingerprint of the words of the document, computed once from
+     * the fingerprints of its sentences.
+     */
+    public AgigaFingerprint getFingerprint() {
+        require(prefs.readWord, "AgigaPrefs.readWord must be true for getFingerprint()");
+        if (fingerprint == null) {
+            List<AgigaFingerprint> sentFingerprints = new ArrayList<AgigaFingerprint>(sents.size());
+            for (AgigaSentence sent : sents) {
+                sentFingerprints.add(sent.getFingerprint());
+            }
+            fingerprint = AgigaFingerprint.combine(sentFingerprints);
+        }
+        return fingerprint;
+    }
+
+    public List<AgigaCoref> getCorefs() {
+        if (prefs.recorder != null) {
+            prefs.recorder.coref = true;
+        }
+        return corefs;
+    }
+
+    public AgigaPrefs getPrefs() {
+        return prefs;
+    }
+    
+    public String getDocId() {
+        return docId;
+    }
+
+    public void setDocId(String id) {
+        this.docId = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+        
+    public String getHeadline() {
+        if (prefs.recorder != null) {
+            prefs.recorder.headline = true;
+        }
+        return headline;
+    }
+
+    public void setHeadline(String headline) {
+        this.headline = headline;
+    }
+
+    public String getDateline() {
+        if (prefs.recorder != null) {
+            prefs.recorder.dateline = true;
+        }
+        return dateline;
+    }
+
+    public void setDateline(String dateline) {
+        this.dateline = dateline;
+    }
+
+    /**
+     * Writes the coreference resolution annotations in a MUC style SGML
+     * output format with a new AgigaMucWriter. The document is not modified,
+     * so this may be called by several threads at once.
+     */
+    public void writeMucStyleCoref(Writer writer) throws IOException {
+        require(prefs.readWord && prefs.readCoref, 
+                "AgigaPrefs.{readWord,readCoref} must be true for writeMucStyleCoref()");
+        new AgigaMucWriter().write(this, writer);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(other == null) return false;
+        if(other instanceof AgigaDocument) {
+            AgigaDocument o = (AgigaDocument) other;
+            return Util.safeEquals(docId, o.docId)
+                    && Util.safeEquals(type, o.type)
+                    && Util.safeEquals(headline, o.headline)
+                    && Util.safeEquals(dateline, o.dateline)
+                    && Util.safeEquals(sents, o.sents)
+                    && Util.safeEquals(corefs, o.corefs);
+                    //&& Util.safeEquals(prefs, o.prefs);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Util.safeHashCode(docId, type, headline, dateline, sents, corefs, prefs);
+    }
+
+}
@@ -15,7 +15,6 @@ import java.util.logging.Logger;
 import com.ximpleware.AutoPilot;
 import com.ximpleware.NavException;
 import com.ximpleware.ParseException;
-import com.ximpleware.PilotException;
 import com.ximpleware.VTDGen;
 import com.ximpleware.VTDNav;
 
@@ -171,7 +170,7 @@ class AgigaDocumentReader implements Iterable<AgigaDocument>, Iterator<AgigaDocu
     /**
      * Assumes the position of vn is at a "DOC" tag
      */
-    private List<AgigaCoref> parseCorefs(VTDNav vn) throws PilotException, NavException {
+    private List<AgigaCoref> parseCorefs(VTDNav vn) throws NavException {
         require (vn.matchElement(AgigaConstants.DOC));
         
         List<AgigaCoref> agigaCorefs = new ArrayList<AgigaCoref>();
@@ -181,23 +180,26 @@ class AgigaDocumentReader implements Iterable<AgigaDocument>, Iterator<AgigaDocu
             return agigaCorefs;
         }
 
-        // Loop through each token
-        AutoPilot corefAp = new AutoPilot(vn);
-        corefAp.selectElement(AgigaConstants.COREFERENCE);
-        while (corefAp.iterate()) {
-            AgigaCoref coref = parseCoref(vn.cloneNav());
+        // Loop through each coreference chain
+        boolean hasCoref = vn.toElement(VTDNav.FC, AgigaConstants.COREFERENCE);
+        while (hasCoref) {
+            AgigaCoref coref = parseCoref(vn);
             agigaCorefs.add(coref);
+            hasCoref = vn.toElement(VTDNav.NS, AgigaConstants.COREFERENCE);
         }
         return agigaCorefs;
     }
     
+    /**
+     * Assumes the position of vn is at a "coreference" tag, and leaves it there.
+     */
     private AgigaCoref parseCoref(VTDNav vn) throws NavException {
         require (vn.matchElement(AgigaConstants.COREFERENCE));
         AgigaCoref coref = new AgigaCoref();
         
-        AutoPilot mentionAp = new AutoPilot(vn);
-        mentionAp.selectElement(AgigaConstants.MENTION);
-        while (mentionAp.iterate()) {
+        vn.push();
+        boolean hasMention = vn.toElement(VTDNav.FC, AgigaConstants.MENTION);
+        while (hasMention) {
             int repInt = vn.getAttrVal(AgigaConstants.MENTION_REPRESENTATIVE);
             boolean isRepresentative = false;
             if (repInt != -1) {
@@ -220,7 +222,11 @@ class AgigaDocumentReader implements Iterable<AgigaDocument>, Iterator<AgigaDocu
 
             AgigaMention agigaMention = new AgigaMention(isRepresentative, sentenceId, startTokenId, endTokenId, headTokenId);
             coref.add(agigaMention);
+
+            require(vn.toElement(VTDNav.PARENT));
+            hasMention = vn.toElement(VTDNav.NS, AgigaConstants.MENTION);
         }
+        vn.pop();
         return coref;
     }
 
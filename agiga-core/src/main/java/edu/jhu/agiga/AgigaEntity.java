@@ -0,0 +1,100 @@
+package edu.jhu.agiga;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * An entity of a document: one coreference chain, resolved to the text of
+ * its representative mention, the spans of its mentions, the lemma of the
+ * head of each mention and its NER type. AgigaEntityStore creates these from
+ * the AgigaCoref objects of each document and stores them by doc id.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaEntity implements Serializable {
+
+    public static final long serialVersionUID = 1;
+
+    private String docId;
+    private int corefIdx;
+    private String text;
+    private String nerType;
+    private List<AgigaMention> mentions;
+    private List<String> headLemmas;
+
+    public AgigaEntity(String docId, int corefIdx, String text, String nerType, List<AgigaMention> mentions,
+            List<String> headLemmas) {
+        this.docId = docId;
+        this.corefIdx = corefIdx;
+        this.text = text;
+        this.nerType = nerType;
+        this.mentions = mentions;
+        this.headLemmas = headLemmas;
+    }
+
+    public String getDocId() {
+        return docId;
+    }
+
+    /**
+     * Gets the position of the entity's chain in the document's corefs.
+     */
+    public int getCorefIdx() {
+        return corefIdx;
+    }
+
+    /**
+     * Gets the words of the representative mention, separated by spaces.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the most common NER tag, other than O, of the heads of the
+     * mentions, or O if there is none.
+     */
+    public String getNerType() {
+        return nerType;
+    }
+
+    public List<AgigaMention> getMentions() {
+        return mentions;
+    }
+
+    /**
+     * Gets the lemma of the head of each mention, in the order of
+     * getMentions().
+     */
+    public List<String> getHeadLemmas() {
+        return headLemmas;
+    }
+
+    @Override
+    public String toString() {
+        return "AgigaEntity [docId=" + docId + ", corefIdx=" + corefIdx + ", text=" + text + ", nerType="
+                + nerType + ", headLemmas=" + headLemmas + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == null) return false;
+        if (other instanceof AgigaEntity) {
+            AgigaEntity o = (AgigaEntity) other;
+            return Util.safeEquals(docId, o.docId)
+                && corefIdx == o.corefIdx
+                && Util.safeEquals(text, o.text)
+                && Util.safeEquals(nerType, o.nerType)
+                && Util.safeEquals(mentions, o.mentions)
+                && Util.safeEquals(headLemmas, o.headLemmas);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Util.safeHashCode(docId, corefIdx, text, nerType, mentions, headLemmas);
+    }
+
+}
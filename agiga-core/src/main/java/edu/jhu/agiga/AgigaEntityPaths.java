@@ -0,0 +1,494 @@
+package edu.jhu.agiga;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * Finds the shortest dependency path between each pair of named entities in a
+ * sentence, e.g. for training relation extractors. A named entity is a run of
+ * tokens with the same NER tag, other than O, and its head is the rightmost
+ * token of the run whose governors are all outside of it. The path between
+ * two heads is written without the heads themselves, as the relations and
+ * the lemmas in between, e.g. "&lt;-nsubj- acquire -dobj-&gt;" for the path
+ * from the subject of acquire up to acquire and down to its object.
+ *
+ * An AgigaEntityPaths reuses its buffers from one sentence to the next, so it
+ * allocates little beyond the path strings, and it must not be used by
+ * several threads at once; generate() uses one for each file.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaEntityPaths {
+
+    private static Logger log = Logger.getLogger(AgigaEntityPaths.class.getName());
+
+    public static final String PATHS_FILE = "paths.txt";
+
+    /**
+     * A named entity in a sentence. Spans are reused, so their fields are only
+     * valid during the call to the PathListener.
+     */
+    public static class Span {
+
+        private int start;
+        private int end;
+        private int head;
+        private String tag;
+
+        /**
+         * Gets the index of the first token of the span.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Gets the index after the last token of the span.
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * Gets the index of the head token of the span.
+         */
+        public int getHead() {
+            return head;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * Gets the words of the span, separated by spaces.
+         */
+        public String getText(List<AgigaToken> tokens) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                sb.append(i == start ? "" : " ").append(tokens.get(i).getWord());
+            }
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * Receives the path between each pair of named entities, the source
+     * entity being the first in the sentence.
+     */
+    public interface PathListener {
+        public void path(AgigaSentence sent, Span source, Span target, CharSequence path) throws IOException;
+    }
+
+    private DependencyForm form = DependencyForm.COL_CCPROC_DEPS;
+    private boolean useLemmas = true;
+    private int maxPathLength = 4;
+
+    // The named entities of the current sentence.
+    private Span[] spans = new Span[16];
+    private int numSpans;
+    // The dependency graph of the current sentence, with both directions of
+    // each edge: the edges of token i are adjStart[i] to adjStart[i+1].
+    private int[] adjStart = new int[257];
+    private int[] adjTo = new int[512];
+    private String[] adjRel = new String[512];
+    private boolean[] adjUp = new boolean[512];
+    // The other direction of each edge.
+    private int[] adjReverse = new int[512];
+    // The breadth-first search from the current source head.
+    private int[] dist = new int[256];
+    private int[] parentEdge = new int[256];
+    private int[] queue = new int[256];
+    private int[] pathEdges = new int[16];
+    private StringBuilder path = new StringBuilder();
+
+    /**
+     * Sets the dependency form. The default is the collapsed and propagated
+     * dependencies.
+     */
+    public void setForm(DependencyForm form) {
+        this.form = form;
+    }
+
+    /**
+     * Sets whether the paths have the lemmas, rather than the words, of the
+     * tokens in between the heads. The default is true.
+     */
+    public void setUseLemmas(boolean useLemmas) {
+        this.useLemmas = useLemmas;
+    }
+
+    /**
+     * Sets the maximum number of edges on a path. Pairs whose heads are
+     * further apart are left out. The default is 4.
+     */
+    public void setMaxPathLength(int maxPathLength) {
+        this.maxPathLength = maxPathLength;
+    }
+
+    /**
+     * Gets the prefs needed to find the paths.
+     */
+    public AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(true);
+        prefs.setLemma(useLemmas);
+        prefs.setNer(true);
+        prefs.setDeps(form);
+        return prefs;
+    }
+
+    /**
+     * Creates an AgigaEntityPaths with the same settings and its own buffers.
+     */
+    public AgigaEntityPaths copy() {
+        AgigaEntityPaths paths = new AgigaEntityPaths();
+        paths.form = form;
+        paths.useLemmas = useLemmas;
+        paths.maxPathLength = maxPathLength;
+        return paths;
+    }
+
+    /**
+     * Finds the paths between the named entities of a sentence, read with the
+     * prefs from getPrefs().
+     *
+     * @return The number of paths given to the listener.
+     */
+    public int findPaths(AgigaSentence sent, PathListener listener) throws IOException {
+        List<AgigaToken> tokens = sent.getTokens();
+        int n = tokens.size();
+        findSpans(tokens);
+        if (numSpans < 2) {
+            return 0;
+        }
+        buildGraph(sent.getAgigaDeps(form), n);
+        findHeads();
+        int numPaths = 0;
+        for (int s = 0; s < numSpans - 1; s++) {
+            Span source = spans[s];
+            search(source.head, n);
+            for (int t = s + 1; t < numSpans; t++) {
+                Span target = spans[t];
+                if (target.head == source.head || dist[target.head] < 0) {
+                    continue;
+                }
+                writePath(tokens, target.head);
+                listener.path(sent, source, target, path);
+                numPaths++;
+            }
+        }
+        return numPaths;
+    }
+
+    private void findSpans(List<AgigaToken> tokens) {
+        numSpans = 0;
+        for (int i = 0; i < tokens.size();) {
+            String tag = tokens.get(i).getNerTag();
+            int end = i + 1;
+            if (tag == null || tag.equals("O")) {
+                i = end;
+                continue;
+            }
+            while (end < tokens.size() && tag.equals(tokens.get(end).getNerTag())) {
+                end++;
+            }
+            if (numSpans == spans.length) {
+                spans = Arrays.copyOf(spans, 2 * numSpans);
+            }
+            if (spans[numSpans] == null) {
+                spans[numSpans] = new Span();
+            }
+            Span span = spans[numSpans++];
+            span.start = i;
+            span.end = end;
+            span.tag = tag;
+            i = end;
+        }
+    }
+
+    private void buildGraph(List<AgigaTypedDependency> deps, int n) {
+        if (n >= adjStart.length) {
+            int size = Math.max(n + 1, 2 * adjStart.length);
+            adjStart = new int[size];
+            dist = new int[size];
+            parentEdge = new int[size];
+            queue = new int[size];
+        }
+        if (2 * deps.size() > adjTo.length) {
+            int size = Math.max(2 * deps.size(), 2 * adjTo.length);
+            adjTo = new int[size];
+            adjRel = new String[size];
+            adjUp = new boolean[size];
+            adjReverse = new int[size];
+        }
+        // Count the edges of each token, then place them.
+        Arrays.fill(adjStart, 0, n + 1, 0);
+        for (AgigaTypedDependency dep : deps) {
+            if (inRange(dep.getGovIdx(), n) && inRange(dep.getDepIdx(), n)) {
+                adjStart[dep.getGovIdx() + 1]++;
+                adjStart[dep.getDepIdx() + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            adjStart[i + 1] += adjStart[i];
+        }
+        // Use the entries of dist as the next free slot of each token.
+        System.arraycopy(adjStart, 0, dist, 0, n);
+        for (AgigaTypedDependency dep : deps) {
+            int gov = dep.getGovIdx();
+            int dependent = dep.getDepIdx();
+            if (inRange(gov, n) && inRange(dependent, n)) {
+                int down = dist[gov]++;
+                int up = dist[dependent]++;
+                adjTo[down] = dependent;
+                adjRel[down] = dep.getType();
+                adjUp[down] = false;
+                adjReverse[down] = up;
+                adjTo[up] = gov;
+                adjRel[up] = dep.getType();
+                adjUp[up] = true;
+                adjReverse[up] = down;
+            }
+        }
+    }
+
+    private void findHeads() {
+        for (int s = 0; s < numSpans; s++) {
+            Span span = spans[s];
+            span.head = span.end - 1;
+            for (int i = span.end - 1; i >= span.start; i--) {
+                boolean hasEdge = adjStart[i + 1] > adjStart[i];
+                boolean inner = false;
+                for (int e = adjStart[i]; e < adjStart[i + 1]; e++) {
+                    if (adjUp[e] && adjTo[e] >= span.start && adjTo[e] < span.end) {
+                        inner = true;
+                        break;
+                    }
+                }
+                if (hasEdge && !inner) {
+                    span.head = i;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the shortest paths of at most maxPathLength edges from the source
+     * token. Afterward, dist[i] is the length of the path to token i, or -1 if
+     * there is none, and parentEdge[i] is its last edge, seen from token i.
+     */
+    private void search(int source, int n) {
+        Arrays.fill(dist, 0, n, -1);
+        dist[source] = 0;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            if (dist[u] == maxPathLength) {
+                continue;
+            }
+            for (int e = adjStart[u]; e < adjStart[u + 1]; e++) {
+                int v = adjTo[e];
+                if (dist[v] < 0) {
+                    dist[v] = dist[u] + 1;
+                    parentEdge[v] = adjReverse[e];
+                    queue[tail++] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the path from the source of the last search to the target into
+     * the path buffer.
+     */
+    private void writePath(List<AgigaToken> tokens, int target) {
+        // Collect the edges back from the target, each pointing toward the
+        // source.
+        int len = dist[target];
+        if (len > pathEdges.length) {
+            pathEdges = new int[Math.max(len, 2 * pathEdges.length)];
+        }
+        int v = target;
+        for (int k = len - 1; k >= 0; k--) {
+            int e = parentEdge[v];
+            pathEdges[k] = e;
+            v = adjTo[e];
+        }
+        path.setLength(0);
+        for (int k = 0; k < len; k++) {
+            int e = pathEdges[k];
+            if (k > 0) {
+                // The token at which this edge starts.
+                AgigaToken tok = tokens.get(adjTo[e]);
+                path.append(' ').append(useLemmas ? tok.getLemma() : tok.getWord()).append(' ');
+            }
+            // The edge is held by the next token on the path, so it goes down
+            // to that token if it points up from it.
+            if (adjUp[e]) {
+                path.append('-').append(adjRel[e]).append("->");
+            } else {
+                path.append("<-").append(adjRel[e]).append('-');
+            }
+        }
+    }
+
+    private static boolean inRange(int idx, int n) {
+        return idx >= 0 && idx < n;
+    }
+
+    /**
+     * Writes the paths of each of the input files as a shard, NAME.paths, in
+     * the output directory, with one line for each pair of named entities:
+     * the doc id, the sentence index, the text and tag of each entity, and the
+     * path. If useIds is true, the paths are written as ids, and the paths
+     * are listed with their counts on the line of their id in paths.txt; the
+     * ids are assigned as the paths are found, so they can differ between
+     * runs.
+     *
+     * @return The number of paths written.
+     */
+    public long generate(List<String> inputFiles, final String outputDir, boolean useIds, int numThreads)
+            throws IOException {
+        new File(outputDir).mkdirs();
+        final AgigaVocabulary pathIds = useIds ? new AgigaVocabulary() : null;
+        final ShardWriter total = new ShardWriter(null, pathIds);
+        AgigaParallel.forEachFile(inputFiles, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String file) throws IOException {
+                log.info("Finding paths in file: " + file);
+                String outFile = new File(outputDir, AgigaTokenIdExporter.getShardName(file) + ".paths").getPath();
+                ShardWriter shard = new ShardWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                        outFile), "UTF-8"), 1 << 16), pathIds);
+                StreamingDocumentReader reader = new StreamingDocumentReader(file, getPrefs());
+                AgigaEntityPaths paths = copy();
+                try {
+                    reader.setQuarantine(AgigaQuarantine.SKIP);
+                    for (AgigaDocument doc : reader) {
+                        shard.docId = doc.getDocId();
+                        for (AgigaSentence sent : doc.getSents()) {
+                            paths.findPaths(sent, shard);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                    shard.writer.close();
+                }
+                total.merge(shard);
+            }
+        });
+        if (useIds) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputDir,
+                    PATHS_FILE)), "UTF-8"));
+            try {
+                for (int id = 0; id < pathIds.size(); id++) {
+                    writer.write(pathIds.getString(id) + "\t" + total.counts[id] + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+        }
+        return total.numPaths;
+    }
+
+    /**
+     * Writes the paths of one file, and counts them.
+     */
+    private static class ShardWriter implements PathListener {
+
+        private Writer writer;
+        private AgigaVocabulary pathIds;
+        private String docId;
+        private long numPaths = 0;
+        // The number of times each path id was written.
+        private long[] counts = new long[1024];
+
+        public ShardWriter(Writer writer, AgigaVocabulary pathIds) {
+            this.writer = writer;
+            this.pathIds = pathIds;
+        }
+
+        @Override
+        public void path(AgigaSentence sent, Span source, Span target, CharSequence path) throws IOException {
+            List<AgigaToken> tokens = sent.getTokens();
+            writer.write(docId + "\t" + sent.getSentIdx() + "\t" + source.getText(tokens) + "\t" + source.getTag()
+                    + "\t" + target.getText(tokens) + "\t" + target.getTag() + "\t");
+            if (pathIds != null) {
+                int id = pathIds.getId(path.toString());
+                if (id >= counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(id + 1, 2 * counts.length));
+                }
+                counts[id]++;
+                writer.write(Integer.toString(id));
+            } else {
+                writer.append(path);
+            }
+            writer.write("\n");
+            numPaths++;
+        }
+
+        public synchronized void merge(ShardWriter other) {
+            numPaths += other.numPaths;
+            if (other.counts.length > counts.length) {
+                counts = Arrays.copyOf(counts, other.counts.length);
+            }
+            for (int id = 0; id < other.counts.length; id++) {
+                counts[id] += other.counts[id];
+            }
+        }
+
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaEntityPaths.class.getName()
+                + " [options] <output directory> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -form <form>             (Dependency form, default collapsed-ccprocessed-dependencies)"
+                + "\n    -words                   (Write the words on the paths instead of the lemmas)"
+                + "\n    -max-length <number>     (Maximum number of edges on a path, default 4)"
+                + "\n    -ids                     (Write the paths as ids, listed in " + PATHS_FILE + ")"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  Writes the dependency path between each pair of named entities in a sentence.";
+        AgigaEntityPaths paths = new AgigaEntityPaths();
+        boolean useIds = false;
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-form")) {
+                paths.setForm(opts.getForm());
+            } else if (opt.equals("-words")) {
+                paths.setUseLemmas(false);
+            } else if (opt.equals("-max-length")) {
+                paths.setMaxPathLength(opts.getInt());
+            } else if (opt.equals("-ids")) {
+                useIds = true;
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        long numPaths = paths.generate(positional.subList(1, positional.size()), positional.get(0), useIds,
+                numThreads);
+        log.info("Wrote " + numPaths + " paths");
+    }
+
+}
@@ -0,0 +1,807 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaDocIndex.CountingOutputStream;
+
+/**
+ * A store of the entities of a corpus, as AgigaEntity objects, which can be
+ * looked up by doc id, or by a word or lemma that they mention. An entity
+ * mentions the lowercased lemma of the head of each of its mentions and the
+ * lowercased words of its representative mention, so that "obama" finds
+ * every chain with "Barack Obama" as its representative, and "he" every chain
+ * with a mention headed by "he".
+ *
+ * create() reads the input files in parallel, one file per thread, resolving
+ * the chains of each document and writing each file's entities and terms to
+ * a temporary segment; the segments are then merged in the order of the
+ * input files. The store is a single file: the entities of each document,
+ * the postings of each term as delta-encoded variable-length entity ids, a
+ * directory of the documents and a dictionary of the terms. The directory
+ * and the dictionary are kept in memory, and the store may be read by several
+ * threads at once.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaEntityStore {
+
+    private static Logger log = Logger.getLogger(AgigaEntityStore.class.getName());
+
+    // "AGES"
+    private static final int MAGIC = 0x41474553;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 4 + 4;
+    // The trailer holds the start of the postings, the directory and the
+    // dictionary, and MAGIC.
+    private static final int TRAILER_LENGTH = 8 + 8 + 8 + 4;
+
+    /** Longer representative mentions are cut to this many characters. */
+    public static final int MAX_TEXT_LENGTH = 1024;
+
+    private String storeFile;
+    private FileChannel channel;
+    private String[] docIds;
+    // The offset of the entities of each document, and after the last one.
+    private long[] docOffsets;
+    // The id of the first entity of each document, and the number of
+    // entities.
+    private long[] firstEntityIds;
+    private Map<String, Integer> docIdxs;
+    private String[] terms;
+    // The offset of the postings of each term, and after the last one.
+    private long[] termOffsets;
+    private long[] termCounts;
+
+    private AgigaEntityStore(String storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Gets the prefs needed by resolve().
+     */
+    public static AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(true);
+        prefs.setLemma(true);
+        prefs.setNer(true);
+        prefs.setCoref(true);
+        return prefs;
+    }
+
+    /**
+     * Resolves the coreference chains of a document, read with the prefs from
+     * getPrefs(), to entities. Mentions outside of the document's sentences
+     * are left out.
+     */
+    public static List<AgigaEntity> resolve(AgigaDocument doc) {
+        List<AgigaCoref> corefs = doc.getCorefs();
+        List<AgigaEntity> entities = new ArrayList<AgigaEntity>(corefs.size());
+        List<AgigaSentence> sents = doc.getSents();
+        Map<String, Integer> nerCounts = new HashMap<String, Integer>();
+        for (int c = 0; c < corefs.size(); c++) {
+            List<AgigaMention> mentions = new ArrayList<AgigaMention>();
+            List<String> headLemmas = new ArrayList<String>();
+            AgigaMention rep = null;
+            String nerType = "O";
+            int nerCount = 0;
+            nerCounts.clear();
+            for (AgigaMention mention : corefs.get(c).getMentions()) {
+                if (mention.getSentenceIdx() < 0 || mention.getSentenceIdx() >= sents.size()) {
+                    continue;
+                }
+                List<AgigaToken> tokens = sents.get(mention.getSentenceIdx()).getTokens();
+                if (mention.getStartTokenIdx() < 0 || mention.getEndTokenIdx() > tokens.size()
+                        || mention.getStartTokenIdx() >= mention.getEndTokenIdx()
+                        || mention.getHeadTokenIdx() < 0 || mention.getHeadTokenIdx() >= tokens.size()) {
+                    continue;
+                }
+                mentions.add(mention);
+                AgigaToken head = tokens.get(mention.getHeadTokenIdx());
+                headLemmas.add(head.getLemma());
+                if (rep == null || (mention.isRepresentative() && !rep.isRepresentative())) {
+                    rep = mention;
+                }
+                String tag = head.getNerTag();
+                if (tag != null && !tag.equals("O")) {
+                    Integer count = nerCounts.get(tag);
+                    count = count == null ? 1 : count + 1;
+                    nerCounts.put(tag, count);
+                    // Ties go to the tag seen first.
+                    if (count > nerCount) {
+                        nerType = tag;
+                        nerCount = count;
+                    }
+                }
+            }
+            String text = "";
+            if (rep != null) {
+                StringBuilder sb = new StringBuilder();
+                List<AgigaToken> tokens = sents.get(rep.getSentenceIdx()).getTokens();
+                for (int i = rep.getStartTokenIdx(); i < rep.getEndTokenIdx() && sb.length() < MAX_TEXT_LENGTH; i++) {
+                    sb.append(i == rep.getStartTokenIdx() ? "" : " ").append(tokens.get(i).getWord());
+                }
+                text = sb.length() > MAX_TEXT_LENGTH ? sb.substring(0, MAX_TEXT_LENGTH) : sb.toString();
+            }
+            entities.add(new AgigaEntity(doc.getDocId(), c, text, nerType, mentions, headLemmas));
+        }
+        return entities;
+    }
+
+    /**
+     * Gets the terms which an entity mentions, without repeats.
+     */
+    static List<String> getTerms(AgigaEntity entity) {
+        List<String> terms = new ArrayList<String>();
+        for (String lemma : entity.getHeadLemmas()) {
+            addTerm(terms, lemma);
+        }
+        for (String word : entity.getText().split(" ")) {
+            addTerm(terms, word);
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String str) {
+        if (str.length() == 0 || str.length() > AgigaInvertedIndex.MAX_TERM_LENGTH) {
+            return;
+        }
+        String term = str.toLowerCase(Locale.ENGLISH);
+        if (!terms.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    /**
+     * Resolves the entities of the input files, using numThreads threads,
+     * and writes them to storeFile. Documents which can not be read are
+     * skipped, with a warning.
+     *
+     * @return The store, opened for reading.
+     */
+    public static AgigaEntityStore create(List<String> inputFiles, String storeFile, int numThreads) {
+        final Map<String, Integer> fileIdxs = new HashMap<String, Integer>();
+        final Segment[] segments = new Segment[inputFiles.size()];
+        for (int i = 0; i < inputFiles.size(); i++) {
+            require(fileIdxs.put(inputFiles.get(i), i) == null, "Input file given twice: " + inputFiles.get(i));
+            segments[i] = new Segment(storeFile + ".seg" + i);
+        }
+        try {
+            AgigaParallel.forEachFile(inputFiles, numThreads, new AgigaParallel.FileTask() {
+                @Override
+                public void run(String file) throws IOException {
+                    segments[fileIdxs.get(file)].write(file);
+                }
+            });
+            log.info("Merging " + segments.length + " segments into " + storeFile);
+            merge(segments, storeFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (Segment segment : segments) {
+                new File(segment.file).delete();
+                new File(segment.file + ".terms").delete();
+            }
+        }
+        return read(storeFile);
+    }
+
+    /**
+     * The entities and terms of one input file. The entities are written to
+     * the segment file as in the store, and the terms, in order, with the
+     * ids of their entities within the file, to the segment file plus
+     * ".terms".
+     */
+    private static class Segment {
+
+        private String file;
+        private List<String> docIds = new ArrayList<String>();
+        // The offset of each document in the segment, and after the last.
+        private long[] docOffsets = new long[1024];
+        private int[] numEntities = new int[1024];
+        private long numFileEntities = 0;
+
+        public Segment(String file) {
+            this.file = file;
+        }
+
+        public void write(String inputFile) throws IOException {
+            log.info("Storing the entities of file: " + inputFile);
+            Map<String, Postings> terms = new HashMap<String, Postings>();
+            CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    file), 1 << 16));
+            DataOutputStream out = new DataOutputStream(counting);
+            StreamingDocumentReader reader = new StreamingDocumentReader(inputFile, getPrefs());
+            try {
+                reader.setQuarantine(AgigaQuarantine.SKIP);
+                for (AgigaDocument doc : reader) {
+                    int d = docIds.size();
+                    if (d + 1 >= docOffsets.length) {
+                        docOffsets = Arrays.copyOf(docOffsets, 2 * docOffsets.length);
+                        numEntities = Arrays.copyOf(numEntities, 2 * numEntities.length);
+                    }
+                    docIds.add(doc.getDocId());
+                    docOffsets[d] = counting.getCount();
+                    List<AgigaEntity> entities = resolve(doc);
+                    numEntities[d] = entities.size();
+                    for (AgigaEntity entity : entities) {
+                        writeEntity(out, entity);
+                        for (String term : getTerms(entity)) {
+                            Postings postings = terms.get(term);
+                            if (postings == null) {
+                                postings = new Postings();
+                                terms.put(term, postings);
+                            }
+                            postings.add(numFileEntities);
+                        }
+                        numFileEntities++;
+                    }
+                }
+                out.flush();
+                docOffsets[docIds.size()] = counting.getCount();
+            } finally {
+                reader.close();
+                out.close();
+            }
+            writeTerms(terms);
+        }
+
+        private void writeTerms(Map<String, Postings> terms) throws IOException {
+            List<String> sorted = new ArrayList<String>(terms.keySet());
+            Collections.sort(sorted);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file
+                    + ".terms"), 1 << 16));
+            try {
+                out.writeInt(sorted.size());
+                for (String term : sorted) {
+                    Postings postings = terms.get(term);
+                    out.writeUTF(term);
+                    AgigaInvertedIndex.writeVarint(out, postings.numIds);
+                    AgigaInvertedIndex.writeVarint(out, postings.size);
+                    out.write(postings.buf, 0, postings.size);
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+    }
+
+    /**
+     * The ids of the entities which mention one term, in increasing order, as
+     * variable-length changes from one id to the next.
+     */
+    private static class Postings {
+
+        private byte[] buf = new byte[8];
+        private int size = 0;
+        private long numIds = 0;
+        private long lastId = 0;
+
+        public void add(long id) {
+            long value = id - lastId;
+            if (size + 10 > buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            while ((value & ~0x7fL) != 0) {
+                buf[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+            lastId = id;
+            numIds++;
+        }
+
+    }
+
+    /**
+     * Reads the terms of a segment in order.
+     */
+    private static class TermReader {
+
+        private DataInputStream in;
+        private int fileIdx;
+        private long firstEntityId;
+        private int remaining;
+        private String term;
+        private long numIds;
+        private byte[] postings;
+
+        public TermReader(String termFile, int fileIdx, long firstEntityId) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(termFile), 1 << 16));
+            this.fileIdx = fileIdx;
+            this.firstEntityId = firstEntityId;
+            remaining = in.readInt();
+        }
+
+        public boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            term = in.readUTF();
+            numIds = AgigaInvertedIndex.readVarint(in);
+            postings = new byte[(int) AgigaInvertedIndex.readVarint(in)];
+            in.readFully(postings);
+            return true;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+    private static void merge(Segment[] segments, String storeFile) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(
+                storeFile), 1 << 16));
+        DataOutputStream out = new DataOutputStream(counting);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            // The entities, in the order of the files.
+            long[] firstEntityIds = new long[segments.length + 1];
+            long[] segmentOffsets = new long[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                segmentOffsets[i] = counting.getCount();
+                InputStream in = new FileInputStream(segments[i].file);
+                try {
+                    byte[] b = new byte[1 << 16];
+                    int n;
+                    while ((n = in.read(b)) != -1) {
+                        out.write(b, 0, n);
+                    }
+                } finally {
+                    in.close();
+                }
+                firstEntityIds[i + 1] = firstEntityIds[i] + segments[i].numFileEntities;
+            }
+
+            // The postings, merging the terms of the segments.
+            long postingsOffset = counting.getCount();
+            PriorityQueue<TermReader> queue = new PriorityQueue<TermReader>(Math.max(1, segments.length),
+                    new Comparator<TermReader>() {
+                        @Override
+                        public int compare(TermReader r1, TermReader r2) {
+                            int c = r1.term.compareTo(r2.term);
+                            if (c != 0) {
+                                return c;
+                            }
+                            return r1.fileIdx < r2.fileIdx ? -1 : (r1.fileIdx > r2.fileIdx ? 1 : 0);
+                        }
+                    });
+            for (int i = 0; i < segments.length; i++) {
+                TermReader reader = new TermReader(segments[i].file + ".terms", i, firstEntityIds[i]);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            List<String> terms = new ArrayList<String>();
+            List<Long> termOffsets = new ArrayList<Long>();
+            List<Long> termCounts = new ArrayList<Long>();
+            while (!queue.isEmpty()) {
+                String term = queue.peek().term;
+                terms.add(term);
+                termOffsets.add(counting.getCount());
+                long numIds = 0;
+                long lastId = 0;
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    TermReader reader = queue.poll();
+                    // Re-encode the ids, which are relative to the segment.
+                    ByteArrayInputStream in = new ByteArrayInputStream(reader.postings);
+                    long id = reader.firstEntityId;
+                    for (long k = 0; k < reader.numIds; k++) {
+                        id += AgigaInvertedIndex.readVarint(in);
+                        AgigaInvertedIndex.writeVarint(out, id - lastId);
+                        lastId = id;
+                    }
+                    numIds += reader.numIds;
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                termCounts.add(numIds);
+            }
+
+            // The directory of the documents.
+            long directoryOffset = counting.getCount();
+            int numDocs = 0;
+            for (Segment segment : segments) {
+                numDocs += segment.docIds.size();
+            }
+            out.writeInt(numDocs);
+            for (int i = 0; i < segments.length; i++) {
+                Segment segment = segments[i];
+                for (int d = 0; d < segment.docIds.size(); d++) {
+                    out.writeUTF(segment.docIds.get(d));
+                    out.writeLong(segmentOffsets[i] + segment.docOffsets[d]);
+                    out.writeInt(segment.numEntities[d]);
+                }
+            }
+
+            // The dictionary of the terms.
+            long dictOffset = counting.getCount();
+            out.writeInt(terms.size());
+            for (int t = 0; t < terms.size(); t++) {
+                out.writeUTF(terms.get(t));
+                out.writeLong(termOffsets.get(t));
+                out.writeLong(termCounts.get(t));
+            }
+            out.writeLong(postingsOffset);
+            out.writeLong(directoryOffset);
+            out.writeLong(dictOffset);
+            out.writeInt(MAGIC);
+            log.info("Stored " + firstEntityIds[segments.length] + " entities of " + numDocs + " documents and "
+                    + terms.size() + " terms in " + storeFile);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeEntity(DataOutputStream out, AgigaEntity entity) throws IOException {
+        out.writeUTF(entity.getText());
+        out.writeUTF(entity.getNerType());
+        List<AgigaMention> mentions = entity.getMentions();
+        AgigaInvertedIndex.writeVarint(out, mentions.size());
+        for (int m = 0; m < mentions.size(); m++) {
+            AgigaMention mention = mentions.get(m);
+            out.writeBoolean(mention.isRepresentative());
+            AgigaInvertedIndex.writeVarint(out, mention.getSentenceIdx());
+            AgigaInvertedIndex.writeVarint(out, mention.getStartTokenIdx());
+            AgigaInvertedIndex.writeVarint(out, mention.getEndTokenIdx());
+            AgigaInvertedIndex.writeVarint(out, mention.getHeadTokenIdx());
+            out.writeUTF(entity.getHeadLemmas().get(m));
+        }
+    }
+
+    private static AgigaEntity readEntity(DataInputStream in, String docId, int corefIdx) throws IOException {
+        String text = in.readUTF();
+        String nerType = in.readUTF();
+        int numMentions = (int) AgigaInvertedIndex.readVarint(in);
+        List<AgigaMention> mentions = new ArrayList<AgigaMention>(numMentions);
+        List<String> headLemmas = new ArrayList<String>(numMentions);
+        for (int m = 0; m < numMentions; m++) {
+            boolean isRepresentative = in.readBoolean();
+            int sentenceIdx = (int) AgigaInvertedIndex.readVarint(in);
+            int startTokenIdx = (int) AgigaInvertedIndex.readVarint(in);
+            int endTokenIdx = (int) AgigaInvertedIndex.readVarint(in);
+            int headTokenIdx = (int) AgigaInvertedIndex.readVarint(in);
+            mentions.add(new AgigaMention(isRepresentative, sentenceIdx, startTokenIdx, endTokenIdx, headTokenIdx));
+            headLemmas.add(in.readUTF());
+        }
+        return new AgigaEntity(docId, corefIdx, text, nerType, mentions, headLemmas);
+    }
+
+    /**
+     * Opens a store written by create().
+     */
+    public static AgigaEntityStore read(String storeFile) {
+        AgigaEntityStore store = new AgigaEntityStore(storeFile);
+        try {
+            store.channel = new RandomAccessFile(storeFile, "r").getChannel();
+            long length = store.channel.size();
+            require(length >= HEADER_LENGTH + TRAILER_LENGTH, "Not an entity store: " + storeFile);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(store.readBytes(0, HEADER_LENGTH)));
+            require(in.readInt() == MAGIC, "Not an entity store: " + storeFile);
+            int version = in.readInt();
+            require(version == VERSION, "Unsupported entity store version: " + version);
+            in = new DataInputStream(new ByteArrayInputStream(store.readBytes(length - TRAILER_LENGTH,
+                    TRAILER_LENGTH)));
+            long postingsOffset = in.readLong();
+            long directoryOffset = in.readLong();
+            long dictOffset = in.readLong();
+            require(in.readInt() == MAGIC, "Truncated entity store: " + storeFile);
+
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(store.channel
+                    .position(directoryOffset)), 1 << 16));
+            int numDocs = in.readInt();
+            store.docIds = new String[numDocs];
+            store.docOffsets = new long[numDocs + 1];
+            store.firstEntityIds = new long[numDocs + 1];
+            store.docIdxs = new HashMap<String, Integer>(numDocs * 2);
+            for (int d = 0; d < numDocs; d++) {
+                store.docIds[d] = in.readUTF();
+                store.docOffsets[d] = in.readLong();
+                store.firstEntityIds[d + 1] = store.firstEntityIds[d] + in.readInt();
+                if (!store.docIdxs.containsKey(store.docIds[d])) {
+                    store.docIdxs.put(store.docIds[d], d);
+                }
+            }
+            store.docOffsets[numDocs] = postingsOffset;
+
+            int numTerms = in.readInt();
+            store.terms = new String[numTerms];
+            store.termOffsets = new long[numTerms + 1];
+            store.termCounts = new long[numTerms];
+            for (int t = 0; t < numTerms; t++) {
+                store.terms[t] = in.readUTF();
+                store.termOffsets[t] = in.readLong();
+                store.termCounts[t] = in.readLong();
+            }
+            store.termOffsets[numTerms] = directoryOffset;
+            require(numDocs == 0 || store.docOffsets[0] >= HEADER_LENGTH, "Corrupt entity store: " + storeFile);
+            require(dictOffset <= length, "Corrupt entity store: " + storeFile);
+            return store;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] readBytes(long position, int length) throws IOException {
+        byte[] b = new byte[length];
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while (buf.hasRemaining()) {
+            // Positional reads do not change the channel's position, so they
+            // are safe for concurrent use.
+            int n = channel.read(buf, position + buf.position());
+            require(n >= 0, "Unexpected end of file: " + storeFile);
+        }
+        return b;
+    }
+
+    /**
+     * Closes the store.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getStoreFile() {
+        return storeFile;
+    }
+
+    public int getNumDocs() {
+        return docIds.length;
+    }
+
+    public String getDocId(int docIdx) {
+        return docIds[docIdx];
+    }
+
+    public long getNumEntities() {
+        return firstEntityIds[docIds.length];
+    }
+
+    public int getNumTerms() {
+        return terms.length;
+    }
+
+    /**
+     * Gets the entities of a document, or null if the document is not in the
+     * store.
+     */
+    public List<AgigaEntity> getEntities(String docId) {
+        Integer docIdx = docIdxs.get(docId);
+        return docIdx == null ? null : getEntities(docIdx);
+    }
+
+    /**
+     * Gets the entities of the document at position docIdx.
+     */
+    public List<AgigaEntity> getEntities(int docIdx) {
+        try {
+            int numEntities = (int) (firstEntityIds[docIdx + 1] - firstEntityIds[docIdx]);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBytes(docOffsets[docIdx],
+                    (int) (docOffsets[docIdx + 1] - docOffsets[docIdx]))));
+            List<AgigaEntity> entities = new ArrayList<AgigaEntity>(numEntities);
+            for (int c = 0; c < numEntities; c++) {
+                entities.add(readEntity(in, docIds[docIdx], c));
+            }
+            return entities;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets an entity by its id, which counts the entities of all of the
+     * documents in order.
+     */
+    public AgigaEntity getEntity(long entityId) {
+        int docIdx = getDocIdx(entityId);
+        return getEntities(docIdx).get((int) (entityId - firstEntityIds[docIdx]));
+    }
+
+    /**
+     * Gets the position of the document of an entity.
+     */
+    private int getDocIdx(long entityId) {
+        if (entityId < 0 || entityId >= getNumEntities()) {
+            throw new IndexOutOfBoundsException("No entity with id " + entityId);
+        }
+        // The last document whose first entity is at most entityId.
+        int lo = 0;
+        int hi = docIds.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (firstEntityIds[mid] <= entityId) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Gets the number of entities which mention a word or lemma.
+     */
+    public long getNumEntities(String term) {
+        int t = Arrays.binarySearch(terms, term.toLowerCase(Locale.ENGLISH));
+        return t < 0 ? 0 : termCounts[t];
+    }
+
+    /**
+     * Gets the ids of the entities which mention a word or lemma, in
+     * increasing order.
+     */
+    public long[] getEntityIds(String term) {
+        int t = Arrays.binarySearch(terms, term.toLowerCase(Locale.ENGLISH));
+        if (t < 0) {
+            return new long[0];
+        }
+        try {
+            long[] ids = new long[(int) termCounts[t]];
+            ByteArrayInputStream in = new ByteArrayInputStream(readBytes(termOffsets[t],
+                    (int) (termOffsets[t + 1] - termOffsets[t])));
+            long id = 0;
+            for (int k = 0; k < ids.length; k++) {
+                id += AgigaInvertedIndex.readVarint(in);
+                ids[k] = id;
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the entities which mention all of the words of a query, such as
+     * "obama" or "barack obama", in the order of their ids. Each word may be
+     * a word of the representative mention or a lemma of the head of any
+     * mention, and case is ignored.
+     */
+    public List<AgigaEntity> getEntitiesMentioning(String query) {
+        return getEntitiesMentioning(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets at most maxEntities of the entities which mention all of the words
+     * of a query.
+     */
+    public List<AgigaEntity> getEntitiesMentioning(String query, int maxEntities) {
+        long[] ids = null;
+        for (String term : query.trim().split("\\s+")) {
+            long[] termIds = getEntityIds(term);
+            ids = ids == null ? termIds : intersect(ids, termIds);
+        }
+        List<AgigaEntity> entities = new ArrayList<AgigaEntity>();
+        // Read the entities of each document once.
+        int lastDocIdx = -1;
+        List<AgigaEntity> docEntities = null;
+        for (int k = 0; k < ids.length && entities.size() < maxEntities; k++) {
+            int docIdx = getDocIdx(ids[k]);
+            if (docIdx != lastDocIdx) {
+                docEntities = getEntities(docIdx);
+                lastDocIdx = docIdx;
+            }
+            entities.add(docEntities.get((int) (ids[k] - firstEntityIds[docIdx])));
+        }
+        return entities;
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] c = new long[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                c[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(c, n);
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaEntityStore.class.getName()
+                + " -build [-threads <number>] <store file> <gzipped input file>..."
+                + "\n   or: java " + AgigaEntityStore.class.getName() + " [-limit <number>] <store file> <query>"
+                + "\n   or: java " + AgigaEntityStore.class.getName() + " -doc <store file> <doc id>"
+                + "\n  Queries print the entities which mention all of the words of the query, and -doc"
+                + "\n  the entities of a document: the doc id, the chain, the NER type, the number of"
+                + "\n  mentions, the representative mention and the head lemmas.";
+        boolean build = false;
+        boolean byDoc = false;
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        int limit = Integer.MAX_VALUE;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-build")) {
+                build = true;
+            } else if (opt.equals("-doc")) {
+                byDoc = true;
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else if (opt.equals("-limit")) {
+                limit = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        if (build) {
+            List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+            create(positional.subList(1, positional.size()), positional.get(0), numThreads).close();
+            return;
+        }
+        List<String> positional = opts.getPositional(2, 2);
+        AgigaEntityStore store = read(positional.get(0));
+        long startMillis = System.currentTimeMillis();
+        List<AgigaEntity> entities;
+        if (byDoc) {
+            entities = store.getEntities(positional.get(1));
+            if (entities == null) {
+                log.severe("Document not found: " + positional.get(1));
+                entities = new ArrayList<AgigaEntity>();
+            }
+        } else {
+            entities = store.getEntitiesMentioning(positional.get(1), limit);
+        }
+        log.info("Found " + entities.size() + " entities in " + (System.currentTimeMillis() - startMillis) + " ms");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (AgigaEntity entity : entities) {
+            writer.write(entity.getDocId() + "\t" + entity.getCorefIdx() + "\t" + entity.getNerType() + "\t"
+                    + entity.getMentions().size() + "\t" + entity.getText() + "\t");
+            for (int m = 0; m < entity.getHeadLemmas().size(); m++) {
+                writer.write((m == 0 ? "" : " ") + entity.getHeadLemmas().get(m));
+            }
+            writer.write("\n");
+        }
+        writer.flush();
+        store.close();
+    }
+
+}
@@ -0,0 +1,133 @@
+package edu.jhu.agiga;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A 128-bit fingerprint of the words of a sentence or document, for finding
+ * exact duplicates. Unlike hashCode(), it depends only on the sequence of
+ * words, not on the other annotations or the prefs, and it is the same in
+ * every run. Either half alone is a 64-bit fingerprint.
+ *
+ * @author mgormley
+ *
+ */
+public final class AgigaFingerprint implements Serializable {
+
+    public static final long serialVersionUID = 1;
+
+    // The initial states and multipliers of the two halves.
+    static final long HI_BASIS = 0xcbf29ce484222325L;
+    static final long LO_BASIS = 0x84222325cbf29ce4L;
+    private static final long HI_MULT = 0x100000001b3L;
+    private static final long LO_MULT = 0x9e3779b97f4a7c15L;
+
+    private final long hi;
+    private final long lo;
+
+    public AgigaFingerprint(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    /**
+     * Gets the fingerprint of the words of a list of tokens.
+     */
+    public static AgigaFingerprint of(List<AgigaToken> tokens) {
+        long hi = HI_BASIS;
+        long lo = LO_BASIS;
+        for (AgigaToken tok : tokens) {
+            hi = addHi(hi, tok.getWord());
+            lo = addLo(lo, tok.getWord());
+        }
+        return new AgigaFingerprint(finish(hi), finish(lo));
+    }
+
+    /**
+     * Adds a word to the state of the high half.
+     */
+    static long addHi(long h, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            h = (h ^ word.charAt(i)) * HI_MULT;
+        }
+        // A value which is not a char ends each word.
+        return (h ^ 0x10000) * HI_MULT;
+    }
+
+    /**
+     * Adds a word to the state of the low half.
+     */
+    static long addLo(long h, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            h = (h ^ word.charAt(i)) * LO_MULT;
+        }
+        return (h ^ 0x10000) * LO_MULT;
+    }
+
+    /**
+     * Mixes the state of a half into its final value.
+     */
+    static long finish(long h) {
+        // The finalizer of MurmurHash3.
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Gets the fingerprint of a sequence of fingerprints, such as those of the
+     * sentences of a document.
+     */
+    static AgigaFingerprint combine(List<AgigaFingerprint> fingerprints) {
+        long hi = HI_BASIS;
+        long lo = LO_BASIS;
+        for (AgigaFingerprint fp : fingerprints) {
+            hi = (hi ^ fp.hi) * HI_MULT;
+            lo = (lo ^ fp.lo) * LO_MULT;
+            hi = Long.rotateLeft(hi, 29);
+            lo = Long.rotateLeft(lo, 29);
+        }
+        return new AgigaFingerprint(finish(hi ^ fingerprints.size()), finish(lo ^ fingerprints.size()));
+    }
+
+    public long getHigh() {
+        return hi;
+    }
+
+    public long getLow() {
+        return lo;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof AgigaFingerprint) {
+            AgigaFingerprint o = (AgigaFingerprint) other;
+            return hi == o.hi && lo == o.lo;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) lo;
+    }
+
+    /**
+     * Gets the fingerprint as 32 hexadecimal digits.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(32);
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(Character.forDigit((int) (hi >>> shift) & 0xf, 16));
+        }
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(Character.forDigit((int) (lo >>> shift) & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+}
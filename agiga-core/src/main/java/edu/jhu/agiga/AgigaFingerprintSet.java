@@ -0,0 +1,160 @@
+package edu.jhu.agiga;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A set of AgigaFingerprints, stored off the heap in direct byte buffers as an
+ * open-addressing hash table of 16 bytes per slot, so that hundreds of
+ * millions of sentences can be checked for exact duplicates without filling
+ * the heap or slowing the garbage collector. The table doubles when it is 70%
+ * full. The methods are synchronized, so one set can be shared by several
+ * threads.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaFingerprintSet {
+
+    private static final int SLOT_BYTES = 16;
+    // The slots in each buffer: 1GB.
+    private static final int SEGMENT_BITS = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private ByteBuffer[] segments;
+    private long capacity;
+    private long size = 0;
+    // The fingerprint (0, 0) marks an empty slot, so it is kept here.
+    private boolean hasZero = false;
+
+    /**
+     * Creates a set with room for 1M fingerprints before it grows.
+     */
+    public AgigaFingerprintSet() {
+        this(1 << 20);
+    }
+
+    /**
+     * Creates a set with room for the given number of fingerprints before it
+     * grows.
+     */
+    public AgigaFingerprintSet(long expectedSize) {
+        long slots = Math.max(1024, (long) (expectedSize / 0.7) + 1);
+        allocate(Long.highestOneBit(slots - 1) << 1);
+    }
+
+    private void allocate(long capacity) {
+        this.capacity = capacity;
+        int numSegments = (int) Math.max(1, capacity >>> SEGMENT_BITS);
+        int segmentSlots = (int) Math.min(capacity, 1L << SEGMENT_BITS);
+        segments = new ByteBuffer[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = ByteBuffer.allocateDirect(segmentSlots * SLOT_BYTES);
+        }
+    }
+
+    public boolean add(AgigaFingerprint fp) {
+        return add(fp.getHigh(), fp.getLow());
+    }
+
+    /**
+     * Adds the fingerprint of a sentence.
+     *
+     * @return True if the set did not already contain it.
+     */
+    public boolean add(AgigaSentence sent) {
+        return add(sent.getFingerprint());
+    }
+
+    /**
+     * Adds a fingerprint.
+     *
+     * @return True if the set did not already contain it.
+     */
+    public synchronized boolean add(long hi, long lo) {
+        if (hi == 0 && lo == 0) {
+            boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+        long slot = findSlot(hi, lo);
+        ByteBuffer segment = segments[(int) (slot >>> SEGMENT_BITS)];
+        int pos = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+        if (segment.getLong(pos) != 0 || segment.getLong(pos + 8) != 0) {
+            return false;
+        }
+        segment.putLong(pos, hi);
+        segment.putLong(pos + 8, lo);
+        size++;
+        if (size > capacity * 0.7) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(AgigaFingerprint fp) {
+        return contains(fp.getHigh(), fp.getLow());
+    }
+
+    public synchronized boolean contains(long hi, long lo) {
+        if (hi == 0 && lo == 0) {
+            return hasZero;
+        }
+        long slot = findSlot(hi, lo);
+        ByteBuffer segment = segments[(int) (slot >>> SEGMENT_BITS)];
+        int pos = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+        return segment.getLong(pos) != 0 || segment.getLong(pos + 8) != 0;
+    }
+
+    /**
+     * Gets the slot which holds the fingerprint, or the empty slot where it
+     * belongs.
+     */
+    private long findSlot(long hi, long lo) {
+        long mask = capacity - 1;
+        // The fingerprints are already well mixed.
+        long slot = lo & mask;
+        while (true) {
+            ByteBuffer segment = segments[(int) (slot >>> SEGMENT_BITS)];
+            int pos = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+            long slotHi = segment.getLong(pos);
+            long slotLo = segment.getLong(pos + 8);
+            if ((slotHi == hi && slotLo == lo) || (slotHi == 0 && slotLo == 0)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        ByteBuffer[] oldSegments = segments;
+        allocate(2 * capacity);
+        size = 0;
+        for (ByteBuffer segment : oldSegments) {
+            for (int pos = 0; pos < segment.capacity(); pos += SLOT_BYTES) {
+                long hi = segment.getLong(pos);
+                long lo = segment.getLong(pos + 8);
+                if (hi != 0 || lo != 0) {
+                    long slot = findSlot(hi, lo);
+                    int newPos = (int) (slot & SEGMENT_MASK) * SLOT_BYTES;
+                    segments[(int) (slot >>> SEGMENT_BITS)].putLong(newPos, hi).putLong(newPos + 8, lo);
+                    size++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of fingerprints in the set.
+     */
+    public synchronized long size() {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    /**
+     * Gets the bytes of memory used off the heap.
+     */
+    public synchronized long getMemoryBytes() {
+        return capacity * SLOT_BYTES;
+    }
+
+}
@@ -0,0 +1,151 @@
+package edu.jhu.agiga;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * The human-readable output formats, as named by the AgigaPrinter types. Each
+ * format knows which annotations it needs and which write* method produces
+ * it.
+ *
+ * @author mgormley
+ *
+ */
+public enum AgigaFormat {
+
+    WORDS("words"),
+    LEMMAS("lemmas"),
+    POS("pos"),
+    NER("ner"),
+    BASIC_DEPS("basic-deps"),
+    COL_DEPS("col-deps"),
+    COL_CCPROC_DEPS("col-ccproc-deps"),
+    PHRASE_STRUCTURE("phrase-structure"),
+    /** Coreference as SGML similar to MUC. Only for whole documents. */
+    COREF("coref");
+
+    private String name;
+
+    private AgigaFormat(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the format with the given name, or null if there is none.
+     */
+    public static AgigaFormat fromName(String name) {
+        for (AgigaFormat format : values()) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether this format can only be written for whole documents.
+     */
+    public boolean isDocumentOnly() {
+        return this == COREF;
+    }
+
+    /**
+     * Gets prefs which read only the annotations needed for this format.
+     */
+    public AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        switch (this) {
+        case WORDS:
+            prefs.setWord(true);
+            break;
+        case LEMMAS:
+            prefs.setLemma(true);
+            break;
+        case POS:
+            prefs.setWord(true);
+            prefs.setPos(true);
+            break;
+        case NER:
+            prefs.setWord(true);
+            prefs.setNer(true);
+            break;
+        case BASIC_DEPS:
+        case COL_DEPS:
+        case COL_CCPROC_DEPS:
+            prefs.setForConnlStyleDeps(getDependencyForm());
+            break;
+        case PHRASE_STRUCTURE:
+            prefs.setParse(true);
+            break;
+        case COREF:
+            prefs.setWord(true);
+            prefs.setCoref(true);
+            break;
+        }
+        return prefs;
+    }
+
+    /**
+     * Writes a document in this format.
+     */
+    public void write(Writer writer, AgigaDocument doc) throws IOException {
+        if (this == COREF) {
+            doc.writeMucStyleCoref(writer);
+            return;
+        }
+        for (AgigaSentence sent : doc.getSents()) {
+            write(writer, sent);
+        }
+    }
+
+    /**
+     * Writes a sentence in this format.
+     */
+    public void write(Writer writer, AgigaSentence sent) throws IOException {
+        switch (this) {
+        case WORDS:
+            sent.writeWords(writer);
+            break;
+        case LEMMAS:
+            sent.writeLemmas(writer);
+            break;
+        case POS:
+            sent.writePosTags(writer);
+            break;
+        case NER:
+            sent.writeNerTags(writer);
+            break;
+        case BASIC_DEPS:
+        case COL_DEPS:
+        case COL_CCPROC_DEPS:
+            sent.writeConnlStyleDeps(writer, getDependencyForm());
+            break;
+        case PHRASE_STRUCTURE:
+            sent.writeParseText(writer);
+            break;
+        default:
+            throw new IllegalStateException("Format " + name + " is only for whole documents");
+        }
+    }
+
+    private DependencyForm getDependencyForm() {
+        switch (this) {
+        case BASIC_DEPS:
+            return DependencyForm.BASIC_DEPS;
+        case COL_DEPS:
+            return DependencyForm.COL_DEPS;
+        case COL_CCPROC_DEPS:
+            return DependencyForm.COL_CCPROC_DEPS;
+        default:
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package edu.jhu.agiga;
+
+import java.util.Arrays;
+
+/**
+ * A location in the corpus returned by an AgigaInvertedIndex: a sentence,
+ * given by the input file, the position of the document in that file (as in
+ * AgigaDocIndex) and the position of the sentence in the document, together
+ * with one or more token positions within the sentence.
+ *
+ * All of the positions are zero-indexed.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaHit {
+
+    private int fileIdx;
+    private int docIdx;
+    private int sentIdx;
+    private int[] tokIdxs;
+
+    public AgigaHit(int fileIdx, int docIdx, int sentIdx, int[] tokIdxs) {
+        this.fileIdx = fileIdx;
+        this.docIdx = docIdx;
+        this.sentIdx = sentIdx;
+        this.tokIdxs = tokIdxs;
+    }
+
+    public int getFileIdx() {
+        return fileIdx;
+    }
+
+    public int getDocIdx() {
+        return docIdx;
+    }
+
+    public int getSentIdx() {
+        return sentIdx;
+    }
+
+    /**
+     * Gets the first token position.
+     */
+    public int getTokIdx() {
+        return tokIdxs[0];
+    }
+
+    /**
+     * Gets the i'th token position. What each position means depends on the
+     * index: the token indexed, or for example the governor and dependent of
+     * a dependency. A position of -1 stands for the root.
+     */
+    public int getTokIdx(int i) {
+        return tokIdxs[i];
+    }
+
+    public int getNumTokIdxs() {
+        return tokIdxs.length;
+    }
+
+    /**
+     * Whether the hit is in the same sentence as another hit.
+     */
+    public boolean isSameSentence(AgigaHit other) {
+        return fileIdx == other.fileIdx && docIdx == other.docIdx && sentIdx == other.sentIdx;
+    }
+
+    @Override
+    public String toString() {
+        return "AgigaHit [fileIdx=" + fileIdx + ", docIdx=" + docIdx + ", sentIdx=" + sentIdx + ", tokIdxs="
+                + Arrays.toString(tokIdxs) + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AgigaHit)) {
+            return false;
+        }
+        AgigaHit hit = (AgigaHit) other;
+        return isSameSentence(hit) && Arrays.equals(tokIdxs, hit.tokIdxs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Util.safeHashCode(fileIdx, docIdx, sentIdx, Arrays.hashCode(tokIdxs));
+    }
+
+}
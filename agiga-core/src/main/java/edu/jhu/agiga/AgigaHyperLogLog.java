@@ -0,0 +1,109 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A HyperLogLog sketch, which estimates the number of distinct strings added
+ * to it in 2^precision bytes. The relative standard error of the estimate is
+ * about 1.04 / sqrt(2^precision), e.g. 0.8% for the default precision of 14.
+ *
+ * Sketches of the same precision can be merged, and the result is the same as
+ * a sketch of all of the strings. A sketch is not thread-safe.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaHyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 14;
+
+    private int precision;
+    private byte[] registers;
+
+    public AgigaHyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a sketch with 2^precision registers, for a precision from 4 to
+     * 24.
+     */
+    public AgigaHyperLogLog(int precision) {
+        require(4 <= precision && precision <= 24, "Invalid precision: " + precision);
+        this.precision = precision;
+        registers = new byte[1 << precision];
+    }
+
+    public void add(String item) {
+        addHash(Util.hash64(item));
+    }
+
+    /**
+     * Adds an item by its 64-bit hash.
+     */
+    public void addHash(long h) {
+        int idx = (int) (h >>> (64 - precision));
+        // The position of the first 1 bit in the remaining bits.
+        int rank = Long.numberOfLeadingZeros((h << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[idx]) {
+            registers[idx] = (byte) rank;
+        }
+    }
+
+    /**
+     * Gets the estimated number of distinct strings.
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int numZeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                numZeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && numZeros > 0) {
+            // Linear counting is more accurate for small cardinalities.
+            estimate = m * Math.log((double) m / numZeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds the strings of another sketch, of the same precision, to this one.
+     */
+    public void merge(AgigaHyperLogLog other) {
+        require(other.precision == precision, "Sketches of different precisions can not be merged");
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(precision);
+        out.write(registers);
+    }
+
+    /**
+     * Reads a sketch written by write().
+     */
+    public static AgigaHyperLogLog read(DataInput in) throws IOException {
+        AgigaHyperLogLog sketch = new AgigaHyperLogLog(in.readInt());
+        in.readFully(sketch.registers);
+        return sketch;
+    }
+
+}
@@ -0,0 +1,1140 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaDocIndex.CountingOutputStream;
+
+/**
+ * An inverted index from terms, such as the words and lemmas of the tokens,
+ * to the sentences of a corpus of Annotated Gigaword files which contain them.
+ * A query reads only the postings of its term, and each hit can be resolved to
+ * its AgigaSentence by random access, so finding every sentence that contains
+ * a lemma takes milliseconds instead of a pass over the corpus.
+ *
+ * The input files must have been written by AgigaDocIndex.create(), which
+ * gives the random access. create() reads them in parallel, one file per
+ * thread, and passes each document to an Indexer, which chooses the terms.
+ * TokenIndexer indexes the words and lemmas, and optionally the lemmas with
+ * their part-of-speech tags. Each file's postings are written to a temporary
+ * segment, and the segments are then merged into the index.
+ *
+ * The index is a single file. The postings of each term are delta-encoded as
+ * variable-length integers, and the terms of each field are kept in memory in
+ * sorted order, so a term's id is its rank. The index may be read by several
+ * threads at once.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaInvertedIndex {
+
+    private static Logger log = Logger.getLogger(AgigaInvertedIndex.class.getName());
+
+    // "AGIX"
+    private static final int MAGIC = 0x41474958;
+    private static final int VERSION = 1;
+    // The trailer holds the start of the postings, the start of the
+    // dictionary, the number of terms and MAGIC.
+    private static final int TRAILER_LENGTH = 8 + 8 + 8 + 4;
+
+    /** Terms longer than this many characters are not indexed. */
+    public static final int MAX_TERM_LENGTH = 256;
+
+    /**
+     * Receives the hits of a document from an Indexer.
+     */
+    public interface HitCollector {
+        /**
+         * Adds a hit for a term in field number field. The hits of a document
+         * must be added in order of sentence. The token positions are copied,
+         * so the array may be reused.
+         */
+        public void add(int field, String term, int sentIdx, int[] tokIdxs);
+    }
+
+    /**
+     * Chooses the terms to index for each document. index() is called by
+     * several threads at once, so it should not keep any state between
+     * documents.
+     */
+    public interface Indexer {
+        /** Gets the names of the fields, such as "lemma". */
+        public List<String> getFields();
+
+        /** Gets the number of token positions of each hit. */
+        public int getNumTokIdxs();
+
+        /** Gets the annotations to read for index(). */
+        public AgigaPrefs getPrefs();
+
+        public void index(AgigaDocument doc, HitCollector hits);
+    }
+
+    /**
+     * Indexes the word and the lemma of each token, and optionally the lemma
+     * and part-of-speech tag together, as in "acquire/VBD". Each hit has the
+     * position of the token.
+     */
+    public static class TokenIndexer implements Indexer {
+
+        public static final String WORD = "word";
+        public static final String LEMMA = "lemma";
+        public static final String LEMMA_POS = "lemma-pos";
+
+        private boolean includePos;
+
+        public TokenIndexer(boolean includePos) {
+            this.includePos = includePos;
+        }
+
+        @Override
+        public List<String> getFields() {
+            return includePos ? Arrays.asList(WORD, LEMMA, LEMMA_POS) : Arrays.asList(WORD, LEMMA);
+        }
+
+        @Override
+        public int getNumTokIdxs() {
+            return 1;
+        }
+
+        @Override
+        public AgigaPrefs getPrefs() {
+            AgigaPrefs prefs = new AgigaPrefs();
+            prefs.setAll(false);
+            prefs.setWord(true);
+            prefs.setLemma(true);
+            prefs.setPos(includePos);
+            return prefs;
+        }
+
+        @Override
+        public void index(AgigaDocument doc, HitCollector hits) {
+            int[] tokIdxs = new int[1];
+            List<AgigaSentence> sents = doc.getSents();
+            for (int s = 0; s < sents.size(); s++) {
+                List<AgigaToken> tokens = sents.get(s).getTokens();
+                for (int t = 0; t < tokens.size(); t++) {
+                    AgigaToken tok = tokens.get(t);
+                    tokIdxs[0] = t;
+                    if (tok.getWord() != null) {
+                        hits.add(0, tok.getWord(), s, tokIdxs);
+                    }
+                    if (tok.getLemma() != null) {
+                        hits.add(1, tok.getLemma(), s, tokIdxs);
+                        if (includePos && tok.getPosTag() != null) {
+                            hits.add(2, tok.getLemma() + "/" + tok.getPosTag(), s, tokIdxs);
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    private String indexFile;
+    private List<String> fields;
+    private Map<String, Integer> fieldIdxs;
+    private int numTokIdxs;
+    private List<String> files;
+    private Dictionary[] dicts;
+    private FileChannel channel;
+    private AgigaDocIndex[] docIndexes;
+
+    private AgigaInvertedIndex(String indexFile, List<String> fields, int numTokIdxs, List<String> files,
+            Dictionary[] dicts, FileChannel channel) {
+        this.indexFile = indexFile;
+        this.fields = fields;
+        this.numTokIdxs = numTokIdxs;
+        this.files = files;
+        this.dicts = dicts;
+        this.channel = channel;
+        fieldIdxs = new HashMap<String, Integer>();
+        for (int i = 0; i < fields.size(); i++) {
+            fieldIdxs.put(fields.get(i), i);
+        }
+        docIndexes = new AgigaDocIndex[files.size()];
+    }
+
+    /**
+     * Indexes the input files, which must have been written by
+     * AgigaDocIndex.create(), using numThreads threads, and writes the index
+     * to outputFile. Documents which can not be read are skipped, with a
+     * warning.
+     *
+     * @return The index, opened for reading.
+     */
+    public static AgigaInvertedIndex create(List<String> inputFiles, String outputFile, final Indexer indexer,
+            int numThreads) {
+        final Map<String, Integer> fileIdxs = new HashMap<String, Integer>();
+        final String[] segmentFiles = new String[inputFiles.size()];
+        for (int i = 0; i < inputFiles.size(); i++) {
+            String file = inputFiles.get(i);
+            require(new File(file + AgigaDocIndex.INDEX_SUFFIX).exists(), "No document index for " + file
+                    + ": it must be written by AgigaDocIndex first");
+            require(fileIdxs.put(file, i) == null, "Input file given twice: " + file);
+            segmentFiles[i] = outputFile + ".seg" + i;
+        }
+        try {
+            AgigaParallel.forEachFile(inputFiles, numThreads, new AgigaParallel.FileTask() {
+                @Override
+                public void run(String file) throws IOException {
+                    int i = fileIdxs.get(file);
+                    writeSegment(file, segmentFiles[i], indexer);
+                }
+            });
+            log.info("Merging " + segmentFiles.length + " segments into " + outputFile);
+            merge(segmentFiles, outputFile, inputFiles, indexer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (String segmentFile : segmentFiles) {
+                new File(segmentFile).delete();
+            }
+        }
+        return read(outputFile);
+    }
+
+    /**
+     * Indexes one input file and writes its postings to segmentFile, sorted
+     * by field and term.
+     */
+    private static void writeSegment(String file, String segmentFile, Indexer indexer) throws IOException {
+        log.info("Indexing file: " + file);
+        SegmentBuilder segment = new SegmentBuilder(indexer.getFields().size(), indexer.getNumTokIdxs());
+        AgigaDocIndex docIndex = AgigaDocIndex.read(file);
+        StreamingDocumentReader reader = new StreamingDocumentReader(file, indexer.getPrefs());
+        try {
+            reader.setQuarantine(AgigaQuarantine.SKIP);
+            int lastDocIdx = -1;
+            for (AgigaDocument doc : reader) {
+                int docIdx = docIndex.getDocIdx(doc.getDocId());
+                if (docIdx < 0) {
+                    // The document index can be missing a document which
+                    // follows a malformed one.
+                    log.warning("Skipping document " + doc.getDocId() + ", which is not in the index of " + file);
+                    continue;
+                }
+                require(docIdx > lastDocIdx, "Document " + doc.getDocId() + " is not in order in the index of "
+                        + file);
+                segment.setDocIdx(docIdx);
+                indexer.index(doc, segment);
+                lastDocIdx = docIdx;
+            }
+        } finally {
+            reader.close();
+            docIndex.close();
+        }
+        segment.write(segmentFile);
+    }
+
+    private static void merge(String[] segmentFiles, String outputFile, List<String> inputFiles, Indexer indexer)
+            throws IOException {
+        PriorityQueue<SegmentReader> queue = new PriorityQueue<SegmentReader>(Math.max(1, segmentFiles.length),
+                new Comparator<SegmentReader>() {
+                    @Override
+                    public int compare(SegmentReader r1, SegmentReader r2) {
+                        if (r1.field != r2.field) {
+                            return r1.field < r2.field ? -1 : 1;
+                        }
+                        int c = compareBytes(r1.term, 0, r1.term.length, r2.term, 0, r2.term.length);
+                        if (c != 0) {
+                            return c;
+                        }
+                        return r1.fileIdx < r2.fileIdx ? -1 : (r1.fileIdx > r2.fileIdx ? 1 : 0);
+                    }
+                });
+        for (int i = 0; i < segmentFiles.length; i++) {
+            SegmentReader reader = new SegmentReader(segmentFiles[i], i);
+            if (reader.next()) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+
+        CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(
+                outputFile), 1 << 16));
+        DataOutputStream out = new DataOutputStream(counting);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(indexer.getNumTokIdxs());
+        out.writeInt(indexer.getFields().size());
+        for (String field : indexer.getFields()) {
+            out.writeUTF(field);
+        }
+        out.writeInt(inputFiles.size());
+        for (String file : inputFiles) {
+            // Absolute, so that the index can be queried from any directory.
+            out.writeUTF(new File(file).getAbsolutePath());
+        }
+        long postingsOffset = counting.getCount();
+
+        // The dictionary is written after the postings, so it is collected in
+        // a temporary file.
+        File dictFile = new File(outputFile + ".dict");
+        OutputStream dict = new BufferedOutputStream(new FileOutputStream(dictFile), 1 << 16);
+        long numTerms = 0;
+        try {
+            while (!queue.isEmpty()) {
+                SegmentReader reader = queue.poll();
+                int field = reader.field;
+                byte[] term = reader.term;
+                long start = counting.getCount();
+                long numHits = 0;
+                int lastFileIdx = 0;
+                while (true) {
+                    // One block per file: the file, the number of hits and
+                    // the hits as encoded in the segment.
+                    writeVarint(out, reader.fileIdx - lastFileIdx);
+                    writeVarint(out, reader.numHits);
+                    out.write(reader.postings);
+                    numHits += reader.numHits;
+                    lastFileIdx = reader.fileIdx;
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                    reader = queue.peek();
+                    if (reader == null || reader.field != field
+                            || compareBytes(reader.term, 0, reader.term.length, term, 0, term.length) != 0) {
+                        break;
+                    }
+                    queue.poll();
+                }
+                writeVarint(dict, field);
+                writeVarint(dict, term.length);
+                dict.write(term);
+                writeVarint(dict, counting.getCount() - start);
+                writeVarint(dict, numHits);
+                numTerms++;
+            }
+            dict.close();
+
+            long dictOffset = counting.getCount();
+            InputStream in = new FileInputStream(dictFile);
+            try {
+                byte[] b = new byte[1 << 16];
+                int n;
+                while ((n = in.read(b)) != -1) {
+                    out.write(b, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            out.writeLong(postingsOffset);
+            out.writeLong(dictOffset);
+            out.writeLong(numTerms);
+            out.writeInt(MAGIC);
+            out.close();
+        } finally {
+            dict.close();
+            dictFile.delete();
+        }
+        log.info("Wrote " + numTerms + " terms to " + outputFile);
+    }
+
+    /**
+     * Opens an index written by create().
+     */
+    public static AgigaInvertedIndex read(String indexFile) {
+        try {
+            FileChannel channel = new RandomAccessFile(indexFile, "r").getChannel();
+            long length = channel.size();
+            require(length >= TRAILER_LENGTH, "Not an inverted index: " + indexFile);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+            while (trailer.hasRemaining()) {
+                require(channel.read(trailer, length - TRAILER_LENGTH + trailer.position()) >= 0);
+            }
+            trailer.flip();
+            long postingsOffset = trailer.getLong();
+            long dictOffset = trailer.getLong();
+            long numTerms = trailer.getLong();
+            require(trailer.getInt() == MAGIC, "Not an inverted index: " + indexFile);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            List<String> fields = new ArrayList<String>();
+            List<String> files = new ArrayList<String>();
+            int numTokIdxs;
+            try {
+                require(in.readInt() == MAGIC, "Not an inverted index: " + indexFile);
+                int version = in.readInt();
+                require(version == VERSION, "Unsupported inverted index version: " + version);
+                numTokIdxs = in.readInt();
+                int numFields = in.readInt();
+                for (int i = 0; i < numFields; i++) {
+                    fields.add(in.readUTF());
+                }
+                int numFiles = in.readInt();
+                for (int i = 0; i < numFiles; i++) {
+                    files.add(in.readUTF());
+                }
+            } finally {
+                in.close();
+            }
+
+            Dictionary[] dicts = new Dictionary[fields.size()];
+            for (int i = 0; i < dicts.length; i++) {
+                dicts[i] = new Dictionary();
+            }
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16));
+            try {
+                long skipped = 0;
+                while (skipped < dictOffset) {
+                    long n = in.skip(dictOffset - skipped);
+                    require(n > 0, "Unexpected end of file: " + indexFile);
+                    skipped += n;
+                }
+                long offset = postingsOffset;
+                int lastField = 0;
+                for (long i = 0; i < numTerms; i++) {
+                    int field = (int) readVarint(in);
+                    require(field >= lastField && field < dicts.length, "Corrupt dictionary in " + indexFile);
+                    byte[] term = new byte[(int) readVarint(in)];
+                    in.readFully(term);
+                    long postingsLength = readVarint(in);
+                    long numHits = readVarint(in);
+                    dicts[field].add(term, offset, postingsLength, numHits);
+                    offset += postingsLength;
+                    lastField = field;
+                }
+                require(offset == dictOffset, "Corrupt dictionary in " + indexFile);
+            } finally {
+                in.close();
+            }
+            return new AgigaInvertedIndex(indexFile, Collections.unmodifiableList(fields), numTokIdxs,
+                    Collections.unmodifiableList(files), dicts, channel);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the index and any input files opened by getSentence().
+     */
+    public synchronized void close() {
+        try {
+            channel.close();
+            for (AgigaDocIndex docIndex : docIndexes) {
+                if (docIndex != null) {
+                    docIndex.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getIndexFile() {
+        return indexFile;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public int getNumTokIdxs() {
+        return numTokIdxs;
+    }
+
+    public int getNumFiles() {
+        return files.size();
+    }
+
+    /**
+     * Gets the absolute path of an input file.
+     */
+    public String getFile(int fileIdx) {
+        return files.get(fileIdx);
+    }
+
+    public int getNumTerms(String field) {
+        return getDictionary(field).size;
+    }
+
+    /**
+     * Gets the id of a term, which is its rank among the terms of the field,
+     * or -1 if the term does not occur.
+     */
+    public int getTermId(String field, String term) {
+        return getDictionary(field).find(toBytes(term));
+    }
+
+    public String getTerm(String field, int termId) {
+        return getDictionary(field).getTerm(termId);
+    }
+
+    /**
+     * Gets the number of hits of a term, or 0 if it does not occur.
+     */
+    public long getNumHits(String field, String term) {
+        int termId = getTermId(field, term);
+        return termId < 0 ? 0 : getDictionary(field).numHits[termId];
+    }
+
+    public long getNumHits(String field, int termId) {
+        return getDictionary(field).numHits[termId];
+    }
+
+    /**
+     * Gets all of the hits of a term, in corpus order.
+     */
+    public List<AgigaHit> getHits(String field, String term) {
+        return getHits(field, term, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the first maxHits hits of a term, in corpus order.
+     */
+    public List<AgigaHit> getHits(String field, String term, int maxHits) {
+        List<AgigaHit> hits = new ArrayList<AgigaHit>();
+        Iterator<AgigaHit> iter = getHitIterator(field, term);
+        while (iter.hasNext() && hits.size() < maxHits) {
+            hits.add(iter.next());
+        }
+        return hits;
+    }
+
+    /**
+     * Gets an iterator over the hits of a term, in corpus order, which reads
+     * the postings as it goes.
+     */
+    public Iterator<AgigaHit> getHitIterator(String field, String term) {
+        int termId = getTermId(field, term);
+        if (termId < 0) {
+            return Collections.<AgigaHit> emptyList().iterator();
+        }
+        return getHitIterator(field, termId);
+    }
+
+    public Iterator<AgigaHit> getHitIterator(String field, int termId) {
+        Dictionary dict = getDictionary(field);
+        return new HitIterator(dict.postingsStarts[termId], dict.postingsStarts[termId + 1]);
+    }
+
+    /**
+     * Gets the range of ids of the terms which start with prefix, as an array
+     * of the first id and one past the last. The range is empty if there are
+     * none.
+     */
+    public int[] getTermIdRange(String field, String prefix) {
+        Dictionary dict = getDictionary(field);
+        byte[] bytes = toBytes(prefix);
+        return new int[] { dict.search(bytes, false), dict.search(bytes, true) };
+    }
+
+    /**
+     * Gets an iterator over the hits of all the terms with ids from
+     * startTermId up to but not including endTermId, merged into corpus
+     * order. Hits in the same sentence are not in any particular order.
+     */
+    public Iterator<AgigaHit> getHitIterator(String field, int startTermId, int endTermId) {
+        if (endTermId - startTermId == 1) {
+            return getHitIterator(field, startTermId);
+        }
+        List<Iterator<AgigaHit>> iters = new ArrayList<Iterator<AgigaHit>>();
+        for (int termId = startTermId; termId < endTermId; termId++) {
+            iters.add(getHitIterator(field, termId));
+        }
+        return new MergedHitIterator(iters);
+    }
+
+    /**
+     * Gets the id of the document of a hit.
+     */
+    public String getDocId(AgigaHit hit) {
+        return getDocIndex(hit.getFileIdx()).getDocId(hit.getDocIdx());
+    }
+
+    /**
+     * Reads the document of a hit, with the annotations selected by prefs.
+     */
+    public AgigaDocument getDocument(AgigaHit hit, AgigaPrefs prefs) {
+        return getDocIndex(hit.getFileIdx()).getDocument(hit.getDocIdx(), prefs);
+    }
+
+    /**
+     * Reads the sentence of a hit, with the annotations selected by prefs,
+     * without reading the rest of its document if the document index has its
+     * sentences.
+     */
+    public AgigaSentence getSentence(AgigaHit hit, AgigaPrefs prefs) {
+        AgigaSentence sent = getDocIndex(hit.getFileIdx()).getSentence(hit.getDocIdx(), hit.getSentIdx(), prefs);
+        if (sent == null || sent.getSentIdx() != hit.getSentIdx()) {
+            // The hits give the position of the sentence, which only differs
+            // from its id if the ids are not numbered in order.
+            return getDocument(hit, prefs).getSents().get(hit.getSentIdx());
+        }
+        return sent;
+    }
+
+    private synchronized AgigaDocIndex getDocIndex(int fileIdx) {
+        if (docIndexes[fileIdx] == null) {
+            docIndexes[fileIdx] = AgigaDocIndex.read(files.get(fileIdx));
+        }
+        return docIndexes[fileIdx];
+    }
+
+    private Dictionary getDictionary(String field) {
+        Integer fieldIdx = fieldIdxs.get(field);
+        if (fieldIdx == null) {
+            throw new IllegalArgumentException("Field " + field + " is not in the index " + indexFile);
+        }
+        return dicts[fieldIdx];
+    }
+
+    private static byte[] toBytes(String term) {
+        try {
+            return term.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Compares UTF-8 byte strings as unsigned bytes, which orders them by
+     * code point.
+     */
+    private static int compareBytes(byte[] b1, int start1, int end1, byte[] b2, int start2, int end2) {
+        int n = Math.min(end1 - start1, end2 - start2);
+        for (int i = 0; i < n; i++) {
+            int c1 = b1[start1 + i] & 0xff;
+            int c2 = b2[start2 + i] & 0xff;
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return (end1 - start1) - (end2 - start2);
+    }
+
+    /**
+     * Writes a non-negative integer as a variable-length integer: 7 bits per
+     * byte, lowest first, with the high bit set on all but the last byte.
+     */
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        require(value >= 0, "Negative varint: " + value);
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads a variable-length integer written by writeVarint().
+     */
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    /**
+     * The postings of one term in one file, as they are collected. Each hit
+     * is the change in the document, the sentence (or its change, if the
+     * document is the same) and the token positions plus one, all as
+     * variable-length integers.
+     */
+    private static class Postings {
+
+        private byte[] buf = new byte[16];
+        private int size = 0;
+        private int numHits = 0;
+        private int lastDocIdx = 0;
+        private int lastSentIdx = 0;
+
+        public void add(int docIdx, int sentIdx, int[] tokIdxs, int numTokIdxs) {
+            int docDelta = docIdx - lastDocIdx;
+            if (docDelta > 0) {
+                write(docDelta);
+                write(sentIdx);
+            } else {
+                require(docDelta == 0 && sentIdx >= lastSentIdx, "Hits must be added in order");
+                write(0);
+                write(sentIdx - lastSentIdx);
+            }
+            for (int i = 0; i < numTokIdxs; i++) {
+                write(tokIdxs[i] + 1);
+            }
+            lastDocIdx = docIdx;
+            lastSentIdx = sentIdx;
+            numHits++;
+        }
+
+        private void write(int value) {
+            require(value >= 0, "Negative position in hit");
+            if (size + 5 > buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            while ((value & ~0x7f) != 0) {
+                buf[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+    }
+
+    /**
+     * Collects the postings of one file in memory.
+     */
+    private static class SegmentBuilder implements HitCollector {
+
+        private List<Map<String, Postings>> maps;
+        private int numTokIdxs;
+        private int docIdx;
+
+        public SegmentBuilder(int numFields, int numTokIdxs) {
+            this.numTokIdxs = numTokIdxs;
+            maps = new ArrayList<Map<String, Postings>>(numFields);
+            for (int i = 0; i < numFields; i++) {
+                maps.add(new HashMap<String, Postings>());
+            }
+        }
+
+        public void setDocIdx(int docIdx) {
+            this.docIdx = docIdx;
+        }
+
+        @Override
+        public void add(int field, String term, int sentIdx, int[] tokIdxs) {
+            if (term.length() > MAX_TERM_LENGTH) {
+                return;
+            }
+            Map<String, Postings> map = maps.get(field);
+            Postings postings = map.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                map.put(term, postings);
+            }
+            postings.add(docIdx, sentIdx, tokIdxs, numTokIdxs);
+        }
+
+        /**
+         * Writes the number of entries, then for each field and term, in
+         * order: the field, the term, the number of hits and the postings.
+         */
+        public void write(String segmentFile) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile),
+                    1 << 16));
+            try {
+                int numEntries = 0;
+                for (Map<String, Postings> map : maps) {
+                    numEntries += map.size();
+                }
+                out.writeInt(numEntries);
+                for (int field = 0; field < maps.size(); field++) {
+                    Map<String, Postings> map = maps.get(field);
+                    List<byte[]> terms = new ArrayList<byte[]>(map.size());
+                    Map<byte[], Postings> byBytes = new HashMap<byte[], Postings>(map.size() * 2);
+                    for (Map.Entry<String, Postings> entry : map.entrySet()) {
+                        byte[] term = toBytes(entry.getKey());
+                        terms.add(term);
+                        byBytes.put(term, entry.getValue());
+                    }
+                    // Free the strings as we go.
+                    map.clear();
+                    Collections.sort(terms, new Comparator<byte[]>() {
+                        @Override
+                        public int compare(byte[] b1, byte[] b2) {
+                            return compareBytes(b1, 0, b1.length, b2, 0, b2.length);
+                        }
+                    });
+                    for (byte[] term : terms) {
+                        Postings postings = byBytes.get(term);
+                        writeVarint(out, field);
+                        writeVarint(out, term.length);
+                        out.write(term);
+                        writeVarint(out, postings.numHits);
+                        writeVarint(out, postings.size);
+                        out.write(postings.buf, 0, postings.size);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        }
+
+    }
+
+    /**
+     * Reads the entries of a segment in order.
+     */
+    private static class SegmentReader {
+
+        private DataInputStream in;
+        private int fileIdx;
+        private int remaining;
+        private int field;
+        private byte[] term;
+        private int numHits;
+        private byte[] postings;
+
+        public SegmentReader(String segmentFile, int fileIdx) throws IOException {
+            this.fileIdx = fileIdx;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile), 1 << 16));
+            remaining = in.readInt();
+        }
+
+        /**
+         * Reads the next entry, or returns false if there are no more.
+         */
+        public boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            field = (int) readVarint(in);
+            term = new byte[(int) readVarint(in)];
+            in.readFully(term);
+            numHits = (int) readVarint(in);
+            postings = new byte[(int) readVarint(in)];
+            in.readFully(postings);
+            return true;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+    /**
+     * The terms of one field, in order, with the range of their postings in
+     * the index file.
+     */
+    private static class Dictionary {
+
+        private byte[] terms = new byte[1024];
+        private int[] termStarts = new int[1024];
+        private long[] postingsStarts = new long[1024];
+        private long[] numHits = new long[1024];
+        private int size = 0;
+
+        public void add(byte[] term, long postingsStart, long postingsLength, long numTermHits) {
+            if (size + 2 > termStarts.length) {
+                termStarts = Arrays.copyOf(termStarts, termStarts.length * 2);
+                postingsStarts = Arrays.copyOf(postingsStarts, postingsStarts.length * 2);
+                numHits = Arrays.copyOf(numHits, numHits.length * 2);
+            }
+            int start = termStarts[size];
+            if (start + term.length > terms.length) {
+                terms = Arrays.copyOf(terms, Math.max(terms.length * 2, start + term.length));
+            }
+            System.arraycopy(term, 0, terms, start, term.length);
+            postingsStarts[size] = postingsStart;
+            numHits[size] = numTermHits;
+            size++;
+            termStarts[size] = start + term.length;
+            postingsStarts[size] = postingsStart + postingsLength;
+        }
+
+        /**
+         * Gets the id of a term, or -1 if it is not present.
+         */
+        public int find(byte[] term) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compareBytes(terms, termStarts[mid], termStarts[mid + 1], term, 0, term.length);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Gets the id of the first term which is not less than prefix, or if
+         * isUpper is true, of the first term which neither starts with prefix
+         * nor is less than it.
+         */
+        public int search(byte[] prefix, boolean isUpper) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int start = termStarts[mid];
+                int end = isUpper ? Math.min(termStarts[mid + 1], start + prefix.length) : termStarts[mid + 1];
+                int c = compareBytes(terms, start, end, prefix, 0, prefix.length);
+                if (c < 0 || (isUpper && c == 0)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        public String getTerm(int termId) {
+            try {
+                return new String(terms, termStarts[termId], termStarts[termId + 1] - termStarts[termId], "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+    /**
+     * Decodes the postings of one term, reading the index file in chunks.
+     */
+    private class HitIterator implements Iterator<AgigaHit> {
+
+        private ByteBuffer buf;
+        private long position;
+        private long end;
+        private int fileIdx = 0;
+        private long remainingInFile = 0;
+        private int docIdx;
+        private int sentIdx;
+
+        public HitIterator(long start, long end) {
+            this.position = start;
+            this.end = end;
+            buf = ByteBuffer.allocate((int) Math.min(1 << 16, end - start));
+            buf.limit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remainingInFile > 0 || buf.hasRemaining() || position < end;
+        }
+
+        @Override
+        public AgigaHit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if (remainingInFile == 0) {
+                    fileIdx += readInt();
+                    remainingInFile = readVarint();
+                    docIdx = 0;
+                    sentIdx = 0;
+                }
+                int docDelta = readInt();
+                docIdx += docDelta;
+                sentIdx = docDelta > 0 ? readInt() : sentIdx + readInt();
+                int[] tokIdxs = new int[numTokIdxs];
+                for (int i = 0; i < numTokIdxs; i++) {
+                    tokIdxs[i] = readInt() - 1;
+                }
+                remainingInFile--;
+                return new AgigaHit(fileIdx, docIdx, sentIdx, tokIdxs);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private int readInt() throws IOException {
+            return (int) readVarint();
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!buf.hasRemaining()) {
+                    fill();
+                }
+                int b = buf.get();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in " + indexFile);
+        }
+
+        private void fill() throws IOException {
+            require(position < end, "Unexpected end of postings in " + indexFile);
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - position));
+            while (buf.hasRemaining()) {
+                // Positional reads, so that several threads may read at once.
+                int n = channel.read(buf, position + buf.position());
+                require(n >= 0, "Unexpected end of file: " + indexFile);
+            }
+            position += buf.limit();
+            buf.flip();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Compares hits by their sentence, in corpus order.
+     */
+    static int compareSentences(AgigaHit h1, AgigaHit h2) {
+        if (h1.getFileIdx() != h2.getFileIdx()) {
+            return h1.getFileIdx() < h2.getFileIdx() ? -1 : 1;
+        }
+        if (h1.getDocIdx() != h2.getDocIdx()) {
+            return h1.getDocIdx() < h2.getDocIdx() ? -1 : 1;
+        }
+        if (h1.getSentIdx() != h2.getSentIdx()) {
+            return h1.getSentIdx() < h2.getSentIdx() ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Merges iterators over hits in corpus order.
+     */
+    private static class MergedHitIterator implements Iterator<AgigaHit> {
+
+        // Each entry holds the next hit of an iterator and the iterator.
+        private PriorityQueue<Object[]> queue;
+
+        public MergedHitIterator(List<Iterator<AgigaHit>> iters) {
+            queue = new PriorityQueue<Object[]>(Math.max(1, iters.size()), new Comparator<Object[]>() {
+                @Override
+                public int compare(Object[] e1, Object[] e2) {
+                    return compareSentences((AgigaHit) e1[0], (AgigaHit) e2[0]);
+                }
+            });
+            for (Iterator<AgigaHit> iter : iters) {
+                if (iter.hasNext()) {
+                    queue.add(new Object[] { iter.next(), iter });
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public AgigaHit next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Object[] entry = queue.poll();
+            AgigaHit hit = (AgigaHit) entry[0];
+            Iterator<AgigaHit> iter = (Iterator<AgigaHit>) entry[1];
+            if (iter.hasNext()) {
+                entry[0] = iter.next();
+                queue.add(entry);
+            }
+            return hit;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaInvertedIndex.class.getName()
+                + " -build [-pos] [-threads <number>] <index file> <indexed .xml.gz file>..."
+                + "\n   or: java " + AgigaInvertedIndex.class.getName()
+                + " [-limit <number>] [-format <format>] <index file> <field> <term>"
+                + "\n  The input files must be written by " + AgigaDocIndex.class.getName() + " first."
+                + "\n  The fields are " + TokenIndexer.WORD + ", " + TokenIndexer.LEMMA + " and, with -pos, "
+                + TokenIndexer.LEMMA_POS + " (e.g. acquire/VBD)."
+                + "\n  Queries print the document id, sentence and token of each hit, and the sentence"
+                + "\n  in the given AgigaPrinter format (default words).";
+        boolean build = false;
+        boolean includePos = false;
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        int limit = Integer.MAX_VALUE;
+        AgigaFormat format = AgigaFormat.WORDS;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-build")) {
+                build = true;
+            } else if (opt.equals("-pos")) {
+                includePos = true;
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else if (opt.equals("-limit")) {
+                limit = opts.getInt();
+            } else if (opt.equals("-format")) {
+                String name = opts.getValue();
+                format = AgigaFormat.fromName(name);
+                if (format == null || format.isDocumentOnly()) {
+                    opts.fail("Format not recognized: " + name);
+                }
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        if (build) {
+            List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+            create(positional.subList(1, positional.size()), positional.get(0), new TokenIndexer(includePos),
+                    numThreads).close();
+            return;
+        }
+        List<String> positional = opts.getPositional(3, 3);
+        AgigaInvertedIndex index = read(positional.get(0));
+        String field = positional.get(1);
+        String term = positional.get(2);
+        long startMillis = System.currentTimeMillis();
+        List<AgigaHit> hits = index.getHits(field, term, limit);
+        log.info("Found " + index.getNumHits(field, term) + " hits of " + field + " " + term + " in "
+                + (System.currentTimeMillis() - startMillis) + " ms");
+        AgigaPrefs prefs = format.getPrefs();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (AgigaHit hit : hits) {
+            writer.write(index.getDocId(hit) + "\t" + hit.getSentIdx() + "\t" + hit.getTokIdx() + "\t");
+            format.write(writer, index.getSentence(hit, prefs));
+        }
+        writer.flush();
+        index.close();
+    }
+
+}
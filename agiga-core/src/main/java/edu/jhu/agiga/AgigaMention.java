@@ -5,10 +5,10 @@ import java.io.Serializable;
 /**
  * Each AgigaMention object represents a single mention of an entity for
  * coreference resolution within a document. Annotated Gigaword does not
- * directly provide a unique identifier for each entity in a document. However,
- * AgigaDocument.assignMucStyleIdsAndRefsToMentions() can be used if such ids
- * are needed -- this method will set the mucId and mucRef fields as if they
- * were the ID and REF attributes of a MUC-7 mention.
+ * directly provide a unique identifier for each entity in a document. The
+ * mucId and mucRef fields can hold such ids, as if they were the ID and REF
+ * attributes of a MUC-7 mention, but they are left UNASSIGNED by the reader;
+ * AgigaMucWriter numbers the mentions itself, without setting them.
  * 
  * @author mgormley
  * 
@@ -0,0 +1,237 @@
+package edu.jhu.agiga;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * AgigaMetrics aggregates the per-stage measurements reported by one or more
+ * readers and makes them available as a JMX MBean under the domain
+ * "edu.jhu.agiga". It is safe to share a single AgigaMetrics object across
+ * readers running in different threads.
+ *
+ * For example:
+ *
+ * <pre>
+ * AgigaMetrics metrics = new AgigaMetrics();
+ * metrics.register(&quot;nyt_eng_199911&quot;);
+ * StreamingDocumentReader reader = new StreamingDocumentReader(inputFile, prefs);
+ * reader.setMetricsListener(metrics);
+ * </pre>
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaMetrics implements AgigaMetricsListener, AgigaMetricsMBean {
+
+    public static final String JMX_DOMAIN = "edu.jhu.agiga";
+
+    private static final int NUM_STAGES = Stage.values().length;
+
+    private final AtomicLongArray nanos = new AtomicLongArray(NUM_STAGES);
+    private final AtomicLongArray bytesIn = new AtomicLongArray(NUM_STAGES);
+    private final AtomicLongArray bytesOut = new AtomicLongArray(NUM_STAGES);
+    private final AtomicLongArray allocatedBytes = new AtomicLongArray(NUM_STAGES);
+    private final AtomicLong numDocs = new AtomicLong();
+    private final AtomicLong numSents = new AtomicLong();
+    private final AtomicLong numTokens = new AtomicLong();
+    private volatile long startNanos;
+    private ObjectName objectName;
+
+    public AgigaMetrics() {
+        reset();
+    }
+
+    @Override
+    public void stageCompleted(Stage stage, long nanos, long bytesIn, long bytesOut, long allocatedBytes) {
+        int s = stage.ordinal();
+        this.nanos.addAndGet(s, nanos);
+        this.bytesIn.addAndGet(s, bytesIn);
+        this.bytesOut.addAndGet(s, bytesOut);
+        if (allocatedBytes > 0) {
+            this.allocatedBytes.addAndGet(s, allocatedBytes);
+        }
+    }
+
+    @Override
+    public void itemsRead(int numDocs, int numSents, int numTokens) {
+        this.numDocs.addAndGet(numDocs);
+        this.numSents.addAndGet(numSents);
+        this.numTokens.addAndGet(numTokens);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under the name
+     * "edu.jhu.agiga:type=AgigaMetrics,name=[name]".
+     */
+    public synchronized void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(JMX_DOMAIN + ":type=AgigaMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (int s = 0; s < NUM_STAGES; s++) {
+            nanos.set(s, 0);
+            bytesIn.set(s, 0);
+            bytesOut.set(s, 0);
+            allocatedBytes.set(s, 0);
+        }
+        numDocs.set(0);
+        numSents.set(0);
+        numTokens.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    public long getNanos(Stage stage) {
+        return nanos.get(stage.ordinal());
+    }
+
+    public long getBytesIn(Stage stage) {
+        return bytesIn.get(stage.ordinal());
+    }
+
+    public long getBytesOut(Stage stage) {
+        return bytesOut.get(stage.ordinal());
+    }
+
+    public long getAllocatedBytes(Stage stage) {
+        return allocatedBytes.get(stage.ordinal());
+    }
+
+    @Override
+    public long getInflateMillis() {
+        return getNanos(Stage.INFLATE) / 1000000;
+    }
+
+    @Override
+    public long getSplitMillis() {
+        return getNanos(Stage.SPLIT) / 1000000;
+    }
+
+    @Override
+    public long getIndexMillis() {
+        return getNanos(Stage.INDEX) / 1000000;
+    }
+
+    @Override
+    public long getMaterializeMillis() {
+        return getNanos(Stage.MATERIALIZE) / 1000000;
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return getBytesIn(Stage.INFLATE);
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return getBytesOut(Stage.INFLATE);
+    }
+
+    @Override
+    public long getDocumentBytes() {
+        return getBytesOut(Stage.SPLIT);
+    }
+
+    @Override
+    public long getSplitAllocatedBytes() {
+        return getAllocatedBytes(Stage.SPLIT);
+    }
+
+    @Override
+    public long getIndexAllocatedBytes() {
+        return getAllocatedBytes(Stage.INDEX);
+    }
+
+    @Override
+    public long getMaterializeAllocatedBytes() {
+        return getAllocatedBytes(Stage.MATERIALIZE);
+    }
+
+    @Override
+    public long getNumDocs() {
+        return numDocs.get();
+    }
+
+    @Override
+    public long getNumSents() {
+        return numSents.get();
+    }
+
+    @Override
+    public long getNumTokens() {
+        return numTokens.get();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    @Override
+    public double getDocsPerSecond() {
+        return perSecond(getNumDocs());
+    }
+
+    @Override
+    public double getSentsPerSecond() {
+        return perSecond(getNumSents());
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        return perSecond(getNumTokens());
+    }
+
+    private double perSecond(long count) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed > 0 ? count * 1e9 / elapsed : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("AgigaMetrics [");
+        for (Stage stage : Stage.values()) {
+            sb.append(stage.name().toLowerCase());
+            sb.append("Millis=");
+            sb.append(getNanos(stage) / 1000000);
+            sb.append(", ");
+        }
+        sb.append("compressedBytes=").append(getCompressedBytes());
+        sb.append(", uncompressedBytes=").append(getUncompressedBytes());
+        sb.append(", numDocs=").append(getNumDocs());
+        sb.append(", numSents=").append(getNumSents());
+        sb.append(", numTokens=").append(getNumTokens());
+        sb.append(String.format(", docs/sec=%.1f, sents/sec=%.1f, tokens/sec=%.1f", getDocsPerSecond(),
+                getSentsPerSecond(), getTokensPerSecond()));
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
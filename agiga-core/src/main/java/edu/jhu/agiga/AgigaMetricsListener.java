@@ -0,0 +1,44 @@
+package edu.jhu.agiga;
+
+/**
+ * An AgigaMetricsListener receives timing and throughput measurements from a
+ * StreamingVtdXmlReader as it reads. See AgigaMetrics for an implementation
+ * that aggregates these measurements and exports them as a JMX MBean.
+ *
+ * @author mgormley
+ *
+ */
+public interface AgigaMetricsListener {
+
+    /**
+     * The stages of the reading pipeline.
+     */
+    public enum Stage {
+        /** Reading and decompressing the input file. */
+        INFLATE,
+        /** Splitting the decompressed text into the XML for single documents. */
+        SPLIT,
+        /** Building the VTD-XML index of a single document. */
+        INDEX,
+        /** Creating the AgigaDocument or AgigaSentence objects. */
+        MATERIALIZE
+    }
+
+    /**
+     * Called each time a stage has completed a unit of work.
+     *
+     * @param stage The stage.
+     * @param nanos The wall clock time spent in the stage.
+     * @param bytesIn The number of bytes consumed by the stage.
+     * @param bytesOut The number of bytes produced by the stage.
+     * @param allocatedBytes An estimate of the number of bytes allocated on the
+     *            heap by the stage, or -1 if not supported by the JVM.
+     */
+    public void stageCompleted(Stage stage, long nanos, long bytesIn, long bytesOut, long allocatedBytes);
+
+    /**
+     * Called each time documents, sentences, or tokens are read.
+     */
+    public void itemsRead(int numDocs, int numSents, int numTokens);
+
+}
@@ -0,0 +1,47 @@
+package edu.jhu.agiga;
+
+/**
+ * The JMX management interface for AgigaMetrics.
+ *
+ * @author mgormley
+ *
+ */
+public interface AgigaMetricsMBean {
+
+    public long getInflateMillis();
+
+    public long getSplitMillis();
+
+    public long getIndexMillis();
+
+    public long getMaterializeMillis();
+
+    public long getCompressedBytes();
+
+    public long getUncompressedBytes();
+
+    public long getDocumentBytes();
+
+    public long getSplitAllocatedBytes();
+
+    public long getIndexAllocatedBytes();
+
+    public long getMaterializeAllocatedBytes();
+
+    public long getNumDocs();
+
+    public long getNumSents();
+
+    public long getNumTokens();
+
+    public long getElapsedMillis();
+
+    public double getDocsPerSecond();
+
+    public double getSentsPerSecond();
+
+    public double getTokensPerSecond();
+
+    public void reset();
+
+}
@@ -0,0 +1,245 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Writes the coreference resolution annotations of a document in a MUC style
+ * SGML output format: the words of each sentence on a line, with each mention
+ * wrapped in a COREF tag. The mentions are numbered in the order of the
+ * chains, and each mention which is not representative refers to the
+ * representative mention of its chain, as the ID and REF attributes of a
+ * MUC-7 mention.
+ *
+ * The ids are kept in arrays rather than in the AgigaMention objects, so the
+ * document is not modified and may be written by several threads at once. An
+ * AgigaMucWriter reuses its arrays from one document to the next, so it must
+ * not be used by several threads at once; use one per thread.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaMucWriter {
+
+    private static Logger log = Logger.getLogger(AgigaMucWriter.class.getName());
+
+    // The mentions of the document, in the order of the chains, so that the
+    // position of a mention is its id.
+    private int[] sentIdxs = new int[64];
+    private int[] startIdxs = new int[64];
+    private int[] endIdxs = new int[64];
+    private int[] refs = new int[64];
+    private boolean[] isRepresentative = new boolean[64];
+    // The mentions in the order in which they start.
+    private int[] starts = new int[64];
+    private int[] buffer = new int[64];
+    // A min-heap of the open mentions, by where they end.
+    private int[] ends = new int[64];
+    private int numEnds;
+    private char[] digits = new char[11];
+
+    /**
+     * Writes a document, read with the words and the coreference annotations.
+     */
+    public void write(AgigaDocument doc, Writer writer) throws IOException {
+        AgigaPrefs prefs = doc.getPrefs();
+        require(prefs.readWord && prefs.readCoref,
+                "AgigaPrefs.{readWord,readCoref} must be true for AgigaMucWriter");
+        int numMentions = collectMentions(doc.getCorefs());
+        sortStarts(numMentions);
+        log.finer("Total number of mentions: " + numMentions);
+
+        List<AgigaSentence> sents = doc.getSents();
+        numEnds = 0;
+        int nextStart = 0;
+        for (int s = 0; s < sents.size(); s++) {
+            List<AgigaToken> tokens = sents.get(s).getTokens();
+            for (int i = 0; i < tokens.size() + 1; i++) {
+                while (numEnds > 0 && sentIdxs[ends[0]] == s && endIdxs[ends[0]] == i) {
+                    popEnd();
+                    writer.write("</COREF>");
+                }
+                if (i > 0 && i < tokens.size()) {
+                    writer.write(' ');
+                }
+                if (numEnds > 0 && (sentIdxs[ends[0]] < s || (sentIdxs[ends[0]] == s && endIdxs[ends[0]] < i))) {
+                    writer.flush();
+                    log.severe("Mention " + ends[0] + " ends in sentence " + sentIdxs[ends[0]] + " at token "
+                            + endIdxs[ends[0]]);
+                    throw new RuntimeException("Overlapping coref elements. s=" + s + " i=" + i);
+                }
+                while (nextStart < numMentions && sentIdxs[starts[nextStart]] == s
+                        && startIdxs[starts[nextStart]] == i) {
+                    int m = starts[nextStart++];
+                    writer.write("<COREF ID=");
+                    writeInt(writer, m);
+                    if (!isRepresentative[m]) {
+                        writer.write(" REF=");
+                        writeInt(writer, refs[m]);
+                    }
+                    writer.write('>');
+                    pushEnd(m);
+                }
+                if (i >= tokens.size()) {
+                    break;
+                }
+                writer.write(tokens.get(i).getWord());
+            }
+            require(numEnds == 0);
+            writer.write('\n');
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Copies the positions of the mentions into the arrays, and finds the
+     * mention each one refers to.
+     *
+     * @return The number of mentions.
+     */
+    private int collectMentions(List<AgigaCoref> corefs) {
+        int numMentions = 0;
+        for (AgigaCoref coref : corefs) {
+            numMentions += coref.getMentions().size();
+        }
+        if (numMentions > sentIdxs.length) {
+            int size = Math.max(numMentions, 2 * sentIdxs.length);
+            sentIdxs = new int[size];
+            startIdxs = new int[size];
+            endIdxs = new int[size];
+            refs = new int[size];
+            isRepresentative = new boolean[size];
+            starts = new int[size];
+            buffer = new int[size];
+            ends = new int[size];
+        }
+        int m = 0;
+        for (AgigaCoref coref : corefs) {
+            int first = m;
+            int representative = AgigaMention.UNASSIGNED;
+            for (AgigaMention mention : coref.getMentions()) {
+                sentIdxs[m] = mention.getSentenceIdx();
+                startIdxs[m] = mention.getStartTokenIdx();
+                endIdxs[m] = mention.getEndTokenIdx();
+                isRepresentative[m] = mention.isRepresentative();
+                if (mention.isRepresentative()) {
+                    representative = m;
+                }
+                m++;
+            }
+            for (int k = first; k < m; k++) {
+                refs[k] = isRepresentative[k] ? AgigaMention.UNASSIGNED : representative;
+            }
+        }
+        return numMentions;
+    }
+
+    /**
+     * Sorts the mentions by sentence and start, with the longer of two
+     * mentions that start at the same token first, so that it is opened
+     * first. The sort is stable.
+     */
+    private void sortStarts(int numMentions) {
+        for (int m = 0; m < numMentions; m++) {
+            starts[m] = m;
+        }
+        // A bottom-up merge sort.
+        int[] from = starts;
+        int[] to = buffer;
+        for (int width = 1; width < numMentions; width *= 2) {
+            for (int lo = 0; lo < numMentions; lo += 2 * width) {
+                int mid = Math.min(lo + width, numMentions);
+                int hi = Math.min(lo + 2 * width, numMentions);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (i < mid && (j >= hi || compareStarts(from[i], from[j]) <= 0)) {
+                        to[k] = from[i++];
+                    } else {
+                        to[k] = from[j++];
+                    }
+                }
+            }
+            int[] tmp = from;
+            from = to;
+            to = tmp;
+        }
+        if (from != starts) {
+            System.arraycopy(from, 0, starts, 0, numMentions);
+        }
+    }
+
+    private int compareStarts(int m1, int m2) {
+        if (sentIdxs[m1] != sentIdxs[m2]) {
+            return sentIdxs[m1] < sentIdxs[m2] ? -1 : 1;
+        }
+        if (startIdxs[m1] != startIdxs[m2]) {
+            return startIdxs[m1] < startIdxs[m2] ? -1 : 1;
+        }
+        return endIdxs[m1] > endIdxs[m2] ? -1 : (endIdxs[m1] < endIdxs[m2] ? 1 : 0);
+    }
+
+    private boolean endsBefore(int m1, int m2) {
+        if (sentIdxs[m1] != sentIdxs[m2]) {
+            return sentIdxs[m1] < sentIdxs[m2];
+        }
+        return endIdxs[m1] < endIdxs[m2];
+    }
+
+    private void pushEnd(int m) {
+        int i = numEnds++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!endsBefore(m, ends[parent])) {
+                break;
+            }
+            ends[i] = ends[parent];
+            i = parent;
+        }
+        ends[i] = m;
+    }
+
+    private void popEnd() {
+        int m = ends[--numEnds];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= numEnds) {
+                break;
+            }
+            if (child + 1 < numEnds && endsBefore(ends[child + 1], ends[child])) {
+                child++;
+            }
+            if (!endsBefore(ends[child], m)) {
+                break;
+            }
+            ends[i] = ends[child];
+            i = child;
+        }
+        if (numEnds > 0) {
+            ends[i] = m;
+        }
+    }
+
+    /**
+     * Writes an integer in decimal without creating a String.
+     */
+    private void writeInt(Writer writer, int value) throws IOException {
+        if (value < 0) {
+            writer.write('-');
+            // The ids are at least -1, so this does not overflow.
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        writer.write(digits, pos, digits.length - pos);
+    }
+
+}
@@ -0,0 +1,505 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds documents which are near-duplicates of each other, such as the
+ * repeated and updated versions of a wire story, as they stream by.
+ *
+ * Each document is reduced to a MinHash signature of the shingles of its
+ * words, i.e. the runs of a fixed number of consecutive words. The signature
+ * is cut into bands, and documents which agree on every value of some band are
+ * candidates, whose similarity is then estimated from one byte of each
+ * signature value. Two documents are near-duplicates if the estimated Jaccard
+ * similarity of their shingles is at least the threshold, 0.8 by default.
+ * Near-duplicates are joined into clusters, of which the document to keep is
+ * the earliest, by date and then by id.
+ *
+ * The index of bands and signatures has a fixed memory budget. Once it is
+ * full, later documents are still compared against it but are no longer
+ * added, and a warning is logged. add() may be called from several threads at
+ * once, and the signatures are computed outside of the lock, so that files can
+ * be read in parallel.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaNearDuplicates {
+
+    private static Logger log = Logger.getLogger(AgigaNearDuplicates.class.getName());
+
+    private static final Pattern DOC_ID = Pattern.compile(".*_(\\d{8})\\..*");
+
+    private static final Comparator<String> DOC_ID_COMPARATOR = getDocIdComparator();
+
+    private int shingleLength = 5;
+    private int numBands = 20;
+    private int rowsPerBand = 5;
+    private double threshold = 0.8;
+    private long memoryBytes = Runtime.getRuntime().maxMemory() / 4;
+
+    // The multipliers and increments of the hash functions.
+    private long[] hashMults;
+    private long[] hashAdds;
+
+    // An open-addressing table from the key of each band to the number,
+    // plus one, of the last document added with it. The earlier documents
+    // with the key are chained through bandNext.
+    private long[] bandKeys;
+    private int[] bandDocs;
+    private int bandMask;
+    private int maxDocs;
+
+    // For each document added, its id, one byte of each signature value, the
+    // number plus one of the previous document with the key of each band, its
+    // parent in the union-find of the clusters and, for a root, the earliest
+    // document of its cluster.
+    private List<String> docIds;
+    private byte[] sigBytes;
+    private int[] bandNext;
+    private int[] parents;
+    private int[] firsts;
+    private long numChecked;
+    private long numDuplicates;
+
+    /**
+     * Sets the number of consecutive words in each shingle. The default is 5.
+     */
+    public void setShingleLength(int shingleLength) {
+        requireEmpty();
+        this.shingleLength = shingleLength;
+    }
+
+    /**
+     * Sets the number of bands and the number of signature values in each
+     * band. More bands or fewer rows find more candidates of lower
+     * similarity. The defaults are 20 bands of 5 rows.
+     */
+    public void setBands(int numBands, int rowsPerBand) {
+        requireEmpty();
+        require(numBands > 0 && rowsPerBand > 0, "Invalid bands: " + numBands + " x " + rowsPerBand);
+        this.numBands = numBands;
+        this.rowsPerBand = rowsPerBand;
+    }
+
+    /**
+     * Sets the minimum estimated similarity of near-duplicates. The default is
+     * 0.8.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the memory, in bytes, for the index. The default is a quarter of
+     * the maximum heap size.
+     */
+    public void setMemoryBytes(long memoryBytes) {
+        requireEmpty();
+        this.memoryBytes = memoryBytes;
+    }
+
+    private void requireEmpty() {
+        require(docIds == null, "The settings can not be changed after adding documents");
+    }
+
+    private void init() {
+        int numHashes = numBands * rowsPerBand;
+        Random rand = new Random(1);
+        hashMults = new long[numHashes];
+        hashAdds = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            hashMults[i] = rand.nextLong() | 1;
+            hashAdds[i] = rand.nextLong();
+        }
+        // Half of the memory for the band table, at a load of at most 0.5,
+        // and half for the signatures, ids and parents.
+        long slots = Math.max(1024, memoryBytes / 2 / 12);
+        int capacity = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        bandKeys = new long[capacity];
+        bandDocs = new int[capacity];
+        bandMask = capacity - 1;
+        long bytesPerDoc = numHashes + 4 * numBands + 64 + 8;
+        maxDocs = (int) Math.min(capacity / 2 / numBands, Math.min(memoryBytes / 2 / bytesPerDoc,
+                Integer.MAX_VALUE / numHashes));
+        docIds = new ArrayList<String>();
+        sigBytes = new byte[0];
+        bandNext = new int[0];
+        parents = new int[0];
+        firsts = new int[0];
+        log.fine("The index can hold " + maxDocs + " documents");
+    }
+
+    /**
+     * Gets the prefs needed to read the documents.
+     */
+    public static AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(true);
+        return prefs;
+    }
+
+    /**
+     * Computes the MinHash signature of the shingles of the words of a
+     * document, or returns null if it has no words.
+     */
+    long[] getSignature(AgigaDocument doc) {
+        int numWords = 0;
+        for (AgigaSentence sent : doc.getSents()) {
+            numWords += sent.getTokens().size();
+        }
+        if (numWords == 0) {
+            return null;
+        }
+        long[] wordHashes = new long[numWords];
+        int w = 0;
+        for (AgigaSentence sent : doc.getSents()) {
+            for (AgigaToken tok : sent.getTokens()) {
+                wordHashes[w++] = Util.hash64(tok.getWord());
+            }
+        }
+        long[] sig = new long[hashMults.length];
+        Arrays.fill(sig, Long.MAX_VALUE);
+        // A document shorter than a shingle is one shingle.
+        int k = Math.min(shingleLength, numWords);
+        for (int i = 0; i + k <= numWords; i++) {
+            long x = 0;
+            for (int j = i; j < i + k; j++) {
+                x = (x ^ wordHashes[j]) * 0x100000001b3L;
+            }
+            x = mix(x);
+            for (int h = 0; h < sig.length; h++) {
+                long v = (hashMults[h] * x + hashAdds[h]) >>> 1;
+                if (v < sig[h]) {
+                    sig[h] = v;
+                }
+            }
+        }
+        return sig;
+    }
+
+    private static long mix(long h) {
+        // The finalizer of MurmurHash3.
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Adds a document, read with the prefs from getPrefs(), to the index.
+     *
+     * @return The id of the earliest document of the cluster of this one,
+     *         among the documents added so far, if it is not this one, or
+     *         null if this one is the earliest. When the documents are added
+     *         in order of their dates, this is null for exactly the first
+     *         document of each cluster of getClusters().
+     */
+    public String add(AgigaDocument doc) {
+        synchronized (this) {
+            if (docIds == null) {
+                init();
+            }
+        }
+        long[] sig = getSignature(doc);
+        if (sig == null) {
+            return null;
+        }
+        long[] keys = new long[numBands];
+        byte[] bytes = new byte[sig.length];
+        for (int b = 0; b < numBands; b++) {
+            long key = b;
+            for (int r = b * rowsPerBand; r < (b + 1) * rowsPerBand; r++) {
+                key = mix(key * 0x9e3779b97f4a7c15L ^ sig[r]);
+            }
+            keys[b] = key;
+        }
+        for (int h = 0; h < sig.length; h++) {
+            bytes[h] = (byte) (sig[h] >>> 40);
+        }
+        synchronized (this) {
+            numChecked++;
+            // The roots of the clusters with a candidate which is similar
+            // enough. A candidate in a cluster already found is skipped.
+            int[] matches = new int[4];
+            int numMatches = 0;
+            for (int b = 0; b < numBands; b++) {
+                int slot = findSlot(keys[b]);
+                for (int cand = bandDocs[slot] - 1; cand >= 0; cand = bandNext[cand * numBands + b] - 1) {
+                    int root = find(cand);
+                    if (indexOf(matches, numMatches, root) < 0 && getSimilarity(bytes, cand) >= threshold) {
+                        if (numMatches == matches.length) {
+                            matches = Arrays.copyOf(matches, 2 * numMatches);
+                        }
+                        matches[numMatches++] = root;
+                    }
+                }
+            }
+            // The earliest document of the clusters.
+            String docId = doc.getDocId();
+            String first = null;
+            for (int i = 0; i < numMatches; i++) {
+                String id = docIds.get(firsts[matches[i]]);
+                if (first == null || DOC_ID_COMPARATOR.compare(id, first) < 0) {
+                    first = id;
+                }
+            }
+            if (numMatches > 0) {
+                numDuplicates++;
+            }
+            if (docIds.size() < maxDocs) {
+                addToIndex(docId, keys, bytes, matches, numMatches);
+            } else if (docIds.size() == maxDocs) {
+                log.warning("The index is full after " + maxDocs + " documents; later documents are checked "
+                        + "against it but not added to it");
+                docIds.add(null);
+            }
+            return first == null || DOC_ID_COMPARATOR.compare(docId, first) <= 0 ? null : first;
+        }
+    }
+
+    private static int indexOf(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int findSlot(long key) {
+        int slot = (int) mix(key) & bandMask;
+        while (bandDocs[slot] != 0 && bandKeys[slot] != key) {
+            slot = (slot + 1) & bandMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Estimates the Jaccard similarity of a signature and that of a document
+     * in the index from the fraction of their bytes which agree, of which
+     * 1/256 agree by chance.
+     */
+    private double getSimilarity(byte[] bytes, int doc) {
+        int offset = doc * bytes.length;
+        int numSame = 0;
+        for (int h = 0; h < bytes.length; h++) {
+            if (bytes[h] == sigBytes[offset + h]) {
+                numSame++;
+            }
+        }
+        double fraction = (double) numSame / bytes.length;
+        return Math.max(0, (fraction - 1.0 / 256) / (1 - 1.0 / 256));
+    }
+
+    private void addToIndex(String docId, long[] keys, byte[] bytes, int[] matches, int numMatches) {
+        int doc = docIds.size();
+        docIds.add(docId);
+        if (doc == parents.length) {
+            // Grow the arrays, but never past the documents which fit in the
+            // memory budget.
+            int size = (int) Math.min(maxDocs, Math.max(1024, 2L * doc));
+            sigBytes = Arrays.copyOf(sigBytes, size * bytes.length);
+            bandNext = Arrays.copyOf(bandNext, size * numBands);
+            parents = Arrays.copyOf(parents, size);
+            firsts = Arrays.copyOf(firsts, size);
+        }
+        System.arraycopy(bytes, 0, sigBytes, doc * bytes.length, bytes.length);
+        parents[doc] = doc;
+        firsts[doc] = doc;
+        for (int i = 0; i < numMatches; i++) {
+            int root = find(doc);
+            int first = firsts[root];
+            if (DOC_ID_COMPARATOR.compare(docIds.get(firsts[matches[i]]), docIds.get(first)) < 0) {
+                first = firsts[matches[i]];
+            }
+            parents[root] = matches[i];
+            firsts[matches[i]] = first;
+        }
+        for (int b = 0; b < numBands; b++) {
+            int slot = findSlot(keys[b]);
+            bandKeys[slot] = keys[b];
+            bandNext[doc * numBands + b] = bandDocs[slot];
+            bandDocs[slot] = doc + 1;
+        }
+    }
+
+    private int find(int doc) {
+        while (parents[doc] != doc) {
+            parents[doc] = parents[parents[doc]];
+            doc = parents[doc];
+        }
+        return doc;
+    }
+
+    /**
+     * Finds the near-duplicates among the documents of each of the files,
+     * using numThreads threads. Documents which can not be read are skipped.
+     */
+    public void add(List<String> files, int numThreads) {
+        AgigaParallel.forEachFile(files, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String file) {
+                log.info("Reading file: " + file);
+                StreamingDocumentReader reader = new StreamingDocumentReader(file, getPrefs());
+                try {
+                    reader.setQuarantine(AgigaQuarantine.SKIP);
+                    for (AgigaDocument doc : reader) {
+                        add(doc);
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the clusters of near-duplicate documents in the index, each with
+     * at least two documents. The documents of each cluster are in order of
+     * their dates and then their ids, so that the first is the one to keep,
+     * the one for which add() returned null when the documents were added in
+     * that order.
+     */
+    public synchronized List<List<String>> getClusters() {
+        Map<Integer, List<String>> clusters = new HashMap<Integer, List<String>>();
+        int numDocs = docIds == null ? 0 : Math.min(docIds.size(), maxDocs);
+        for (int doc = 0; doc < numDocs; doc++) {
+            int root = find(doc);
+            List<String> cluster = clusters.get(root);
+            if (cluster == null) {
+                cluster = new ArrayList<String>();
+                clusters.put(root, cluster);
+            }
+            cluster.add(docIds.get(doc));
+        }
+        List<List<String>> result = new ArrayList<List<String>>();
+        for (List<String> cluster : clusters.values()) {
+            if (cluster.size() > 1) {
+                Collections.sort(cluster, DOC_ID_COMPARATOR);
+                result.add(cluster);
+            }
+        }
+        Collections.sort(result, new Comparator<List<String>>() {
+            @Override
+            public int compare(List<String> c1, List<String> c2) {
+                return DOC_ID_COMPARATOR.compare(c1.get(0), c2.get(0));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets a comparator which orders document ids, such as
+     * NYT_ENG_19991101.0001, by their dates and then by the ids.
+     */
+    public static Comparator<String> getDocIdComparator() {
+        return new Comparator<String>() {
+            @Override
+            public int compare(String id1, String id2) {
+                int c = getDate(id1).compareTo(getDate(id2));
+                return c != 0 ? c : id1.compareTo(id2);
+            }
+
+            private String getDate(String id) {
+                Matcher m = DOC_ID.matcher(id);
+                return m.matches() ? m.group(1) : "";
+            }
+        };
+    }
+
+    /**
+     * Writes one line for each cluster, with the ids of its documents
+     * separated by tabs, the one to keep first.
+     */
+    public void writeClusters(Writer writer) throws IOException {
+        for (List<String> cluster : getClusters()) {
+            StringBuilder sb = new StringBuilder();
+            for (String docId : cluster) {
+                sb.append(sb.length() == 0 ? "" : "\t").append(docId);
+            }
+            writer.write(sb.append('\n').toString());
+        }
+    }
+
+    /**
+     * Gets the number of documents checked, not counting those without
+     * words.
+     */
+    public synchronized long getNumChecked() {
+        return numChecked;
+    }
+
+    /**
+     * Gets the number of documents which were near-duplicates of documents
+     * added before them.
+     */
+    public synchronized long getNumDuplicates() {
+        return numDuplicates;
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaNearDuplicates.class.getName()
+                + " [options] <clusters file> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -shingle <number>        (Words in each shingle, default 5)"
+                + "\n    -bands <number> <rows>   (LSH bands and rows in each band, default 20 5)"
+                + "\n    -threshold <similarity>  (Minimum estimated Jaccard similarity, default 0.8)"
+                + "\n    -memory <megabytes>      (Memory for the index, default a quarter of the heap)"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  Writes one line for each cluster of near-duplicates, with the ids of its"
+                + "\n  documents separated by tabs, the earliest first.";
+        AgigaNearDuplicates dedup = new AgigaNearDuplicates();
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-shingle")) {
+                dedup.setShingleLength(opts.getInt());
+            } else if (opt.equals("-bands")) {
+                int numBands = opts.getInt();
+                dedup.setBands(numBands, opts.getInt());
+            } else if (opt.equals("-threshold")) {
+                dedup.setThreshold(opts.getDouble());
+            } else if (opt.equals("-memory")) {
+                dedup.setMemoryBytes(opts.getLong() << 20);
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        dedup.add(positional.subList(1, positional.size()), numThreads);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(positional.get(0)), "UTF-8"));
+        try {
+            dedup.writeClusters(writer);
+        } finally {
+            writer.close();
+        }
+        log.info("Checked " + dedup.getNumChecked() + " documents, of which " + dedup.getNumDuplicates()
+                + " were near-duplicates, in " + dedup.getClusters().size() + " clusters");
+    }
+
+}
@@ -0,0 +1,579 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Counts the n-grams of words, lemmas or part-of-speech tags in a corpus of
+ * Annotated Gigaword files, for n from 1 up to 5. N-grams do not cross
+ * sentence boundaries.
+ *
+ * The files are read in parallel, one file per thread. The tokens are mapped
+ * to ids by a shared AgigaVocabulary, and each n-gram is packed with its
+ * length into a 128-bit key, which each thread counts in its own
+ * open-addressing hash table of primitive arrays. When a table reaches its
+ * share of the memory budget, it is sorted and written to disk as a run.
+ * Finally the runs are merged, the counts of each n-gram are summed, and those
+ * with at least the minimum count are written to the output file as lines of
+ * the form "w1 w2 w3\tcount", grouped by n. The output is gzipped if its name
+ * ends in ".gz".
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaNgramCounter {
+
+    private static Logger log = Logger.getLogger(AgigaNgramCounter.class.getName());
+
+    /** The longest n-grams which can be counted. */
+    public static final int MAX_ORDER = 5;
+
+    // The bits of each id in a key: 5 ids and the length fill 128 bits.
+    private static final int ID_BITS = 25;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    // The bytes used by each slot of a table.
+    private static final int BYTES_PER_SLOT = 3 * 8;
+
+    /**
+     * The part of each token to count.
+     */
+    public enum Unit {
+        WORD("word"),
+        LEMMA("lemma"),
+        POS("pos");
+
+        private String name;
+
+        private Unit(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the unit with the given name, or null if there is none.
+         */
+        public static Unit fromName(String name) {
+            for (Unit unit : values()) {
+                if (unit.name.equals(name)) {
+                    return unit;
+                }
+            }
+            return null;
+        }
+
+        String get(AgigaToken tok) {
+            switch (this) {
+            case WORD:
+                return tok.getWord();
+            case LEMMA:
+                return tok.getLemma();
+            default:
+                return tok.getPosTag();
+            }
+        }
+    }
+
+    private Unit unit = Unit.WORD;
+    private int minOrder = 1;
+    private int maxOrder = 3;
+    private long minCount = 1;
+    private long memoryBytes = Runtime.getRuntime().maxMemory() / 4;
+    private int numThreads = AgigaParallel.getDefaultNumThreads();
+
+    private AgigaVocabulary vocab;
+    private List<NgramTable> tables;
+    private List<String> runFiles;
+    private String runPrefix;
+    private AtomicLong numNgrams;
+
+    public void setUnit(Unit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Sets the lengths of the n-grams to count, from minOrder to maxOrder. The
+     * default is 1 to 3.
+     */
+    public void setOrders(int minOrder, int maxOrder) {
+        require(1 <= minOrder && minOrder <= maxOrder && maxOrder <= MAX_ORDER, "Invalid n-gram orders: "
+                + minOrder + " to " + maxOrder);
+        this.minOrder = minOrder;
+        this.maxOrder = maxOrder;
+    }
+
+    /**
+     * Sets the minimum count of the n-grams written. The default is 1.
+     */
+    public void setMinCount(long minCount) {
+        this.minCount = minCount;
+    }
+
+    /**
+     * Sets the memory, in bytes, for the hash tables of all of the threads
+     * together. The default is a quarter of the maximum heap size.
+     */
+    public void setMemoryBytes(long memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Counts the n-grams in the input files and writes them to outputFile.
+     * Temporary runs are written to files beginning with outputFile.
+     *
+     * @return The number of distinct n-grams written.
+     */
+    public long count(List<String> inputFiles, String outputFile) {
+        vocab = new AgigaVocabulary();
+        tables = Collections.synchronizedList(new ArrayList<NgramTable>());
+        runFiles = Collections.synchronizedList(new ArrayList<String>());
+        runPrefix = outputFile + ".run";
+        numNgrams = new AtomicLong();
+        final AtomicInteger numRuns = new AtomicInteger();
+        int numTables = Math.max(1, Math.min(numThreads, inputFiles.size()));
+        final int capacity = getCapacity(memoryBytes / numTables);
+        log.info("Counting " + minOrder + "- to " + maxOrder + "-grams (" + unit.getName() + ") with "
+                + numTables + " tables of " + capacity + " slots");
+        final ThreadLocal<NgramTable> localTables = new ThreadLocal<NgramTable>() {
+            @Override
+            protected NgramTable initialValue() {
+                NgramTable table = new NgramTable(capacity);
+                tables.add(table);
+                return table;
+            }
+        };
+        try {
+            AgigaParallel.forEachFile(inputFiles, numThreads, new AgigaParallel.FileTask() {
+                @Override
+                public void run(String file) throws IOException {
+                    countFile(file, localTables.get(), numRuns);
+                }
+            });
+            for (NgramTable table : tables) {
+                if (table.size > 0) {
+                    spill(table, numRuns);
+                }
+            }
+            tables = null;
+            log.info("Counted " + numNgrams.get() + " n-grams of " + vocab.size() + " types; merging "
+                    + runFiles.size() + " runs");
+            return merge(outputFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (String runFile : runFiles) {
+                new File(runFile).delete();
+            }
+        }
+    }
+
+    /**
+     * Gets the largest power of two number of slots which fits in the given
+     * memory.
+     */
+    private static int getCapacity(long bytes) {
+        long slots = Math.max(1024, bytes / BYTES_PER_SLOT);
+        int capacity = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        return capacity;
+    }
+
+    private void countFile(String file, NgramTable table, AtomicInteger numRuns) throws IOException {
+        log.info("Counting file: " + file);
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        switch (unit) {
+        case WORD:
+            prefs.setWord(true);
+            break;
+        case LEMMA:
+            prefs.setLemma(true);
+            break;
+        case POS:
+            prefs.setPos(true);
+            break;
+        }
+        StreamingSentenceReader reader = new StreamingSentenceReader(file, prefs);
+        try {
+            reader.setQuarantine(AgigaQuarantine.SKIP);
+            int[] ids = new int[256];
+            long numFileNgrams = 0;
+            for (AgigaSentence sent : reader) {
+                List<AgigaToken> tokens = sent.getTokens();
+                int n = tokens.size();
+                if (n > ids.length) {
+                    ids = new int[Math.max(n, ids.length * 2)];
+                }
+                for (int i = 0; i < n; i++) {
+                    String str = unit.get(tokens.get(i));
+                    ids[i] = vocab.getId(str == null ? "" : str);
+                    require(ids[i] <= ID_MASK, "The vocabulary is too large");
+                }
+                for (int i = 0; i < n; i++) {
+                    // Shift the ids of the n-gram starting at i into the key
+                    // one at a time, adding the key for each order.
+                    for (int order = minOrder; order <= maxOrder && i + order <= n; order++) {
+                        long hi = 0;
+                        long lo = order;
+                        for (int j = 0; j < MAX_ORDER; j++) {
+                            long id = j < order ? ids[i + j] : 0;
+                            hi = (hi << ID_BITS) | (lo >>> (64 - ID_BITS));
+                            lo = (lo << ID_BITS) | id;
+                        }
+                        if (!table.add(hi, lo)) {
+                            spill(table, numRuns);
+                            table.add(hi, lo);
+                        }
+                        numFileNgrams++;
+                    }
+                }
+            }
+            numNgrams.addAndGet(numFileNgrams);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Sorts the table, writes it to a new run file and clears it.
+     */
+    private void spill(NgramTable table, AtomicInteger numRuns) throws IOException {
+        String runFile = runPrefix + numRuns.getAndIncrement();
+        runFiles.add(runFile);
+        int size = table.sort();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile),
+                1 << 16));
+        try {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(table.his[i]);
+                out.writeLong(table.los[i]);
+                AgigaInvertedIndex.writeVarint(out, table.counts[i]);
+            }
+        } finally {
+            out.close();
+        }
+        table.clear();
+        log.fine("Wrote " + size + " n-grams to " + runFile);
+    }
+
+    private long merge(String outputFile) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, runFiles.size()),
+                new Comparator<RunReader>() {
+                    @Override
+                    public int compare(RunReader r1, RunReader r2) {
+                        return compareKeys(r1.hi, r1.lo, r2.hi, r2.lo);
+                    }
+                });
+        for (String runFile : runFiles) {
+            RunReader reader = new RunReader(runFile);
+            if (reader.next()) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+        OutputStream os = new FileOutputStream(outputFile);
+        if (outputFile.endsWith(".gz")) {
+            os = new GZIPOutputStream(os, 1 << 16) {
+                {
+                    // The default level is several times slower than the
+                    // rest of the merge.
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"), 1 << 16);
+        long numWritten = 0;
+        StringBuilder sb = new StringBuilder();
+        long[] ids = new long[MAX_ORDER];
+        try {
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                long hi = reader.hi;
+                long lo = reader.lo;
+                long count = 0;
+                while (reader != null && reader.hi == hi && reader.lo == lo) {
+                    count += reader.count;
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                    reader = queue.peek();
+                    if (reader != null && reader.hi == hi && reader.lo == lo) {
+                        queue.poll();
+                    }
+                }
+                if (count < minCount) {
+                    continue;
+                }
+                // Shift the ids back out of the key, last first.
+                long h = hi;
+                long l = lo;
+                for (int j = MAX_ORDER - 1; j >= 0; j--) {
+                    ids[j] = l & ID_MASK;
+                    l = (l >>> ID_BITS) | (h << (64 - ID_BITS));
+                    h >>>= ID_BITS;
+                }
+                int order = (int) l;
+                sb.setLength(0);
+                for (int j = 0; j < order; j++) {
+                    if (j > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(vocab.getString((int) ids[j]));
+                }
+                sb.append('\t').append(count).append('\n');
+                writer.write(sb.toString());
+                numWritten++;
+            }
+        } finally {
+            writer.close();
+        }
+        log.info("Wrote " + numWritten + " n-grams to " + outputFile);
+        return numWritten;
+    }
+
+    /**
+     * Compares keys as unsigned 128-bit integers, which orders them by
+     * length.
+     */
+    private static int compareKeys(long hi1, long lo1, long hi2, long lo2) {
+        if (hi1 != hi2) {
+            return (hi1 + Long.MIN_VALUE) < (hi2 + Long.MIN_VALUE) ? -1 : 1;
+        }
+        if (lo1 != lo2) {
+            return (lo1 + Long.MIN_VALUE) < (lo2 + Long.MIN_VALUE) ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * An open-addressing hash table from 128-bit keys to counts, with linear
+     * probing. A slot is empty if its count is 0.
+     */
+    private static class NgramTable {
+
+        private long[] his;
+        private long[] los;
+        private long[] counts;
+        private int mask;
+        private int size = 0;
+        private int maxSize;
+
+        public NgramTable(int capacity) {
+            his = new long[capacity];
+            los = new long[capacity];
+            counts = new long[capacity];
+            mask = capacity - 1;
+            // Keep the load factor low enough for short probes.
+            maxSize = (int) (capacity * 0.7);
+        }
+
+        /**
+         * Adds one to the count of a key, or returns false if the table is
+         * full.
+         */
+        public boolean add(long hi, long lo) {
+            int slot = hash(hi, lo) & mask;
+            while (counts[slot] != 0) {
+                if (his[slot] == hi && los[slot] == lo) {
+                    counts[slot]++;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == maxSize) {
+                return false;
+            }
+            his[slot] = hi;
+            los[slot] = lo;
+            counts[slot] = 1;
+            size++;
+            return true;
+        }
+
+        private static int hash(long hi, long lo) {
+            // The finalizer of MurmurHash3.
+            long h = hi * 0x9e3779b97f4a7c15L ^ lo;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+
+        /**
+         * Moves the entries to the start of the arrays and sorts them by key,
+         * after which the table can only be cleared.
+         *
+         * @return The number of entries.
+         */
+        public int sort() {
+            int j = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    his[j] = his[i];
+                    los[j] = los[i];
+                    counts[j] = counts[i];
+                    j++;
+                }
+            }
+            quickSort(0, j - 1);
+            return j;
+        }
+
+        private void quickSort(int left, int right) {
+            while (right - left > 16) {
+                int mid = (left + right) >>> 1;
+                long pivotHi = his[mid];
+                long pivotLo = los[mid];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (compareKeys(his[i], los[i], pivotHi, pivotLo) < 0) {
+                        i++;
+                    }
+                    while (compareKeys(his[j], los[j], pivotHi, pivotLo) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // Recurse on the smaller part, and loop on the larger.
+                if (j - left < right - i) {
+                    quickSort(left, j);
+                    left = i;
+                } else {
+                    quickSort(i, right);
+                    right = j;
+                }
+            }
+            for (int i = left + 1; i <= right; i++) {
+                for (int j = i; j > left && compareKeys(his[j - 1], los[j - 1], his[j], los[j]) > 0; j--) {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            long hi = his[i];
+            long lo = los[i];
+            long count = counts[i];
+            his[i] = his[j];
+            los[i] = los[j];
+            counts[i] = counts[j];
+            his[j] = hi;
+            los[j] = lo;
+            counts[j] = count;
+        }
+
+        public void clear() {
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+
+    }
+
+    /**
+     * Reads the entries of a run in order.
+     */
+    private static class RunReader {
+
+        private DataInputStream in;
+        private int remaining;
+        private long hi;
+        private long lo;
+        private long count;
+
+        public RunReader(String runFile) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), 1 << 16));
+            remaining = in.readInt();
+        }
+
+        public boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            hi = in.readLong();
+            lo = in.readLong();
+            count = AgigaInvertedIndex.readVarint(in);
+            return true;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaNgramCounter.class.getName()
+                + " [options] <output file> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -unit <unit>             (word, lemma or pos, default word)"
+                + "\n    -n <min>-<max>           (Lengths of the n-grams, up to " + MAX_ORDER + ", default 1-3)"
+                + "\n    -min-count <number>      (Minimum count of the n-grams written, default 1)"
+                + "\n    -memory <megabytes>      (Memory for the counts before spilling to disk,"
+                + "\n                              default a quarter of the heap)"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  Writes lines of the form \"w1 w2 w3<tab>count\", gzipped if the output file ends in .gz.";
+        AgigaNgramCounter counter = new AgigaNgramCounter();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-unit")) {
+                counter.setUnit(opts.getUnit());
+            } else if (opt.equals("-n")) {
+                String[] orders = opts.getValue().split("-");
+                int minOrder = Integer.parseInt(orders[0]);
+                int maxOrder = Integer.parseInt(orders[orders.length - 1]);
+                counter.setOrders(minOrder, maxOrder);
+            } else if (opt.equals("-min-count")) {
+                counter.setMinCount(opts.getLong());
+            } else if (opt.equals("-memory")) {
+                counter.setMemoryBytes(opts.getLong() << 20);
+            } else if (opt.equals("-threads")) {
+                counter.setNumThreads(opts.getInt());
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        counter.count(positional.subList(1, positional.size()), positional.get(0));
+    }
+
+}
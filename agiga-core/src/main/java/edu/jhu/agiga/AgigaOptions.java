@@ -0,0 +1,133 @@
+package edu.jhu.agiga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+import edu.jhu.agiga.AgigaNgramCounter.Unit;
+
+/**
+ * Parses the command line arguments of the main methods: options starting
+ * with "-", some of which take values, mixed with positional arguments. On
+ * an error, it logs the message and the usage and exits. A typical loop is:
+ *
+ * <pre>
+ * AgigaOptions opts = new AgigaOptions(args, usage);
+ * for (String opt = opts.next(); opt != null; opt = opts.next()) {
+ *     if (opt.equals("-threads")) {
+ *         numThreads = opts.getInt();
+ *     } else {
+ *         opts.unrecognized(opt);
+ *     }
+ * }
+ * List&lt;String&gt; positional = opts.getPositional(2, Integer.MAX_VALUE);
+ * </pre>
+ *
+ * @author mgormley
+ *
+ */
+class AgigaOptions {
+
+    private static Logger log = Logger.getLogger(AgigaOptions.class.getName());
+
+    private String[] args;
+    private String usage;
+    private int i = -1;
+    private List<String> positional = new ArrayList<String>();
+
+    public AgigaOptions(String[] args, String usage) {
+        this.args = args;
+        this.usage = usage;
+    }
+
+    /**
+     * Gets the next option, collecting the positional arguments before it, or
+     * returns null after the last argument.
+     */
+    public String next() {
+        while (++i < args.length) {
+            if (args[i].startsWith("-")) {
+                return args[i];
+            }
+            positional.add(args[i]);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the value following the current option.
+     */
+    public String getValue() {
+        if (i + 1 >= args.length) {
+            fail("Missing value of option: " + args[i]);
+        }
+        return args[++i];
+    }
+
+    public int getInt() {
+        return Integer.parseInt(getValue());
+    }
+
+    public long getLong() {
+        return Long.parseLong(getValue());
+    }
+
+    public double getDouble() {
+        return Double.parseDouble(getValue());
+    }
+
+    /**
+     * Gets the unit named by the value following the current option.
+     */
+    public Unit getUnit() {
+        String name = getValue();
+        Unit unit = Unit.fromName(name);
+        if (unit == null) {
+            fail("Unit not recognized: " + name);
+        }
+        return unit;
+    }
+
+    /**
+     * Gets the dependency form named by the value following the current
+     * option.
+     */
+    public DependencyForm getForm() {
+        String name = getValue();
+        DependencyForm form = AgigaDependencyIndex.getForm(name);
+        if (form == null) {
+            fail("Dependency form not recognized: " + name);
+        }
+        return form;
+    }
+
+    /**
+     * Fails on an option which the caller does not recognize.
+     */
+    public void unrecognized(String opt) {
+        fail("Option not recognized: " + opt);
+    }
+
+    /**
+     * Gets the positional arguments, failing unless there are at least min
+     * and at most max of them. Call after next() returns null.
+     */
+    public List<String> getPositional(int min, int max) {
+        if (positional.size() < min || positional.size() > max) {
+            log.severe(usage);
+            System.exit(1);
+        }
+        return positional;
+    }
+
+    /**
+     * Logs the message and the usage and exits.
+     */
+    public void fail(String message) {
+        log.severe(message);
+        log.severe(usage);
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,96 @@
+package edu.jhu.agiga;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Runs a task over each of a list of files on a pool of threads. Each file is
+ * read by a single thread, so the tasks can use the streaming readers as
+ * usual, but must be safe to run concurrently on different files.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaParallel {
+
+    private static Logger log = Logger.getLogger(AgigaParallel.class.getName());
+
+    /**
+     * A task to run on one file.
+     */
+    public interface FileTask {
+        public void run(String file) throws Exception;
+    }
+
+    private AgigaParallel() {
+        // Private constructor.
+    }
+
+    /**
+     * Gets the default number of threads: one per available processor.
+     */
+    public static int getDefaultNumThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs the task on each file, using numThreads threads, and returns when
+     * all of them are done. The largest files are started first, so that the
+     * threads finish at about the same time. If a task throws an exception,
+     * the tasks which have not started are cancelled and the exception is
+     * rethrown, wrapped in a RuntimeException if necessary.
+     */
+    public static void forEachFile(List<String> files, int numThreads, final FileTask task) {
+        List<String> sorted = new ArrayList<String>(files);
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String f1, String f2) {
+                long l1 = new File(f1).length();
+                long l2 = new File(f2).length();
+                return l1 > l2 ? -1 : (l1 < l2 ? 1 : 0);
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, files.size())));
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(sorted.size());
+            for (final String file : sorted) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        task.run(file);
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    log.severe("Failed on file: " + sorted.get(i));
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,645 @@
+package edu.jhu.agiga;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact, array-encoded representation of a constituency parse. Each node
+ * of the tree is an integer index, and the structure is stored in parallel
+ * arrays of parent, first child and next sibling indices. The leaves are the
+ * tokens of the sentence, in order, so each node also records the span of
+ * tokens [start, end) that it covers.
+ *
+ * The nonterminal and part-of-speech labels are interned in a table shared by
+ * all trees as the trees are parsed, so that each node stores only an integer
+ * label id and labels can be compared by id, e.g. tree.getLabelId(node) ==
+ * AgigaParseTree.getLabelId("NP"). Looking up a label does not add it to the
+ * table. The table holds at most MAX_LABELS labels; beyond that, which only
+ * happens with malformed input, new labels are kept in the tree that uses
+ * them and have negative ids.
+ *
+ * Trees are created from the text of the &lt;parse&gt; element in a single pass
+ * by parse(String). A terminal may contain whitespace (e.g. "(NNP New York)"),
+ * in which case it is still a single leaf.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaParseTree {
+
+    /** The label id of every leaf. */
+    public static final int LEAF = -1;
+
+    /** Returned by the methods below when no such node exists. */
+    public static final int NONE = -1;
+
+    /** The maximum number of labels in the table shared by all trees. */
+    public static final int MAX_LABELS = 4096;
+
+    // The label table shared by all trees: the labels, and an open addressing
+    // hash table of their ids. Both are replaced, never modified, when a label
+    // is added so they can be read without locking.
+    private static volatile String[] labels = new String[0];
+    private static volatile int[] labelTable = newLabelTable(256);
+
+    private static int[] newLabelTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, NONE);
+        return table;
+    }
+
+    private int size;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] labelId;
+    private int[] start;
+    private int[] end;
+    // The leaf node and the text of each token.
+    private int[] leaves;
+    private String[] words;
+    private int numTokens;
+    // The labels which did not fit in the shared table. The label with id
+    // -2 - i is localLabels[i].
+    private String[] localLabels;
+    private int numLocalLabels;
+
+    private AgigaParseTree(int capacity) {
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        labelId = new int[capacity];
+        start = new int[capacity];
+        end = new int[capacity];
+        leaves = new int[capacity];
+        words = new String[capacity];
+    }
+
+    /**
+     * Parses the Penn Treebank style text of a constituency parse, such as
+     * "(ROOT (S (NP (NNP John)) (VP (VBD ran))))".
+     */
+    public static AgigaParseTree parse(String text) {
+        AgigaParseTree tree = new AgigaParseTree(Math.max(4, text.length() / 5));
+        // The stack of open nodes. While a node is open, its entry in end
+        // holds its last child instead.
+        int[] stack = new int[32];
+        int depth = 0;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                int j = i + 1;
+                while (j < n && !isDelimiter(text.charAt(j))) {
+                    j++;
+                }
+                int label = internLabel(text, i + 1, j);
+                if (label == NONE) {
+                    label = tree.addLocalLabel(text.substring(i + 1, j));
+                }
+                int node = tree.addNode(depth > 0 ? stack[depth - 1] : NONE, label);
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                i = j;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    throw new IllegalStateException("Unbalanced parentheses in parse: " + text);
+                }
+                tree.end[stack[--depth]] = tree.numTokens;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                // A terminal extends up to the next parenthesis, and may
+                // contain whitespace.
+                if (depth == 0) {
+                    throw new IllegalStateException("Terminal outside of parentheses in parse: " + text);
+                }
+                int j = i + 1;
+                while (j < n && text.charAt(j) != '(' && text.charAt(j) != ')') {
+                    j++;
+                }
+                int k = j;
+                while (Character.isWhitespace(text.charAt(k - 1))) {
+                    k--;
+                }
+                int node = tree.addNode(stack[depth - 1], LEAF);
+                tree.addToken(node, text.substring(i, k));
+                i = j;
+            }
+        }
+        if (depth != 0 || tree.size == 0) {
+            throw new IllegalStateException("Unbalanced parentheses in parse: " + text);
+        }
+        return tree;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == '(' || c == ')' || Character.isWhitespace(c);
+    }
+
+    /** Adds a node as the last child of an open node. */
+    private int addNode(int parentNode, int label) {
+        if (size == parent.length) {
+            int capacity = size * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            labelId = Arrays.copyOf(labelId, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+        }
+        int node = size++;
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        labelId[node] = label;
+        start[node] = numTokens;
+        end[node] = NONE;
+        if (parentNode != NONE) {
+            if (firstChild[parentNode] == NONE) {
+                firstChild[parentNode] = node;
+            } else {
+                nextSibling[end[parentNode]] = node;
+            }
+            end[parentNode] = node;
+        }
+        return node;
+    }
+
+    private void addToken(int node, String word) {
+        if (numTokens == leaves.length) {
+            leaves = Arrays.copyOf(leaves, numTokens * 2);
+            words = Arrays.copyOf(words, numTokens * 2);
+        }
+        leaves[numTokens] = node;
+        words[numTokens] = word;
+        numTokens++;
+        end[node] = numTokens;
+    }
+
+    private int addLocalLabel(String label) {
+        for (int i = 0; i < numLocalLabels; i++) {
+            if (localLabels[i].equals(label)) {
+                return -2 - i;
+            }
+        }
+        if (localLabels == null) {
+            localLabels = new String[4];
+        } else if (numLocalLabels == localLabels.length) {
+            localLabels = Arrays.copyOf(localLabels, numLocalLabels * 2);
+        }
+        localLabels[numLocalLabels] = label;
+        return -2 - numLocalLabels++;
+    }
+
+    // -------------- Labels -----------------
+
+    /**
+     * Gets the id of a label in the table shared by all trees, or NONE if no
+     * tree has used the label. The table is not changed. Since NONE is also
+     * the id of a leaf, check for NONE before comparing with node label ids.
+     */
+    public static int getLabelId(String label) {
+        return findLabel(labelTable, label, 0, label.length(), hashLabel(label, 0, label.length()));
+    }
+
+    /**
+     * Gets the id of a label in the table shared by all trees, adding it if
+     * necessary, or NONE if the label is new and the table is full.
+     */
+    private static int internLabel(String label) {
+        return internLabel(label, 0, label.length());
+    }
+
+    /**
+     * Gets the id of the label text.substring(start, end), adding it if
+     * necessary, without creating a new string unless the label is new.
+     */
+    private static int internLabel(String text, int start, int end) {
+        int hash = hashLabel(text, start, end);
+        int id = findLabel(labelTable, text, start, end, hash);
+        if (id != NONE) {
+            return id;
+        }
+        synchronized (AgigaParseTree.class) {
+            id = findLabel(labelTable, text, start, end, hash);
+            if (id == NONE && labels.length < MAX_LABELS) {
+                id = labels.length;
+                String[] newLabels = Arrays.copyOf(labels, id + 1);
+                newLabels[id] = text.substring(start, end);
+                // Keep the hash table at most half full.
+                int[] newTable = labelTable;
+                if (newLabels.length * 2 > newTable.length) {
+                    newTable = newLabelTable(newTable.length * 2);
+                    for (int l = 0; l < id; l++) {
+                        insertLabel(newTable, l, newLabels[l].hashCode());
+                    }
+                } else {
+                    newTable = newTable.clone();
+                }
+                insertLabel(newTable, id, hash);
+                labels = newLabels;
+                labelTable = newTable;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Gets the String.hashCode() of text.substring(start, end).
+     */
+    private static int hashLabel(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int findLabel(int[] table, String text, int start, int end, int hash) {
+        String[] labels = AgigaParseTree.labels;
+        int mask = table.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            // The table may have been published before the labels, so check
+            // the id is in range.
+            if (id == NONE || id >= labels.length) {
+                return NONE;
+            }
+            String label = labels[id];
+            if (label.length() == end - start && label.regionMatches(0, text, start, end - start)) {
+                return id;
+            }
+        }
+    }
+
+    /** Gets the label with the given id. */
+    public static String getLabelString(int id) {
+        return labels[id];
+    }
+
+    private static void insertLabel(int[] table, int id, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id;
+    }
+
+    // -------------- Traversal -----------------
+
+    /** Gets the number of nodes, including the leaves. */
+    public int size() {
+        return size;
+    }
+
+    /** Gets the number of tokens, i.e. leaves. */
+    public int getNumTokens() {
+        return numTokens;
+    }
+
+    /** Gets the root, which is always node 0. */
+    public int getRoot() {
+        return 0;
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int getNumChildren(int node) {
+        int count = 0;
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            count++;
+        }
+        return count;
+    }
+
+    public boolean isLeaf(int node) {
+        return labelId[node] == LEAF;
+    }
+
+    /** Whether the node is a part-of-speech tag, i.e. the parent of a leaf. */
+    public boolean isPreterminal(int node) {
+        int c = firstChild[node];
+        return c != NONE && nextSibling[c] == NONE && isLeaf(c);
+    }
+
+    /**
+     * Gets the label id of the node, or LEAF if it is a leaf. A label which
+     * is not in the shared table has an id less than LEAF.
+     */
+    public int getLabelId(int node) {
+        return labelId[node];
+    }
+
+    /** Gets the label of the node, or its word if it is a leaf. */
+    public String getLabel(int node) {
+        int id = labelId[node];
+        if (id >= 0) {
+            return labels[id];
+        }
+        return id == LEAF ? words[start[node]] : localLabels[-2 - id];
+    }
+
+    /** Gets the index of the first token covered by the node. */
+    public int getStart(int node) {
+        return start[node];
+    }
+
+    /** Gets the index of the token after the last token covered by the node. */
+    public int getEnd(int node) {
+        return end[node];
+    }
+
+    /** Gets the leaf node of the i'th token. */
+    public int getLeaf(int i) {
+        return leaves[i];
+    }
+
+    /** Gets the text of the i'th token. */
+    public String getWord(int i) {
+        return words[i];
+    }
+
+    /**
+     * Gets the highest node which covers exactly the tokens [start, end), or
+     * NONE if there is no such constituent.
+     */
+    public int getNode(int start, int end) {
+        if (start < 0 || end > numTokens || start >= end) {
+            return NONE;
+        }
+        int found = NONE;
+        int node = leaves[start];
+        while (node != NONE && this.start[node] == start && this.end[node] <= end) {
+            if (this.end[node] == end) {
+                found = node;
+            }
+            node = parent[node];
+        }
+        return found;
+    }
+
+    // -------------- Head finding -----------------
+
+    /**
+     * A head rule: the child categories in order of priority, and whether the
+     * children are searched from the left. A disjunctive rule instead matches
+     * the first child in any of the categories.
+     */
+    private static class HeadRule {
+        final boolean fromLeft;
+        final boolean disjunctive;
+        final int[] categories;
+
+        HeadRule(boolean fromLeft, String... categories) {
+            this(fromLeft, false, categories);
+        }
+
+        HeadRule(boolean fromLeft, boolean disjunctive, String... categories) {
+            this.fromLeft = fromLeft;
+            this.disjunctive = disjunctive;
+            this.categories = new int[categories.length];
+            for (int i = 0; i < categories.length; i++) {
+                this.categories[i] = internLabel(categories[i]);
+            }
+        }
+    }
+
+    // The head rules of Collins (1999), as given in the Stanford CollinsHeadFinder.
+    // They are keyed by base label, and looked up through labelRules.
+    private static final Map<String, HeadRule> headRules = new HashMap<String, HeadRule>();
+    static {
+        headRules.put("ADJP", new HeadRule(true, "NNS", "QP", "NN", "$", "ADVP", "JJ", "VBN", "VBG", "ADJP", "JJR",
+                "NP", "JJS", "DT", "FW", "RBR", "RBS", "SBAR", "RB"));
+        headRules.put("ADVP", new HeadRule(false, "RB", "RBR", "RBS", "FW", "ADVP", "TO", "CD", "JJR", "JJ", "IN",
+                "NP", "JJS", "NN"));
+        headRules.put("CONJP", new HeadRule(false, "CC", "RB", "IN"));
+        headRules.put("FRAG", new HeadRule(false));
+        headRules.put("INTJ", new HeadRule(true));
+        headRules.put("LST", new HeadRule(false, "LS", ":"));
+        headRules.put("NAC", new HeadRule(true, "NN", "NNS", "NNP", "NNPS", "NP", "NAC", "EX", "$", "CD", "QP",
+                "PRP", "VBG", "JJ", "JJS", "JJR", "ADJP", "FW"));
+        headRules.put("PP", new HeadRule(false, "IN", "TO", "VBG", "VBN", "RP", "FW"));
+        headRules.put("PRN", new HeadRule(true));
+        headRules.put("PRT", new HeadRule(false, "RP"));
+        headRules.put("QP", new HeadRule(true, "$", "IN", "NNS", "NN", "JJ", "RB", "DT", "CD", "NCD", "QP", "JJR",
+                "JJS"));
+        headRules.put("RRC", new HeadRule(false, "VP", "NP", "ADVP", "ADJP", "PP"));
+        headRules.put("S", new HeadRule(true, "TO", "IN", "VP", "S", "SBAR", "ADJP", "UCP", "NP"));
+        headRules.put("SBAR", new HeadRule(true, "WHNP", "WHPP", "WHADVP", "WHADJP", "IN", "DT", "S", "SQ",
+                "SINV", "SBAR", "FRAG"));
+        headRules.put("SBARQ", new HeadRule(true, "SQ", "S", "SINV", "SBARQ", "FRAG"));
+        headRules.put("SINV", new HeadRule(true, "VBZ", "VBD", "VBP", "VB", "MD", "VP", "S", "SINV", "ADJP", "NP"));
+        headRules.put("SQ", new HeadRule(true, "VBZ", "VBD", "VBP", "VB", "MD", "VP", "SQ"));
+        headRules.put("UCP", new HeadRule(false));
+        headRules.put("VP", new HeadRule(true, "TO", "VBD", "VBN", "MD", "VBZ", "VB", "VBG", "VBP", "VP", "ADJP",
+                "NN", "NNS", "NP"));
+        headRules.put("WHADJP", new HeadRule(true, "CC", "WRB", "JJ", "ADJP"));
+        headRules.put("WHADVP", new HeadRule(false, "CC", "WRB"));
+        headRules.put("WHNP", new HeadRule(true, "WDT", "WP", "WP$", "WHADJP", "WHPP", "WHNP"));
+        headRules.put("WHPP", new HeadRule(false, "IN", "TO", "FW"));
+        headRules.put("NX", new HeadRule(true));
+        headRules.put("X", new HeadRule(false));
+    }
+
+    private static final int POS_ID = internLabel("POS");
+
+    // Stands for npRules in labelRules.
+    private static final HeadRule NP_RULE = new HeadRule(false);
+
+    // The head rule of each label id in the shared table, or null if it has
+    // none. It is extended as labels are added, and replaced rather than
+    // modified so it can be read without locking.
+    private static volatile HeadRule[] labelRules = new HeadRule[0];
+
+    // The rules for NPs, which are applied in turn.
+    private static final HeadRule[] npRules = new HeadRule[] {
+            new HeadRule(false, true, "NN", "NNP", "NNPS", "NNS", "NX", "POS", "JJR"), new HeadRule(true, "NP"),
+            new HeadRule(false, true, "$", "ADJP", "PRN"), new HeadRule(false, "CD"),
+            new HeadRule(false, true, "JJ", "JJS", "RB", "QP") };
+
+    /**
+     * Gets the head child of a nonterminal node using the Collins head rules,
+     * or NONE if the node is a leaf.
+     */
+    public int getHeadChild(int node) {
+        int first = firstChild[node];
+        if (first == NONE) {
+            return NONE;
+        }
+        int last = first;
+        while (nextSibling[last] != NONE) {
+            last = nextSibling[last];
+        }
+        if (first == last) {
+            return first;
+        }
+        int id = labelId[node];
+        HeadRule rule = id >= 0 ? getHeadRule(id) : getHeadRule(getLabel(node));
+        if (rule == NP_RULE) {
+            if (labelId[last] == POS_ID) {
+                return last;
+            }
+            for (HeadRule npRule : npRules) {
+                int head = findHead(npRule, first);
+                if (head != NONE) {
+                    return head;
+                }
+            }
+            return last;
+        }
+        if (rule == null) {
+            // Includes ROOT, for which the head is its only child.
+            return first;
+        }
+        int head = findHead(rule, first);
+        if (head != NONE) {
+            return head;
+        }
+        return rule.fromLeft ? first : last;
+    }
+
+    /** Finds the first child matching the rule, for each category in turn. */
+    private int findHead(HeadRule rule, int first) {
+        if (rule.disjunctive) {
+            int match = NONE;
+            for (int c = first; c != NONE; c = nextSibling[c]) {
+                if (contains(rule.categories, labelId[c])) {
+                    match = c;
+                    if (rule.fromLeft) {
+                        break;
+                    }
+                }
+            }
+            return match;
+        }
+        for (int id : rule.categories) {
+            if (rule.fromLeft) {
+                for (int c = first; c != NONE; c = nextSibling[c]) {
+                    if (labelId[c] == id) {
+                        return c;
+                    }
+                }
+            } else {
+                // Search from the right by keeping the last match.
+                int match = NONE;
+                for (int c = first; c != NONE; c = nextSibling[c]) {
+                    if (labelId[c] == id) {
+                        match = c;
+                    }
+                }
+                if (match != NONE) {
+                    return match;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static HeadRule getHeadRule(int id) {
+        HeadRule[] rules = labelRules;
+        if (id >= rules.length) {
+            rules = updateLabelRules();
+        }
+        return rules[id];
+    }
+
+    /** Adds the head rules of the labels added since the last call. */
+    private static synchronized HeadRule[] updateLabelRules() {
+        String[] labels = AgigaParseTree.labels;
+        HeadRule[] rules = labelRules;
+        if (rules.length < labels.length) {
+            int numRules = rules.length;
+            rules = Arrays.copyOf(rules, labels.length);
+            for (int id = numRules; id < labels.length; id++) {
+                rules[id] = getHeadRule(labels[id]);
+            }
+            labelRules = rules;
+        }
+        return rules;
+    }
+
+    private static HeadRule getHeadRule(String label) {
+        label = getBaseLabel(label);
+        if (label.equals("NP") || label.equals("NML")) {
+            return NP_RULE;
+        }
+        return headRules.get(label);
+    }
+
+    /** Strips function tags and indices, e.g. NP-SBJ-1 becomes NP. */
+    private static String getBaseLabel(String label) {
+        for (int i = 1; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c == '-' || c == '=') {
+                return label.substring(0, i);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Gets the index of the head token of a node, by following the head child
+     * down to a leaf.
+     */
+    public int getHeadToken(int node) {
+        while (!isLeaf(node)) {
+            int head = getHeadChild(node);
+            if (head == NONE) {
+                // A nonterminal without children.
+                return NONE;
+            }
+            node = head;
+        }
+        return start[node];
+    }
+
+    // -------------- Printing -----------------
+
+    /** Gets the tree in the same format as the &lt;parse&gt; element. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendNode(sb, getRoot());
+        return sb.toString();
+    }
+
+    private void appendNode(StringBuilder sb, int node) {
+        if (isLeaf(node)) {
+            sb.append(words[start[node]]);
+            return;
+        }
+        sb.append('(').append(getLabel(node));
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            sb.append(' ');
+            appendNode(sb, c);
+        }
+        sb.append(')');
+    }
+
+}
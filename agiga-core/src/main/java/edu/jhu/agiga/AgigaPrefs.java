@@ -44,6 +44,26 @@ public class AgigaPrefs implements Serializable {
      */
 	boolean strict = false;
 
+    /**
+     * Whether the readers compute the fingerprint of the words of each
+     * sentence while parsing. Not set by setAll().
+     */
+    boolean readFingerprint = false;
+
+    /**
+     * Whether the readers accept sentences whose token ids are out of order
+     * or which have no parse or dependency elements, keeping them as found.
+     * Only AgigaValidator sets this, so that it can report such sentences
+     * instead of failing the document. Not set by setAll().
+     */
+    boolean tolerant = false;
+
+    /**
+     * If non-null, the objects created by the readers will record which of
+     * their annotations are accessed. See AgigaPrefsRecorder.
+     */
+    transient AgigaPrefsRecorder recorder = null;
+
     public AgigaPrefs() {
         setAll(true);
     }
@@ -136,6 +156,17 @@ public class AgigaPrefs implements Serializable {
         this.readDateline = readDateline;
     }
 
+    /**
+     * Sets whether the readers compute the fingerprint of the words of each
+     * sentence while parsing, which hashes every word. This requires
+     * readWord. Otherwise getFingerprint() computes it on its first call.
+     * The default is false; set it when every sentence will be fingerprinted,
+     * e.g. for DeduplicatingSentenceReader.
+     */
+    public void setFingerprint(boolean readFingerprint) {
+        this.readFingerprint = readFingerprint;
+    }
+
     /**
      * For testing only: Whether or not to enforce that the XML strictly match
      * the APIs expectations. If set to true, the Nov 15, 2012 release of
@@ -147,6 +178,31 @@ public class AgigaPrefs implements Serializable {
         this.strict = strict;
     }
 
+    /**
+     * Sets whether the readers accept sentences whose token ids are out of
+     * order or which have no parse or dependency elements. Then the token
+     * indices are the ids in the XML, and the missing parse or dependencies
+     * are null. For AgigaValidator only.
+     */
+    void setTolerant(boolean tolerant) {
+        this.tolerant = tolerant;
+    }
+
+    /**
+     * Attaches a recorder which will keep track of the annotations accessed
+     * on the objects read with these prefs. Set to null to stop recording.
+     */
+    public void setRecorder(AgigaPrefsRecorder recorder) {
+        this.recorder = recorder;
+        if (recorder != null) {
+            recorder.source = this;
+        }
+    }
+
+    public AgigaPrefsRecorder getRecorder() {
+        return recorder;
+    }
+
     @Override
     public boolean equals(Object other) {
         if(other == null) return false;
@@ -0,0 +1,114 @@
+package edu.jhu.agiga;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * AgigaPrefsRecorder keeps track of which annotations are actually accessed
+ * through the getters of the objects created by the readers. This provides an
+ * "auto prefs" mode: run a warm-up pass over a small sample of the data with a
+ * recorder attached to the AgigaPrefs, then use getRecordedPrefs() to read the
+ * rest of the data with only the annotations that were touched.
+ *
+ * For example:
+ *
+ * <pre>
+ * AgigaPrefs prefs = new AgigaPrefs();
+ * AgigaPrefsRecorder recorder = new AgigaPrefsRecorder();
+ * prefs.setRecorder(recorder);
+ * // ... warm-up pass over a few documents ...
+ * AgigaPrefs narrowed = recorder.getRecordedPrefs();
+ * </pre>
+ *
+ * Recording is only intended for a warm-up pass. The flags are set without
+ * synchronization, so a recorder should not be shared across threads.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaPrefsRecorder {
+
+    boolean word;
+    boolean lemma;
+    boolean offsets;
+    boolean pos;
+    boolean ner;
+    boolean normNer;
+    boolean parse;
+    boolean basicDeps;
+    boolean colDeps;
+    boolean colCcprocDeps;
+    boolean coref;
+    boolean headline;
+    boolean dateline;
+
+    // The prefs this recorder was last attached to, whose settings other than
+    // the annotations are kept by getRecordedPrefs().
+    AgigaPrefs source;
+
+    public AgigaPrefsRecorder() {
+        reset();
+    }
+
+    /**
+     * Clears all the recorded accesses.
+     */
+    public void reset() {
+        word = false;
+        lemma = false;
+        offsets = false;
+        pos = false;
+        ner = false;
+        normNer = false;
+        parse = false;
+        basicDeps = false;
+        colDeps = false;
+        colCcprocDeps = false;
+        coref = false;
+        headline = false;
+        dateline = false;
+    }
+
+    void recordDeps(DependencyForm form) {
+        if (form == DependencyForm.BASIC_DEPS) {
+            basicDeps = true;
+        } else if (form == DependencyForm.COL_DEPS) {
+            colDeps = true;
+        } else if (form == DependencyForm.COL_CCPROC_DEPS) {
+            colCcprocDeps = true;
+        } else {
+            throw new IllegalStateException("Unsupported DependencyForm: " + form);
+        }
+    }
+
+    /**
+     * Gets a new AgigaPrefs object which will read only the annotations that
+     * were accessed since this recorder was created or last reset. The
+     * settings which are not annotations (strict, fingerprint and tolerant)
+     * are copied from the prefs the recorder was last attached to with
+     * AgigaPrefs.setRecorder(). The returned prefs do not have a recorder
+     * attached.
+     */
+    public AgigaPrefs getRecordedPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setWord(word);
+        prefs.setLemma(lemma);
+        prefs.setOffsets(offsets);
+        prefs.setPos(pos);
+        prefs.setNer(ner);
+        prefs.setNormNer(normNer);
+        prefs.setParse(parse);
+        prefs.setBasicDeps(basicDeps);
+        prefs.setColDeps(colDeps);
+        prefs.setColCcprocDeps(colCcprocDeps);
+        prefs.setCoref(coref);
+        prefs.setHeadline(headline);
+        prefs.setDateline(dateline);
+        if (source != null) {
+            prefs.setStrict(source.strict);
+            prefs.setFingerprint(source.readFingerprint);
+            prefs.setTolerant(source.tolerant);
+        }
+        return prefs;
+    }
+
+}
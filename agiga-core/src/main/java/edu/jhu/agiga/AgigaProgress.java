@@ -0,0 +1,128 @@
+package edu.jhu.agiga;
+
+/**
+ * An AgigaProgress object is a snapshot of how far a StreamingVtdXmlReader
+ * has read through its input file. Progress is measured in bytes of the
+ * (compressed) file consumed, so that it can be computed without knowing the
+ * number of documents in the file ahead of time.
+ * 
+ * @author mgormley
+ * 
+ */
+public class AgigaProgress {
+
+    private final String inputFile;
+    private final String fileId;
+    private final long bytesRead;
+    private final long totalBytes;
+    private final int numDocs;
+    private final int numSents;
+    private final long elapsedMillis;
+    private final boolean done;
+
+    public AgigaProgress(String inputFile, String fileId, long bytesRead, long totalBytes, int numDocs,
+            int numSents, long elapsedMillis, boolean done) {
+        this.inputFile = inputFile;
+        this.fileId = fileId;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.numDocs = numDocs;
+        this.numSents = numSents;
+        this.elapsedMillis = elapsedMillis;
+        this.done = done;
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    /** Gets the number of bytes of the input file consumed so far. */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /** Gets the size of the input file in bytes. */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    public int getNumSents() {
+        return numSents;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /** Whether the end of the input file has been reached. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** Gets the fraction of the input file consumed so far, in [0, 1]. */
+    public double getFraction() {
+        if (done) {
+            return 1.0;
+        }
+        return totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : 0.0;
+    }
+
+    /** Gets the throughput in bytes of the input file per second. */
+    public double getBytesPerSecond() {
+        return elapsedMillis > 0 ? bytesRead * 1000.0 / elapsedMillis : 0.0;
+    }
+
+    public double getDocsPerSecond() {
+        return elapsedMillis > 0 ? numDocs * 1000.0 / elapsedMillis : 0.0;
+    }
+
+    /**
+     * Gets the estimated time remaining in milliseconds assuming the current
+     * throughput, or -1 if no estimate is available yet.
+     */
+    public long getEtaMillis() {
+        if (done) {
+            return 0;
+        }
+        double bytesPerSecond = getBytesPerSecond();
+        if (bytesPerSecond <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(0, totalBytes - bytesRead) * 1000.0 / bytesPerSecond);
+    }
+
+    @Override
+    public String toString() {
+        long eta = getEtaMillis();
+        return String.format("%s: %.1f%% (%s of %s), %d docs, %d sents, %s/sec, %.1f docs/sec, elapsed %s, ETA %s",
+                fileId, 100.0 * getFraction(), formatBytes(bytesRead), formatBytes(totalBytes), numDocs, numSents,
+                formatBytes((long) getBytesPerSecond()), getDocsPerSecond(), formatMillis(elapsedMillis),
+                eta < 0 ? "unknown" : formatMillis(eta));
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        } else if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        } else {
+            return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+        }
+    }
+
+    private static String formatMillis(long millis) {
+        long secs = millis / 1000;
+        return String.format("%dh%02dm%02ds", secs / 3600, (secs / 60) % 60, secs % 60);
+    }
+
+}
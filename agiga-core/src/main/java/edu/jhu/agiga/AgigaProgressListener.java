@@ -0,0 +1,19 @@
+package edu.jhu.agiga;
+
+/**
+ * An AgigaProgressListener receives periodic progress reports from a
+ * StreamingVtdXmlReader. See AgigaProgressLogger for an implementation which
+ * writes a log line for each report.
+ * 
+ * @author mgormley
+ * 
+ */
+public interface AgigaProgressListener {
+
+    /**
+     * Called periodically as documents are read, and once more when the end
+     * of the file is reached.
+     */
+    public void progress(AgigaProgress progress);
+
+}
@@ -0,0 +1,23 @@
+package edu.jhu.agiga;
+
+import java.util.logging.Logger;
+
+/**
+ * Writes each progress report from a StreamingVtdXmlReader as a log line.
+ * 
+ * @author mgormley
+ * 
+ */
+public class AgigaProgressLogger implements AgigaProgressListener {
+
+    private static Logger log = Logger.getLogger(AgigaProgressLogger.class.getName());
+
+    /** The default interval between progress reports, in milliseconds. */
+    public static final long DEFAULT_INTERVAL_MILLIS = 30 * 1000;
+
+    @Override
+    public void progress(AgigaProgress progress) {
+        log.info("Progress for " + progress);
+    }
+
+}
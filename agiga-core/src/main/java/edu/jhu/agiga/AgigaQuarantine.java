@@ -0,0 +1,36 @@
+package edu.jhu.agiga;
+
+/**
+ * An AgigaQuarantine receives the documents which a StreamingVtdXmlReader
+ * could not read. Setting one on a reader makes it lenient: instead of
+ * throwing, the reader passes each malformed document to the quarantine and
+ * continues with the next document. See AgigaQuarantineWriter for an
+ * implementation which writes them to a file.
+ *
+ * @author mgormley
+ *
+ */
+public interface AgigaQuarantine {
+
+    /**
+     * A quarantine which drops the documents: the reader logs a warning for
+     * each and leaves it out.
+     */
+    public static final AgigaQuarantine SKIP = new AgigaQuarantine() {
+        @Override
+        public void quarantine(String fileId, String docId, byte[] xml, RuntimeException error) {
+        }
+    };
+
+    /**
+     * Called once for each document which could not be read.
+     *
+     * @param fileId The id of the file containing the document.
+     * @param docId The id of the document, or null if it could not be found.
+     * @param xml The XML of the document, from the DOC start tag to the DOC
+     *            end tag (if any).
+     * @param error The exception thrown while reading the document.
+     */
+    public void quarantine(String fileId, String docId, byte[] xml, RuntimeException error);
+
+}
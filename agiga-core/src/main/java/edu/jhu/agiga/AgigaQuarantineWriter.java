@@ -0,0 +1,133 @@
+package edu.jhu.agiga;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes quarantined documents to a file, which is gzipped if its name ends
+ * in ".gz". The file has the same layout as an Annotated Gigaword file: each
+ * document is preceded by an XML comment giving the file, the document id and
+ * the error, so that the documents can be inspected, fixed and then read
+ * again with the streaming readers.
+ *
+ * Each document is written to the file as it is quarantined, as a separate
+ * gzip member if the file is gzipped, so the file is readable even if the job
+ * is killed, and getLength() is a point to which it can be truncated. One
+ * writer may be shared by several readers, including readers on other
+ * threads.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaQuarantineWriter implements AgigaQuarantine, Closeable {
+
+    private FileOutputStream out;
+    private boolean gzip;
+    private int numDocs = 0;
+
+    public AgigaQuarantineWriter(String outputFile) {
+        this(outputFile, false);
+    }
+
+    /**
+     * Creates a writer which appends to outputFile if append is true. The
+     * streaming readers read all of the documents from a file appended to
+     * several times, though the FILE end tag is then repeated.
+     */
+    public AgigaQuarantineWriter(String outputFile, boolean append) {
+        this(outputFile, append ? new File(outputFile).length() : 0);
+    }
+
+    /**
+     * Creates a writer which keeps the first length bytes of outputFile, as
+     * given by getLength(), and discards the rest. This is used to resume a
+     * job from a checkpoint without quarantining the same documents twice.
+     */
+    public AgigaQuarantineWriter(String outputFile, long length) {
+        try {
+            File file = new File(outputFile);
+            if (file.length() < length) {
+                throw new IllegalStateException("The quarantine file " + outputFile + " is shorter than "
+                        + length + " bytes");
+            }
+            out = new FileOutputStream(file, true);
+            out.getChannel().truncate(length);
+            gzip = outputFile.endsWith(".gz");
+            if (length == 0) {
+                write("<FILE id=\"quarantine\">\n");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void quarantine(String fileId, String docId, byte[] xml, RuntimeException error) {
+        try {
+            StringWriter entry = new StringWriter();
+            entry.write("<!-- file=" + fileId + " doc=" + docId + "\n");
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            // A comment may not contain "--".
+            entry.write(trace.toString().replace("--", "- -"));
+            entry.write("-->\n");
+            String str = new String(xml, "UTF-8");
+            entry.write(str);
+            if (!str.endsWith("\n")) {
+                entry.write("\n");
+            }
+            write(entry.toString());
+            numDocs++;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write(String str) throws IOException {
+        byte[] b = str.getBytes("UTF-8");
+        if (gzip) {
+            ByteArrayOutputStream member = new ByteArrayOutputStream(b.length / 4 + 64);
+            GZIPOutputStream gz = new GZIPOutputStream(member);
+            gz.write(b);
+            gz.close();
+            member.writeTo(out);
+        } else {
+            out.write(b);
+        }
+    }
+
+    /**
+     * Gets the number of documents written.
+     */
+    public synchronized int getNumDocs() {
+        return numDocs;
+    }
+
+    /**
+     * Gets the length of the file, including all the documents written.
+     */
+    public synchronized long getLength() {
+        try {
+            return out.getChannel().size();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            write("</FILE>\n");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -6,16 +6,16 @@ import java.io.Serializable;
 import java.util.List;
 
 import edu.jhu.agiga.AgigaConstants.DependencyForm;
-import edu.stanford.nlp.ling.WordLemmaTag;
-import edu.stanford.nlp.trees.Tree;
-import edu.stanford.nlp.trees.TreeGraphNode;
-import edu.stanford.nlp.trees.TypedDependency;
 
 /**
  * AgigaSentence provides access to the sentence-level annotations: AgigaToken
  * objects, AgigaTypedDependency objects for the three dependency forms, the
- * contituency parse as text, and the Stanford parser API objects for
- * dependencies and constituency parses.
+ * contituency parse as text or as an AgigaParseTree.
+ * 
+ * The Stanford parser API objects for dependencies and constituency parses
+ * are provided by StanfordAgigaSentence in the agiga-stanford module. When
+ * that module is on the classpath, the readers create StanfordAgigaSentence
+ * objects (see AgigaSentenceFactory).
  * 
  * This class also provides methods for writing out these various annotations in
  * human-readable formats and some common machine-readable formats.
@@ -34,6 +34,8 @@ public interface AgigaSentence extends Serializable {
 
     public String getParseText();
 
+    public AgigaParseTree getParseTree();
+
     public List<AgigaTypedDependency> getAgigaDeps(DependencyForm form);
 
     public List<AgigaTypedDependency> getBasicDeps();
@@ -41,16 +43,14 @@ public interface AgigaSentence extends Serializable {
     public List<AgigaTypedDependency> getColDeps();
 
     public List<AgigaTypedDependency> getColCcprocDeps();
-    
-    // -------- Stanford API methods --------
-    public List<WordLemmaTag> getStanfordWordLemmaTags();
-
-    public List<TypedDependency> getStanfordTypedDependencies(DependencyForm form);
-
-    public List<TreeGraphNode> getStanfordTreeGraphNodes(DependencyForm form);
-
-    public Tree getStanfordContituencyTree();
 
+    /**
+     * Gets the fingerprint of the words, which the readers compute while
+     * parsing if AgigaPrefs.setFingerprint() is set, and which is otherwise
+     * computed on the first call.
+     */
+    public AgigaFingerprint getFingerprint();
+    
     // -------- Printing methods --------    
     public void writeWords(Writer writer) throws IOException;
     
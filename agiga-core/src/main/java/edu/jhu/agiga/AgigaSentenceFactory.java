@@ -0,0 +1,62 @@
+package edu.jhu.agiga;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+/**
+ * Creates the sentence objects populated by the readers.
+ *
+ * The factory is found with java.util.ServiceLoader, so a module can replace
+ * the sentence class by listing its factory in
+ * META-INF/services/edu.jhu.agiga.AgigaSentenceFactory. The agiga-stanford
+ * module does this to create StanfordAgigaSentence objects. If no factory is
+ * registered, BasicAgigaSentence objects are created, which do not require
+ * Stanford CoreNLP on the classpath.
+ *
+ * @author mgormley
+ *
+ */
+public abstract class AgigaSentenceFactory {
+
+    private static Logger log = Logger.getLogger(AgigaSentenceFactory.class.getName());
+
+    private static AgigaSentenceFactory instance;
+
+    /**
+     * Creates an empty sentence, to be populated by a reader with the given
+     * prefs.
+     */
+    public abstract BasicAgigaSentence newSentence(AgigaPrefs prefs);
+
+    /**
+     * Gets the registered factory, or a factory for BasicAgigaSentence if none
+     * is registered. The lookup is done once and the factory is shared by all
+     * readers.
+     */
+    public static synchronized AgigaSentenceFactory getInstance() {
+        if (instance == null) {
+            Iterator<AgigaSentenceFactory> factories = ServiceLoader.load(AgigaSentenceFactory.class).iterator();
+            if (factories.hasNext()) {
+                instance = factories.next();
+            } else {
+                instance = new BasicAgigaSentenceFactory();
+            }
+            log.fine("Using sentence factory: " + instance.getClass().getName());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates BasicAgigaSentence objects.
+     */
+    public static class BasicAgigaSentenceFactory extends AgigaSentenceFactory {
+
+        @Override
+        public BasicAgigaSentence newSentence(AgigaPrefs prefs) {
+            return new BasicAgigaSentence(prefs);
+        }
+
+    }
+
+}
@@ -39,6 +39,26 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
 
     private static final String NULL_NER_TAG = "0";
 
+    /**
+     * The child elements of a token tag, in the order in which they appear in
+     * the XML.
+     */
+    private enum TokenField {
+        WORD(AgigaConstants.WORD),
+        LEMMA(AgigaConstants.LEMMA),
+        OFFSET_BEGIN(AgigaConstants.CHARACTER_OFFSET_BEGIN),
+        OFFSET_END(AgigaConstants.CHARACTER_OFFSET_END),
+        POS(AgigaConstants.POS),
+        NER(AgigaConstants.NER),
+        NORM_NER(AgigaConstants.NORM_NER);
+
+        private String xmlTag;
+
+        private TokenField(String xmlTag) {
+            this.xmlTag = xmlTag;
+        }
+    }
+
     private static Logger log = Logger.getLogger(AgigaSentenceReader.class.getName());
 
     private int numSentences;
@@ -47,6 +67,17 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
     private AutoPilot sentAp;
 
     private AgigaPrefs prefs;
+    private AgigaSentenceFactory sentFactory = AgigaSentenceFactory.getInstance();
+
+    // The token fields to read, in document order. Computed once from the
+    // prefs so that parseTokens() only visits the child elements it needs.
+    private TokenField[] tokenPlan;
+
+    // Whether to compute the fingerprint of the words while parsing, and its
+    // state for the words parsed by parseTokens().
+    private boolean readFingerprint;
+    private long fingerprintHi;
+    private long fingerprintLo;
 
     private int nextIdx = -1;
     
@@ -102,6 +133,8 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
     }
 
     private void init() {
+        tokenPlan = getTokenPlan(prefs);
+        readFingerprint = prefs.readWord && prefs.readFingerprint;
         try {
             sentAp = new AutoPilot(this.vn);
             //sentAp.selectXPath(String.format("//%s[@id]", AgigaConstants.SENTENCE));
@@ -128,16 +161,20 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
             int sentId = vn.parseInt(vn.getAttrVal(AgigaConstants.TOKEN_ID));
             log.finer("sentence id=" + sentId);
     
-            StanfordAgigaSentence agigaSent = getSentenceInstance(prefs);
+            BasicAgigaSentence agigaSent = getSentenceInstance(prefs);
             // Subtract one, since the sentences are one-indexed in the XML but
             // zero-indexed in this API
             agigaSent.setSentIdx(sentId - 1);
             
             // Below we use clone nav to avoid having to find the "sent" tag
             // again
-            if (prefs.readWord || prefs.readLemma || prefs.readOffsets || prefs.readPos || prefs.readNer || prefs.readNormNer) {
+            if (tokenPlan.length > 0) {
                 List<AgigaToken> agigaTokens = parseTokens(vn.cloneNav());
                 agigaSent.setTokens(agigaTokens);
+                if (readFingerprint) {
+                    agigaSent.setFingerprint(AgigaFingerprint.finish(fingerprintHi),
+                            AgigaFingerprint.finish(fingerprintLo));
+                }
             }
             if (prefs.readParse) {
                 String parseText = parseParse(vn.cloneNav());
@@ -178,8 +215,8 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
         }
     }
 
-    protected StanfordAgigaSentence getSentenceInstance(AgigaPrefs prefs) {
-        return new StanfordAgigaSentence(prefs);
+    protected BasicAgigaSentence getSentenceInstance(AgigaPrefs prefs) {
+        return sentFactory.newSentence(prefs);
     }
 
     @Override
@@ -191,105 +228,155 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
         return numSentences;
     }
     
+    /**
+     * Gets the list of token fields which must be read for the given prefs, in
+     * the order in which they appear in the XML.
+     */
+    private static TokenField[] getTokenPlan(AgigaPrefs prefs) {
+        List<TokenField> plan = new ArrayList<TokenField>();
+        if (prefs.readWord) {
+            plan.add(TokenField.WORD);
+        }
+        if (prefs.readLemma) {
+            plan.add(TokenField.LEMMA);
+        }
+        if (prefs.readOffsets) {
+            plan.add(TokenField.OFFSET_BEGIN);
+            plan.add(TokenField.OFFSET_END);
+        }
+        if (prefs.readPos) {
+            plan.add(TokenField.POS);
+        }
+        if (prefs.readNer) {
+            plan.add(TokenField.NER);
+        }
+        if (prefs.readNormNer) {
+            plan.add(TokenField.NORM_NER);
+        }
+        return plan.toArray(new TokenField[plan.size()]);
+    }
+
     /**
      * Assumes the position of vn is at a AgigaConstants.SENTENCE tag
      * @param tree 
      * @return 
      */
-    private List<AgigaToken> parseTokens(VTDNav vn) throws PilotException, NavException {
+    private List<AgigaToken> parseTokens(VTDNav vn) throws NavException {
         require (vn.matchElement(AgigaConstants.SENTENCE));
 
         int tokId = -1;
+        fingerprintHi = AgigaFingerprint.HI_BASIS;
+        fingerprintLo = AgigaFingerprint.LO_BASIS;
         
         List<AgigaToken> agigaTokens = new ArrayList<AgigaToken>();
         
+        // Move directly to the <tokens> block so that we don't have to search
+        // through the parse and dependencies of the sentence.
+        if (!vn.toElement(VTDNav.FC, AgigaConstants.TOKENS)) {
+            return agigaTokens;
+        }
+        
         // Loop through each token
-        AutoPilot tokAp = new AutoPilot(vn);
-        tokAp.selectElement(AgigaConstants.TOKEN);
-        while (tokAp.iterate()) {
-            // Just double check that the tokens are in order
+        boolean hasToken = vn.toElement(VTDNav.FC, AgigaConstants.TOKEN);
+        while (hasToken) {
+            int id = vn.parseInt(vn.getAttrVal(AgigaConstants.TOKEN_ID));
             if (tokId < 0) {
-                tokId = vn.parseInt(vn.getAttrVal(AgigaConstants.TOKEN_ID));
+                tokId = id;
+            }
+            if (prefs.tolerant) {
+                // Keep the id from the XML, so that AgigaValidator can report
+                // tokens which are out of order.
+                tokId = id;
+            } else {
+                // Just double check that the tokens are in order
+                require (id == tokId);
             }
-            require (vn.parseInt(vn.getAttrVal(AgigaConstants.TOKEN_ID)) == tokId);
 
             AgigaToken agigaToken = new AgigaToken();
             // Subtract one, since the tokens are one-indexed in the XML but
             // zero-indexed in this API
             agigaToken.setTokIdx(tokId - 1);
+            if (prefs.recorder != null) {
+                agigaToken.setRecorder(prefs.recorder);
+            }
             
             // Read the word, lemma, token offsets, POS tag, NER tag, and
             // normalized NER
+            parseTokenFields(vn, agigaToken);
+
+            agigaTokens.add(agigaToken);
             
-            // We have to move to the word (first child) so that the next
-            // sibling moves succeed.
-            require(vn.toElement(VTDNav.FC, AgigaConstants.WORD));
-            if (prefs.readWord) {
+            tokId++;
+            hasToken = vn.toElement(VTDNav.NS, AgigaConstants.TOKEN);
+        }
+        
+        return agigaTokens;
+    }
+
+    /**
+     * Reads the fields in the token plan for a single token. Assumes the
+     * position of vn is at a AgigaConstants.TOKEN tag, and leaves it there.
+     */
+    private void parseTokenFields(VTDNav vn, AgigaToken agigaToken) throws NavException {
+        // Whether vn is currently at one of the children of the token. Until
+        // the first field is found, we jump straight to the first child with
+        // the requested name; afterwards we move forward through the siblings.
+        boolean atChild = false;
+        for (TokenField field : tokenPlan) {
+            boolean found = vn.toElement(atChild ? VTDNav.NS : VTDNav.FC, field.xmlTag);
+            atChild = atChild || found;
+            switch (field) {
+            case WORD:
+                require(found);
                 String word = vn.toString(vn.getText());
                 agigaToken.setWord(word);
-            }
-
-            if (prefs.readLemma) {
-                require(vn.toElement(VTDNav.NS, AgigaConstants.LEMMA));
-                String lemma = vn.toString(vn.getText());
-                agigaToken.setLemma(lemma);
-            }
-
-            if (prefs.readOffsets) {
-                require(vn.toElement(VTDNav.NS, AgigaConstants.CHARACTER_OFFSET_BEGIN));
-                int charOffBegin;
-                if (prefs.strict) {
-                    charOffBegin = Integer.parseInt(vn.toString(vn.getText()));
-                } else {
-                    // Remove unexpected whitespace surrounding the integer.
-                    charOffBegin = Integer.parseInt(vn.toString(vn.getText()).trim());
+                if (readFingerprint) {
+                    fingerprintHi = AgigaFingerprint.addHi(fingerprintHi, word);
+                    fingerprintLo = AgigaFingerprint.addLo(fingerprintLo, word);
                 }
-                agigaToken.setCharOffBegin(charOffBegin);
-                require(vn.toElement(VTDNav.NS, AgigaConstants.CHARACTER_OFFSET_END));
-                int charOffEnd;
+                break;
+            case LEMMA:
+                require(found);
+                agigaToken.setLemma(vn.toString(vn.getText()));
+                break;
+            case OFFSET_BEGIN:
+                require(found);
+                agigaToken.setCharOffBegin(parseOffset(vn));
+                break;
+            case OFFSET_END:
+                require(found);
+                agigaToken.setCharOffEnd(parseOffset(vn));
+                break;
+            case POS:
+                require(found);
+                agigaToken.setPosTag(vn.toString(vn.getText()));
+                break;
+            case NER:
                 if (prefs.strict) {
-                    charOffEnd = Integer.parseInt(vn.toString(vn.getText()));
-                } else {
-                    // Remove unexpected whitespace surrounding the integer.
-                    charOffEnd = Integer.parseInt(vn.toString(vn.getText()).trim());
+                    require(found);
                 }
-                agigaToken.setCharOffEnd(charOffEnd);
-            }
-
-            if (prefs.readPos) {
-                require(vn.toElement(VTDNav.NS, AgigaConstants.POS));
-                String posTag = vn.toString(vn.getText());
-                agigaToken.setPosTag(posTag);
-            }
-
-            if (prefs.readNer) {
-                if (prefs.strict) {
-                    require(vn.toElement(VTDNav.NS, AgigaConstants.NER));
-                    String nerTag = vn.toString(vn.getText());
-                    agigaToken.setNerTag(nerTag);
-                } else {
-                    String nerTag = null;
-                    if (vn.toElement(VTDNav.NS, AgigaConstants.NER)) {
-                        nerTag = vn.toString(vn.getText());
-                    }
-                    agigaToken.setNerTag(nerTag);
-                }
-            }
-            if (prefs.readNormNer) {
+                agigaToken.setNerTag(found ? vn.toString(vn.getText()) : null);
+                break;
+            case NORM_NER:
                 // NormNER only applies to some tokens
-                String normNer = null;
-                if (vn.toElement(VTDNav.NS, AgigaConstants.NORM_NER)) {
-                    normNer = vn.toString(vn.getText());
-                }
-                agigaToken.setNormNer(normNer);
+                agigaToken.setNormNer(found ? vn.toString(vn.getText()) : null);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported token field: " + field);
             }
+        }
+        if (atChild) {
+            vn.toElement(VTDNav.PARENT);
+        }
+    }
 
-            agigaTokens.add(agigaToken);
-            
-            tokId++;
+    private int parseOffset(VTDNav vn) throws NavException {
+        if (prefs.strict) {
+            return Integer.parseInt(vn.toString(vn.getText()));
+        } else {
+            // Remove unexpected whitespace surrounding the integer.
+            return Integer.parseInt(vn.toString(vn.getText()).trim());
         }
-        
-        return agigaTokens;
     }
     
     /**
@@ -301,7 +388,10 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
         require (vn.matchElement(AgigaConstants.SENTENCE));
 
         // Move to the <parse> tag
-        require (vn.toElement(VTDNav.FC, AgigaConstants.PARSE));
+        if (!vn.toElement(VTDNav.FC, AgigaConstants.PARSE)) {
+            require(prefs.tolerant, "Missing parse in sentence");
+            return null;
+        }
         String parseText = vn.toString(vn.getText());
         
         return parseText;
@@ -311,19 +401,20 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
      * Assumes the position of vn is at a "sent" tag
      * @return 
      */
-    private List<AgigaTypedDependency> parseDependencies(VTDNav vn, DependencyForm form) throws NavException,
-            PilotException {
+    private List<AgigaTypedDependency> parseDependencies(VTDNav vn, DependencyForm form) throws NavException {
         require (vn.matchElement(AgigaConstants.SENTENCE));
 
         // Move to the <basic-deps> tag
-        require (vn.toElement(VTDNav.FC, form.getXmlTag()));
+        if (!vn.toElement(VTDNav.FC, form.getXmlTag())) {
+            require(prefs.tolerant, "Missing " + form.getXmlTag() + " in sentence");
+            return null;
+        }
 
         List<AgigaTypedDependency> agigaDeps = new ArrayList<AgigaTypedDependency>();
         
         // Loop through the dep tags
-        AutoPilot basicDepRelAp = new AutoPilot(vn);
-        basicDepRelAp.selectElement(AgigaConstants.DEP);
-        while (basicDepRelAp.iterate()) {
+        boolean hasDep = vn.toElement(VTDNav.FC, AgigaConstants.DEP);
+        while (hasDep) {
             // Read the type, governor, and dependent
             String type = vn.toString(vn.getAttrVal(AgigaConstants.DEP_TYPE));
             require (vn.toElement(VTDNav.FC, AgigaConstants.GOVERNOR));
@@ -331,12 +422,17 @@ class AgigaSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSent
             require (vn.toElement(VTDNav.NS, AgigaConstants.DEPENDENT));
             int dependentId = vn.parseInt(vn.getText());
 
-            log.finer(String.format("\tdep type=%s\t%d-->%d", type, governorId, dependentId));
+            if (log.isLoggable(Level.FINER)) {
+                log.finer(String.format("\tdep type=%s\t%d-->%d", type, governorId, dependentId));
+            }
 
             // Subtract one, since the tokens are one-indexed in the XML but
             // zero-indexed in this API
             AgigaTypedDependency agigaDep = new AgigaTypedDependency(type, governorId - 1, dependentId - 1);
             agigaDeps.add(agigaDep);
+
+            require (vn.toElement(VTDNav.PARENT));
+            hasDep = vn.toElement(VTDNav.NS, AgigaConstants.DEP);
         }
         return agigaDeps;
     }
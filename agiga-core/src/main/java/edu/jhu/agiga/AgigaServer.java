@@ -0,0 +1,394 @@
+package edu.jhu.agiga;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long-running server for looking up documents and sentences in indexed
+ * Annotated Gigaword files (see AgigaDocIndex). The indexes are loaded once at
+ * startup, and the most recently used documents are kept decoded in memory,
+ * so a request only pays for reading and parsing the documents which are not
+ * already cached.
+ *
+ * The server listens for HTTP requests on the loopback interface. Requests are
+ * handled concurrently, and the results are written with the same write*
+ * methods used by AgigaPrinter. The requests are:
+ *
+ * <pre>
+ * GET /files                          The indexed files and their number of documents
+ * GET /docs?file=FILE_ID              The document ids in a file
+ * GET /doc?id=DOC_ID&amp;format=FORMAT     A document
+ * GET /sent?id=DOC_ID&amp;sent=IDX&amp;format=FORMAT
+ *                                     The sentence at position IDX (zero-indexed)
+ * </pre>
+ *
+ * where FORMAT is one of the AgigaPrinter types words, lemmas, pos, ner,
+ * basic-deps, col-deps, col-ccproc-deps, phrase-structure or coref (documents
+ * only), or xml for the original XML of the document. The default is xml for
+ * documents and words for sentences.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaServer {
+
+    private static Logger log = Logger.getLogger(AgigaServer.class.getName());
+
+    public static final int DEFAULT_PORT = 8642;
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+    public static final int DEFAULT_NUM_THREADS = 8;
+
+    /** The location of a document in the indexes. */
+    private static class DocRef {
+        AgigaDocIndex index;
+        int docIdx;
+
+        public DocRef(AgigaDocIndex index, int docIdx) {
+            this.index = index;
+            this.docIdx = docIdx;
+        }
+    }
+
+    private List<AgigaDocIndex> indexes;
+    private Map<String, AgigaDocIndex> indexesByFileId;
+    private Map<String, DocRef> docRefs;
+    private Map<String, AgigaDocument> cache;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private int numThreads = DEFAULT_NUM_THREADS;
+    private AgigaPrefs prefs;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public AgigaServer(List<AgigaDocIndex> indexes) {
+        this.indexes = indexes;
+        indexesByFileId = new LinkedHashMap<String, AgigaDocIndex>();
+        docRefs = new HashMap<String, DocRef>();
+        for (AgigaDocIndex index : indexes) {
+            indexesByFileId.put(index.getFileId(), index);
+            for (int i = 0; i < index.getNumDocs(); i++) {
+                if (docRefs.put(index.getDocId(i), new DocRef(index, i)) != null) {
+                    log.warning("Duplicate document id: " + index.getDocId(i));
+                }
+            }
+        }
+        // The cached documents have all of the annotations, so that they
+        // can be written in any format.
+        prefs = new AgigaPrefs();
+        prefs.setAll(true);
+        // Evicts the least recently used documents.
+        cache = new LinkedHashMap<String, AgigaDocument>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AgigaDocument> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Sets the maximum number of decoded documents kept in memory.
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Sets the number of threads handling requests.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Starts the server on the given port of the loopback interface. Use port
+     * 0 to pick a free port, which is then returned by getPort().
+     */
+    public void start(int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        server.createContext("/files", new Handler() {
+            @Override
+            void handle(Map<String, String> params, HttpExchange exchange) throws IOException {
+                Writer writer = startResponse(exchange, "text/plain");
+                for (AgigaDocIndex index : indexes) {
+                    writer.write(index.getFileId() + "\t" + index.getNumDocs() + "\t" + index.getFile() + "\n");
+                }
+                writer.close();
+            }
+        });
+        server.createContext("/docs", new Handler() {
+            @Override
+            void handle(Map<String, String> params, HttpExchange exchange) throws IOException {
+                AgigaDocIndex index = indexesByFileId.get(getParam(params, "file"));
+                if (index == null) {
+                    throw new RequestException(404, "File not found: " + params.get("file"));
+                }
+                Writer writer = startResponse(exchange, "text/plain");
+                for (int i = 0; i < index.getNumDocs(); i++) {
+                    writer.write(index.getDocId(i));
+                    writer.write("\n");
+                }
+                writer.close();
+            }
+        });
+        server.createContext("/doc", new Handler() {
+            @Override
+            void handle(Map<String, String> params, HttpExchange exchange) throws IOException {
+                String docId = getParam(params, "id");
+                String format = params.containsKey("format") ? params.get("format") : "xml";
+                if (format.equals("xml")) {
+                    DocRef ref = getDocRef(docId);
+                    byte[] b = ref.index.getDocBytes(ref.docIdx);
+                    exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+                    exchange.sendResponseHeaders(200, b.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(b);
+                    out.close();
+                    return;
+                }
+                AgigaFormat agigaFormat = getFormat(format, true);
+                AgigaDocument doc = getDocument(docId);
+                Writer writer = startResponse(exchange, "text/plain");
+                agigaFormat.write(writer, doc);
+                writer.close();
+            }
+        });
+        server.createContext("/sent", new Handler() {
+            @Override
+            void handle(Map<String, String> params, HttpExchange exchange) throws IOException {
+                String format = params.containsKey("format") ? params.get("format") : "words";
+                AgigaFormat agigaFormat = getFormat(format, false);
+                int sentIdx;
+                try {
+                    sentIdx = Integer.parseInt(getParam(params, "sent"));
+                } catch (NumberFormatException e) {
+                    throw new RequestException(400, "Invalid sentence index: " + params.get("sent"));
+                }
+                AgigaSentence sent = getSentence(getParam(params, "id"), sentIdx);
+                if (sent == null) {
+                    throw new RequestException(404, "Sentence not found: " + sentIdx);
+                }
+                Writer writer = startResponse(exchange, "text/plain");
+                agigaFormat.write(writer, sent);
+                writer.close();
+            }
+        });
+        executor = Executors.newFixedThreadPool(numThreads);
+        server.setExecutor(executor);
+        server.start();
+        log.info("Serving " + docRefs.size() + " documents from " + indexes.size() + " files on port " + getPort());
+    }
+
+    /**
+     * Stops the server, waiting up to delaySeconds for the current requests
+     * to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets a document, from the cache if possible.
+     */
+    public AgigaDocument getDocument(String docId) {
+        synchronized (cache) {
+            AgigaDocument doc = cache.get(docId);
+            if (doc != null) {
+                return doc;
+            }
+        }
+        // Read outside of the lock, so that other requests are not blocked.
+        DocRef ref = getDocRef(docId);
+        AgigaDocument doc = ref.index.getDocument(ref.docIdx, prefs);
+        synchronized (cache) {
+            cache.put(docId, doc);
+        }
+        return doc;
+    }
+
+    /**
+     * Gets the sentence at a position in a document, counting from zero, from
+     * the cached document if there is one, or else by reading only the
+     * sentence from the file. Returns null if the document has fewer
+     * sentences.
+     */
+    public AgigaSentence getSentence(String docId, int pos) {
+        if (pos < 0) {
+            return null;
+        }
+        synchronized (cache) {
+            AgigaDocument doc = cache.get(docId);
+            if (doc != null) {
+                return pos < doc.getSents().size() ? doc.getSents().get(pos) : null;
+            }
+        }
+        DocRef ref = getDocRef(docId);
+        return ref.index.getSentenceAt(ref.docIdx, pos, prefs);
+    }
+
+    private DocRef getDocRef(String docId) {
+        DocRef ref = docRefs.get(docId);
+        if (ref == null) {
+            throw new RequestException(404, "Document not found: " + docId);
+        }
+        return ref;
+    }
+
+    private static AgigaFormat getFormat(String name, boolean isDoc) {
+        AgigaFormat format = AgigaFormat.fromName(name);
+        if (format == null || (!isDoc && format.isDocumentOnly())) {
+            throw new RequestException(400, "Format not recognized: " + name);
+        }
+        return format;
+    }
+
+    private static String getParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Sends the response headers and returns a writer for a streamed (chunked)
+     * response body.
+     */
+    private static Writer startResponse(HttpExchange exchange, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), "UTF-8"), 1 << 14);
+    }
+
+    /**
+     * A request which can not be served, with its HTTP status code.
+     */
+    private static class RequestException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+        private int status;
+
+        public RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Parses the query parameters and turns errors into responses.
+     */
+    private static abstract class Handler implements HttpHandler {
+
+        abstract void handle(Map<String, String> params, HttpExchange exchange) throws IOException;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    throw new RequestException(405, "Only GET is supported");
+                }
+                handle(getParams(exchange.getRequestURI().getRawQuery()), exchange);
+            } catch (RequestException e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Error handling request: " + exchange.getRequestURI(), e);
+                sendError(exchange, 500, String.valueOf(e.getMessage()));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static Map<String, String> getParams(String query) throws IOException {
+            Map<String, String> params = new HashMap<String, String>();
+            if (query == null) {
+                return params;
+            }
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq == -1) {
+                    params.put(URLDecoder.decode(pair, "UTF-8"), "");
+                } else {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+            return params;
+        }
+
+        private static void sendError(HttpExchange exchange, int status, String message) {
+            try {
+                byte[] b = (message + "\n").getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(status, b.length);
+                exchange.getResponseBody().write(b);
+            } catch (IOException e) {
+                // The response was already started, or the client went away.
+                log.fine("Unable to send error response: " + e.getMessage());
+            }
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaServer.class.getName() + " [options] <indexed .xml.gz file>..."
+                + "\n  where the files were written by " + AgigaDocIndex.class.getName()
+                + "\n  and the options are:"
+                + "\n    -port <port>        (Port on the loopback interface, default " + DEFAULT_PORT + ")"
+                + "\n    -cache <docs>       (Number of decoded documents to cache, default " + DEFAULT_CACHE_SIZE + ")"
+                + "\n    -threads <threads>  (Number of request threads, default " + DEFAULT_NUM_THREADS + ")";
+        int port = DEFAULT_PORT;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+        int numThreads = DEFAULT_NUM_THREADS;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-port")) {
+                port = opts.getInt();
+            } else if (opt.equals("-cache")) {
+                cacheSize = opts.getInt();
+            } else if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<AgigaDocIndex> indexes = new ArrayList<AgigaDocIndex>();
+        for (String file : opts.getPositional(1, Integer.MAX_VALUE)) {
+            log.info("Loading index for " + file);
+            indexes.add(AgigaDocIndex.read(file));
+        }
+        AgigaServer server = new AgigaServer(indexes);
+        server.setCacheSize(cacheSize);
+        server.setNumThreads(numThreads);
+        server.start(port);
+    }
+
+}
@@ -25,6 +25,9 @@ public class AgigaToken implements Serializable {
     private String nerTag;
     private String normNer;
 
+    // Only set during a warm-up pass in "auto prefs" mode.
+    private transient AgigaPrefsRecorder recorder;
+
     public AgigaToken() {
         // No argument constructor
     }
@@ -41,6 +44,9 @@ public class AgigaToken implements Serializable {
     }
 
     public String getWord() {
+        if (recorder != null) {
+            recorder.word = true;
+        }
         return word;
     }
 
@@ -49,6 +55,9 @@ public class AgigaToken implements Serializable {
     }
 
     public String getLemma() {
+        if (recorder != null) {
+            recorder.lemma = true;
+        }
         return lemma;
     }
 
@@ -57,6 +66,9 @@ public class AgigaToken implements Serializable {
     }
 
     public int getCharOffBegin() {
+        if (recorder != null) {
+            recorder.offsets = true;
+        }
         return charOffBegin;
     }
 
@@ -65,6 +77,9 @@ public class AgigaToken implements Serializable {
     }
 
     public int getCharOffEnd() {
+        if (recorder != null) {
+            recorder.offsets = true;
+        }
         return charOffEnd;
     }
 
@@ -73,6 +88,9 @@ public class AgigaToken implements Serializable {
     }
 
     public String getPosTag() {
+        if (recorder != null) {
+            recorder.pos = true;
+        }
         return posTag;
     }
 
@@ -81,6 +99,9 @@ public class AgigaToken implements Serializable {
     }
 
     public String getNerTag() {
+        if (recorder != null) {
+            recorder.ner = true;
+        }
         return nerTag;
     }
 
@@ -89,6 +110,9 @@ public class AgigaToken implements Serializable {
     }
 
     public String getNormNer() {
+        if (recorder != null) {
+            recorder.normNer = true;
+        }
         return normNer;
     }
 
@@ -104,6 +128,10 @@ public class AgigaToken implements Serializable {
         return tokIdx;
     }
 
+    void setRecorder(AgigaPrefsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
     @Override
     public boolean equals(Object other) {
         if(other == null) return false;
@@ -0,0 +1,425 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Exports the tokens of a corpus as flat arrays of integer ids, for training
+ * language models and word embeddings. Each token is mapped to its word, or
+ * its lemma, optionally replaced by its normalized NER value as in
+ * AgigaSentence.writeTokens(), and optionally lowercased.
+ *
+ * The output directory gets one shard for each input file, named after it:
+ * <ul>
+ * <li>NAME.u16 or NAME.u32: the token ids, as little-endian unsigned 16-bit
+ * integers if the vocabulary has at most 65536 entries and 32-bit integers
+ * otherwise.</li>
+ * <li>NAME.sents: the index of the first token of each sentence, as
+ * little-endian 64-bit integers, followed by the number of tokens.</li>
+ * <li>NAME.docs: the index of the first sentence of each document, followed
+ * by the number of sentences, in the same format.</li>
+ * <li>NAME.docids: the id of each document, one per line.</li>
+ * </ul>
+ * and vocab.txt lists each entry of the vocabulary with its count, separated
+ * by a tab, on the line of its id. The ids are in descending order of count,
+ * except that 0 is &lt;unk&gt;, which stands for the tokens below the minimum
+ * count or beyond the maximum vocabulary size, and for the tokens without a
+ * word or lemma, which are kept so that the token indices still match those
+ * of the sentences. All of the files can be memory-mapped, e.g. with
+ * numpy.memmap.
+ *
+ * The files are read in parallel, one file per thread, with provisional ids
+ * from a shared AgigaVocabulary, and the ids are then rewritten in order of
+ * frequency.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaTokenIdExporter {
+
+    private static Logger log = Logger.getLogger(AgigaTokenIdExporter.class.getName());
+
+    /** The vocabulary entry with id 0. */
+    public static final String UNK = "<unk>";
+    public static final String VOCAB_FILE = "vocab.txt";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // The provisional id of the tokens without a string.
+    private static final int MISSING_ID = -1;
+
+    private boolean useLemmas = false;
+    private boolean useNormNer = false;
+    private boolean lowercase = false;
+    private long minCount = 1;
+    private int maxVocabSize = Integer.MAX_VALUE;
+    private int numThreads = AgigaParallel.getDefaultNumThreads();
+
+    private AgigaVocabulary vocab;
+    private long[] counts;
+    private long numMissing;
+
+    /**
+     * Sets whether to export the lemmas instead of the words.
+     */
+    public void setUseLemmas(boolean useLemmas) {
+        this.useLemmas = useLemmas;
+    }
+
+    /**
+     * Sets whether to replace each token which has a normalized NER value,
+     * such as a date, with that value.
+     */
+    public void setUseNormNer(boolean useNormNer) {
+        this.useNormNer = useNormNer;
+    }
+
+    public void setLowercase(boolean lowercase) {
+        this.lowercase = lowercase;
+    }
+
+    /**
+     * Sets the minimum count of the vocabulary entries. Rarer tokens are
+     * mapped to &lt;unk&gt;. The default is 1.
+     */
+    public void setMinCount(long minCount) {
+        this.minCount = minCount;
+    }
+
+    /**
+     * Sets the maximum size of the vocabulary, including &lt;unk&gt;. The
+     * default is unlimited.
+     */
+    public void setMaxVocabSize(int maxVocabSize) {
+        require(maxVocabSize >= 1, "Invalid vocabulary size: " + maxVocabSize);
+        this.maxVocabSize = maxVocabSize;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Gets the prefs needed to read the tokens.
+     */
+    public AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(!useLemmas);
+        prefs.setLemma(useLemmas);
+        prefs.setNormNer(useNormNer);
+        return prefs;
+    }
+
+    /**
+     * Gets the string of a token which is mapped to an id, or null if the
+     * token has no word, or no lemma when exporting the lemmas. Such tokens
+     * are mapped to &lt;unk&gt;.
+     */
+    String getString(AgigaToken tok) {
+        String str;
+        if (useNormNer && tok.getNormNer() != null) {
+            str = tok.getNormNer();
+        } else if (useLemmas) {
+            str = tok.getLemma();
+        } else {
+            str = tok.getWord();
+        }
+        return lowercase && str != null ? str.toLowerCase(Locale.ENGLISH) : str;
+    }
+
+    /**
+     * Exports each of the input files as a shard in the output directory,
+     * which is created if needed.
+     *
+     * @return The size of the vocabulary, including &lt;unk&gt;.
+     */
+    public int export(List<String> inputFiles, final String outputDir) {
+        new File(outputDir).mkdirs();
+        final List<String> names = new ArrayList<String>();
+        Set<String> uniqueNames = new HashSet<String>();
+        for (String file : inputFiles) {
+            String name = getShardName(file);
+            require(uniqueNames.add(name), "Two input files have the shard name " + name);
+            names.add(name);
+        }
+        vocab = new AgigaVocabulary();
+        counts = new long[1024];
+        numMissing = 0;
+        log.info("Exporting " + inputFiles.size() + " files with " + numThreads + " threads");
+        AgigaParallel.forEachFile(inputFiles, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String file) throws IOException {
+                exportFile(file, new File(outputDir, getShardName(file)).getPath());
+            }
+        });
+
+        // Assign the final ids in order of frequency.
+        final long[] provisionalCounts = Arrays.copyOf(counts, vocab.size());
+        Integer[] order = new Integer[vocab.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                if (provisionalCounts[i] != provisionalCounts[j]) {
+                    return provisionalCounts[i] > provisionalCounts[j] ? -1 : 1;
+                }
+                return vocab.getString(i).compareTo(vocab.getString(j));
+            }
+        });
+        final int[] finalIds = new int[order.length];
+        int vocabSize = 1;
+        long unkCount = numMissing;
+        for (int id : order) {
+            if (provisionalCounts[id] >= minCount && vocabSize < maxVocabSize) {
+                finalIds[id] = vocabSize++;
+            } else {
+                unkCount += provisionalCounts[id];
+            }
+        }
+        try {
+            writeVocab(new File(outputDir, VOCAB_FILE).getPath(), order, vocabSize, unkCount, provisionalCounts);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        final boolean use16Bits = vocabSize <= (1 << 16);
+        List<String> tempFiles = new ArrayList<String>();
+        for (String name : names) {
+            tempFiles.add(new File(outputDir, name + ".tmp").getPath());
+        }
+        log.info("Rewriting the ids of " + tempFiles.size() + " shards with a vocabulary of " + vocabSize);
+        AgigaParallel.forEachFile(tempFiles, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String tempFile) throws IOException {
+                String prefix = tempFile.substring(0, tempFile.length() - ".tmp".length());
+                remap(tempFile, prefix + (use16Bits ? ".u16" : ".u32"), finalIds, use16Bits);
+                new File(tempFile).delete();
+            }
+        });
+        vocab = null;
+        counts = null;
+        return vocabSize;
+    }
+
+    /**
+     * Gets the name of the shard of an input file: its name without the
+     * directory or the .xml.gz extension.
+     */
+    static String getShardName(String file) {
+        String name = new File(file).getName();
+        for (String ext : new String[] { ".gz", ".xml" }) {
+            if (name.endsWith(ext)) {
+                name = name.substring(0, name.length() - ext.length());
+            }
+        }
+        return name;
+    }
+
+    private void exportFile(String file, String prefix) throws IOException {
+        log.info("Exporting file: " + file);
+        long[] fileCounts = new long[1024];
+        long fileMissing = 0;
+        BinaryWriter ids = new BinaryWriter(prefix + ".tmp");
+        BinaryWriter sents = new BinaryWriter(prefix + ".sents");
+        BinaryWriter docs = new BinaryWriter(prefix + ".docs");
+        Writer docIds = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(prefix + ".docids"), "UTF-8"));
+        StreamingDocumentReader reader = new StreamingDocumentReader(file, getPrefs());
+        try {
+            reader.setQuarantine(AgigaQuarantine.SKIP);
+            long numTokens = 0;
+            long numSents = 0;
+            for (AgigaDocument doc : reader) {
+                docs.putLong(numSents);
+                docIds.write(doc.getDocId());
+                docIds.write("\n");
+                for (AgigaSentence sent : doc.getSents()) {
+                    sents.putLong(numTokens);
+                    for (AgigaToken tok : sent.getTokens()) {
+                        String str = getString(tok);
+                        if (str == null) {
+                            fileMissing++;
+                            ids.putInt(MISSING_ID);
+                            continue;
+                        }
+                        int id = vocab.getId(str);
+                        if (id >= fileCounts.length) {
+                            fileCounts = Arrays.copyOf(fileCounts, Math.max(id + 1, 2 * fileCounts.length));
+                        }
+                        fileCounts[id]++;
+                        ids.putInt(id);
+                    }
+                    numTokens += sent.getTokens().size();
+                    numSents++;
+                }
+            }
+            sents.putLong(numTokens);
+            docs.putLong(numSents);
+        } finally {
+            reader.close();
+            ids.close();
+            sents.close();
+            docs.close();
+            docIds.close();
+        }
+        synchronized (this) {
+            if (fileCounts.length > counts.length) {
+                counts = Arrays.copyOf(counts, fileCounts.length);
+            }
+            for (int id = 0; id < fileCounts.length; id++) {
+                counts[id] += fileCounts[id];
+            }
+            numMissing += fileMissing;
+        }
+    }
+
+    private void writeVocab(String vocabFile, Integer[] order, int vocabSize, long unkCount, long[] provisionalCounts)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(vocabFile), "UTF-8"));
+        try {
+            writer.write(UNK + "\t" + unkCount + "\n");
+            for (int i = 0; i < vocabSize - 1; i++) {
+                writer.write(vocab.getString(order[i]));
+                writer.write("\t" + provisionalCounts[order[i]] + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Rewrites a shard of provisional 32-bit ids with the final ids.
+     */
+    private static void remap(String tempFile, String outFile, int[] finalIds, boolean use16Bits) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "r");
+        BinaryWriter out = new BinaryWriter(outFile);
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            // Map at most 1GB at a time.
+            long chunk = 1L << 30;
+            for (long start = 0; start < size; start += chunk) {
+                MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunk, size - start));
+                in.order(ByteOrder.LITTLE_ENDIAN);
+                while (in.remaining() > 0) {
+                    int provisionalId = in.getInt();
+                    int id = provisionalId == MISSING_ID ? 0 : finalIds[provisionalId];
+                    if (use16Bits) {
+                        out.putShort((short) id);
+                    } else {
+                        out.putInt(id);
+                    }
+                }
+            }
+        } finally {
+            raf.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Writes little-endian integers to a file through a buffer.
+     */
+    static class BinaryWriter {
+
+        private FileChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        public BinaryWriter(String file) throws IOException {
+            channel = new FileOutputStream(file).getChannel();
+        }
+
+        public void putShort(short value) throws IOException {
+            if (buf.remaining() < 2) {
+                flush();
+            }
+            buf.putShort(value);
+        }
+
+        public void putInt(int value) throws IOException {
+            if (buf.remaining() < 4) {
+                flush();
+            }
+            buf.putInt(value);
+        }
+
+        public void putLong(long value) throws IOException {
+            if (buf.remaining() < 8) {
+                flush();
+            }
+            buf.putLong(value);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaTokenIdExporter.class.getName()
+                + " [options] <output directory> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -lemmas                  (Export the lemmas instead of the words)"
+                + "\n    -normner                 (Replace tokens with their normalized NER values)"
+                + "\n    -lowercase               (Lowercase the tokens)"
+                + "\n    -min-count <number>      (Map rarer tokens to " + UNK + ", default 1)"
+                + "\n    -max-vocab <number>      (Maximum vocabulary size, including " + UNK + ")"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  Writes the token ids, sentence and document offsets of each input file and a"
+                + "\n  vocabulary in order of frequency; see the class comment for the formats.";
+        AgigaTokenIdExporter exporter = new AgigaTokenIdExporter();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-lemmas")) {
+                exporter.setUseLemmas(true);
+            } else if (opt.equals("-normner")) {
+                exporter.setUseNormNer(true);
+            } else if (opt.equals("-lowercase")) {
+                exporter.setLowercase(true);
+            } else if (opt.equals("-min-count")) {
+                exporter.setMinCount(opts.getLong());
+            } else if (opt.equals("-max-vocab")) {
+                exporter.setMaxVocabSize(opts.getInt());
+            } else if (opt.equals("-threads")) {
+                exporter.setNumThreads(opts.getInt());
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        int vocabSize = exporter.export(positional.subList(1, positional.size()), positional.get(0));
+        log.info("Exported " + (positional.size() - 1) + " files with a vocabulary of " + vocabSize);
+    }
+
+}
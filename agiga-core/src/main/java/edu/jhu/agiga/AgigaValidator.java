@@ -0,0 +1,364 @@
+package edu.jhu.agiga;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+
+/**
+ * Checks Annotated Gigaword files for the problems which a strict reader would
+ * reject or which would break the code using the annotations: tokens out of
+ * order, missing NER tags, missing or malformed parses, missing dependencies,
+ * and dependencies or coreference mentions which point outside their
+ * sentence. Files are checked in parallel, one file per thread.
+ *
+ * Each violation is written to the report as one line of JSON, for example:
+ *
+ * <pre>
+ * {"file":"nyt_eng_199411","doc":"NYT_ENG_19941101.0001","sent":3,"check":"ner","message":"..."}
+ * </pre>
+ *
+ * where "sent" is the zero-indexed sentence, or null for a violation which
+ * concerns the whole document. Documents which can not be read at all are
+ * reported with the check "unreadable".
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaValidator {
+
+    private static Logger log = Logger.getLogger(AgigaValidator.class.getName());
+
+    /**
+     * The kinds of violation.
+     */
+    public enum Check {
+        UNREADABLE("unreadable"),
+        SENTENCE_ORDER("sentence-order"),
+        TOKEN_ORDER("token-order"),
+        NER("ner"),
+        PARSE("parse"),
+        DEPENDENCIES("dependencies"),
+        DEPENDENCY_BOUNDS("dependency-bounds"),
+        MENTION_BOUNDS("mention-bounds");
+
+        private String name;
+
+        private Check(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private Writer report;
+    private AtomicLong[] counts;
+    private AtomicLong numDocs = new AtomicLong();
+
+    /**
+     * Creates a validator which writes its report to the given writer. The
+     * writer is only used while holding its lock.
+     */
+    public AgigaValidator(Writer report) {
+        this.report = report;
+        counts = new AtomicLong[Check.values().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Gets the prefs used to read the files: every annotation, without the
+     * strict checks and tolerating tokens out of order and missing parses and
+     * dependencies, so that each problem is reported instead of stopping the
+     * reader.
+     */
+    public static AgigaPrefs getPrefs() {
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(true);
+        prefs.setStrict(false);
+        prefs.setTolerant(true);
+        return prefs;
+    }
+
+    /**
+     * Validates each of the files, using numThreads threads.
+     */
+    public void validate(List<String> files, int numThreads) {
+        AgigaParallel.forEachFile(files, numThreads, new AgigaParallel.FileTask() {
+            @Override
+            public void run(String file) throws IOException {
+                validate(file);
+            }
+        });
+    }
+
+    /**
+     * Validates every document in one file. This may be called from several
+     * threads at once.
+     */
+    public void validate(String file) throws IOException {
+        log.info("Validating file: " + file);
+        StreamingDocumentReader reader = new StreamingDocumentReader(file, getPrefs());
+        try {
+            String fileId = reader.getFileId();
+            reader.setQuarantine(new AgigaQuarantine() {
+                @Override
+                public void quarantine(String fileId, String docId, byte[] xml, RuntimeException error) {
+                    List<String> violations = new ArrayList<String>();
+                    addViolation(violations, fileId, docId, -1, Check.UNREADABLE, error.toString());
+                    writeViolations(violations);
+                }
+            });
+            for (AgigaDocument doc : reader) {
+                validate(fileId, doc);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Validates one document, read with the prefs from getPrefs(), and reports
+     * the violations under the given file id.
+     */
+    public void validate(String fileId, AgigaDocument doc) throws IOException {
+        List<String> violations = new ArrayList<String>();
+        String docId = doc.getDocId();
+        List<AgigaSentence> sents = doc.getSents();
+        for (int s = 0; s < sents.size(); s++) {
+            AgigaSentence sent = sents.get(s);
+            if (sent.getSentIdx() != s) {
+                addViolation(violations, fileId, docId, s, Check.SENTENCE_ORDER, "Sentence " + s + " has id "
+                        + (sent.getSentIdx() + 1));
+            }
+            List<AgigaToken> tokens = sent.getTokens();
+            int numTokens = tokens.size();
+            for (int t = 0; t < numTokens; t++) {
+                // Each token should follow the previous one, starting from 0.
+                int expected = t == 0 ? 0 : tokens.get(t - 1).getTokIdx() + 1;
+                if (tokens.get(t).getTokIdx() != expected) {
+                    addViolation(violations, fileId, docId, s, Check.TOKEN_ORDER, "Token " + t + " has id "
+                            + (tokens.get(t).getTokIdx() + 1) + " but should have id " + (expected + 1));
+                    break;
+                }
+            }
+            int numMissingNer = 0;
+            int firstMissingNer = -1;
+            for (int t = 0; t < numTokens; t++) {
+                if (tokens.get(t).getNerTag() == null) {
+                    if (numMissingNer++ == 0) {
+                        firstMissingNer = t;
+                    }
+                }
+            }
+            if (numMissingNer > 0) {
+                addViolation(violations, fileId, docId, s, Check.NER, numMissingNer + " of " + numTokens
+                        + " tokens have no NER tag, the first is token " + firstMissingNer);
+            }
+            validateParse(violations, fileId, docId, s, sent, numTokens);
+            for (DependencyForm form : DependencyForm.values()) {
+                List<AgigaTypedDependency> deps = sent.getAgigaDeps(form);
+                if (deps == null) {
+                    addViolation(violations, fileId, docId, s, Check.DEPENDENCIES, "The sentence has no "
+                            + form.getXmlTag());
+                    continue;
+                }
+                for (AgigaTypedDependency dep : deps) {
+                    if (dep.getGovIdx() < -1 || dep.getGovIdx() >= numTokens || dep.getDepIdx() < 0
+                            || dep.getDepIdx() >= numTokens) {
+                        addViolation(violations, fileId, docId, s, Check.DEPENDENCY_BOUNDS, form.getXmlTag() + " "
+                                + dep.getType() + "(" + (dep.getGovIdx() + 1) + ", " + (dep.getDepIdx() + 1)
+                                + ") is outside the " + numTokens + " tokens");
+                    }
+                }
+            }
+        }
+        for (AgigaCoref coref : doc.getCorefs()) {
+            for (AgigaMention m : coref.getMentions()) {
+                int s = m.getSentenceIdx();
+                if (s < 0 || s >= sents.size()) {
+                    addViolation(violations, fileId, docId, -1, Check.MENTION_BOUNDS, "Mention " + m
+                            + " is in sentence " + s + " of " + sents.size());
+                    continue;
+                }
+                int numTokens = sents.get(s).getTokens().size();
+                if (m.getStartTokenIdx() < 0 || m.getStartTokenIdx() >= m.getEndTokenIdx()
+                        || m.getEndTokenIdx() > numTokens || m.getHeadTokenIdx() < m.getStartTokenIdx()
+                        || m.getHeadTokenIdx() >= m.getEndTokenIdx()) {
+                    addViolation(violations, fileId, docId, s, Check.MENTION_BOUNDS, "Mention " + m
+                            + " is not within the " + numTokens + " tokens");
+                }
+            }
+        }
+        numDocs.incrementAndGet();
+        writeViolations(violations);
+    }
+
+    private void validateParse(List<String> violations, String fileId, String docId, int s, AgigaSentence sent,
+            int numTokens) {
+        String parseText = sent.getParseText();
+        if (parseText == null) {
+            addViolation(violations, fileId, docId, s, Check.PARSE, "The sentence has no parse");
+            return;
+        }
+        if (parseText.trim().length() == 0) {
+            addViolation(violations, fileId, docId, s, Check.PARSE, "The parse is empty");
+            return;
+        }
+        AgigaParseTree tree;
+        try {
+            tree = sent.getParseTree();
+        } catch (RuntimeException e) {
+            addViolation(violations, fileId, docId, s, Check.PARSE, e.toString());
+            return;
+        }
+        if (tree.getNumTokens() != numTokens) {
+            addViolation(violations, fileId, docId, s, Check.PARSE, "The parse has " + tree.getNumTokens()
+                    + " leaves but the sentence has " + numTokens + " tokens");
+        }
+    }
+
+    private void addViolation(List<String> violations, String fileId, String docId, int sentIdx, Check check,
+            String message) {
+        counts[check.ordinal()].incrementAndGet();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"file\":");
+        appendJsonString(sb, fileId);
+        sb.append(",\"doc\":");
+        appendJsonString(sb, docId);
+        sb.append(",\"sent\":").append(sentIdx < 0 ? "null" : Integer.toString(sentIdx));
+        sb.append(",\"check\":");
+        appendJsonString(sb, check.getName());
+        sb.append(",\"message\":");
+        appendJsonString(sb, message);
+        sb.append("}\n");
+        violations.add(sb.toString());
+    }
+
+    /**
+     * Writes the violations of one document together, so that the lines from
+     * different threads are not interleaved.
+     */
+    private void writeViolations(List<String> violations) {
+        if (violations.isEmpty()) {
+            return;
+        }
+        synchronized (report) {
+            try {
+                for (String v : violations) {
+                    report.write(v);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    static void appendJsonString(StringBuilder sb, String str) {
+        if (str == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Gets the number of violations of the given check.
+     */
+    public long getNumViolations(Check check) {
+        return counts[check.ordinal()].get();
+    }
+
+    /**
+     * Gets the total number of violations.
+     */
+    public long getNumViolations() {
+        long total = 0;
+        for (AtomicLong count : counts) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of documents validated, not counting those which could
+     * not be read.
+     */
+    public long getNumDocs() {
+        return numDocs.get();
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + AgigaValidator.class.getName()
+                + " [options] <report file> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -threads <number>        (Number of threads, default is the number of processors)"
+                + "\n  Writes each violation to the report as a line of JSON, and exits with"
+                + "\n  status 2 if there are any.";
+        int numThreads = AgigaParallel.getDefaultNumThreads();
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-threads")) {
+                numThreads = opts.getInt();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        Writer report = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(positional.get(0)), "UTF-8"));
+        AgigaValidator validator = new AgigaValidator(report);
+        try {
+            validator.validate(positional.subList(1, positional.size()), numThreads);
+        } finally {
+            report.close();
+        }
+        for (Check check : Check.values()) {
+            log.info(check.getName() + ": " + validator.getNumViolations(check));
+        }
+        log.info("Validated " + validator.getNumDocs() + " documents, with " + validator.getNumViolations()
+                + " violations");
+        if (validator.getNumViolations() > 0) {
+            System.exit(2);
+        }
+    }
+
+}
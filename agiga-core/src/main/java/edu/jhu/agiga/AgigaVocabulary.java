@@ -0,0 +1,66 @@
+package edu.jhu.agiga;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps strings, such as words or lemmas, to consecutive integer ids starting
+ * at 0, in the order in which they are first added. Lookups and additions may
+ * be made by several threads at once; lookups of strings already added do not
+ * take a lock.
+ *
+ * @author mgormley
+ *
+ */
+public class AgigaVocabulary {
+
+    private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] strings = new String[1024];
+    private volatile int size = 0;
+
+    /**
+     * Gets the id of a string, adding it if it is not present.
+     */
+    public int getId(String str) {
+        Integer id = ids.get(str);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(str);
+            if (id == null) {
+                id = size;
+                if (id == strings.length) {
+                    strings = Arrays.copyOf(strings, strings.length * 2);
+                }
+                strings[id] = str;
+                size = id + 1;
+                ids.put(str, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Gets the id of a string, or -1 if it is not present.
+     */
+    public int lookup(String str) {
+        Integer id = ids.get(str);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the string with the given id.
+     */
+    public String getString(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        return strings[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
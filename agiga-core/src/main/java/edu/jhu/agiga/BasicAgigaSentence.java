@@ -8,7 +8,6 @@ import java.io.Writer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
-import java.util.regex.*;
 
 import edu.jhu.agiga.AgigaConstants.DependencyForm;
 
@@ -18,10 +17,9 @@ import edu.jhu.agiga.AgigaConstants.DependencyForm;
  * @author mgormley
  *
  */
-public class BasicAgigaSentence implements Serializable {
+public class BasicAgigaSentence implements AgigaSentence, Serializable {
 
     private static Logger log = Logger.getLogger(BasicAgigaSentence.class.getName());
-	static final Pattern multiWordTerminalPat = Pattern.compile("\\([A-Z]+\\s[^\\(]+\\s[^\\(]+?\\)");
 
 	public static final long serialVersionUID = 1;
 
@@ -40,6 +38,9 @@ public class BasicAgigaSentence implements Serializable {
 	// Same as parseText but with spaces in terminals replaced by non-breaking
 	// spaces so that Stanford's tree methods don't split those terminals further.
 	private String parseTextFixedCache;
+
+    // The array-encoded form of parseText, constructed lazily.
+    private transient AgigaParseTree parseTreeCache;
     
     // Working with the Stanford structures is awkward and slow because the
     // TreeGraphNode converts the WordLemmaTag to a CyclicCoreLabel which
@@ -52,18 +53,49 @@ public class BasicAgigaSentence implements Serializable {
     private List<AgigaTypedDependency> colDeps;
     private List<AgigaTypedDependency> colCcprocDeps;
 
+    // The fingerprint of the words, if hasFingerprint is true.
+    private long fingerprintHi;
+    private long fingerprintLo;
+    private boolean hasFingerprint = false;
+
     public BasicAgigaSentence(AgigaPrefs prefs) {
         this.prefs = prefs;
     }
     
     public void setTokens(List<AgigaToken> tokens) {
         this.tokens = tokens;
+        hasFingerprint = false;
+    }
+
+    /**
+     * Sets the fingerprint of the words of the tokens, as computed by the
+     * reader, which must be called after setTokens().
+     */
+    void setFingerprint(long hi, long lo) {
+        fingerprintHi = hi;
+        fingerprintLo = lo;
+        hasFingerprint = true;
+    }
+
+    public AgigaFingerprint getFingerprint() {
+        require(prefs.readWord, "AgigaPrefs.readWord must be true for getFingerprint()");
+        if (prefs.recorder != null) {
+            prefs.recorder.word = true;
+        }
+        if (!hasFingerprint) {
+            AgigaFingerprint fp = AgigaFingerprint.of(tokens);
+            setFingerprint(fp.getHigh(), fp.getLow());
+        }
+        return new AgigaFingerprint(fingerprintHi, fingerprintLo);
     }
 
     /* (non-Javadoc)
      * @see edu.jhu.hltcoe.sp.data.depparse.AgigaSentence#getAgigaDeps(edu.jhu.hltcoe.sp.data.depparse.DependencyForm)
      */
     public List<AgigaTypedDependency> getAgigaDeps(DependencyForm form) {
+        if (prefs.recorder != null) {
+            prefs.recorder.recordDeps(form);
+        }
         List<AgigaTypedDependency> agigaDeps;
         if (form == DependencyForm.BASIC_DEPS) {
             agigaDeps = basicDeps;
@@ -253,6 +285,9 @@ public class BasicAgigaSentence implements Serializable {
      */
     public void writeParseText(Writer writer) throws IOException {
         require(prefs.readParse, "AgigaPrefs.readParse must be true for writeParseText()");
+        if (prefs.recorder != null) {
+            prefs.recorder.parse = true;
+        }
         writer.write(parseText);
         writer.write("\n");
     }
@@ -281,52 +316,118 @@ public class BasicAgigaSentence implements Serializable {
      * @see edu.jhu.hltcoe.sp.data.depparse.AgigaSentence#getParseText()
      */
     public String getParseText() {
+        if (prefs.recorder != null) {
+            prefs.recorder.parse = true;
+        }
 
-		if(parseTextFixedCache != null)
+		if(parseTextFixedCache != null || parseText == null)
 			return parseTextFixedCache;
 
-		// check for leaves that have a space in them
-		// replace any spaces with non-breaking spaces 0xa0
-		final String nbsp = "\u00A0";
-
-		// want to find terminals with more than one token
-		// leaves are not recursive, so its ok to use a regular expression
-		Matcher m = multiWordTerminalPat.matcher(parseText);
-		int ptr = 0;
-		StringBuilder sb = null;
-		while(m.find()) {
-			if(sb == null) sb = new StringBuilder();
-			int s = m.start();
-			int e = m.end();
-			
-			// before match
-			sb.append(parseText.substring(ptr, s));
-			
-			// match itself
-			String mid = parseText.substring(s, e);
-			int mid_space = mid.indexOf(" ");
-			sb.append(mid.substring(0, mid_space+1));
-			sb.append(mid.substring(mid_space+1).replaceAll("\\s+", nbsp));
-
-			ptr = e;
-		}
-		if(sb == null) {
-			parseTextFixedCache = parseText;
-		} else {
-			sb.append(parseText.substring(ptr));
-			parseTextFixedCache = sb.toString();
-		}
+		parseTextFixedCache = replaceTerminalSpaces(parseText);
 		return parseTextFixedCache;
     }
 
+    /**
+     * Replaces each run of whitespace inside a terminal with a single
+     * non-breaking space (0xa0) so that Stanford's tree methods don't split
+     * those terminals further. Returns the input if there are no multi-word
+     * terminals.
+     */
+    static String replaceTerminalSpaces(String parseText) {
+        final char nbsp = '\u00A0';
+        StringBuilder sb = null;
+        int n = parseText.length();
+        int i = 0;
+        while (i < n) {
+            if (parseText.charAt(i) != '(') {
+                if (sb != null) {
+                    sb.append(parseText.charAt(i));
+                }
+                i++;
+                continue;
+            }
+            // Skip the label and the whitespace after it.
+            int j = i + 1;
+            while (j < n && !isParenOrSpace(parseText.charAt(j))) {
+                j++;
+            }
+            while (j < n && Character.isWhitespace(parseText.charAt(j))) {
+                j++;
+            }
+            if (j == n || parseText.charAt(j) == '(' || parseText.charAt(j) == ')') {
+                // Not a preterminal.
+                if (sb != null) {
+                    sb.append(parseText, i, j);
+                }
+                i = j;
+                continue;
+            }
+            // The terminal runs to the next parenthesis, excluding any trailing
+            // whitespace.
+            int end = j;
+            while (end < n && parseText.charAt(end) != '(' && parseText.charAt(end) != ')') {
+                end++;
+            }
+            int wordEnd = end;
+            while (Character.isWhitespace(parseText.charAt(wordEnd - 1))) {
+                wordEnd--;
+            }
+            boolean hasSpace = false;
+            for (int k = j; k < wordEnd && !hasSpace; k++) {
+                hasSpace = Character.isWhitespace(parseText.charAt(k));
+            }
+            if (hasSpace && sb == null) {
+                sb = new StringBuilder(n);
+                sb.append(parseText, 0, i);
+            }
+            if (sb != null) {
+                sb.append(parseText, i, j);
+                for (int k = j; k < wordEnd; k++) {
+                    char c = parseText.charAt(k);
+                    if (!Character.isWhitespace(c)) {
+                        sb.append(c);
+                    } else if (!Character.isWhitespace(parseText.charAt(k - 1))) {
+                        sb.append(nbsp);
+                    }
+                }
+                sb.append(parseText, wordEnd, end);
+            }
+            i = end;
+        }
+        return sb == null ? parseText : sb.toString();
+    }
+
+    private static boolean isParenOrSpace(char c) {
+        return c == '(' || c == ')' || Character.isWhitespace(c);
+    }
+
+    /* (non-Javadoc)
+     * @see edu.jhu.agiga.AgigaSentence#getParseTree()
+     */
+    public AgigaParseTree getParseTree() {
+        require(prefs.readParse, "AgigaPrefs.readParse must be true for getParseTree()");
+        if (prefs.recorder != null) {
+            prefs.recorder.parse = true;
+        }
+        if (parseTreeCache == null) {
+            parseTreeCache = AgigaParseTree.parse(parseText);
+        }
+        return parseTreeCache;
+    }
+
     public void setParseText(String parseText) {
         this.parseText = parseText;
+        this.parseTextFixedCache = null;
+        this.parseTreeCache = null;
     }
 
     /* (non-Javadoc)
      * @see edu.jhu.hltcoe.sp.data.depparse.AgigaSentence#getBasicDeps()
      */
     public List<AgigaTypedDependency> getBasicDeps() {
+        if (prefs.recorder != null) {
+            prefs.recorder.recordDeps(DependencyForm.BASIC_DEPS);
+        }
         return basicDeps;
     }
 
@@ -338,6 +439,9 @@ public class BasicAgigaSentence implements Serializable {
      * @see edu.jhu.hltcoe.sp.data.depparse.AgigaSentence#getColDeps()
      */
     public List<AgigaTypedDependency> getColDeps() {
+        if (prefs.recorder != null) {
+            prefs.recorder.recordDeps(DependencyForm.COL_DEPS);
+        }
         return colDeps;
     }
 
@@ -349,6 +453,9 @@ public class BasicAgigaSentence implements Serializable {
      * @see edu.jhu.hltcoe.sp.data.depparse.AgigaSentence#getColCcprocDeps()
      */
     public List<AgigaTypedDependency> getColCcprocDeps() {
+        if (prefs.recorder != null) {
+            prefs.recorder.recordDeps(DependencyForm.COL_CCPROC_DEPS);
+        }
         return colCcprocDeps;
     }
 
@@ -0,0 +1,93 @@
+package edu.jhu.agiga;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * DeduplicatingDocumentReader is an iterator over the AgigaDocument objects
+ * of a StreamingDocumentReader which drops the later near-duplicates, as
+ * found by an AgigaNearDuplicates: each document is dropped unless it is the
+ * earliest, by date and then by id, of its cluster among the documents read
+ * so far. Documents are read in order of their dates within each Gigaword
+ * file, and when all of them are read in that order, the documents kept are
+ * exactly the first of the clusters of AgigaNearDuplicates.getClusters().
+ * Otherwise a later document read before an earlier near-duplicate is kept
+ * too.
+ *
+ * Several readers, for example of different files on different threads, can
+ * share one AgigaNearDuplicates, so that the duplicates across the files are
+ * dropped too. The reader's prefs must include the words.
+ *
+ * @author mgormley
+ *
+ */
+public class DeduplicatingDocumentReader implements Iterable<AgigaDocument>, Iterator<AgigaDocument>, Closeable {
+
+    private StreamingDocumentReader reader;
+    private AgigaNearDuplicates dedup;
+    private AgigaDocument next;
+    private int numDropped = 0;
+
+    public DeduplicatingDocumentReader(StreamingDocumentReader reader, AgigaNearDuplicates dedup) {
+        this.reader = reader;
+        this.dedup = dedup;
+    }
+
+    public DeduplicatingDocumentReader(String inputFile, AgigaPrefs prefs, AgigaNearDuplicates dedup) {
+        this(new StreamingDocumentReader(inputFile, prefs), dedup);
+    }
+
+    @Override
+    public Iterator<AgigaDocument> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && reader.hasNext()) {
+            AgigaDocument doc = reader.next();
+            if (dedup.add(doc) == null) {
+                next = doc;
+            } else {
+                numDropped++;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public AgigaDocument next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        AgigaDocument doc = next;
+        next = null;
+        return doc;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Gets the number of documents dropped as near-duplicates so far.
+     */
+    public int getNumDropped() {
+        return numDropped;
+    }
+
+    /**
+     * Gets the underlying reader, e.g. to set its quarantine.
+     */
+    public StreamingDocumentReader getReader() {
+        return reader;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+
+}
@@ -0,0 +1,142 @@
+package edu.jhu.agiga;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+/**
+ * DeduplicatingSentenceReader is an iterator over the AgigaSentence objects of
+ * a StreamingSentenceReader which drops each sentence whose words are exactly
+ * those of a sentence read before it, such as the boilerplate
+ * "(END OPTIONAL TRIM)". The sentences are compared by their fingerprints in
+ * an AgigaFingerprintSet, which several readers can share so that the
+ * duplicates are dropped across a whole corpus. The reader's prefs must
+ * include the words, and should set AgigaPrefs.setFingerprint(true).
+ *
+ * @author mgormley
+ *
+ */
+public class DeduplicatingSentenceReader implements Iterable<AgigaSentence>, Iterator<AgigaSentence>, Closeable {
+
+    private static Logger log = Logger.getLogger(DeduplicatingSentenceReader.class.getName());
+
+    private StreamingSentenceReader reader;
+    private AgigaFingerprintSet seen;
+    private AgigaSentence next;
+    private int numDropped = 0;
+
+    public DeduplicatingSentenceReader(StreamingSentenceReader reader, AgigaFingerprintSet seen) {
+        this.reader = reader;
+        this.seen = seen;
+    }
+
+    public DeduplicatingSentenceReader(String inputFile, AgigaPrefs prefs, AgigaFingerprintSet seen) {
+        this(new StreamingSentenceReader(inputFile, prefs), seen);
+    }
+
+    @Override
+    public Iterator<AgigaSentence> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && reader.hasNext()) {
+            AgigaSentence sent = reader.next();
+            if (seen.add(sent)) {
+                next = sent;
+            } else {
+                numDropped++;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public AgigaSentence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        AgigaSentence sent = next;
+        next = null;
+        return sent;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Gets the number of sentences dropped as duplicates so far.
+     */
+    public int getNumDropped() {
+        return numDropped;
+    }
+
+    /**
+     * Gets the underlying reader, e.g. to set its quarantine.
+     */
+    public StreamingSentenceReader getReader() {
+        return reader;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+
+    public static void main(String args[]) throws Exception {
+        Util.initializeLogging();
+
+        String usage = "\nusage: java " + DeduplicatingSentenceReader.class.getName()
+                + " [options] <output file> <gzipped input file>..."
+                + "\n  where the options are:"
+                + "\n    -expected <number>       (Expected number of distinct sentences, default 1000000)"
+                + "\n  Writes the words of the first occurrence of each sentence, one sentence per line.";
+        long expectedSize = 1 << 20;
+        AgigaOptions opts = new AgigaOptions(args, usage);
+        for (String opt = opts.next(); opt != null; opt = opts.next()) {
+            if (opt.equals("-expected")) {
+                expectedSize = opts.getLong();
+            } else {
+                opts.unrecognized(opt);
+            }
+        }
+        List<String> positional = opts.getPositional(2, Integer.MAX_VALUE);
+        AgigaPrefs prefs = new AgigaPrefs();
+        prefs.setAll(false);
+        prefs.setWord(true);
+        prefs.setFingerprint(true);
+        AgigaFingerprintSet seen = new AgigaFingerprintSet(expectedSize);
+        long numKept = 0;
+        long numDropped = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(positional.get(0)), "UTF-8"));
+        try {
+            for (String file : positional.subList(1, positional.size())) {
+                log.info("Reading file: " + file);
+                DeduplicatingSentenceReader reader = new DeduplicatingSentenceReader(file, prefs, seen);
+                try {
+                    for (AgigaSentence sent : reader) {
+                        sent.writeWords(writer);
+                        numKept++;
+                    }
+                    numDropped += reader.getNumDropped();
+                } finally {
+                    reader.close();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        log.info("Kept " + numKept + " sentences and dropped " + numDropped + " duplicates, using "
+                + (seen.getMemoryBytes() >> 20) + "MB off the heap");
+    }
+
+}
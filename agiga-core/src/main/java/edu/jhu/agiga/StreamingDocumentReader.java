@@ -35,11 +35,14 @@ public class StreamingDocumentReader extends StreamingVtdXmlReader<AgigaDocument
         // Parse each file provided on the command line.
         for (int i = 0; i < args.length; i++) {
             StreamingDocumentReader reader = new StreamingDocumentReader(args[i], new AgigaPrefs());
+            AgigaMetrics metrics = new AgigaMetrics();
+            reader.setMetricsListener(metrics);
             log.info("Parsing XML");
             for (AgigaDocument doc : reader) { 
                 // Do nothing
             }
             log.info("Number of docs: " + reader.getNumDocs());
+            log.info(metrics.toString());
         }
     }
 
@@ -48,4 +51,15 @@ public class StreamingDocumentReader extends StreamingVtdXmlReader<AgigaDocument
         return doc.getSents().size();
     }
 
+    @Override
+    protected int getNumTokens(AgigaDocument doc) {
+        int numTokens = 0;
+        for (AgigaSentence sent : doc.getSents()) {
+            if (sent.getTokens() != null) {
+                numTokens += sent.getTokens().size();
+            }
+        }
+        return numTokens;
+    }
+
 }
@@ -34,11 +34,14 @@ public class StreamingSentenceReader extends StreamingVtdXmlReader<AgigaSentence
         // Parse each file provided on the command line.
         for (int i = 0; i < args.length; i++) {
             StreamingSentenceReader reader = new StreamingSentenceReader(args[i], new AgigaPrefs());
+            AgigaMetrics metrics = new AgigaMetrics();
+            reader.setMetricsListener(metrics);
             log.info("Parsing XML");
             for (AgigaSentence sent : reader) { 
                 // Do nothing
             }
             log.info("Number of sentences: " + reader.getNumSents());
+            log.info(metrics.toString());
         }
     }
 
@@ -47,4 +50,9 @@ public class StreamingSentenceReader extends StreamingVtdXmlReader<AgigaSentence
         return 1;
     }
 
+    @Override
+    protected int getNumTokens(AgigaSentence sent) {
+        return sent.getTokens() != null ? sent.getTokens().size() : 0;
+    }
+
 }
@@ -0,0 +1,572 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import com.ximpleware.VTDException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+
+import edu.jhu.agiga.AgigaMetricsListener.Stage;
+
+/**
+ * StreamingVtdXmlReader is an abstract class that enables efficient reading of
+ * large Annotated Gigaword files by extracting snippets of XML containing only
+ * a single document and passing that XML to an appropriate object iterator such
+ * as AgigaDocumentReader or AgigaSentenceReader.
+ * 
+ * This implementation using VTD-XML should handle XML files up to 2GB in size.
+ * For larger files, we can switch to extended VTD-XML as described here:
+ * <url>http://vtd-xml.sourceforge.net/codeSample/cs12.html</url>
+ * 
+ * @author mgormley
+ * 
+ */
+public abstract class StreamingVtdXmlReader<T> implements Iterable<T>, Iterator<T>, Closeable {
+
+    private static Logger log = Logger.getLogger(StreamingVtdXmlReader.class.getName());
+
+    private String fileId;
+    private int numSents;
+    private int numDocs;
+    private BufferedReader reader;
+    private Iterator<T> vtdReader;
+    // Counts the bytes read from the file, and those which come out of the decompressor.
+    private MeteredInputStream fileStream;
+    private MeteredInputStream xmlStream;
+    private AgigaMetricsListener metrics;
+    // The values of the stream counters at the last call to the metrics listener.
+    private long reportedCompressed = 0;
+    private long reportedUncompressed = 0;
+    private long reportedInflateNanos = 0;
+    private String inputFile;
+    private long totalBytes;
+    private long startMillis;
+    private AgigaProgressListener progress;
+    private long progressIntervalMillis;
+    private long lastProgressMillis;
+    private boolean reportedDone = false;
+    private AgigaQuarantine quarantine;
+    private int numQuarantined;
+    // In lenient mode, the XML of the current document and the next item,
+    // which is read ahead so that hasNext() can skip malformed documents.
+    private byte[] docXml;
+    private T pending;
+    // The position in the file. docOrdinal counts the documents split from
+    // the file, including those quarantined or skipped while resuming.
+    // itemDoc is the ordinal of the current document and itemNum the number
+    // of items taken from it. The checkpoint is after item lastItemNum of
+    // document lastDoc.
+    private int docOrdinal = 0;
+    private int itemDoc = -1;
+    private int itemNum = 0;
+    private int pendingDoc;
+    private int pendingItemNum;
+    private int lastDoc = 0;
+    private int lastItemNum = 0;
+    private int resumeDoc = 0;
+    private int resumeItemNum = 0;
+        
+    public StreamingVtdXmlReader(String inputFile) {
+        try {
+            this.inputFile = inputFile;
+            this.totalBytes = new File(inputFile).length();
+            this.startMillis = System.currentTimeMillis();
+            numSents = 0;
+            numDocs = 0;
+            open(0);
+            fileId = getFileId(reader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (VTDException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Opens the input file, starting at the given offset in the (compressed)
+     * file.
+     */
+    private void open(long offset) throws IOException {
+        fileStream = new MeteredInputStream(new FileInputStream(inputFile));
+        while (fileStream.count < offset) {
+            long skipped = fileStream.skip(offset - fileStream.count);
+            require(skipped > 0, "Unable to seek to offset " + offset + " in " + inputFile);
+        }
+        InputStream inputStream = fileStream;
+        if (inputFile.endsWith(".gz")) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        xmlStream = new MeteredInputStream(inputStream);
+        xmlStream.timed = metrics != null;
+        inputStream = xmlStream;
+        reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+        reportedCompressed = fileStream.count;
+        reportedUncompressed = 0;
+        reportedInflateNanos = 0;
+    }
+
+    /**
+     * Gets the id attribute of the FILE tag on the first line, leaving the
+     * reader at the start of the file.
+     */
+    static String getFileId(BufferedReader reader) throws IOException, VTDException {
+        reader.mark(1024);
+        String str = reader.readLine();
+        str += "</FILE>";
+        reader.reset();
+        
+        byte[] b = str.getBytes("UTF-8");
+        VTDGen vg = new VTDGen();
+        vg.setDoc(b);
+        vg.parse(false);
+        VTDNav vn = vg.getNav();
+        require(vn.toElement(VTDNav.ROOT));
+        String fileId = vn.toString(vn.getAttrVal(AgigaConstants.FILE_ID));
+        
+        return fileId;
+    }
+
+    private boolean nextDoc() {
+        try {
+    
+        long startNanos = 0;
+        long startAlloc = 0;
+        if (metrics != null) {
+            startNanos = System.nanoTime();
+            startAlloc = Util.getThreadAllocatedBytes();
+        }
+        StringBuilder sb = new StringBuilder();
+        String line;
+        boolean isBuilding = false;
+        // Whether the document is before the checkpoint being resumed from.
+        boolean isSkipping = false;
+        while ((line = reader.readLine()) != null) {
+            if (isBuilding) {
+                if (quarantine != null && line.startsWith("<DOC")) {
+                    // The previous document has no end tag.
+                    unterminatedDoc(sb, isSkipping);
+                    sb = new StringBuilder();
+                    isSkipping = docOrdinal < resumeDoc;
+                }
+                if (isSkipping) {
+                    // Discard the document without indexing it.
+                    if (line.startsWith("</DOC")) {
+                        isBuilding = false;
+                        docOrdinal++;
+                    }
+                    continue;
+                }
+                sb.append(line);
+                sb.append("\n");
+                if (line.startsWith("</DOC")) {
+                    isBuilding = false;
+                    int ordinal = docOrdinal++;
+
+                    // Convert the StringBuilder to bytes
+                    String str = sb.toString();
+                    sb = new StringBuilder();
+                    byte[] b = str.getBytes("UTF-8");
+                    if (metrics != null) {
+                        long inflateNanos = xmlStream.nanos - reportedInflateNanos;
+                        long uncompressed = xmlStream.count - reportedUncompressed;
+                        metrics.stageCompleted(Stage.INFLATE, inflateNanos, fileStream.count - reportedCompressed,
+                                uncompressed, -1);
+                        reportedInflateNanos = xmlStream.nanos;
+                        reportedUncompressed = xmlStream.count;
+                        reportedCompressed = fileStream.count;
+                        long splitNanos = Math.max(0, System.nanoTime() - startNanos - inflateNanos);
+                        metrics.stageCompleted(Stage.SPLIT, splitNanos,
+                                uncompressed, b.length, allocatedSince(startAlloc));
+                        startNanos = System.nanoTime();
+                        startAlloc = Util.getThreadAllocatedBytes();
+                    }
+
+                    // Parse the bytes
+                    if (quarantine != null) {
+                        docXml = b;
+                        try {
+                            openDoc(b, ordinal);
+                        } catch (RuntimeException e) {
+                            vtdReader = null;
+                            quarantine(b, e);
+                            continue;
+                        }
+                    } else {
+                        openDoc(b, ordinal);
+                    }
+                    numDocs++;
+                    if (metrics != null) {
+                        metrics.stageCompleted(Stage.INDEX, System.nanoTime() - startNanos, b.length, 0,
+                                allocatedSince(startAlloc));
+                        metrics.itemsRead(1, 0, 0);
+                    }
+                    if (progress != null
+                            && System.currentTimeMillis() - lastProgressMillis >= progressIntervalMillis) {
+                        reportProgress(false);
+                    }
+                    return true;
+                }
+            } else if (line.startsWith("<DOC")) {
+                // Case: !isBuilding && line.startsWith("<DOC")
+                isSkipping = docOrdinal < resumeDoc;
+                if (!isSkipping) {
+                    sb.append(line);
+                    sb.append("\n");
+                }
+                isBuilding = true;
+            }
+        }
+        if (quarantine != null && isBuilding) {
+            unterminatedDoc(sb, isSkipping);
+        }
+        return false;
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates the iterator for a document, skipping the items before the
+     * checkpoint if resuming.
+     */
+    private void openDoc(byte[] b, int ordinal) {
+        vtdReader = getIteratorInstance(b);
+        itemDoc = ordinal;
+        itemNum = 0;
+        if (ordinal == resumeDoc) {
+            while (itemNum < resumeItemNum && vtdReader.hasNext()) {
+                vtdReader.next();
+                itemNum++;
+            }
+        }
+    }
+
+    private void unterminatedDoc(StringBuilder sb, boolean isSkipping) throws IOException {
+        docOrdinal++;
+        if (!isSkipping) {
+            quarantine(sb.toString().getBytes("UTF-8"), new IllegalStateException("Missing DOC end tag"));
+        }
+    }
+
+    protected abstract Iterator<T> getIteratorInstance(byte[] b); 
+
+    protected abstract int getNumSents(T item);
+
+    protected abstract int getNumTokens(T item);
+
+    private static long allocatedSince(long startAlloc) {
+        if (startAlloc < 0) {
+            return -1;
+        }
+        return Util.getThreadAllocatedBytes() - startAlloc;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (quarantine != null) {
+            // Read ahead, quarantining each document which fails.
+            while (pending == null && hasNextItem()) {
+                try {
+                    pending = nextItem();
+                    pendingDoc = itemDoc;
+                    pendingItemNum = itemNum;
+                } catch (RuntimeException e) {
+                    // Skip the rest of the document.
+                    vtdReader = null;
+                    numDocs--;
+                    quarantine(docXml, e);
+                }
+            }
+            return pending != null;
+        }
+        return hasNextItem();
+    }
+
+    private boolean hasNextItem() {
+        while (vtdReader == null || !vtdReader.hasNext()) {
+            if (!nextDoc()) {
+                if (progress != null && !reportedDone) {
+                    reportedDone = true;
+                    reportProgress(true);
+                }
+                return false;
+            }
+        }
+        return vtdReader != null && vtdReader.hasNext();
+    }
+
+    @Override
+    public T next() {
+        hasNext();
+        if (quarantine != null) {
+            T item = pending;
+            if (item != null) {
+                pending = null;
+                lastDoc = pendingDoc;
+                lastItemNum = pendingItemNum;
+            }
+            return item;
+        }
+        T item = nextItem();
+        if (item != null) {
+            lastDoc = itemDoc;
+            lastItemNum = itemNum;
+        }
+        return item;
+    }
+
+    private T nextItem() {
+        if (metrics != null) {
+            return nextWithMetrics();
+        }
+        T item = vtdReader != null ? vtdReader.next() : null;
+        if (item != null) {
+            itemNum++;
+            numSents += getNumSents(item);
+        }
+        return item;
+    }
+
+    private T nextWithMetrics() {
+        long startNanos = System.nanoTime();
+        long startAlloc = Util.getThreadAllocatedBytes();
+        T item = vtdReader != null ? vtdReader.next() : null;
+        metrics.stageCompleted(Stage.MATERIALIZE, System.nanoTime() - startNanos, 0, 0, allocatedSince(startAlloc));
+        if (item != null) {
+            itemNum++;
+            int n = getNumSents(item);
+            numSents += n;
+            metrics.itemsRead(0, n, getNumTokens(item));
+        }
+        return item;
+    }
+
+    @Override
+    public void remove() {
+        throw new RuntimeException("not implemented");        
+    }
+
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    public int getNumSents() {
+        return numSents;
+    }
+    
+    public String getFileId() {
+        return fileId;
+    }
+
+    /**
+     * Gets the position after the last item returned by next(). A reader for
+     * the same file which is resumed from it returns exactly the items which
+     * follow. Documents which were quarantined after the last item returned
+     * are quarantined again by the resumed reader.
+     */
+    public AgigaCheckpoint getCheckpoint() {
+        int docNum = lastDoc;
+        int itemNum = lastItemNum;
+        if (vtdReader != null && itemDoc == lastDoc && this.itemNum == lastItemNum && !vtdReader.hasNext()) {
+            // The document is finished, so resuming need not read it.
+            docNum++;
+            itemNum = 0;
+        }
+        return new AgigaCheckpoint(new File(inputFile).getAbsolutePath(), totalBytes, docNum, itemNum);
+    }
+
+    /**
+     * Continues reading after a checkpoint from getCheckpoint(), which must be
+     * for the same file and a reader with the same quarantine setting. This
+     * must be called before any items are read.
+     * 
+     * If the file has an AgigaDocIndex, the reader seeks directly to the
+     * document. Otherwise the documents before it are decompressed and split,
+     * but not indexed or read.
+     */
+    public void resume(AgigaCheckpoint checkpoint) {
+        require(docOrdinal == 0 && vtdReader == null, "resume() must be called before reading");
+        if (!checkpoint.isFor(inputFile)
+                || checkpoint.getFileLength() != totalBytes) {
+            throw new IllegalStateException("The checkpoint is for a different file: " + checkpoint);
+        }
+        resumeDoc = checkpoint.getDocNum();
+        resumeItemNum = checkpoint.getItemNum();
+        lastDoc = resumeDoc;
+        lastItemNum = resumeItemNum;
+        if (resumeDoc > 0 && new File(inputFile + AgigaDocIndex.INDEX_SUFFIX).exists()) {
+            AgigaDocIndex index = AgigaDocIndex.read(inputFile);
+            try {
+                require(resumeDoc <= index.getNumDocs(), "The checkpoint is past the end of the file: " + checkpoint);
+                long offset = index.getOffset(resumeDoc);
+                reader.close();
+                open(offset);
+                docOrdinal = resumeDoc;
+                log.fine("Resuming " + inputFile + " at offset " + offset);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                index.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the input file.
+     */
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the number of documents passed to the quarantine. These are not
+     * included in getNumDocs(), though getNumSents() includes any sentences
+     * returned from them before the error.
+     */
+    public int getNumQuarantined() {
+        return numQuarantined;
+    }
+
+    /**
+     * Makes this reader lenient: each document which can not be read, because
+     * it is not well-formed XML, has no end tag or fails while its objects are
+     * created, is passed to the quarantine and skipped. The rest of the file
+     * is still read. Set to null (the default) to throw an exception for the
+     * first such document instead.
+     * 
+     * When a document fails part way through a StreamingSentenceReader, the
+     * sentences before the failure will already have been returned.
+     */
+    public void setQuarantine(AgigaQuarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    private void quarantine(byte[] xml, RuntimeException error) {
+        numQuarantined++;
+        String docId = null;
+        try {
+            int end = 0;
+            while (end < xml.length && xml[end] != '\n') {
+                end++;
+            }
+            docId = AgigaDocIndex.getAttribute(new String(xml, 0, end, "UTF-8"), AgigaConstants.DOC_ID);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.warning("Quarantined document " + docId + " in file " + fileId + ": " + error);
+        quarantine.quarantine(fileId, docId, xml, error);
+    }
+
+    /**
+     * Sets a listener which will receive per-stage timings and throughput
+     * measurements, such as AgigaMetrics. Set to null to disable.
+     */
+    public void setMetricsListener(AgigaMetricsListener metrics) {
+        this.metrics = metrics;
+        xmlStream.timed = metrics != null;
+    }
+
+    /**
+     * Sets a listener which will receive a progress report after the first
+     * document read once every intervalMillis milliseconds, and once more at
+     * the end of the file. Set to null to disable.
+     */
+    public void setProgressListener(AgigaProgressListener progress, long intervalMillis) {
+        this.progress = progress;
+        this.progressIntervalMillis = intervalMillis;
+        this.lastProgressMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets a snapshot of how far this reader has read through its input file.
+     */
+    public AgigaProgress getProgress() {
+        return new AgigaProgress(inputFile, fileId, fileStream.count, totalBytes, numDocs, numSents,
+                System.currentTimeMillis() - startMillis, reportedDone);
+    }
+
+    private void reportProgress(boolean done) {
+        lastProgressMillis = System.currentTimeMillis();
+        progress.progress(new AgigaProgress(inputFile, fileId, fileStream.count, totalBytes, numDocs, numSents,
+                lastProgressMillis - startMillis, done));
+    }
+
+    /**
+     * An InputStream which counts the bytes read through it and, if timed is
+     * set, the time spent reading them. Only the metrics use the time, so the
+     * reads are not timed without a metrics listener.
+     */
+    private static class MeteredInputStream extends FilterInputStream {
+
+        private long count = 0;
+        private long nanos = 0;
+        private boolean timed = false;
+
+        public MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = timed ? System.nanoTime() : 0;
+            int b = super.read();
+            if (timed) {
+                nanos += System.nanoTime() - start;
+            }
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = timed ? System.nanoTime() : 0;
+            int n = super.read(b, off, len);
+            if (timed) {
+                nanos += System.nanoTime() - start;
+            }
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+    }
+    
+}
@@ -1,5 +1,7 @@
 package edu.jhu.agiga;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
@@ -31,6 +33,39 @@ public class Util {
         return Arrays.hashCode(objects);
     }
 
+    /**
+     * Gets an estimate of the total number of bytes allocated on the heap by
+     * the current thread, or -1 if the JVM does not support this measurement.
+     */
+    public static long getThreadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a 64-bit hash of the characters of a string, which unlike
+     * String.hashCode() is well mixed in all of its bits.
+     */
+    public static long hash64(CharSequence str) {
+        // FNV-1a over the chars, then the finalizer of MurmurHash3.
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < str.length(); i++) {
+            h = (h ^ str.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
     public static void initializeLogging() {
         initializeLogging(Level.INFO);
     }
@@ -108,7 +108,7 @@ public class AgigaPrinter {
         prefs.setAll(false);
         prefs.setWord(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML for file: " + reader.getFileId());
         for (AgigaSentence sent : reader) {
             sent.writeWords(writer);
@@ -123,7 +123,7 @@ public class AgigaPrinter {
         prefs.setAll(false);
         prefs.setLemma(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML for file: " + reader.getFileId());
         for (AgigaSentence sent : reader) {
             sent.writeLemmas(writer);
@@ -139,7 +139,7 @@ public class AgigaPrinter {
         prefs.setWord(true);
         prefs.setPos(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML for file: " + reader.getFileId());
         for (AgigaSentence sent : reader) {
             sent.writePosTags(writer);
@@ -154,7 +154,7 @@ public class AgigaPrinter {
         prefs.setWord(true);
         prefs.setNer(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingDocumentReader reader = new StreamingDocumentReader(inputFile, prefs);
+        StreamingDocumentReader reader = logProgress(new StreamingDocumentReader(inputFile, prefs));
         log.info("Parsing XML for file: " + reader.getFileId());
         for (AgigaDocument doc : reader) {
             for (AgigaSentence sent : doc.getSents()) {
@@ -169,7 +169,7 @@ public class AgigaPrinter {
         AgigaPrefs prefs = new AgigaPrefs();
         prefs.setForConnlStyleDeps(form);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML");
         for (AgigaSentence sent : reader) {
             sent.writeConnlStyleDeps(writer, form);
@@ -183,7 +183,7 @@ public class AgigaPrinter {
         prefs.setAll(false);
         prefs.setParse(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML");
         for (AgigaSentence sent : reader) {
             sent.writeParseText(writer);
@@ -198,7 +198,7 @@ public class AgigaPrinter {
         prefs.setWord(true);
         prefs.setCoref(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingDocumentReader reader = new StreamingDocumentReader(inputFile, prefs);
+        StreamingDocumentReader reader = logProgress(new StreamingDocumentReader(inputFile, prefs));
         log.info("Parsing XML");
         for (AgigaDocument doc : reader) {
             doc.writeMucStyleCoref(writer);
@@ -217,9 +217,10 @@ public class AgigaPrinter {
         prefs.setDeps(DependencyForm.COL_DEPS);
         prefs.setDeps(DependencyForm.COL_CCPROC_DEPS);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML");
-        for (AgigaSentence sent : reader) {
+        for (AgigaSentence agigaSent : reader) {
+            StanfordAgigaSentence sent = (StanfordAgigaSentence) agigaSent;
             // Print out all the dependency forms
             System.out.println(sent.getStanfordWordLemmaTags());
             System.out.println("---");
@@ -241,10 +242,10 @@ public class AgigaPrinter {
         prefs.setAll(false);
         prefs.setParse(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader reader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader reader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML");
         for (AgigaSentence sent : reader) {
-            System.out.println(sent.getStanfordContituencyTree());
+            System.out.println(((StanfordAgigaSentence) sent).getStanfordContituencyTree());
         }
         log.info("Number of sentences: " + reader.getNumSents());
     }
@@ -256,7 +257,7 @@ public class AgigaPrinter {
         prefs.setHeadline(true);
         prefs.setDateline(true);
         // Iterate through the docs, printing each one to stdout
-        StreamingDocumentReader dReader = new StreamingDocumentReader(inputFile, prefs);
+        StreamingDocumentReader dReader = logProgress(new StreamingDocumentReader(inputFile, prefs));
         log.info("Parsing XML for file: " + dReader.getFileId());
         for (AgigaDocument doc : dReader) {
             log.info("Parsing doc: id=" + doc.getDocId() + " type=" + doc.getType());
@@ -271,7 +272,7 @@ public class AgigaPrinter {
         AgigaPrefs prefs = new AgigaPrefs();
         prefs.setAll(true);
         // Iterate through the sentences, printing each one to stdout
-        StreamingSentenceReader sReader = new StreamingSentenceReader(inputFile, prefs);
+        StreamingSentenceReader sReader = logProgress(new StreamingSentenceReader(inputFile, prefs));
         log.info("Parsing XML for file: " + sReader.getFileId());
         for (AgigaSentence sent : sReader) {
             printAllSentenceAnnotations(writer, sent);
@@ -280,7 +281,7 @@ public class AgigaPrinter {
         log.info("Number of sentences: " + sReader.getNumSents());
 
         // Iterate through the docs, printing each one to stdout
-        StreamingDocumentReader dReader = new StreamingDocumentReader(inputFile, prefs);
+        StreamingDocumentReader dReader = logProgress(new StreamingDocumentReader(inputFile, prefs));
         log.info("Parsing XML for file: " + dReader.getFileId());
         for (AgigaDocument doc : dReader) {
             log.info("Parsing doc: id=" + doc.getDocId() + " type=" + doc.getType());
@@ -294,6 +295,14 @@ public class AgigaPrinter {
         log.info("Number of docs: " + dReader.getNumDocs());
     }
 
+    /**
+     * Attaches an AgigaProgressLogger to a reader.
+     */
+    private static <R extends StreamingVtdXmlReader<?>> R logProgress(R reader) {
+        reader.setProgressListener(new AgigaProgressLogger(), AgigaProgressLogger.DEFAULT_INTERVAL_MILLIS);
+        return reader;
+    }
+
     private static void printAllSentenceAnnotations(Writer writer, AgigaSentence sent) throws IOException {
         log.info("Printing sent: id=" + sent.getSentIdx());
         sent.writeWords(writer);
@@ -310,11 +319,12 @@ public class AgigaPrinter {
         }
         System.out.println();
 
-        System.out.println(sent.getStanfordWordLemmaTags());
+        StanfordAgigaSentence stanfordSent = (StanfordAgigaSentence) sent;
+        System.out.println(stanfordSent.getStanfordWordLemmaTags());
         for (DependencyForm df : DependencyForm.values()) {
-            System.out.println(sent.getStanfordTreeGraphNodes(df));
-            System.out.println(sent.getStanfordTypedDependencies(df));
+            System.out.println(stanfordSent.getStanfordTreeGraphNodes(df));
+            System.out.println(stanfordSent.getStanfordTypedDependencies(df));
         }
-        System.out.println(sent.getStanfordContituencyTree());
+        System.out.println(stanfordSent.getStanfordContituencyTree());
     }
 }
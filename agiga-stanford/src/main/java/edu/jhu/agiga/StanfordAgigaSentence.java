@@ -0,0 +1,284 @@
+package edu.jhu.agiga;
+
+import static edu.jhu.agiga.AgigaSentenceReader.require;
+
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.jhu.agiga.AgigaConstants.DependencyForm;
+import edu.stanford.nlp.ling.HasIndex;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Label;
+import edu.stanford.nlp.ling.WordLemmaTag;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeFactory;
+import edu.stanford.nlp.trees.TreeGraphNode;
+import edu.stanford.nlp.trees.TypedDependency;
+
+/**
+ * Extends BasicAgigaSentence to implement methods for constructing the Stanford
+ * parser API objects.
+ * 
+ * The word/lemma/tag labels and the TreeGraphNode and TypedDependency objects
+ * for each DependencyForm are cached, so repeated calls return the same
+ * shared lists. Unlike the fresh lists returned before the cache was added,
+ * these lists are unmodifiable; copy a list to sort or edit it. The objects
+ * in the lists are shared too, and the GrammaticalRelations in the typed
+ * dependencies are shared by all sentences. The cache is held through
+ * soft references, so it may be cleared when memory is low, in which case
+ * the objects are rebuilt on the next call.
+ * 
+ * @author mgormley
+ * 
+ */
+public class StanfordAgigaSentence extends BasicAgigaSentence implements AgigaSentence, Serializable {
+	
+	public static final long serialVersionUID = 1;
+
+    private static final Label ROOT_LABEL = new WordLemmaTag("ROOT");
+
+    /**
+     * The maximum number of relation names kept in the GrammaticalRelation
+     * cache. Beyond this (which only happens with malformed input), the
+     * relations are created for each call.
+     */
+    static final int MAX_CACHED_RELATIONS = 10000;
+
+    // GrammaticalRelation.valueOf() is slow, so the relations are shared by
+    // all sentences.
+    private static final ConcurrentHashMap<String, GrammaticalRelation> relations = new ConcurrentHashMap<String, GrammaticalRelation>();
+
+    /**
+     * The Stanford objects for one dependency form. The typed dependencies
+     * refer to the same TreeGraphNode objects as nodes.
+     */
+    private static class StanfordDeps {
+        List<TreeGraphNode> nodes;
+        List<TypedDependency> typedDeps;
+    }
+
+    // The conversions are cached, but only softly reachable so that the
+    // garbage collector may reclaim them from long-lived sentences. They are
+    // not serialized.
+    private transient SoftReference<List<WordLemmaTag>> wordLemmaTagsCache;
+    private transient EnumMap<DependencyForm, SoftReference<StanfordDeps>> depsCache;
+
+    public StanfordAgigaSentence(AgigaPrefs prefs) {
+        super(prefs);
+    }
+
+    // The Stanford TreeGraphNode throws away all but the word from
+    // the WordLemmaTag label in converting it to a CoreLabel. Accordingly
+    // we allow access to the labels here as well.
+    /**
+     * Gets a WordLemmaTag label for each token, as a shared, unmodifiable
+     * list.
+     */
+    public synchronized List<WordLemmaTag> getStanfordWordLemmaTags() {
+        List<WordLemmaTag> labels = wordLemmaTagsCache == null ? null : wordLemmaTagsCache.get();
+        if (labels != null) {
+            return labels;
+        }
+        List<AgigaToken> tokens = getTokens();
+        labels = new ArrayList<WordLemmaTag>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            AgigaToken at = tokens.get(i);
+            WordLemmaTag curToken;
+            require(prefs.readWord, "AgigaPrefs.readWord must be true for getStanfordWordLemmaTags()");
+            if (prefs.readWord && prefs.readLemma && prefs.readPos) {
+                curToken = new WordLemmaTag(at.getWord(), at.getLemma(), at.getPosTag());
+            } else if (prefs.readWord && prefs.readPos) {
+                curToken = new WordLemmaTag(at.getWord(), at.getPosTag());
+            } else { // if (prefs.readWord) {
+                curToken = new WordLemmaTag(at.getWord());
+            }
+            labels.add(curToken);
+        }
+        labels = Collections.unmodifiableList(labels);
+        wordLemmaTagsCache = new SoftReference<List<WordLemmaTag>>(labels);
+        return labels;
+    }
+
+    /**
+     * Gets the Stanford TypedDependency objects for the dependency form, as a
+     * shared, unmodifiable list.
+     */
+    public synchronized List<TypedDependency> getStanfordTypedDependencies(DependencyForm form) {
+        StanfordDeps deps = getStanfordDeps(form);
+        if (deps.typedDeps != null) {
+            return deps.typedDeps;
+        }
+        List<TreeGraphNode> nodes = deps.nodes;
+        List<AgigaTypedDependency> agigaDeps = getAgigaDeps(form);
+        List<TypedDependency> dependencies = new ArrayList<TypedDependency>(agigaDeps.size());
+        for (AgigaTypedDependency agigaDep : agigaDeps) {
+            // Add one, since the tokens are zero-indexed but the TreeGraphNodes are one-indexed
+            TreeGraphNode gov = nodes.get(agigaDep.getGovIdx() + 1);
+            TreeGraphNode dep = nodes.get(agigaDep.getDepIdx() + 1);
+            // Create the typed dependency
+            TypedDependency typedDep = new TypedDependency(getRelation(agigaDep.getType()), gov, dep);
+            dependencies.add(typedDep);
+        }
+        deps.typedDeps = Collections.unmodifiableList(dependencies);
+        return deps.typedDeps;
+    }
+
+    /**
+     * Gets the Stanford TreeGraphNode objects for the dependency form, with
+     * an explicit ROOT node at index 0, as a shared, unmodifiable list.
+     */
+    public synchronized List<TreeGraphNode> getStanfordTreeGraphNodes(DependencyForm form) {
+        return getStanfordDeps(form).nodes;
+    }
+
+    /**
+     * Gets the cached Stanford objects for the dependency form, creating the
+     * TreeGraphNodes if necessary.
+     */
+    private StanfordDeps getStanfordDeps(DependencyForm form) {
+        if (depsCache == null) {
+            depsCache = new EnumMap<DependencyForm, SoftReference<StanfordDeps>>(DependencyForm.class);
+        }
+        SoftReference<StanfordDeps> ref = depsCache.get(form);
+        StanfordDeps deps = ref == null ? null : ref.get();
+        if (deps == null) {
+            deps = new StanfordDeps();
+            deps.nodes = Collections.unmodifiableList(createTreeGraphNodes(form));
+            depsCache.put(form, new SoftReference<StanfordDeps>(deps));
+        }
+        return deps;
+    }
+
+    private List<TreeGraphNode> createTreeGraphNodes(DependencyForm form) {
+        List<WordLemmaTag> labels = getStanfordWordLemmaTags();
+        List<TreeGraphNode> nodes = new ArrayList<TreeGraphNode>(labels.size() + 1);
+        // Add an explicit root node
+        nodes.add(new TreeGraphNode(ROOT_LABEL));
+
+        for (WordLemmaTag curToken : labels) {
+            // Create the tree node
+            TreeGraphNode treeNode = new TreeGraphNode(curToken);
+            treeNode.label().setTag(curToken.tag());
+            /**
+             * Caution, the order to call is to first setWord(), then setlemma()
+             * From the Stanford source code:
+             *   
+  public void setWord(String word) {
+    set(WordAnnotation.class, word);
+    // pado feb 09: if you change the word, delete the lemma.
+    remove(LemmaAnnotation.class);
+  }
+  
+    public void setLemma(String lemma) {
+    set(LemmaAnnotation.class, lemma);
+  }
+              */
+            treeNode.label().setWord(curToken.word());
+            treeNode.label().setLemma(curToken.lemma());
+            nodes.add(treeNode);
+        }
+
+        List<AgigaTypedDependency> agigaDeps = getAgigaDeps(form);
+        for (AgigaTypedDependency agigaDep : agigaDeps) {
+            // Add one, since the tokens are zero-indexed but the TreeGraphNodes are one-indexed
+            TreeGraphNode gov = nodes.get(agigaDep.getGovIdx() + 1);
+            TreeGraphNode dep = nodes.get(agigaDep.getDepIdx() + 1);
+
+            // Add gov/dep to TreeGraph
+            gov.addChild(dep);
+            dep.setParent(gov);
+            require(dep.parent() == gov);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Gets the GrammaticalRelation for a relation name from the shared cache.
+     */
+    static GrammaticalRelation getRelation(String name) {
+        GrammaticalRelation rel = relations.get(name);
+        if (rel == null) {
+            rel = GrammaticalRelation.valueOf(name);
+            if (relations.size() < MAX_CACHED_RELATIONS) {
+                GrammaticalRelation prev = relations.putIfAbsent(name, rel);
+                if (prev != null) {
+                    rel = prev;
+                }
+            }
+        }
+        return rel;
+    }
+    
+    /**
+     * Gets the constituency parse as a Stanford Tree.
+     */
+    public Tree getStanfordContituencyTree() {
+        TreeFactory tf = new LabeledScoredTreeFactory();
+        AgigaParseTree parseTree = getParseTree();
+        return toStanfordTree(parseTree, parseTree.getRoot(), tf);
+    }
+
+    /**
+     * Converts the subtree rooted at node to a Stanford Tree, creating the
+     * same labels as PennTreeReader would for getParseText().
+     */
+    private static Tree toStanfordTree(AgigaParseTree parseTree, int node, TreeFactory tf) {
+        if (parseTree.isLeaf(node)) {
+            // Spaces in terminals are replaced by non-breaking spaces, as in
+            // getParseText().
+            Tree leaf = tf.newLeaf(replaceSpaces(parseTree.getLabel(node)));
+            Label label = leaf.label();
+            if (label instanceof HasIndex) {
+                // Leaves are one-indexed.
+                ((HasIndex) label).setIndex(parseTree.getStart(node) + 1);
+            }
+            if (label instanceof HasWord) {
+                ((HasWord) label).setWord(label.value());
+            }
+            return leaf;
+        }
+        List<Tree> children = new ArrayList<Tree>(parseTree.getNumChildren(node));
+        for (int c = parseTree.getFirstChild(node); c != AgigaParseTree.NONE; c = parseTree.getNextSibling(c)) {
+            children.add(toStanfordTree(parseTree, c, tf));
+        }
+        String label = parseTree.getLabel(node);
+        return tf.newTreeNode(label.length() == 0 ? null : label, children);
+    }
+
+    /**
+     * Replaces each run of whitespace in a word with a single non-breaking
+     * space, returning the word itself if it has none.
+     */
+    private static String replaceSpaces(String word) {
+        int i = 0;
+        while (i < word.length() && !Character.isWhitespace(word.charAt(i))) {
+            i++;
+        }
+        if (i == word.length()) {
+            return word;
+        }
+        StringBuilder sb = new StringBuilder(word.length());
+        sb.append(word, 0, i);
+        boolean space = false;
+        for (; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append('\u00A0');
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+    
+}
@@ -0,0 +1,18 @@
+package edu.jhu.agiga;
+
+/**
+ * Creates StanfordAgigaSentence objects. This factory is registered in
+ * META-INF/services, so the readers use it whenever the agiga-stanford module
+ * is on the classpath.
+ *
+ * @author mgormley
+ *
+ */
+public class StanfordAgigaSentenceFactory extends AgigaSentenceFactory {
+
+    @Override
+    public BasicAgigaSentence newSentence(AgigaPrefs prefs) {
+        return new StanfordAgigaSentence(prefs);
+    }
+
+}